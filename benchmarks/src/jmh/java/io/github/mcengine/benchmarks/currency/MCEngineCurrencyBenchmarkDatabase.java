@@ -0,0 +1,53 @@
+package io.github.mcengine.benchmarks.currency;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * The database operations behind the player-facing commands, measured against every backend
+ * configured in {@link MCEngineCurrencyBenchmarkState}.
+ *
+ * <p>The thread count is fixed by each subclass, so one run reports the same operations
+ * under 1, 8 and 64 concurrent callers.</p>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public abstract class MCEngineCurrencyBenchmarkDatabase {
+
+    /**
+     * Balance lookup, as done by {@code /currency check}.
+     */
+    @Benchmark
+    public long getCoin(MCEngineCurrencyBenchmarkState state) {
+        return state.db.getCoin(state.randomPlayer(), 0);
+    }
+
+    /**
+     * Single balance update, as done by {@code /currency add} and {@code /currency cash}.
+     */
+    @Benchmark
+    public void updateCurrencyValue(MCEngineCurrencyBenchmarkState state) {
+        state.db.updateCurrencyValue(state.randomPlayer(), "+", 0, 100L);
+    }
+
+    /**
+     * Direct ledger insert, bypassing the batching ledger writer.
+     */
+    @Benchmark
+    public void insertTransaction(MCEngineCurrencyBenchmarkState state) {
+        String sender = state.randomPlayer();
+        state.db.insertTransaction(sender, state.randomPlayerExcept(sender), "coin", "pay", 100L, "benchmark");
+    }
+
+    /**
+     * Atomic transfer with its ledger entry, as done by {@code /currency pay}.
+     */
+    @Benchmark
+    public boolean transfer(MCEngineCurrencyBenchmarkState state) {
+        String sender = state.randomPlayer();
+        return state.db.transfer(sender, state.randomPlayerExcept(sender), 0, 1L, "benchmark");
+    }
+}
@@ -0,0 +1,9 @@
+package io.github.mcengine.benchmarks.currency;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * {@link MCEngineCurrencyBenchmarkDatabase} with one caller.
+ */
+@Threads(1)
+public class MCEngineCurrencyBenchmarkDatabase1Thread extends MCEngineCurrencyBenchmarkDatabase {}
@@ -0,0 +1,9 @@
+package io.github.mcengine.benchmarks.currency;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * {@link MCEngineCurrencyBenchmarkDatabase} with 64 concurrent callers.
+ */
+@Threads(64)
+public class MCEngineCurrencyBenchmarkDatabase64Threads extends MCEngineCurrencyBenchmarkDatabase {}
@@ -0,0 +1,9 @@
+package io.github.mcengine.benchmarks.currency;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * {@link MCEngineCurrencyBenchmarkDatabase} with 8 concurrent callers.
+ */
+@Threads(8)
+public class MCEngineCurrencyBenchmarkDatabase8Threads extends MCEngineCurrencyBenchmarkDatabase {}
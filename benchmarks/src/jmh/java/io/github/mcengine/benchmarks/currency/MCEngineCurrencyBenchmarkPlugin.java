@@ -0,0 +1,56 @@
+package io.github.mcengine.benchmarks.currency;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Creates a stand-in {@link Plugin} for running the database backends outside a server.
+ *
+ * <p>Only what the backends use is answered: the configuration, the logger, the data folder,
+ * the name and {@code isEnabled()}, which returns {@code false} so asynchronous completions run
+ * on the calling thread instead of the (absent) scheduler. Every other method returns a default value.</p>
+ */
+final class MCEngineCurrencyBenchmarkPlugin {
+    private MCEngineCurrencyBenchmarkPlugin() {}
+
+    /**
+     * Creates a stub plugin.
+     *
+     * @param dataFolder The folder SQLite databases are created in.
+     * @param settings   Configuration values keyed by path, e.g. {@code database.sqlite.mode}.
+     * @return The stub plugin.
+     */
+    static Plugin create(File dataFolder, Map<String, Object> settings) {
+        YamlConfiguration config = new YamlConfiguration();
+        settings.forEach(config::set);
+
+        Logger logger = Logger.getLogger("MCEngineCurrencyBenchmark");
+        // The backends log every write at INFO; keep that out of the measurements
+        logger.setLevel(Level.WARNING);
+
+        return (Plugin) Proxy.newProxyInstance(Plugin.class.getClassLoader(), new Class<?>[] { Plugin.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getConfig": return config;
+                case "getLogger": return logger;
+                case "getDataFolder": return dataFolder;
+                case "getName": return "MCEngineCurrencyBenchmark";
+                case "isEnabled": return false;
+                case "hashCode": return System.identityHashCode(proxy);
+                case "equals": return proxy == args[0];
+                case "toString": return "MCEngineCurrencyBenchmarkPlugin";
+                default: break;
+            }
+            Class<?> type = method.getReturnType();
+            if (type == boolean.class) return false;
+            if (type == int.class) return 0;
+            if (type == long.class) return 0L;
+            if (type == double.class) return 0.0;
+            return null;
+        });
+    }
+}
@@ -0,0 +1,137 @@
+package io.github.mcengine.benchmarks.currency;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+import io.github.mcengine.api.currency.cache.MCEngineCurrencyApiCache;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.database.mapped.MCEngineCurrencyApiMapped;
+import io.github.mcengine.api.currency.database.mysql.MCEngineCurrencyApiMySQL;
+import io.github.mcengine.api.currency.database.sqlite.MCEngineCurrencyApiSQLite;
+import io.github.mcengine.api.currency.database.sqlite.MCEngineCurrencyApiSQLiteWAL;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
+import org.bukkit.plugin.Plugin;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A database backend seeded with players, shared by every benchmark thread of a trial.
+ *
+ * <p>SQLite databases and mapped stores are created in a fresh temporary folder per trial. MySQL uses the server
+ * configured through {@code currency.database.mysql.*} system properties and seeds new random
+ * players each trial, so existing rows are never touched.</p>
+ */
+@State(Scope.Benchmark)
+public class MCEngineCurrencyBenchmarkState {
+    /** Starting balance of every seeded player in minor units, high enough that transfers do not run dry. */
+    private static final long STARTING_BALANCE = 100_000_000L;
+
+    /** Backend under test: {@code sqlite}, {@code sqlite-wal}, {@code mapped} or {@code mysql}. */
+    @Param({ "sqlite", "sqlite-wal", "mapped" })
+    public String backend;
+
+    /** Whether the backend is wrapped in the write-behind balance cache. */
+    @Param({ "false", "true" })
+    public boolean cache;
+
+    /** Number of seeded players the benchmarks pick from. */
+    @Param({ "1000" })
+    public int players;
+
+    MCEngineCurrencyApiDBInterface db;
+    private String[] playerUuids;
+    private File dataFolder;
+
+    /**
+     * Connects to the backend, creates the tables and seeds the players.
+     *
+     * @throws IOException if the temporary data folder cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("mcengine-currency-bench").toFile();
+
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("database.sqlite.path", "currency.db");
+        // Pass-through for MySQL connection and pool settings, e.g. -Dcurrency.database.mysql.host=127.0.0.1
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("currency.")) {
+                settings.put(key.substring("currency.".length()), System.getProperty(key));
+            }
+        }
+        Plugin plugin = MCEngineCurrencyBenchmarkPlugin.create(dataFolder, settings);
+
+        MCEngineCurrencyApiDBInterface backendDb = switch (backend) {
+            case "sqlite" -> new MCEngineCurrencyApiSQLite(plugin);
+            case "sqlite-wal" -> new MCEngineCurrencyApiSQLiteWAL(plugin);
+            case "mysql" -> new MCEngineCurrencyApiMySQL(plugin);
+            case "mapped" -> new MCEngineCurrencyApiMapped(plugin);
+            default -> throw new IllegalArgumentException("Unknown backend: " + backend);
+        };
+        backendDb.createTable();
+
+        long[] startingBalances = new long[MCEngineCurrencyApiCurrencyRegistry.load(plugin).size()];
+        Arrays.fill(startingBalances, STARTING_BALANCE);
+        playerUuids = new String[players];
+        for (int i = 0; i < players; i++) {
+            playerUuids[i] = UUID.randomUUID().toString();
+            backendDb.insertCurrency(playerUuids[i], startingBalances);
+        }
+
+        if (cache) {
+            MCEngineCurrencyApiCache balanceCache = new MCEngineCurrencyApiCache(plugin, backendDb);
+            for (String playerUuid : playerUuids) {
+                balanceCache.load(playerUuid);
+            }
+            db = balanceCache;
+        } else {
+            db = backendDb;
+        }
+    }
+
+    /**
+     * Closes the backend and deletes the temporary data folder.
+     *
+     * @throws IOException if the data folder cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        db.disConnection();
+        try (Stream<Path> paths = Files.walk(dataFolder.toPath())) {
+            for (java.nio.file.Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * @return A random seeded player.
+     */
+    String randomPlayer() {
+        return playerUuids[ThreadLocalRandom.current().nextInt(playerUuids.length)];
+    }
+
+    /**
+     * @param other A seeded player.
+     * @return A random seeded player other than {@code other}.
+     */
+    String randomPlayerExcept(String other) {
+        String player;
+        do {
+            player = randomPlayer();
+        } while (player.equals(other) && playerUuids.length > 1);
+        return player;
+    }
+}
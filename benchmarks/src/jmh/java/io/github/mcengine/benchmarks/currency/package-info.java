@@ -0,0 +1,4 @@
+/**
+ * This package contains JMH benchmarks for the currency database backends.
+ */
+package io.github.mcengine.benchmarks.currency;
@@ -1,6 +1,17 @@
 package io.github.mcengine.common.currency.command;
 
 import io.github.mcengine.api.currency.MCEngineCurrencyApi;
+import io.github.mcengine.api.currency.enums.MCEngineCurrencyApiTransactionType;
+import io.github.mcengine.api.currency.leaderboard.MCEngineCurrencyApiTopEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryCursor;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryPage;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiReplayReport;
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiHistogram;
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiMetrics;
+import io.github.mcengine.api.currency.money.MCEngineCurrencyApiMoney;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrency;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
 import io.github.mcengine.common.currency.item.ItemManager;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -11,16 +22,63 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
 
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Handles currency-related commands for players in the game.
+ * Database work is performed through the asynchronous currency API, so replies are sent
+ * once the database has answered instead of blocking the server main thread.
  */
 public class MCEngineCurrencyCommonCommand implements CommandExecutor {
 
+    /** Number of leaderboard entries shown per page of "/currency top". */
+    private static final int TOP_PAGE_SIZE = 10;
+
+    /** Number of transactions shown per page of "/currency history". */
+    private static final int HISTORY_PAGE_SIZE = 10;
+
+    /** Number of viewers whose history page cursors are remembered. */
+    private static final int HISTORY_SESSIONS = 256;
+
+    private static final DateTimeFormatter HISTORY_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
     private Plugin plugin;
     private final MCEngineCurrencyApi currencyApi;
-    private String coinHeadId, copperHeadId, silverHeadId, goldHeadId;
+    private final MCEngineCurrencyApiCurrencyRegistry currencies;
+
+    /**
+     * The history each viewer browsed last, keyed by sender name, with the cursor that starts every page seen so far,
+     * so moving to the next page is a single index seek. Only used on the main thread.
+     */
+    private final Map<String, HistorySession> historySessions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HistorySession> eldest) {
+            return size() > HISTORY_SESSIONS;
+        }
+    };
+
+    /**
+     * The page cursors of one viewer browsing one player's history.
+     */
+    private static final class HistorySession {
+        private final UUID target;
+        /** The cursor starting each page already reached; page 1 starts at {@code null}. */
+        private final List<MCEngineCurrencyApiHistoryCursor> starts = new ArrayList<>();
+
+        private HistorySession(UUID target) {
+            this.target = target;
+            starts.add(null);
+        }
+    }
 
     /**
      * Constructs a new currency command handler.
@@ -30,10 +88,7 @@ public class MCEngineCurrencyCommonCommand implements CommandExecutor {
     public MCEngineCurrencyCommonCommand(Plugin plugin, MCEngineCurrencyApi currencyApi) {
         this.plugin = plugin;
         this.currencyApi = currencyApi;
-        this.coinHeadId = plugin.getConfig().getString("texture.coin", "63066");
-        this.copperHeadId = plugin.getConfig().getString("texture.copper", "40534");
-        this.silverHeadId = plugin.getConfig().getString("texture.silver", "51708");
-        this.goldHeadId = plugin.getConfig().getString("texture.gold", "56431");
+        this.currencies = currencyApi.getCurrencies();
     }
 
     /**
@@ -47,6 +102,30 @@ public class MCEngineCurrencyCommonCommand implements CommandExecutor {
      */
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length > 0 && args[0].equalsIgnoreCase("stats")) {
+            // Available from the console as well, where lag is usually investigated
+            long start = System.nanoTime();
+            handleStatsCommand(sender, args);
+            currencyApi.getMetrics().record("command.stats", System.nanoTime() - start);
+            return true;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("replay")) {
+            // Restoring after an incident is usually done from the console
+            long start = System.nanoTime();
+            handleReplayCommand(sender, args);
+            currencyApi.getMetrics().record("command.replay", System.nanoTime() - start);
+            return true;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("history")) {
+            // Support staff look up other players from the console too
+            long start = System.nanoTime();
+            handleHistoryCommand(sender, args);
+            currencyApi.getMetrics().record("command.history", System.nanoTime() - start);
+            return true;
+        }
+
         if (!(sender instanceof Player player)) {
             sender.sendMessage(ChatColor.RED + "Only players can use this command.");
             return true;
@@ -57,13 +136,21 @@ public class MCEngineCurrencyCommonCommand implements CommandExecutor {
             return true;
         }
 
-        switch (args[0].toLowerCase()) {
+        // Main-thread time per subcommand; the database work behind it is timed by the API
+        long start = System.nanoTime();
+        String action = args[0].toLowerCase();
+        switch (action) {
             case "add" -> handleAddCommand(sender, args);
             case "cash" -> handleCashCommand(player, args);
             case "check" -> handleCheckCommand(player, args);
             case "pay" -> handlePayCommand(player, args);
-            default -> sender.sendMessage(ChatColor.RED + "Invalid action. Usage: /currency <check||pay> <currencyType||player> <amount> <currencyType>");
+            case "top" -> handleTopCommand(player, args);
+            default -> {
+                sender.sendMessage(ChatColor.RED + "Invalid action. Usage: /currency <check||pay> <currencyType||player> <amount> <currencyType>");
+                return true;
+            }
         }
+        currencyApi.getMetrics().record("command." + action, System.nanoTime() - start);
         return true;
     }
 
@@ -73,6 +160,10 @@ public class MCEngineCurrencyCommonCommand implements CommandExecutor {
         sender.sendMessage(ChatColor.RED + "/currency cash <coinType> <amount>");
         sender.sendMessage(ChatColor.RED + "/currency check <coinType>");
         sender.sendMessage(ChatColor.RED + "/currency pay <player> <amount> <currencyType> <note>");
+        sender.sendMessage(ChatColor.RED + "/currency top <coinType> [page]");
+        sender.sendMessage(ChatColor.RED + "/currency history [player] [page]");
+        sender.sendMessage(ChatColor.RED + "/currency stats [filter|reset]");
+        sender.sendMessage(ChatColor.RED + "/currency replay [restore]");
     }
 
     /**
@@ -97,20 +188,20 @@ public class MCEngineCurrencyCommonCommand implements CommandExecutor {
         String coinType = args[2].toLowerCase();
         String amountStr = args[3];
 
-        if (!coinType.matches("coin|copper|silver|gold")) {
-            sender.sendMessage(ChatColor.RED + "Invalid coin type: " + coinType + ". Valid types are: coin, copper, silver, gold.");
+        if (currencies.indexOf(coinType) < 0) {
+            sender.sendMessage(ChatColor.RED + "Invalid coin type: " + coinType + ". Valid types are: " + validTypes() + ".");
             return true;
         }
 
-        double amount;
+        MCEngineCurrencyApiMoney amount;
         try {
-            amount = Double.parseDouble(amountStr);
+            amount = MCEngineCurrencyApiMoney.parse(amountStr);
         } catch (NumberFormatException e) {
-            sender.sendMessage(ChatColor.RED + "The amount must be a valid number.");
+            sender.sendMessage(ChatColor.RED + "The amount must be a valid number with at most two decimal places.");
             return true;
         }
 
-        if (amount <= 0) {
+        if (!amount.isPositive()) {
             sender.sendMessage(ChatColor.RED + "The amount must be greater than zero.");
             return true;
         }
@@ -122,10 +213,18 @@ public class MCEngineCurrencyCommonCommand implements CommandExecutor {
         }
 
         UUID targetUUID = targetPlayer.getUniqueId();
-        currencyApi.addCoin(targetUUID, coinType, amount);
-
-        sender.sendMessage(ChatColor.GREEN + "Added " + amount + " " + coinType + " to " + targetPlayer.getName() + ".");
-        targetPlayer.sendMessage(ChatColor.GREEN + "You have been given " + amount + " " + coinType + " by " + sender.getName() + ".");
+        currencyApi.addCoinAsync(targetUUID, coinType, amount, MCEngineCurrencyApiTransactionType.ADD, "by " + sender.getName()).thenAccept(added -> {
+            if (!added) {
+                sender.sendMessage(ChatColor.RED + "Invalid coin type: " + coinType + ".");
+                return;
+            }
+            sender.sendMessage(ChatColor.GREEN + "Added " + amount + " " + coinType + " to " + targetPlayer.getName() + ".");
+            targetPlayer.sendMessage(ChatColor.GREEN + "You have been given " + amount + " " + coinType + " by " + sender.getName() + ".");
+        }).exceptionally(e -> {
+            sender.sendMessage(ChatColor.RED + "An error occurred while adding currency. Please try again later.");
+            Bukkit.getLogger().warning("Add failed: " + e.getMessage());
+            return null;
+        });
         return true;
     }
 
@@ -151,48 +250,76 @@ public class MCEngineCurrencyCommonCommand implements CommandExecutor {
         }
 
         String coinType = args[1].toLowerCase();
-        if (!coinType.matches("coin|copper|silver|gold")) {
-            player.sendMessage(ChatColor.RED + "Invalid coin type. Use: coin, copper, silver, gold.");
+        MCEngineCurrencyApiCurrency currency = currencies.get(coinType);
+        if (currency == null) {
+            player.sendMessage(ChatColor.RED + "Invalid coin type. Use: " + validTypes() + ".");
             return true;
         }
 
-        String headId = switch (coinType) {
-            case "copper" -> copperHeadId;
-            case "silver" -> silverHeadId;
-            case "gold" -> goldHeadId;
-            default -> coinHeadId;
-        };
+        String headId = currency.texture();
+        if (headId.isEmpty()) {
+            player.sendMessage(ChatColor.RED + "There is no cash item for " + coinType + ".");
+            return true;
+        }
 
-        double amount;
+        MCEngineCurrencyApiMoney amount;
         try {
-            amount = Double.parseDouble(args[2]);
+            amount = MCEngineCurrencyApiMoney.parse(args[2]);
         } catch (NumberFormatException e) {
-            player.sendMessage(ChatColor.RED + "Amount must be a number.");
+            player.sendMessage(ChatColor.RED + "Amount must be a number with at most two decimal places.");
             return true;
         }
 
-        if (amount <= 0) {
+        if (!amount.isPositive()) {
             player.sendMessage(ChatColor.RED + "Amount must be greater than zero.");
             return true;
         }
 
-        double balance = currencyApi.getCoin(player.getUniqueId(), coinType);
-        if (balance < amount) {
-            player.sendMessage(ChatColor.RED + "You do not have enough " + coinType + ".");
-            return true;
-        }
-
-        // Deduct the currency
-        currencyApi.minusCoin(player.getUniqueId(), coinType, amount);
-
-        // Create the cash item and give it to the player
-        ItemStack cashItem = ItemManager.createCashItem(headId, coinType, amount);
-        player.getInventory().addItem(cashItem);
-
-        player.sendMessage(ChatColor.GREEN + "You converted " + amount + " " + coinType + " into a cash item.");
+        UUID playerUUID = player.getUniqueId();
+        // Check and deduct in one compare-and-set so concurrent spending cannot overdraw the balance
+        currencyApi.tryMinusCoinAsync(playerUUID, coinType, amount, MCEngineCurrencyApiTransactionType.CASH, null).thenAccept(deducted -> {
+            if (!deducted) {
+                player.sendMessage(ChatColor.RED + "You do not have enough " + coinType + ".");
+                return;
+            }
+
+            if (!player.isOnline()) {
+                // The player left while the deduction ran, so there is no inventory to put the item in
+                refundCash(playerUUID, coinType, amount);
+                return;
+            }
+
+            // Create the cash item and give it to the player
+            ItemStack cashItem = ItemManager.createCashItem(headId, coinType, amount);
+            ItemManager.give(player, cashItem);
+
+            player.sendMessage(ChatColor.GREEN + "You converted " + amount + " " + coinType + " into a cash item.");
+        }).exceptionally(e -> {
+            player.sendMessage(ChatColor.RED + "An error occurred while creating the cash item. Please try again later.");
+            Bukkit.getLogger().warning("Cash failed: " + e.getMessage());
+            return null;
+        });
         return true;
     }
 
+    /**
+     * Pays back the amount of a cash item that could not be handed out.
+     *
+     * @param playerUUID The player whose balance was deducted.
+     * @param coinType   The coin type of the item.
+     * @param amount     The amount deducted.
+     */
+    private void refundCash(UUID playerUUID, String coinType, MCEngineCurrencyApiMoney amount) {
+        currencyApi.addCoinAsync(playerUUID, coinType, amount, MCEngineCurrencyApiTransactionType.DEPOSIT, "cash item not delivered").thenAccept(refunded -> {
+            if (!refunded) {
+                Bukkit.getLogger().severe("Could not refund " + amount + " " + coinType + " to " + playerUUID + " for an undelivered cash item.");
+            }
+        }).exceptionally(e -> {
+            Bukkit.getLogger().severe("Could not refund " + amount + " " + coinType + " to " + playerUUID + " for an undelivered cash item: " + e.getMessage());
+            return null;
+        });
+    }
+
     /**
      * Handles the "check" command to check a player's currency balance.
      *
@@ -207,13 +334,18 @@ public class MCEngineCurrencyCommonCommand implements CommandExecutor {
         }
 
         String coinType = args[1].toLowerCase();
-
-        try {
-            double balance = currencyApi.getCoin(senderPlayer.getUniqueId(), coinType);
-            senderPlayer.sendMessage(ChatColor.GREEN + "You have " + balance + " " + coinType + ".");
-        } catch (IllegalArgumentException e) {
+        if (currencies.indexOf(coinType) < 0) {
             senderPlayer.sendMessage(ChatColor.RED + "Invalid coin type: " + coinType + ".");
+            return true;
         }
+
+        currencyApi.getCoinAsync(senderPlayer.getUniqueId(), coinType).thenAccept(balance ->
+            senderPlayer.sendMessage(ChatColor.GREEN + "You have " + balance + " " + coinType + ".")
+        ).exceptionally(e -> {
+            senderPlayer.sendMessage(ChatColor.RED + "An error occurred while checking your balance. Please try again later.");
+            Bukkit.getLogger().warning("Check failed: " + e.getMessage());
+            return null;
+        });
         return true;
     }
 
@@ -240,20 +372,20 @@ public class MCEngineCurrencyCommonCommand implements CommandExecutor {
         String currencyType = args[3].toLowerCase();
         String note = args[4];
 
-        if (!currencyType.matches("coin|copper|silver|gold")) {
-            senderPlayer.sendMessage(ChatColor.RED + "Invalid currency type. Allowed types: coin, copper, silver, gold.");
+        if (currencies.indexOf(currencyType) < 0) {
+            senderPlayer.sendMessage(ChatColor.RED + "Invalid currency type. Allowed types: " + validTypes() + ".");
             return true;
         }
 
-        double amount;
+        MCEngineCurrencyApiMoney amount;
         try {
-            amount = Double.parseDouble(amountStr);
+            amount = MCEngineCurrencyApiMoney.parse(amountStr);
         } catch (NumberFormatException e) {
-            senderPlayer.sendMessage(ChatColor.RED + "The amount must be a valid number.");
+            senderPlayer.sendMessage(ChatColor.RED + "The amount must be a valid number with at most two decimal places.");
             return true;
         }
 
-        if (amount <= 0) {
+        if (!amount.isPositive()) {
             senderPlayer.sendMessage(ChatColor.RED + "The amount must be greater than zero.");
             return true;
         }
@@ -272,23 +404,356 @@ public class MCEngineCurrencyCommonCommand implements CommandExecutor {
             return true;
         }
 
-        double senderBalance = currencyApi.getCoin(senderUUID, currencyType);
-        if (senderBalance < amount) {
-            senderPlayer.sendMessage(ChatColor.RED + "You do not have enough " + currencyType + ".");
-            return true;
-        }
-
-        try {
-            currencyApi.minusCoin(senderUUID, currencyType, amount);
-            currencyApi.addCoin(targetUUID, currencyType, amount);
-            currencyApi.createTransaction(senderUUID, targetUUID, currencyType, "pay", amount, note);
+        currencyApi.transferWithResultAsync(senderUUID, targetUUID, currencyType, amount, note).thenAccept(result -> {
+            if (!result.isPaid()) {
+                senderPlayer.sendMessage(ChatColor.RED + switch (result) {
+                    case INSUFFICIENT_FUNDS -> "You do not have enough " + currencyType + ".";
+                    case NO_ACCOUNT -> targetPlayer.getName() + " does not have a currency account yet.";
+                    case INVALID -> "Invalid currency type or amount.";
+                    default -> "The payment could not be completed. Please try again later.";
+                });
+                return;
+            }
 
             senderPlayer.sendMessage(ChatColor.GREEN + "You have sent " + amount + " " + currencyType + " to " + targetPlayer.getName() + ". Note: " + note);
             targetPlayer.sendMessage(ChatColor.GREEN + "You have received " + amount + " " + currencyType + " from " + senderPlayer.getName() + ". Note: " + note);
-        } catch (Exception e) {
+        }).exceptionally(e -> {
             senderPlayer.sendMessage(ChatColor.RED + "An error occurred during the transaction. Please try again later.");
             Bukkit.getLogger().warning("Transaction failed: " + e.getMessage());
+            return null;
+        });
+        return true;
+    }
+
+    /**
+     * Handles the "top" command to list the players with the highest balance of a coin type.
+     *
+     * @param senderPlayer The player executing the command.
+     * @param args         The command arguments (expected format: /currency top <coinType> [page]).
+     * @return true if the command was executed successfully.
+     */
+    private boolean handleTopCommand(Player senderPlayer, String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            senderPlayer.sendMessage(ChatColor.RED + "Usage: /currency top <coinType> [page]");
+            return true;
+        }
+
+        String coinType = args[1].toLowerCase();
+        if (currencies.indexOf(coinType) < 0) {
+            senderPlayer.sendMessage(ChatColor.RED + "Invalid coin type. Use: " + validTypes() + ".");
+            return true;
+        }
+
+        int page = 1;
+        if (args.length == 3) {
+            try {
+                page = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                senderPlayer.sendMessage(ChatColor.RED + "The page must be a valid number.");
+                return true;
+            }
+            if (page < 1) {
+                senderPlayer.sendMessage(ChatColor.RED + "The page must be at least 1.");
+                return true;
+            }
         }
+
+        int offset = (page - 1) * TOP_PAGE_SIZE;
+        int shownPage = page;
+        currencyApi.getTopAsync(coinType, offset, TOP_PAGE_SIZE).thenAccept(entries -> {
+            if (entries.isEmpty()) {
+                senderPlayer.sendMessage(ChatColor.RED + "No entries on page " + shownPage + ".");
+                return;
+            }
+
+            senderPlayer.sendMessage(ChatColor.GOLD + "Top " + coinType + " (page " + shownPage + "):");
+            int rank = offset;
+            for (MCEngineCurrencyApiTopEntry entry : entries) {
+                senderPlayer.sendMessage(ChatColor.YELLOW + "" + (++rank) + ". " + displayName(entry.playerUuid())
+                    + ChatColor.GREEN + " - " + MCEngineCurrencyApiMoney.ofMinor(entry.balance()));
+            }
+        }).exceptionally(e -> {
+            senderPlayer.sendMessage(ChatColor.RED + "An error occurred while loading the leaderboard. Please try again later.");
+            Bukkit.getLogger().warning("Top failed: " + e.getMessage());
+            return null;
+        });
         return true;
     }
+
+    /**
+     * Handles the "history" command, listing the transactions a player sent or received, newest first.
+     * Viewing another player's history requires {@code mcengine.currency.history.others}; the console must
+     * name a player. The player is an online player's name or a UUID.
+     *
+     * @param sender The command sender, a player or the console.
+     * @param args   The command arguments (expected format: /currency history [player] [page]).
+     * @return true if the command was executed successfully.
+     */
+    private boolean handleHistoryCommand(CommandSender sender, String[] args) {
+        if (args.length > 3) {
+            sender.sendMessage(ChatColor.RED + "Usage: /currency history [player] [page]");
+            return true;
+        }
+
+        String targetArg = null;
+        String pageArg = null;
+        if (args.length == 3) {
+            targetArg = args[1];
+            pageArg = args[2];
+        } else if (args.length == 2) {
+            if (args[1].chars().allMatch(Character::isDigit)) pageArg = args[1];
+            else targetArg = args[1];
+        }
+
+        UUID target;
+        String targetName;
+        if (targetArg == null) {
+            if (!(sender instanceof Player player)) {
+                sender.sendMessage(ChatColor.RED + "Usage: /currency history <player> [page]");
+                return true;
+            }
+            target = player.getUniqueId();
+            targetName = player.getName();
+        } else {
+            Player targetPlayer = Bukkit.getPlayerExact(targetArg);
+            if (targetPlayer != null) {
+                target = targetPlayer.getUniqueId();
+                targetName = targetPlayer.getName();
+            } else {
+                try {
+                    target = UUID.fromString(targetArg);
+                } catch (IllegalArgumentException e) {
+                    sender.sendMessage(ChatColor.RED + "Player not found. Offline players can be looked up by UUID.");
+                    return true;
+                }
+                targetName = displayName(target.toString());
+            }
+            boolean own = sender instanceof Player player && player.getUniqueId().equals(target);
+            if (!own && !sender.hasPermission("mcengine.currency.history.others")) {
+                sender.sendMessage(ChatColor.RED + "You do not have permission to view other players' history.");
+                return true;
+            }
+        }
+
+        int page = 1;
+        if (pageArg != null) {
+            try {
+                page = Integer.parseInt(pageArg);
+            } catch (NumberFormatException e) {
+                sender.sendMessage(ChatColor.RED + "The page must be a valid number.");
+                return true;
+            }
+            if (page < 1) {
+                sender.sendMessage(ChatColor.RED + "The page must be at least 1.");
+                return true;
+            }
+        }
+
+        // Page 1 starts a fresh listing; later pages continue from the cursors of the pages before them
+        HistorySession session = historySessions.get(sender.getName());
+        if (page == 1 || session == null || !session.target.equals(target)) {
+            session = new HistorySession(target);
+            historySessions.put(sender.getName(), session);
+        }
+
+        int shownPage = page;
+        String shownName = targetName;
+        historyPage(session, Math.min(page, session.starts.size()), page).thenAccept(result -> {
+            if (result == null || result.entries().isEmpty()) {
+                sender.sendMessage(ChatColor.RED + "No transactions on page " + shownPage + ".");
+                return;
+            }
+
+            sender.sendMessage(ChatColor.GOLD + "Transactions of " + shownName + " (page " + shownPage + "):");
+            String targetUuid = target.toString();
+            for (MCEngineCurrencyApiHistoryEntry entry : result.entries()) {
+                boolean sent = entry.playerUuidSender().equals(targetUuid);
+                boolean received = entry.playerUuidReceiver().equals(targetUuid);
+                String amount = MCEngineCurrencyApiMoney.ofMinor(entry.amount()) + " " + entry.currencyType();
+                String line;
+                MCEngineCurrencyApiTransactionType type = MCEngineCurrencyApiTransactionType.of(entry.transactionType());
+                if (sent && received && type != null && type.creditsReceiver() != type.debitsSender()) {
+                    // A single-account entry: an add or deposit credits the player, a deduction or cash debits them
+                    line = type.creditsReceiver() ? ChatColor.GREEN + "+" + amount : ChatColor.RED + "-" + amount;
+                } else if (sent && received) {
+                    line = ChatColor.YELLOW + amount;
+                } else if (sent) {
+                    line = ChatColor.RED + "-" + amount + ChatColor.GRAY + " to " + displayName(entry.playerUuidReceiver());
+                } else {
+                    line = ChatColor.GREEN + "+" + amount + ChatColor.GRAY + " from " + displayName(entry.playerUuidSender());
+                }
+                String note = entry.notes() != null && !entry.notes().isEmpty() ? ": " + entry.notes() : "";
+                sender.sendMessage(ChatColor.DARK_GRAY + HISTORY_TIME.format(Instant.ofEpochMilli(entry.timestamp())) + " " + line
+                    + ChatColor.GRAY + " (" + entry.transactionType() + ")" + note);
+            }
+            if (result.next() != null) {
+                sender.sendMessage(ChatColor.GRAY + "Next page: /currency history " + historyTarget(sender, target, shownName) + (shownPage + 1));
+            }
+        }).exceptionally(e -> {
+            sender.sendMessage(ChatColor.RED + "An error occurred while loading the transaction history. Please try again later.");
+            Bukkit.getLogger().warning("History failed: " + e.getMessage());
+            return null;
+        });
+        return true;
+    }
+
+    /**
+     * Fetches the pages of a history one after another, starting at the last page whose cursor is known,
+     * until the requested page is reached. Every page reached records the cursor of the page after it.
+     *
+     * @param session The viewer's history session.
+     * @param current The page to fetch now; its cursor is known.
+     * @param target  The requested page.
+     * @return A future completed on the main thread with the requested page, or {@code null} if the history
+     *         ends before it.
+     */
+    private CompletableFuture<MCEngineCurrencyApiHistoryPage> historyPage(HistorySession session, int current, int target) {
+        return currencyApi.getTransactionsAsync(session.target, session.starts.get(current - 1), HISTORY_PAGE_SIZE).thenCompose(result -> {
+            if (result.next() != null && session.starts.size() == current) {
+                session.starts.add(result.next());
+            }
+            if (current == target) return CompletableFuture.completedFuture(result);
+            if (result.next() == null) return CompletableFuture.completedFuture(null);
+            return historyPage(session, current + 1, target);
+        });
+    }
+
+    /**
+     * @return The player argument that repeats a history listing, followed by a space, or nothing for one's own.
+     */
+    private static String historyTarget(CommandSender sender, UUID target, String targetName) {
+        if (sender instanceof Player player && player.getUniqueId().equals(target)) return "";
+        return (Bukkit.getPlayerExact(targetName) != null ? targetName : target.toString()) + " ";
+    }
+
+    /**
+     * @param playerUuid A player's UUID.
+     * @return The player's last known name, or the UUID if the server has never seen them.
+     */
+    private static String displayName(String playerUuid) {
+        String name = Bukkit.getOfflinePlayer(UUID.fromString(playerUuid)).getName();
+        return name != null ? name : playerUuid;
+    }
+
+    /**
+     * Handles the "stats" command, showing latency percentiles per operation, the cache hit ratio,
+     * queue depths and pool usage. "/currency stats reset" clears the latency timers.
+     *
+     * @param sender The command sender, a player or the console.
+     * @param args   The command arguments (expected format: /currency stats [filter|reset]).
+     * @return true if the command was executed successfully.
+     */
+    private boolean handleStatsCommand(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("mcengine.currency.stats")) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to use this command.");
+            return true;
+        }
+
+        MCEngineCurrencyApiMetrics metrics = currencyApi.getMetrics();
+        if (args.length == 2 && args[1].equalsIgnoreCase("reset")) {
+            metrics.resetTimers();
+            sender.sendMessage(ChatColor.GREEN + "Currency latency timers have been reset.");
+            return true;
+        }
+        String filter = args.length >= 2 ? args[1] : "";
+
+        sender.sendMessage(ChatColor.GOLD + "Currency latency (ms): count / p50 / p99 / p99.9 / max");
+        for (Map.Entry<String, MCEngineCurrencyApiHistogram.Snapshot> entry : metrics.getTimers().entrySet()) {
+            MCEngineCurrencyApiHistogram.Snapshot snapshot = entry.getValue();
+            if (!entry.getKey().startsWith(filter) || snapshot.getCount() == 0L) continue;
+            sender.sendMessage(ChatColor.YELLOW + entry.getKey() + ChatColor.GREEN + String.format(Locale.ROOT,
+                " %d / %.2f / %.2f / %.2f / %.2f", snapshot.getCount(), millis(snapshot.getValueAt(0.5)),
+                millis(snapshot.getValueAt(0.99)), millis(snapshot.getValueAt(0.999)), millis(snapshot.getMax())));
+        }
+
+        Map<String, Long> counters = metrics.getCounters();
+        long hits = counters.getOrDefault("cache.hits", 0L);
+        long misses = counters.getOrDefault("cache.misses", 0L);
+        if (hits + misses > 0L) {
+            sender.sendMessage(ChatColor.YELLOW + "cache.hit-ratio" + ChatColor.GREEN
+                + String.format(Locale.ROOT, " %.1f%%", 100.0 * hits / (hits + misses)));
+        }
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            if (entry.getKey().startsWith(filter)) {
+                sender.sendMessage(ChatColor.YELLOW + entry.getKey() + ChatColor.GREEN + " " + entry.getValue());
+            }
+        }
+        for (Map.Entry<String, Long> entry : metrics.getGauges().entrySet()) {
+            if (entry.getKey().startsWith(filter)) {
+                sender.sendMessage(ChatColor.YELLOW + entry.getKey() + ChatColor.GREEN + " " + entry.getValue());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Handles the "replay" command, rebuilding every balance from the ledger checkpoints and entries and
+     * reporting the players whose stored balances differ; with "restore", which also requires
+     * {@code mcengine.currency.replay.restore}, the stored balances are corrected one player at a time.
+     *
+     * @param sender The command sender, a player or the console.
+     * @param args   The command arguments (expected format: /currency replay [restore]).
+     * @return true if the command was executed successfully.
+     */
+    private boolean handleReplayCommand(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("mcengine.currency.replay")) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to use this command.");
+            return true;
+        }
+        if (args.length > 2 || (args.length == 2 && !args[1].equalsIgnoreCase("restore"))) {
+            sender.sendMessage(ChatColor.RED + "Usage: /currency replay [restore]");
+            return true;
+        }
+
+        boolean restore = args.length == 2;
+        if (restore && !sender.hasPermission("mcengine.currency.replay.restore")) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to restore balances.");
+            return true;
+        }
+        sender.sendMessage(ChatColor.YELLOW + (restore ? "Restoring balances from the ledger..." : "Replaying the ledger..."));
+        currencyApi.replayBalancesAsync(restore).thenAccept(report -> {
+            if (report == null) {
+                sender.sendMessage(ChatColor.RED + "The ledger could not be replayed. See the server log for details.");
+                return;
+            }
+            sender.sendMessage(ChatColor.GREEN + "Replayed up to ledger entry " + report.transactionId() + " for "
+                + report.players() + " players in " + report.millis() + " ms.");
+            if (report.drift().isEmpty()) {
+                sender.sendMessage(ChatColor.GREEN + "Every stored balance matches the ledger.");
+                return;
+            }
+            int shown = 0;
+            for (Map.Entry<UUID, long[]> entry : report.drift().entrySet()) {
+                if (shown++ == TOP_PAGE_SIZE) break;
+                long[] delta = entry.getValue();
+                for (int currencyId = 0; currencyId < delta.length; currencyId++) {
+                    if (delta[currencyId] == 0L) continue;
+                    sender.sendMessage(ChatColor.YELLOW + displayName(entry.getKey().toString()) + ChatColor.GREEN + " "
+                        + currencies.nameOf(currencyId) + " " + MCEngineCurrencyApiMoney.ofMinor(delta[currencyId]));
+                }
+            }
+            sender.sendMessage((report.restored() ? ChatColor.GREEN + "Restored " : ChatColor.RED + "Differences found for ")
+                + report.drift().size() + " players." + (report.restored() ? "" : " Run /currency replay restore to correct them."));
+        }).exceptionally(e -> {
+            sender.sendMessage(ChatColor.RED + "An error occurred while replaying the ledger.");
+            Bukkit.getLogger().warning("Replay failed: " + e.getMessage());
+            return null;
+        });
+        return true;
+    }
+
+    /**
+     * @return The configured currency names, comma separated.
+     */
+    private String validTypes() {
+        return String.join(", ", currencies.getNames());
+    }
+
+    /**
+     * @param nanos A duration in nanoseconds.
+     * @return The duration in milliseconds.
+     */
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
 }
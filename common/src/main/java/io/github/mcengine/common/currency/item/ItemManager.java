@@ -1,52 +1,137 @@
 package io.github.mcengine.common.currency.item;
 
+import io.github.mcengine.api.currency.money.MCEngineCurrencyApiMoney;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrency;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
 import me.arcaniax.hdb.api.HeadDatabaseAPI;
-import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
+import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataType;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Creates the cash items handed out by "/currency cash" and defines the keys they carry.
+ *
+ * <p>Looking a head up in HeadDB is slow, so each coin type's head is resolved once into a template that already
+ * carries the display name, the cash marker and the coin type, and every cash item is a clone of it with only the
+ * amount filled in. Templates are rebuilt by {@link #refresh(MCEngineCurrencyApiCurrencyRegistry)} whenever HeadDB
+ * (re)loads its database; a coin type without one is resolved on first use instead.</p>
+ */
 public class ItemManager {
 
-    private static final NamespacedKey CASH_KEY = new NamespacedKey("mcengine", "cash");
-    private static final NamespacedKey COIN_TYPE_KEY = new NamespacedKey("mcengine", "coin_type");
+    /** Namespaced key marking an item as a cash item. */
+    public static final NamespacedKey CASH_KEY = new NamespacedKey("mcengine", "cash");
 
-    public static ItemStack createCashItem(String headId, String coinType, double amount) {
-        HeadDatabaseAPI hdb = new HeadDatabaseAPI();
+    /** Namespaced key for the coin type stored in a cash item. */
+    public static final NamespacedKey COIN_TYPE_KEY = new NamespacedKey("mcengine", "coin_type");
+
+    /** Namespaced key for the amount stored in a cash item, in minor units. */
+    public static final NamespacedKey AMOUNT_MINOR_KEY = new NamespacedKey("mcengine", "amount_minor");
+
+    /** Namespaced key for the floating-point amount stored by cash items created before amounts were exact. */
+    public static final NamespacedKey LEGACY_AMOUNT_KEY = new NamespacedKey("mcengine", "amount");
+
+    /** The cash item template of each coin type, keyed by coin type. */
+    private static final Map<String, Template> TEMPLATES = new ConcurrentHashMap<>();
 
-        ItemStack item = hdb.getItemHead(headId);
-        if (item == null) {
-            item = new ItemStack(Material.PAPER); // fallback
+    /**
+     * A coin type's cash item without an amount, and the HeadDB id it was resolved from.
+     */
+    private record Template(String headId, ItemStack item) {}
+
+    private ItemManager() {}
+
+    /**
+     * Creates a cash item worth an amount of a coin type by cloning the coin type's template.
+     *
+     * @param headId   The HeadDB id of the coin type's head.
+     * @param coinType The coin type stored in the item.
+     * @param amount   The amount stored in the item.
+     * @return The cash item.
+     */
+    public static ItemStack createCashItem(String headId, String coinType, MCEngineCurrencyApiMoney amount) {
+        Template template = TEMPLATES.get(coinType);
+        if (template == null || !template.headId().equals(headId)) {
+            template = resolve(new HeadDatabaseAPI(), coinType, headId);
         }
 
+        ItemStack item = template.item().clone();
         ItemMeta meta = item.getItemMeta();
         if (meta != null) {
-            meta.setDisplayName(ChatColor.YELLOW + "Cash: " + capitalize(coinType));
-
-            List<String> lore = new ArrayList<>();
+            List<String> lore = new ArrayList<>(2);
             lore.add(ChatColor.GRAY + "coin type : " + ChatColor.WHITE + capitalize(coinType));
             lore.add(ChatColor.GRAY + "amount : " + ChatColor.WHITE + amount);
             meta.setLore(lore);
+            meta.getPersistentDataContainer().set(AMOUNT_MINOR_KEY, PersistentDataType.LONG, amount.minor());
+            item.setItemMeta(meta);
+        }
+        return item;
+    }
 
-            // Set persistent data
+    /**
+     * Puts an item into a player's inventory, dropping whatever does not fit at their feet.
+     *
+     * @param player The player to give the item to.
+     * @param item   The item.
+     */
+    public static void give(Player player, ItemStack item) {
+        for (ItemStack leftover : player.getInventory().addItem(item).values()) {
+            player.getWorld().dropItemNaturally(player.getLocation(), leftover);
+        }
+    }
+
+    /**
+     * Resolves the template of every currency with a head again, dropping those of currencies that no longer
+     * have one. Called once HeadDB has loaded its database, before which it has no heads to give.
+     *
+     * @param currencies The configured currencies.
+     */
+    public static void refresh(MCEngineCurrencyApiCurrencyRegistry currencies) {
+        HeadDatabaseAPI hdb = new HeadDatabaseAPI();
+        List<String> names = new ArrayList<>();
+        for (MCEngineCurrencyApiCurrency currency : currencies.getCurrencies()) {
+            if (currency.texture().isEmpty()) continue;
+            resolve(hdb, currency.name(), currency.texture());
+            names.add(currency.name());
+        }
+        TEMPLATES.keySet().retainAll(names);
+    }
+
+    /**
+     * Builds a coin type's template from its HeadDB head, caching it only if HeadDB had the head, so a template
+     * resolved before HeadDB has loaded is tried again on the next use.
+     *
+     * @return The template, with a paper item standing in for a missing head.
+     */
+    private static Template resolve(HeadDatabaseAPI hdb, String coinType, String headId) {
+        ItemStack head = hdb.getItemHead(headId);
+        ItemStack item = head != null ? head : new ItemStack(Material.PAPER); // fallback
+
+        ItemMeta meta = item.getItemMeta();
+        if (meta != null) {
+            meta.setDisplayName(ChatColor.YELLOW + "Cash: " + capitalize(coinType));
             meta.getPersistentDataContainer().set(CASH_KEY, PersistentDataType.BYTE, (byte) 1);
             meta.getPersistentDataContainer().set(COIN_TYPE_KEY, PersistentDataType.STRING, coinType);
-            meta.getPersistentDataContainer().set(new NamespacedKey("mcengine", "amount"), PersistentDataType.DOUBLE, amount);
-
             item.setItemMeta(meta);
         }
 
-        return item;
+        Template template = new Template(headId, item);
+        if (head != null) {
+            TEMPLATES.put(coinType, template);
+        }
+        return template;
     }
 
     private static String capitalize(String str) {
         if (str == null || str.isEmpty()) return str;
         return str.substring(0, 1).toUpperCase() + str.substring(1).toLowerCase();
-    }    
+    }
 }
@@ -0,0 +1,5 @@
+/**
+ * This package is designed for use with Minecraft across multiple services.
+ * It provides common utilities for creating currency items.
+ */
+package io.github.mcengine.common.currency.item;
@@ -1,16 +1,21 @@
 package io.github.mcengine.common.currency.listener;
 
 import io.github.mcengine.api.currency.MCEngineCurrencyApi;
+import org.bukkit.Bukkit;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.util.UUID;
 
 /**
  * Listener class for handling currency-related events in MCEngine.
- * This listener checks if a player exists in the currency database upon joining
- * and initializes their data if necessary.
+ * This listener creates and loads a player's account during the asynchronous pre-login,
+ * before the player reaches the main thread, and keeps the balance cache in step with
+ * players joining and leaving.
  */
 public class MCEngineCurrencyCommonListener implements Listener {
     private final MCEngineCurrencyApi currencyApi;
@@ -24,20 +29,52 @@ public class MCEngineCurrencyCommonListener implements Listener {
         this.currencyApi = currencyApi;
     }
 
+    /**
+     * Event handler for the asynchronous pre-login.
+     * Creates the player's currency record if needed and loads their balances into the balance cache
+     * with a single upsert. This event already runs off the main thread, so the call blocks here.
+     * Players whose account cannot be loaded are refused with a request to reconnect.
+     *
+     * @param event The AsyncPlayerPreLoginEvent triggered before a player is allowed to join.
+     */
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+
+        if (!currencyApi.preloadPlayer(event.getUniqueId())) {
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER,
+                "Your currency account could not be loaded. Please reconnect.");
+        }
+    }
+
     /**
      * Event handler for when a player joins the server.
-     * Checks if the player exists in the currency database and initializes their data if not.
+     * The account was already loaded during pre-login; this only reloads it into the balance cache
+     * when a quick reconnect evicted it in between, which is a no-op for cached players.
      *
      * @param event The PlayerJoinEvent triggered when a player joins.
      */
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         UUID playerUUID = event.getPlayer().getUniqueId();
+        currencyApi.loadPlayerAsync(playerUUID).exceptionally(e -> {
+            Bukkit.getLogger().warning("Failed to load currency data for " + playerUUID + ": " + e.getMessage());
+            return null;
+        });
+    }
 
-        // Check if the player exists in the database
-        if (!currencyApi.checkIfPlayerExists(playerUUID)) {
-            // Initialize player data with default values
-            currencyApi.initPlayerData(playerUUID);
-        }
+    /**
+     * Event handler for when a player leaves the server.
+     * Flushes the player's pending balance changes and evicts them from the balance cache.
+     *
+     * @param event The PlayerQuitEvent triggered when a player leaves.
+     */
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID playerUUID = event.getPlayer().getUniqueId();
+        currencyApi.unloadPlayerAsync(playerUUID).exceptionally(e -> {
+            Bukkit.getLogger().warning("Failed to save currency data for " + playerUUID + ": " + e.getMessage());
+            return null;
+        });
     }
 }
@@ -1,8 +1,12 @@
 package io.github.mcengine.common.currency.listener.hook;
 
 import io.github.mcengine.api.currency.MCEngineCurrencyApi;
+import io.github.mcengine.api.currency.enums.MCEngineCurrencyApiTransactionType;
+import io.github.mcengine.api.currency.money.MCEngineCurrencyApiMoney;
+import io.github.mcengine.common.currency.item.ItemManager;
+import me.arcaniax.hdb.api.DatabaseLoadEvent;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.NamespacedKey;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -20,21 +24,6 @@ public class MCEngineCurrencyCommonListenerHookHeadDB implements Listener {
 
     private final MCEngineCurrencyApi currencyApi;
 
-    /**
-     * Namespaced key for identifying if an item is a cash item.
-     */
-    private static final NamespacedKey CASH_KEY = new NamespacedKey("mcengine", "cash");
-
-    /**
-     * Namespaced key for identifying the coin type stored in the item.
-     */
-    private static final NamespacedKey COIN_TYPE_KEY = new NamespacedKey("mcengine", "coin_type");
-
-    /**
-     * Namespaced key for identifying the amount of currency stored in the item.
-     */
-    private static final NamespacedKey AMOUNT_KEY = new NamespacedKey("mcengine", "amount");
-
     /**
      * Constructor for initializing the currency listener with the provided currency API.
      *
@@ -42,6 +31,19 @@ public class MCEngineCurrencyCommonListenerHookHeadDB implements Listener {
      */
     public MCEngineCurrencyCommonListenerHookHeadDB(MCEngineCurrencyApi currencyApi) {
         this.currencyApi = currencyApi;
+        // HeadDB may have loaded before this plugin; heads it cannot give yet are resolved on first use
+        ItemManager.refresh(currencyApi.getCurrencies());
+    }
+
+    /**
+     * Rebuilds the cash item templates once HeadDB has (re)loaded its database, so cash items pick up
+     * the heads it now has.
+     *
+     * @param event the DatabaseLoadEvent fired by HeadDB
+     */
+    @EventHandler
+    public void onDatabaseLoad(DatabaseLoadEvent event) {
+        ItemManager.refresh(currencyApi.getCurrencies());
     }
 
     /**
@@ -65,19 +67,46 @@ public class MCEngineCurrencyCommonListenerHookHeadDB implements Listener {
         if (meta == null) return;
 
         // Check if the item is a cash item
-        if (!meta.getPersistentDataContainer().has(CASH_KEY, PersistentDataType.BYTE)) return;
+        if (!meta.getPersistentDataContainer().has(ItemManager.CASH_KEY, PersistentDataType.BYTE)) return;
 
         // Retrieve coin type and amount from the item
-        String coinType = meta.getPersistentDataContainer().get(COIN_TYPE_KEY, PersistentDataType.STRING);
-        Double amount = meta.getPersistentDataContainer().get(AMOUNT_KEY, PersistentDataType.DOUBLE);
+        String coinType = meta.getPersistentDataContainer().get(ItemManager.COIN_TYPE_KEY, PersistentDataType.STRING);
+        MCEngineCurrencyApiMoney amount = null;
+        Long amountMinor = meta.getPersistentDataContainer().get(ItemManager.AMOUNT_MINOR_KEY, PersistentDataType.LONG);
+        if (amountMinor != null) {
+            amount = MCEngineCurrencyApiMoney.ofMinor(amountMinor);
+        } else {
+            Double legacyAmount = meta.getPersistentDataContainer().get(ItemManager.LEGACY_AMOUNT_KEY, PersistentDataType.DOUBLE);
+            if (legacyAmount != null) {
+                amount = MCEngineCurrencyApiMoney.ofLegacyDouble(legacyAmount);
+            }
+        }
 
         if (coinType == null || amount == null) return;
-
-        // Deposit the money to the player's account
-        currencyApi.addCoin(player.getUniqueId(), coinType, amount);
-        player.sendMessage(ChatColor.GREEN + "Deposited " + amount + " " + coinType + " from cash item.");
-
-        // Remove one item from the stack
+        if (currencyApi.getCurrencies().indexOf(coinType) < 0) {
+            player.sendMessage(ChatColor.RED + "This cash item's currency " + coinType + " no longer exists.");
+            return;
+        }
+        MCEngineCurrencyApiMoney deposit = amount;
+
+        // Remove one item from the stack before the deposit completes so it cannot be redeemed twice
+        ItemStack single = item.clone();
+        single.setAmount(1);
         item.setAmount(item.getAmount() - 1);
+
+        // Deposit the money to the player's account, giving the item back if that fails
+        currencyApi.addCoinAsync(player.getUniqueId(), coinType, deposit, MCEngineCurrencyApiTransactionType.DEPOSIT, null).thenAccept(deposited -> {
+            if (deposited) {
+                player.sendMessage(ChatColor.GREEN + "Deposited " + deposit + " " + coinType + " from cash item.");
+            } else {
+                ItemManager.give(player, single);
+                player.sendMessage(ChatColor.RED + "The cash item could not be deposited and was given back.");
+            }
+        }).exceptionally(e -> {
+            ItemManager.give(player, single);
+            player.sendMessage(ChatColor.RED + "An error occurred while depositing the cash item; it was given back.");
+            Bukkit.getLogger().warning("Deposit of " + deposit + " " + coinType + " for " + player.getName() + " failed: " + e.getMessage());
+            return null;
+        });
     }
 }
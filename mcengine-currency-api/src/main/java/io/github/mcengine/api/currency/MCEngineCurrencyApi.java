@@ -1,149 +1,1135 @@
-package io.github.mcengine.api.currency;
-
-import java.sql.Connection;
-import java.util.UUID;
-import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
-import io.github.mcengine.api.currency.database.mysql.MCEngineCurrencyApiMySQL;
-import io.github.mcengine.api.currency.database.sqlite.MCEngineCurrencyApiSQLite;
-import org.bukkit.plugin.Plugin;
-/**
- * The MCEngineCurrencyApi class provides an interface for managing player currency transactions.
- * It supports multiple database implementations (MySQL, SQLite) and enables operations
- * such as initializing databases, checking player existence, managing currency balances,
- * and recording transactions.
- */
-public class MCEngineCurrencyApi {
-    private Plugin plugin;
-    private MCEngineCurrencyApiDBInterface db;
-
-    /**
-     * Constructs the currency API instance and initializes the appropriate database connection.
-     *
-     * @param plugin  The Bukkit plugin instance.
-     * @param sqlType The type of SQL database to use ("mysql" or "sqlite").
-     */
-    public MCEngineCurrencyApi(Plugin plugin, String sqlType) {
-        this.plugin = plugin;
-        switch (sqlType.toLowerCase()) {
-            case "mysql":
-                this.db = new MCEngineCurrencyApiMySQL(plugin);
-                break;
-            case "sqlite":
-                this.db = new MCEngineCurrencyApiSQLite(plugin);
-                break;
-            default:
-                plugin.getLogger().severe("Unsupported SQL type: " + sqlType);
-        }
-    }
-
-    /**
-     * Initializes the database by connecting and creating the necessary tables.
-     */
-    public void initDB() {
-        db.createTable();
-    }
-
-    /**
-     * Initializes player data in the database with default currency values.
-     *
-     * @param uuid The unique identifier of the player.
-     */
-    public void initPlayerData(UUID uuid) {
-        db.insertCurrency(uuid.toString(), 0.0, 0.0, 0.0, 0.0);
-    }
-
-    /**
-     * Adds a specified amount of a given type of coin to a player's account.
-     *
-     * @param uuid The unique identifier of the player.
-     * @param coinType The type of coin to add (e.g., "gold", "silver").
-     * @param amt The amount of coin to add.
-     */
-    public void addCoin(UUID uuid, String coinType, double amt) {
-        updateCurrency(uuid, "+", coinType, amt);
-    }
-
-    /**
-     * Checks if a player exists in the database.
-     *
-     * @param uuid The unique identifier of the player.
-     * @return {@code true} if the player exists, {@code false} otherwise.
-     * @throws RuntimeException If an error occurs while checking player existence.
-     */
-    public boolean checkIfPlayerExists(UUID uuid) {
-        Object result = db.playerExists(uuid.toString());
-        if (result instanceof Boolean) {
-            return (Boolean) result;
-        } else {
-            plugin.getLogger().severe("Error checking if player exists in the database.");
-            return false;
-        }
-    }
-
-    /**
-     * Records a transaction between two players in the database.
-     *
-     * @param playerUuidSender The unique identifier of the sender.
-     * @param playerUuidReceiver The unique identifier of the receiver.
-     * @param currencyType The type of currency involved in the transaction (e.g., "coin", "copper").
-     * @param transactionType The type of transaction (e.g., "pay", "purchase").
-     * @param amount The amount of currency involved.
-     * @param notes Optional notes for the transaction.
-     */
-    public void createTransaction(UUID playerUuidSender, UUID playerUuidReceiver, String currencyType, String transactionType, double amount, String notes) {
-        db.insertTransaction(playerUuidSender.toString(), playerUuidReceiver.toString(), currencyType, transactionType, amount, notes);
-    }
-
-    /**
-     * Disconnects from the database.
-     */
-    public void disConnect() {
-        db.disConnection();
-    }
-
-    /**
-     * Retrieves the balance of a specified coin type for a player.
-     *
-     * @param uuid The unique identifier of the player.
-     * @param coinType The type of coin to retrieve (e.g., "coin", "copper", "silver", "gold").
-     * @return The balance of the specified coin type for the player.
-     * @throws IllegalArgumentException If the coinType is invalid.
-     * @throws RuntimeException If an error occurs while retrieving the balance.
-     */
-    public double getCoin(UUID uuid, String coinType) {
-        if (!coinType.matches("coin|copper|silver|gold")) {
-            plugin.getLogger().severe("Invalid coin type: " + coinType);
-        }
-    
-        Object result = db.getCoin(uuid.toString(), coinType);
-        if (result instanceof Double) {
-            return (Double) result;
-        } else {
-            plugin.getLogger().severe("Error retrieving coin balance from the database.");
-            return 0.0;
-        }
-    }
-
-    /**
-     * Deducts a specified amount of a given type of coin from a player's account.
-     *
-     * @param uuid The unique identifier of the player.
-     * @param coinType The type of coin to deduct (e.g., "gold", "silver").
-     * @param amt The amount of coin to deduct.
-     */
-    public void minusCoin(UUID uuid, String coinType, double amt) {
-        updateCurrency(uuid, "-", coinType, amt);
-    }
-
-    /**
-     * Updates the currency value for a player with a specific operation.
-     *
-     * @param uuid The unique identifier of the player.
-     * @param operator The operation to perform ("+" to add, "-" to subtract).
-     * @param coinType The type of coin to update.
-     * @param amt The amount of coin to update.
-     */
-    private void updateCurrency(UUID uuid, String operator, String coinType, double amt) {
-        db.updateCurrencyValue(uuid.toString(), operator, coinType, amt);
-    }
-}
+package io.github.mcengine.api.currency;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import io.github.mcengine.api.currency.async.MCEngineCurrencyApiExecutor;
+import io.github.mcengine.api.currency.audit.MCEngineCurrencyApiAuditLog;
+import io.github.mcengine.api.currency.bus.MCEngineCurrencyApiBus;
+import io.github.mcengine.api.currency.bus.MCEngineCurrencyApiBusMessage;
+import io.github.mcengine.api.currency.bus.MCEngineCurrencyApiLoopbackBus;
+import io.github.mcengine.api.currency.bus.MCEngineCurrencyApiPluginMessageBus;
+import io.github.mcengine.api.currency.cache.MCEngineCurrencyApiCache;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.database.provider.MCEngineCurrencyApiStorageProvider;
+import io.github.mcengine.api.currency.database.provider.MCEngineCurrencyApiStorageProviders;
+import io.github.mcengine.api.currency.enums.MCEngineCurrencyApiTransactionType;
+import io.github.mcengine.api.currency.enums.MCEngineCurrencyApiTransferResult;
+import io.github.mcengine.api.currency.leaderboard.MCEngineCurrencyApiLeaderboard;
+import io.github.mcengine.api.currency.leaderboard.MCEngineCurrencyApiTopEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryCursor;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryPage;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiLedgerReplay;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiLedgerWriter;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiReplayReport;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiRollup;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiTransaction;
+import io.github.mcengine.api.currency.lock.MCEngineCurrencyApiAccountLocks;
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiJmxExporter;
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiMetrics;
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiMetricsDatabase;
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiMetricsExporter;
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiPrometheusExporter;
+import io.github.mcengine.api.currency.money.MCEngineCurrencyApiMoney;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+/**
+ * The MCEngineCurrencyApi class provides an interface for managing player currency transactions.
+ * It supports multiple database implementations (MySQL and SQLite built in, others through
+ * {@link MCEngineCurrencyApiStorageProvider} jars) and enables operations
+ * such as initializing databases, checking player existence, managing currency balances,
+ * and recording transactions.
+ *
+ * <p>Every operation is available in a blocking form and in an {@code ...Async} form. The blocking
+ * methods talk to the database on the calling thread and must not be used from the server main
+ * thread; the async methods run on a dedicated database executor and complete their futures back
+ * on the main thread.</p>
+ *
+ * <p>Single amounts are passed as exact {@link MCEngineCurrencyApiMoney} values. Bulk results such as
+ * {@link #getBalances(Collection)} return plain {@code long} minor units (hundredths).</p>
+ *
+ * <p>Currencies are configured under {@code currencies} and listed by {@link #getCurrencies()}. Methods take
+ * a currency name, which is resolved to its numeric id once here; balance arrays are indexed by that id.</p>
+ *
+ * <p>Balance changes are serialized per account by {@link MCEngineCurrencyApiAccountLocks}: changes to one
+ * player happen one after another in a single order from any number of threads, while changes to different
+ * players run in parallel. The balance cache writes and reloads players under the same locks. Reads are
+ * single atomic lookups and take no lock.</p>
+ *
+ * <p>Every balance change is recorded in the ledger under a {@link MCEngineCurrencyApiTransactionType}, so
+ * balances can be rebuilt from periodic checkpoints and the entries after them with
+ * {@link #replayBalances(boolean)}, and a player's balance at any past time read with
+ * {@link #getCoinAt(UUID, String, Instant)}.</p>
+ */
+public class MCEngineCurrencyApi {
+    private Plugin plugin;
+    private MCEngineCurrencyApiDBInterface db;
+    private final MCEngineCurrencyApiCurrencyRegistry currencies;
+    private final MCEngineCurrencyApiStorageProviders providers;
+    private final MCEngineCurrencyApiExecutor executor;
+    private final MCEngineCurrencyApiAccountLocks locks;
+    private final MCEngineCurrencyApiMetrics metrics;
+    private final MCEngineCurrencyApiAuditLog audit;
+    private final List<MCEngineCurrencyApiMetricsExporter> exporters = new ArrayList<>();
+    private BukkitTask exportTask;
+    private MCEngineCurrencyApiCache cache;
+    private MCEngineCurrencyApiBus bus;
+    private MCEngineCurrencyApiLedgerWriter ledger;
+    private BukkitTask flushTask;
+    private MCEngineCurrencyApiLeaderboard leaderboard;
+    private BukkitTask leaderboardTask;
+    private final ReentrantLock maintenance = new ReentrantLock();
+    private final Object maintenanceThreadLock = new Object();
+    private Thread maintenanceThread;
+    private BukkitTask maintenanceTask;
+    private MCEngineCurrencyApiLedgerReplay replay;
+
+    /** How long {@link #replayBalances(boolean)} waits for queued ledger entries to be written, in milliseconds. */
+    private static final long REPLAY_FLUSH_TIMEOUT_MILLIS = 10000L;
+
+    /** The longest transaction notes the ledger's {@code notes} column holds. */
+    public static final int MAX_NOTES_LENGTH = 255;
+
+    /**
+     * Constructs the currency API instance and initializes the appropriate database connection.
+     * The engine is looked up among the discovered {@link MCEngineCurrencyApiStorageProvider}s.
+     *
+     * @param plugin  The Bukkit plugin instance.
+     * @param sqlType The type of database to use, e.g. "mysql", "sqlite" or the type of a dropped-in provider.
+     */
+    public MCEngineCurrencyApi(Plugin plugin, String sqlType) {
+        this.plugin = plugin;
+        this.metrics = new MCEngineCurrencyApiMetrics(plugin.getConfig().getBoolean("metrics.enable", true));
+        this.audit = new MCEngineCurrencyApiAuditLog(plugin);
+        this.currencies = MCEngineCurrencyApiCurrencyRegistry.load(plugin);
+        this.providers = new MCEngineCurrencyApiStorageProviders(plugin);
+        MCEngineCurrencyApiStorageProvider provider = providers.get(sqlType);
+        if (provider != null) {
+            this.db = provider.create(plugin, currencies);
+        } else {
+            plugin.getLogger().severe("Unsupported SQL type: " + sqlType + " (available: " + String.join(", ", providers.getTypes()) + ")");
+        }
+        if (db != null && metrics.isEnabled()) {
+            this.db = new MCEngineCurrencyApiMetricsDatabase(db, metrics);
+        }
+        this.locks = new MCEngineCurrencyApiAccountLocks(plugin);
+        if (db != null && plugin.getConfig().getBoolean("cache.enable", true)) {
+            this.bus = createBus(plugin.getConfig().getString("bus.type", "none"));
+            this.cache = new MCEngineCurrencyApiCache(plugin, currencies, db, bus, locks);
+            this.db = cache;
+        }
+        this.executor = new MCEngineCurrencyApiExecutor(plugin, metrics);
+        if (bus != null) {
+            bus.subscribe(this::onBusMessage);
+        }
+    }
+
+    /**
+     * Creates the bus that keeps balance caches coherent across the servers of a network.
+     *
+     * @param busType The value of {@code bus.type}: "none", "loopback" or "plugin-messaging".
+     * @return The bus, or {@code null} for a single server.
+     */
+    private MCEngineCurrencyApiBus createBus(String busType) {
+        switch (busType.toLowerCase()) {
+            case "none":
+                return null;
+            case "loopback":
+                return new MCEngineCurrencyApiLoopbackBus();
+            case "plugin-messaging":
+                return new MCEngineCurrencyApiPluginMessageBus(plugin);
+            default:
+                plugin.getLogger().severe("Unsupported bus type: " + busType + "; balance changes will not be shared with other servers.");
+                return null;
+        }
+    }
+
+    /**
+     * Creates a metrics exporter.
+     *
+     * @param exporterType An entry of {@code metrics.exporters}: "prometheus" or "jmx".
+     * @return The exporter, or {@code null} if the type is unknown.
+     */
+    private MCEngineCurrencyApiMetricsExporter createExporter(String exporterType) {
+        switch (exporterType.toLowerCase()) {
+            case "prometheus":
+                return new MCEngineCurrencyApiPrometheusExporter(plugin);
+            case "jmx":
+                return new MCEngineCurrencyApiJmxExporter(plugin, metrics);
+            default:
+                plugin.getLogger().severe("Unsupported metrics exporter: " + exporterType);
+                return null;
+        }
+    }
+
+    /**
+     * Registers the queue depths and totals of the executor, the ledger writer, the cache and the storage engine,
+     * then starts the configured exporters.
+     */
+    private void initMetrics() {
+        metrics.gauge("executor.queue_depth", executor::getQueueDepth);
+        metrics.gauge("executor.active", executor::getActiveCount);
+        metrics.gauge("ledger.queue_depth", ledger::getQueueDepth);
+        metrics.counter("ledger.written", ledger::getWritten);
+        metrics.counter("ledger.failed_batches", ledger::getFailedBatches);
+        metrics.counter("ledger.blocked_appends", ledger::getBlockedAppends);
+        metrics.counter("ledger.direct_writes", ledger::getDirectWrites);
+        metrics.counter("ledger.spilled", ledger::getSpilled);
+        metrics.counter("ledger.quarantined", ledger::getQuarantined);
+        metrics.gauge("audit.queue_depth", audit::getQueueDepth);
+        metrics.counter("audit.written", audit::getWritten);
+        metrics.counter("audit.dropped", audit::getDropped);
+        db.registerMetrics(metrics);
+
+        for (String exporterType : plugin.getConfig().getStringList("metrics.exporters")) {
+            MCEngineCurrencyApiMetricsExporter exporter = createExporter(exporterType);
+            if (exporter != null) exporters.add(exporter);
+        }
+        if (!exporters.isEmpty()) {
+            long interval = Math.max(1L, plugin.getConfig().getLong("metrics.export-interval", 200L));
+            exportTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+                for (MCEngineCurrencyApiMetricsExporter exporter : exporters) {
+                    exporter.export(metrics);
+                }
+            }, interval, interval);
+        }
+    }
+
+    /**
+     * Returns the configured currencies.
+     *
+     * @return The currency registry.
+     */
+    public MCEngineCurrencyApiCurrencyRegistry getCurrencies() {
+        return currencies;
+    }
+
+    /**
+     * Resolves a currency name to its id, logging unknown names.
+     *
+     * @param coinType The currency name, e.g. "coin".
+     * @return The id, or {@code -1} if no currency has that name.
+     */
+    private int currencyId(String coinType) {
+        int currencyId = currencies.indexOf(coinType);
+        if (currencyId < 0) {
+            plugin.getLogger().severe("Invalid coin type: " + coinType);
+        }
+        return currencyId;
+    }
+
+    /**
+     * Returns the operation metrics: database latencies, cache hit counts, queue depths and pool usage.
+     *
+     * @return The metrics registry.
+     */
+    public MCEngineCurrencyApiMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the audit log of balance changes and transactions configured under {@code logging.audit}.
+     *
+     * @return The audit log.
+     */
+    public MCEngineCurrencyApiAuditLog getAuditLog() {
+        return audit;
+    }
+
+    /**
+     * Applies a balance change announced by another server. Deltas are applied on the spot;
+     * invalidations reload the player from the database on the database executor.
+     *
+     * @param message The message received from the bus.
+     */
+    private void onBusMessage(MCEngineCurrencyApiBusMessage message) {
+        if (message.type() == MCEngineCurrencyApiBusMessage.Type.DELTA) {
+            cache.receive(message);
+        } else {
+            executor.execute(() -> cache.refresh(message.playerUuid()));
+        }
+    }
+
+    /**
+     * Initializes the database by connecting and creating the necessary tables.
+     * When the balance cache is enabled, this also loads every online player and
+     * starts the periodic flush of pending balance changes. The leaderboard snapshot is
+     * refreshed every {@code leaderboard.refresh-interval} ticks, and the ledger is checkpointed, partitioned,
+     * rolled up and expired every {@code ledger.maintenance-interval} ticks. Finally the metrics gauges are
+     * registered and the exporters listed in {@code metrics.exporters} are started.
+     */
+    public void initDB() {
+        db.createTable();
+        ledger = new MCEngineCurrencyApiLedgerWriter(plugin, db);
+        replay = new MCEngineCurrencyApiLedgerReplay(plugin, currencies, db);
+        initMetrics();
+        if (cache != null) {
+            for (Player player : plugin.getServer().getOnlinePlayers()) {
+                cache.load(player.getUniqueId().toString());
+            }
+            long interval = Math.max(1L, plugin.getConfig().getLong("cache.flush-interval", 100L));
+            flushTask = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> executor.execute(this::flushCache), interval, interval);
+        }
+        leaderboard = new MCEngineCurrencyApiLeaderboard(plugin, currencies, db);
+        long refreshInterval = Math.max(1L, plugin.getConfig().getLong("leaderboard.refresh-interval", 600L));
+        leaderboardTask = plugin.getServer().getScheduler().runTaskTimer(plugin, () -> executor.execute(() -> {
+            // Rank the latest balances rather than whatever the cache last flushed
+            if (cache != null) cache.flush();
+            leaderboard.refresh();
+        }), 0L, refreshInterval);
+        long maintenanceInterval = Math.max(1L, plugin.getConfig().getLong("ledger.maintenance-interval", 72000L));
+        // Off the database executor: moving or archiving a month may take minutes and must not delay balance changes
+        maintenanceTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::maintainLedger, 1200L, maintenanceInterval);
+    }
+
+    /**
+     * Runs one ledger maintenance pass unless one is already running or the API is shutting down. A due
+     * checkpoint is taken first, so the pass can expire the months before it.
+     */
+    private void maintainLedger() {
+        if (!maintenance.tryLock()) return;
+        try {
+            synchronized (maintenanceThreadLock) {
+                maintenanceThread = Thread.currentThread();
+            }
+            replay.checkpoint();
+            if (!Thread.currentThread().isInterrupted()) {
+                db.maintainLedger();
+            }
+        } finally {
+            synchronized (maintenanceThreadLock) {
+                maintenanceThread = null;
+                // The scheduler reuses its threads, so an interrupt from disConnect must not leak into the next task
+                Thread.interrupted();
+            }
+            maintenance.unlock();
+        }
+    }
+
+    /**
+     * Initializes player data in the database with default currency values.
+     *
+     * @param uuid The unique identifier of the player.
+     */
+    public void initPlayerData(UUID uuid) {
+        locks.withLock(uuid, () -> db.insertCurrency(uuid.toString(), new long[currencies.size()]));
+        audit.record(MCEngineCurrencyApiAuditLog.Level.AUDIT, "account.create", uuid, null, null, 0L, null);
+    }
+
+    /**
+     * Asynchronously initializes player data in the database with default currency values.
+     *
+     * @param uuid The unique identifier of the player.
+     * @return A future completed on the main thread once the row has been written.
+     */
+    public CompletableFuture<Void> initPlayerDataAsync(UUID uuid) {
+        return executor.run(() -> initPlayerData(uuid));
+    }
+
+    /**
+     * Creates a player's currency record if needed and loads their balances into the balance cache
+     * with a single upsert. Blocks on the database, so call it only off the main thread,
+     * e.g. from {@code AsyncPlayerPreLoginEvent}.
+     *
+     * <p>On a network, a player switching servers is preloaded here before the server they left has written
+     * their last changes, and the invalidation that server sends afterwards is lost when no player is left
+     * there to carry it. The player is therefore reloaded once more after {@code cache.flush-interval}
+     * ticks, by which time the other server has written them.</p>
+     *
+     * @param uuid The unique identifier of the player.
+     * @return {@code true} if the account is ready, {@code false} if the database could not be reached.
+     */
+    public boolean preloadPlayer(UUID uuid) {
+        boolean loaded = locks.withLock(uuid, () -> db.loadOrCreateBalances(uuid.toString()) != null);
+        audit.record(MCEngineCurrencyApiAuditLog.Level.DEBUG, "account.preload", uuid, null, null, 0L, loaded ? null : "failed");
+        if (loaded && bus != null && cache != null && plugin.isEnabled()) {
+            long delay = Math.max(1L, plugin.getConfig().getLong("cache.flush-interval", 100L));
+            plugin.getServer().getScheduler().runTaskLater(plugin, () -> executor.execute(() -> cache.refresh(uuid.toString())), delay);
+        }
+        return loaded;
+    }
+
+    /**
+     * Asynchronously creates a player's currency record if needed and loads it into the balance cache.
+     *
+     * @param uuid The unique identifier of the player.
+     * @return A future completed on the main thread with {@code true} if the account is ready.
+     */
+    public CompletableFuture<Boolean> preloadPlayerAsync(UUID uuid) {
+        return executor.supply(() -> preloadPlayer(uuid));
+    }
+
+    /**
+     * Asynchronously loads a player's balances into the balance cache.
+     * Does nothing when the cache is disabled.
+     *
+     * @param uuid The unique identifier of the player.
+     * @return A future completed on the main thread once the balances are cached.
+     */
+    public CompletableFuture<Void> loadPlayerAsync(UUID uuid) {
+        if (cache == null) return CompletableFuture.completedFuture(null);
+        return executor.run(() -> cache.load(uuid.toString()));
+    }
+
+    /**
+     * Asynchronously writes a player's pending balance changes and removes them from the balance cache.
+     * Does nothing when the cache is disabled.
+     *
+     * @param uuid The unique identifier of the player.
+     * @return A future completed on the main thread once the balances are written and evicted.
+     */
+    public CompletableFuture<Void> unloadPlayerAsync(UUID uuid) {
+        if (cache == null) return CompletableFuture.completedFuture(null);
+        // Under the account lock, so a quick rejoin's preload waits for the write instead of caching the old balance
+        return executor.run(() -> locks.withLock(uuid, () -> cache.unload(uuid.toString())));
+    }
+
+    /**
+     * Writes every pending cached balance change, then evicts the players whose unload failed to write
+     * theirs earlier and who have not rejoined since.
+     */
+    private void flushCache() {
+        cache.flush();
+        for (String playerUuid : cache.getFailedUnloads()) {
+            locks.withLock(UUID.fromString(playerUuid), () -> cache.retryUnload(playerUuid));
+        }
+    }
+
+    /**
+     * Adds a specified amount of a given type of coin to a player's account.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to add (e.g., "gold", "silver").
+     * @param amt The amount of coin to add.
+     * @return {@code true} if the balance was updated, {@code false} if the coin type is invalid.
+     */
+    public boolean addCoin(UUID uuid, String coinType, MCEngineCurrencyApiMoney amt) {
+        return addCoin(uuid, coinType, amt, MCEngineCurrencyApiTransactionType.ADD, null);
+    }
+
+    /**
+     * Adds an amount of a given type of coin to a player's account and records it in the ledger under a
+     * crediting type, e.g. {@link MCEngineCurrencyApiTransactionType#DEPOSIT} for currency paid in from items.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to add (e.g., "gold", "silver").
+     * @param amt The amount of coin to add.
+     * @param type The ledger type; must credit the player without debiting anyone.
+     * @param notes Optional notes for the ledger entry.
+     * @return {@code true} if the balance was updated, {@code false} if the coin type is invalid or the type
+     *         is not a credit.
+     */
+    public boolean addCoin(UUID uuid, String coinType, MCEngineCurrencyApiMoney amt, MCEngineCurrencyApiTransactionType type, String notes) {
+        if (!isSingleAccount(type, true)) return false;
+        return updateCurrency(uuid, type, coinType, amt, notes);
+    }
+
+    /**
+     * Asynchronously adds a specified amount of a given type of coin to a player's account.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to add (e.g., "gold", "silver").
+     * @param amt The amount of coin to add.
+     * @return A future completed on the main thread with {@code true} once the balance has been updated,
+     *         or {@code false} if the coin type is invalid.
+     */
+    public CompletableFuture<Boolean> addCoinAsync(UUID uuid, String coinType, MCEngineCurrencyApiMoney amt) {
+        return executor.supply(() -> addCoin(uuid, coinType, amt));
+    }
+
+    /**
+     * Asynchronously adds an amount of a given type of coin to a player's account under a crediting ledger type.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to add (e.g., "gold", "silver").
+     * @param amt The amount of coin to add.
+     * @param type The ledger type; must credit the player without debiting anyone.
+     * @param notes Optional notes for the ledger entry.
+     * @return A future completed on the main thread with {@code true} once the balance has been updated,
+     *         or {@code false} if the coin type is invalid or the type is not a credit.
+     */
+    public CompletableFuture<Boolean> addCoinAsync(UUID uuid, String coinType, MCEngineCurrencyApiMoney amt, MCEngineCurrencyApiTransactionType type, String notes) {
+        return executor.supply(() -> addCoin(uuid, coinType, amt, type, notes));
+    }
+
+    /**
+     * Checks if a player exists in the database.
+     *
+     * @param uuid The unique identifier of the player.
+     * @return {@code true} if the player exists, {@code false} otherwise.
+     * @throws RuntimeException If an error occurs while checking player existence.
+     */
+    public boolean checkIfPlayerExists(UUID uuid) {
+        Object result = db.playerExists(uuid.toString());
+        if (result instanceof Boolean) {
+            return (Boolean) result;
+        } else {
+            plugin.getLogger().severe("Error checking if player exists in the database.");
+            return false;
+        }
+    }
+
+    /**
+     * Asynchronously checks if a player exists in the database.
+     *
+     * @param uuid The unique identifier of the player.
+     * @return A future completed on the main thread with {@code true} if the player exists.
+     */
+    public CompletableFuture<Boolean> checkIfPlayerExistsAsync(UUID uuid) {
+        return executor.supply(() -> checkIfPlayerExists(uuid));
+    }
+
+    /**
+     * Records a transaction between two players in the database.
+     * The entry is queued and written by the ledger writer as part of the next batch.
+     * Every type except "purchase" changes balances when the ledger is replayed, so record those only for a
+     * balance change that is not recorded already; the balance methods of this class record their own entries.
+     * Entries with an unknown currency or transaction type, or notes longer than {@value #MAX_NOTES_LENGTH}
+     * characters, are logged and not recorded, since the database would reject them.
+     *
+     * @param playerUuidSender The unique identifier of the sender.
+     * @param playerUuidReceiver The unique identifier of the receiver.
+     * @param currencyType The type of currency involved in the transaction (e.g., "coin", "copper").
+     * @param transactionType The type of transaction (e.g., "pay", "purchase").
+     * @param amount The amount of currency involved.
+     * @param notes Optional notes for the transaction.
+     */
+    public void createTransaction(UUID playerUuidSender, UUID playerUuidReceiver, String currencyType, String transactionType, MCEngineCurrencyApiMoney amount, String notes) {
+        int currencyId = currencyId(currencyType);
+        if (currencyId < 0) return;
+        if (MCEngineCurrencyApiTransactionType.of(transactionType) == null) {
+            plugin.getLogger().severe("Invalid transaction type: " + transactionType);
+            return;
+        }
+        if (notes != null && notes.length() > MAX_NOTES_LENGTH) {
+            plugin.getLogger().severe("Transaction notes longer than " + MAX_NOTES_LENGTH + " characters: " + notes);
+            return;
+        }
+        append(new MCEngineCurrencyApiTransaction(
+            playerUuidSender.toString(), playerUuidReceiver.toString(), currencies.nameOf(currencyId), transactionType, amount.minor(), notes));
+        audit.record(MCEngineCurrencyApiAuditLog.Level.AUDIT, "transaction", playerUuidSender, playerUuidReceiver, currencyType, amount.minor(), transactionType);
+    }
+
+    /**
+     * Queues a ledger entry, or writes it directly before {@link #initDB()} has started the ledger writer.
+     *
+     * @param transaction The entry to record.
+     */
+    private void append(MCEngineCurrencyApiTransaction transaction) {
+        if (ledger != null) {
+            ledger.append(transaction);
+        } else {
+            db.insertTransaction(transaction.playerUuidSender(), transaction.playerUuidReceiver(), transaction.currencyType(),
+                transaction.transactionType(), transaction.amount(), transaction.notes());
+        }
+    }
+
+    /**
+     * Returns the ledger writer, which exposes queue depth and back-pressure counters.
+     *
+     * @return The ledger writer, or {@code null} before {@link #initDB()} has been called.
+     */
+    public MCEngineCurrencyApiLedgerWriter getLedgerWriter() {
+        return ledger;
+    }
+
+    /**
+     * Asynchronously records a transaction between two players in the database.
+     *
+     * @param playerUuidSender The unique identifier of the sender.
+     * @param playerUuidReceiver The unique identifier of the receiver.
+     * @param currencyType The type of currency involved in the transaction (e.g., "coin", "copper").
+     * @param transactionType The type of transaction (e.g., "pay", "purchase").
+     * @param amount The amount of currency involved.
+     * @param notes Optional notes for the transaction.
+     * @return A future completed on the main thread once the transaction has been recorded.
+     */
+    public CompletableFuture<Void> createTransactionAsync(UUID playerUuidSender, UUID playerUuidReceiver, String currencyType, String transactionType, MCEngineCurrencyApiMoney amount, String notes) {
+        return executor.run(() -> createTransaction(playerUuidSender, playerUuidReceiver, currencyType, transactionType, amount, notes));
+    }
+
+    /**
+     * Retrieves one page of a player's transaction history, newest first: every ledger entry they sent or received.
+     * Pages are addressed by cursor rather than by number, so each one is an index seek that costs the same
+     * however far back it lies. Entries still queued in the ledger writer appear once their batch is written.
+     *
+     * @param uuid   The unique identifier of the player.
+     * @param cursor The {@link MCEngineCurrencyApiHistoryPage#next()} cursor of the previous page, or {@code null}
+     *               for the newest entries.
+     * @param limit  The maximum number of entries on the page.
+     * @return The page; its next cursor is {@code null} on the last page.
+     */
+    public MCEngineCurrencyApiHistoryPage getTransactions(UUID uuid, MCEngineCurrencyApiHistoryCursor cursor, int limit) {
+        int pageSize = Math.max(1, limit);
+        // One extra entry tells whether another page follows without a second query
+        List<MCEngineCurrencyApiHistoryEntry> entries = db.getTransactions(uuid.toString(), cursor, pageSize + 1);
+        if (entries.size() <= pageSize) {
+            return new MCEngineCurrencyApiHistoryPage(entries, null);
+        }
+        List<MCEngineCurrencyApiHistoryEntry> page = List.copyOf(entries.subList(0, pageSize));
+        return new MCEngineCurrencyApiHistoryPage(page, page.get(pageSize - 1).cursor());
+    }
+
+    /**
+     * Asynchronously retrieves one page of a player's transaction history, newest first.
+     *
+     * @param uuid   The unique identifier of the player.
+     * @param cursor The next cursor of the previous page, or {@code null} for the newest entries.
+     * @param limit  The maximum number of entries on the page.
+     * @return A future completed on the main thread with the page.
+     */
+    public CompletableFuture<MCEngineCurrencyApiHistoryPage> getTransactionsAsync(UUID uuid, MCEngineCurrencyApiHistoryCursor cursor, int limit) {
+        return executor.supply(() -> getTransactions(uuid, cursor, limit));
+    }
+
+    /**
+     * Retrieves a player's daily ledger totals, which outlive the raw entries once retention drops them.
+     * Days are UTC and only appear once they are over.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param from The first day, inclusive.
+     * @param to   The last day, inclusive.
+     * @return The totals ordered by day and currency.
+     */
+    public List<MCEngineCurrencyApiRollup> getRollups(UUID uuid, LocalDate from, LocalDate to) {
+        return db.getRollups(uuid.toString(), from.toEpochDay(), to.toEpochDay());
+    }
+
+    /**
+     * Asynchronously retrieves a player's daily ledger totals.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param from The first day, inclusive.
+     * @param to   The last day, inclusive.
+     * @return A future completed on the main thread with the totals ordered by day and currency.
+     */
+    public CompletableFuture<List<MCEngineCurrencyApiRollup>> getRollupsAsync(UUID uuid, LocalDate from, LocalDate to) {
+        return executor.supply(() -> getRollups(uuid, from, to));
+    }
+
+    /**
+     * Retrieves the balance a player had at a past time, from the newest ledger checkpoint before it and the
+     * player's ledger entries since. Entries still queued in the ledger writer are not counted yet.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to retrieve (e.g., "coin", "copper", "silver", "gold").
+     * @param at The time.
+     * @return The balance, or {@code null} if the coin type is invalid, the time lies before the oldest kept
+     *         checkpoint, the storage engine keeps no checkpoints or the ledger could not be read.
+     */
+    public MCEngineCurrencyApiMoney getCoinAt(UUID uuid, String coinType, Instant at) {
+        int currencyId = currencyId(coinType);
+        if (currencyId < 0 || replay == null) return null;
+        long[] balances = replay.balanceAt(uuid.toString(), at.getEpochSecond());
+        return balances != null ? MCEngineCurrencyApiMoney.ofMinor(balances[currencyId]) : null;
+    }
+
+    /**
+     * Asynchronously retrieves the balance a player had at a past time.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to retrieve (e.g., "coin", "copper", "silver", "gold").
+     * @param at The time.
+     * @return A future completed on the main thread with the balance, or {@code null} if it cannot be computed.
+     */
+    public CompletableFuture<MCEngineCurrencyApiMoney> getCoinAtAsync(UUID uuid, String coinType, Instant at) {
+        return executor.supply(() -> getCoinAt(uuid, coinType, at));
+    }
+
+    /**
+     * Rebuilds every balance from the newest ledger checkpoint and the ledger entries after it, summed in
+     * parallel, and compares the result with the stored balances. Pending cached balance changes and queued
+     * ledger entries are written first. With {@code restore}, which recovers from lost or corrupted balance rows,
+     * each player that differs is restored on their own under their account lock: queued ledger entries are
+     * written again and the player's ledger sum and stored balances re-read, so changes made since the comparison
+     * are never undone. Changes made by other servers of a network are not covered by the locks.
+     *
+     * @param restore {@code true} to bring the stored balances in line with the ledger.
+     * @return The report, whose drift is what was restored when restoring, or {@code null} if the storage engine
+     *         keeps no checkpoints, the ledger writer did not catch up or the replay failed.
+     */
+    public MCEngineCurrencyApiReplayReport replayBalances(boolean restore) {
+        if (replay == null) return null;
+        if (cache != null) cache.flush();
+        if (ledger != null && !ledger.flush(REPLAY_FLUSH_TIMEOUT_MILLIS)) {
+            plugin.getLogger().severe("Not replaying the ledger: queued ledger entries were not written within "
+                + REPLAY_FLUSH_TIMEOUT_MILLIS + " ms.");
+            return null;
+        }
+        MCEngineCurrencyApiReplayReport report = replay.replay();
+        if (report != null && restore) {
+            report = restore(report);
+        }
+        if (report != null) {
+            audit.record(MCEngineCurrencyApiAuditLog.Level.AUDIT, restore ? "ledger.restore" : "ledger.replay", null, null, null,
+                report.drift().size(), report.restored() ? "restored" : null);
+        }
+        return report;
+    }
+
+    /**
+     * Restores the players that differ in a replay report one at a time, each under their account lock.
+     *
+     * @return A report listing what was restored, plus the unchanged drift of players that failed; it is marked
+     *         restored only if every player was.
+     */
+    private MCEngineCurrencyApiReplayReport restore(MCEngineCurrencyApiReplayReport report) {
+        long started = System.nanoTime();
+        Map<UUID, long[]> restored = new HashMap<>();
+        int failed = 0;
+        for (Map.Entry<UUID, long[]> entry : report.drift().entrySet()) {
+            UUID uuid = entry.getKey();
+            long[] delta = locks.withLock(uuid, () -> ledger == null || ledger.flush(REPLAY_FLUSH_TIMEOUT_MILLIS)
+                ? replay.restore(uuid.toString()) : null);
+            if (delta == null) {
+                failed++;
+                restored.put(uuid, entry.getValue());
+            } else if (Arrays.stream(delta).anyMatch(amount -> amount != 0L)) {
+                restored.put(uuid, delta);
+            }
+        }
+        if (failed > 0) {
+            plugin.getLogger().severe("Failed to restore the balances of " + failed + " players from the ledger.");
+        }
+        long millis = report.millis() + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        plugin.getLogger().info("Restored the balances of " + (restored.size() - failed) + " of " + report.drift().size()
+            + " differing players from the ledger.");
+        return new MCEngineCurrencyApiReplayReport(report.transactionId(), report.players(), Map.copyOf(restored), failed == 0, millis);
+    }
+
+    /**
+     * Asynchronously rebuilds every balance from the ledger and compares, or restores, the stored balances.
+     * The replay is timed as {@code replay}.
+     *
+     * @param restore {@code true} to bring the stored balances in line with the ledger.
+     * @return A future completed on the main thread with the report, or {@code null} if the replay failed.
+     */
+    public CompletableFuture<MCEngineCurrencyApiReplayReport> replayBalancesAsync(boolean restore) {
+        return executor.supply(() -> metrics.time("replay", () -> replayBalances(restore)));
+    }
+
+    /**
+     * Transfers currency from one player to another and records it as a "pay" transaction.
+     * The conditional debit, the credit and the ledger entry are committed in one database transaction,
+     * so concurrent transfers cannot overdraw an account and a failure never leaves a partial transfer.
+     *
+     * @param playerUuidSender The unique identifier of the sender.
+     * @param playerUuidReceiver The unique identifier of the receiver.
+     * @param coinType The type of coin to transfer (e.g., "coin", "copper").
+     * @param amount The amount to transfer.
+     * @param note Optional note for the transaction.
+     * @return {@code true} if the transfer was committed, {@code false} if the sender's balance is too low,
+     *         the coin type is invalid, the amount is not greater than zero or the transfer failed.
+     */
+    public boolean transfer(UUID playerUuidSender, UUID playerUuidReceiver, String coinType, MCEngineCurrencyApiMoney amount, String note) {
+        return transferWithResult(playerUuidSender, playerUuidReceiver, coinType, amount, note).isPaid();
+    }
+
+    /**
+     * Transfers currency from one player to another like
+     * {@link #transfer(UUID, UUID, String, MCEngineCurrencyApiMoney, String)}, and tells why a refused transfer
+     * was refused. The reason is found after the refusal, still under both account locks, by reading the
+     * sender's balance and checking the receiver's record.
+     *
+     * @param playerUuidSender The unique identifier of the sender.
+     * @param playerUuidReceiver The unique identifier of the receiver.
+     * @param coinType The type of coin to transfer (e.g., "coin", "copper").
+     * @param amount The amount to transfer.
+     * @param note Optional note for the transaction.
+     * @return The outcome of the transfer.
+     */
+    public MCEngineCurrencyApiTransferResult transferWithResult(UUID playerUuidSender, UUID playerUuidReceiver, String coinType, MCEngineCurrencyApiMoney amount, String note) {
+        int currencyId = currencyId(coinType);
+        if (currencyId < 0 || !isPositiveAmount(amount)) return MCEngineCurrencyApiTransferResult.INVALID;
+        String sender = playerUuidSender.toString();
+        String receiver = playerUuidReceiver.toString();
+        MCEngineCurrencyApiTransferResult result = locks.withLocks(playerUuidSender, playerUuidReceiver, () -> {
+            if (db.transfer(sender, receiver, currencyId, amount.minor(), note)) return MCEngineCurrencyApiTransferResult.PAID;
+            long[] balances = db.getBalances(sender);
+            if (balances == null) return MCEngineCurrencyApiTransferResult.FAILED;
+            if (balances[currencyId] < amount.minor()) return MCEngineCurrencyApiTransferResult.INSUFFICIENT_FUNDS;
+            return db.playerExists(receiver) ? MCEngineCurrencyApiTransferResult.FAILED : MCEngineCurrencyApiTransferResult.NO_ACCOUNT;
+        });
+        audit.record(MCEngineCurrencyApiAuditLog.Level.AUDIT, "transfer", playerUuidSender, playerUuidReceiver, coinType, amount.minor(),
+            result.isPaid() ? null : "rejected: " + result.name().toLowerCase(Locale.ROOT));
+        return result;
+    }
+
+    /**
+     * Asynchronously transfers currency from one player to another and records it as a "pay" transaction.
+     *
+     * @param playerUuidSender The unique identifier of the sender.
+     * @param playerUuidReceiver The unique identifier of the receiver.
+     * @param coinType The type of coin to transfer (e.g., "coin", "copper").
+     * @param amount The amount to transfer.
+     * @param note Optional note for the transaction.
+     * @return A future completed on the main thread with {@code true} if the transfer was committed.
+     */
+    public CompletableFuture<Boolean> transferAsync(UUID playerUuidSender, UUID playerUuidReceiver, String coinType, MCEngineCurrencyApiMoney amount, String note) {
+        return executor.supply(() -> transfer(playerUuidSender, playerUuidReceiver, coinType, amount, note));
+    }
+
+    /**
+     * Asynchronously transfers currency from one player to another and tells why a refused transfer was refused.
+     *
+     * @param playerUuidSender The unique identifier of the sender.
+     * @param playerUuidReceiver The unique identifier of the receiver.
+     * @param coinType The type of coin to transfer (e.g., "coin", "copper").
+     * @param amount The amount to transfer.
+     * @param note Optional note for the transaction.
+     * @return A future completed on the main thread with the outcome of the transfer.
+     */
+    public CompletableFuture<MCEngineCurrencyApiTransferResult> transferWithResultAsync(UUID playerUuidSender, UUID playerUuidReceiver, String coinType, MCEngineCurrencyApiMoney amount, String note) {
+        return executor.supply(() -> transferWithResult(playerUuidSender, playerUuidReceiver, coinType, amount, note));
+    }
+
+    /**
+     * Disconnects from the database after all pending asynchronous work has finished,
+     * every queued ledger entry has been written, every cached balance change has been flushed
+     * and every buffered audit event has been written.
+     */
+    public void disConnect() {
+        if (flushTask != null) {
+            flushTask.cancel();
+        }
+        if (leaderboardTask != null) {
+            leaderboardTask.cancel();
+        }
+        if (exportTask != null) {
+            exportTask.cancel();
+        }
+        if (maintenanceTask != null) {
+            maintenanceTask.cancel();
+            // Stop a running pass after its current chunk and keep the lock so no pass starts after the database closes
+            synchronized (maintenanceThreadLock) {
+                if (maintenanceThread != null) maintenanceThread.interrupt();
+            }
+            maintenance.lock();
+        }
+        if (replay != null) {
+            replay.shutdown();
+        }
+        if (bus != null) {
+            bus.close();
+        }
+        executor.shutdown();
+        if (ledger != null) {
+            ledger.shutdown();
+        }
+        db.disConnection();
+        for (MCEngineCurrencyApiMetricsExporter exporter : exporters) {
+            exporter.export(metrics);
+            exporter.close();
+        }
+        audit.shutdown();
+        providers.close();
+    }
+
+    /**
+     * Retrieves the balance of a specified coin type for a player.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to retrieve (e.g., "coin", "copper", "silver", "gold").
+     * @return The balance of the specified coin type for the player; zero if the coin type is invalid.
+     */
+    public MCEngineCurrencyApiMoney getCoin(UUID uuid, String coinType) {
+        int currencyId = currencyId(coinType);
+        if (currencyId < 0) return MCEngineCurrencyApiMoney.ofMinor(0L);
+
+        long balance = db.getCoin(uuid.toString(), currencyId);
+        audit.record(MCEngineCurrencyApiAuditLog.Level.DEBUG, "balance.read", uuid, null, coinType, balance, null);
+        return MCEngineCurrencyApiMoney.ofMinor(balance);
+    }
+
+    /**
+     * Asynchronously retrieves the balance of a specified coin type for a player.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to retrieve (e.g., "coin", "copper", "silver", "gold").
+     * @return A future completed on the main thread with the balance of the specified coin type.
+     */
+    public CompletableFuture<MCEngineCurrencyApiMoney> getCoinAsync(UUID uuid, String coinType) {
+        return executor.supply(() -> getCoin(uuid, coinType));
+    }
+
+    /**
+     * Retrieves every coin balance of a player in a single query.
+     *
+     * @param uuid The unique identifier of the player.
+     * @return The balances in minor units, indexed by currency id (see {@link #getCurrencies()}),
+     *         or all zeros if the player has no currency record.
+     */
+    public long[] getAllBalances(UUID uuid) {
+        long[] balances = db.getBalances(uuid.toString());
+        return balances != null ? balances : new long[currencies.size()];
+    }
+
+    /**
+     * Asynchronously retrieves every coin balance of a player in a single query.
+     *
+     * @param uuid The unique identifier of the player.
+     * @return A future completed on the main thread with the balances, indexed by currency id.
+     */
+    public CompletableFuture<long[]> getAllBalancesAsync(UUID uuid) {
+        return executor.supply(() -> getAllBalances(uuid));
+    }
+
+    /**
+     * Retrieves every coin balance of many players at once, for example everyone online.
+     * Players that are cached are served from memory; the rest are read with one query per
+     * hundred players instead of one query per player and coin type.
+     *
+     * @param uuids The unique identifiers of the players.
+     * @return The balances in minor units of every player that has a currency record, indexed by
+     *         currency id and keyed by UUID.
+     */
+    public Map<UUID, long[]> getBalances(Collection<UUID> uuids) {
+        List<String> playerUuids = new ArrayList<>(uuids.size());
+        for (UUID uuid : uuids) {
+            playerUuids.add(uuid.toString());
+        }
+        Map<UUID, long[]> balances = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : db.getBalances(playerUuids).entrySet()) {
+            balances.put(UUID.fromString(entry.getKey()), entry.getValue());
+        }
+        return balances;
+    }
+
+    /**
+     * Asynchronously retrieves every coin balance of many players at once.
+     *
+     * @param uuids The unique identifiers of the players. The collection is copied before this method returns.
+     * @return A future completed on the main thread with the balances keyed by UUID.
+     */
+    public CompletableFuture<Map<UUID, long[]>> getBalancesAsync(Collection<UUID> uuids) {
+        List<UUID> snapshot = new ArrayList<>(uuids);
+        return executor.supply(() -> getBalances(snapshot));
+    }
+
+    /**
+     * Retrieves a page of the players with the highest balance of one coin type.
+     * Pages within the top {@code leaderboard.size} are served from the periodically refreshed snapshot;
+     * pages beyond it, or any page before the first refresh, are read with an indexed query.
+     *
+     * @param coinType The type of coin to rank by (e.g., "coin", "copper", "silver", "gold").
+     * @param offset The number of leading entries to skip.
+     * @param limit The maximum number of entries to return.
+     * @return The entries in descending balance order; empty if the coin type is invalid.
+     */
+    public List<MCEngineCurrencyApiTopEntry> getTop(String coinType, int offset, int limit) {
+        int currencyId = currencyId(coinType);
+        if (currencyId < 0) return List.of();
+        if (leaderboard != null) {
+            List<MCEngineCurrencyApiTopEntry> page = leaderboard.getTop(currencyId, offset, limit);
+            if (page != null) return page;
+        }
+        return db.getTop(currencyId, offset, limit);
+    }
+
+    /**
+     * Asynchronously retrieves a page of the players with the highest balance of one coin type.
+     *
+     * @param coinType The type of coin to rank by (e.g., "coin", "copper", "silver", "gold").
+     * @param offset The number of leading entries to skip.
+     * @param limit The maximum number of entries to return.
+     * @return A future completed on the main thread with the entries in descending balance order.
+     */
+    public CompletableFuture<List<MCEngineCurrencyApiTopEntry>> getTopAsync(String coinType, int offset, int limit) {
+        return executor.supply(() -> getTop(coinType, offset, limit));
+    }
+
+    /**
+     * Deducts a specified amount of a given type of coin from a player's account.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to deduct (e.g., "gold", "silver").
+     * @param amt The amount of coin to deduct.
+     */
+    public void minusCoin(UUID uuid, String coinType, MCEngineCurrencyApiMoney amt) {
+        minusCoin(uuid, coinType, amt, MCEngineCurrencyApiTransactionType.MINUS, null);
+    }
+
+    /**
+     * Deducts an amount of a given type of coin from a player's account and records it in the ledger under a
+     * debiting type, e.g. {@link MCEngineCurrencyApiTransactionType#CASH} for currency paid out as items.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to deduct (e.g., "gold", "silver").
+     * @param amt The amount of coin to deduct.
+     * @param type The ledger type; must debit the player without crediting anyone.
+     * @param notes Optional notes for the ledger entry.
+     */
+    public void minusCoin(UUID uuid, String coinType, MCEngineCurrencyApiMoney amt, MCEngineCurrencyApiTransactionType type, String notes) {
+        if (!isSingleAccount(type, false)) return;
+        updateCurrency(uuid, type, coinType, amt, notes);
+    }
+
+    /**
+     * Asynchronously deducts a specified amount of a given type of coin from a player's account.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to deduct (e.g., "gold", "silver").
+     * @param amt The amount of coin to deduct.
+     * @return A future completed on the main thread once the balance has been updated.
+     */
+    public CompletableFuture<Void> minusCoinAsync(UUID uuid, String coinType, MCEngineCurrencyApiMoney amt) {
+        return executor.run(() -> minusCoin(uuid, coinType, amt));
+    }
+
+    /**
+     * Asynchronously deducts an amount of a given type of coin from a player's account under a debiting ledger type.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to deduct (e.g., "gold", "silver").
+     * @param amt The amount of coin to deduct.
+     * @param type The ledger type; must debit the player without crediting anyone.
+     * @param notes Optional notes for the ledger entry.
+     * @return A future completed on the main thread once the balance has been updated.
+     */
+    public CompletableFuture<Void> minusCoinAsync(UUID uuid, String coinType, MCEngineCurrencyApiMoney amt, MCEngineCurrencyApiTransactionType type, String notes) {
+        return executor.run(() -> minusCoin(uuid, coinType, amt, type, notes));
+    }
+
+    /**
+     * Deducts an amount of one coin type only if the player's balance covers it. The check and the deduction
+     * are one optimistic compare-and-set on the player's record, retried up to
+     * {@code database.optimistic.max-attempts} times when another server changes it concurrently. Threads on
+     * this server are already serialized by the account lock.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to deduct (e.g., "gold", "silver").
+     * @param amt The amount of coin to deduct.
+     * @return {@code true} if the amount was deducted; {@code false} if the balance is too low, the coin type
+     *         is invalid, the player has no record or every attempt met a concurrent change.
+     */
+    public boolean tryMinusCoin(UUID uuid, String coinType, MCEngineCurrencyApiMoney amt) {
+        return tryMinusCoin(uuid, coinType, amt, MCEngineCurrencyApiTransactionType.MINUS, null);
+    }
+
+    /**
+     * Deducts an amount of one coin type only if the player's balance covers it, and records a deduction in the
+     * ledger under a debiting type, e.g. {@link MCEngineCurrencyApiTransactionType#CASH}.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to deduct (e.g., "gold", "silver").
+     * @param amt The amount of coin to deduct.
+     * @param type The ledger type; must debit the player without crediting anyone.
+     * @param notes Optional notes for the ledger entry.
+     * @return {@code true} if the amount was deducted; {@code false} if it was not, the amount is not greater
+     *         than zero or the type is not a debit.
+     */
+    public boolean tryMinusCoin(UUID uuid, String coinType, MCEngineCurrencyApiMoney amt, MCEngineCurrencyApiTransactionType type, String notes) {
+        int index = currencyId(coinType);
+        if (index < 0 || !isPositiveAmount(amt) || !isSingleAccount(type, false)) return false;
+        long amount = amt.minor();
+        int maxAttempts = Math.max(1, plugin.getConfig().getInt("database.optimistic.max-attempts", 5));
+        boolean deducted = locks.withLock(uuid, () -> {
+            boolean updated = db.updateBalances(uuid.toString(), balances -> {
+                if (balances[index] < amount) return null;
+                balances[index] -= amount;
+                return balances;
+            }, maxAttempts);
+            if (updated) record(uuid, coinType, type, amount, notes);
+            return updated;
+        });
+        audit.record(MCEngineCurrencyApiAuditLog.Level.AUDIT, "balance.debit", uuid, null, coinType, amount, deducted ? null : "rejected");
+        return deducted;
+    }
+
+    /**
+     * Asynchronously deducts an amount of one coin type only if the player's balance covers it.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to deduct (e.g., "gold", "silver").
+     * @param amt The amount of coin to deduct.
+     * @return A future completed on the main thread with {@code true} if the amount was deducted.
+     */
+    public CompletableFuture<Boolean> tryMinusCoinAsync(UUID uuid, String coinType, MCEngineCurrencyApiMoney amt) {
+        return executor.supply(() -> tryMinusCoin(uuid, coinType, amt));
+    }
+
+    /**
+     * Asynchronously deducts an amount of one coin type only if the player's balance covers it, under a debiting
+     * ledger type.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param coinType The type of coin to deduct (e.g., "gold", "silver").
+     * @param amt The amount of coin to deduct.
+     * @param type The ledger type; must debit the player without crediting anyone.
+     * @param notes Optional notes for the ledger entry.
+     * @return A future completed on the main thread with {@code true} if the amount was deducted.
+     */
+    public CompletableFuture<Boolean> tryMinusCoinAsync(UUID uuid, String coinType, MCEngineCurrencyApiMoney amt, MCEngineCurrencyApiTransactionType type, String notes) {
+        return executor.supply(() -> tryMinusCoin(uuid, coinType, amt, type, notes));
+    }
+
+    /**
+     * Updates the currency value for a player and records the change in the ledger while the account is locked,
+     * so the ledger lists one player's changes in the order they were made.
+     *
+     * @param uuid The unique identifier of the player.
+     * @param type The ledger type, which decides whether the amount is added or subtracted.
+     * @param coinType The type of coin to update.
+     * @param amt The amount of coin to update.
+     * @param notes Optional notes for the ledger entry.
+     * @return {@code false} if the coin type is invalid.
+     */
+    private boolean updateCurrency(UUID uuid, MCEngineCurrencyApiTransactionType type, String coinType, MCEngineCurrencyApiMoney amt, String notes) {
+        int currencyId = currencyId(coinType);
+        if (currencyId < 0) return false;
+        String operator = type.creditsReceiver() ? "+" : "-";
+        locks.withLock(uuid, () -> {
+            db.updateCurrencyValue(uuid.toString(), operator, currencyId, amt.minor());
+            record(uuid, coinType, type, amt.minor(), notes);
+        });
+        audit.record(MCEngineCurrencyApiAuditLog.Level.AUDIT, "+".equals(operator) ? "balance.add" : "balance.subtract", uuid, null, coinType, amt.minor(), null);
+        return true;
+    }
+
+    /**
+     * Records a change of one player's balance in the ledger, naming the player as both sender and receiver.
+     */
+    private void record(UUID uuid, String coinType, MCEngineCurrencyApiTransactionType type, long amount, String notes) {
+        String playerUuid = uuid.toString();
+        append(new MCEngineCurrencyApiTransaction(playerUuid, playerUuid, currencies.nameOf(currencyId(coinType)), type.getName(), amount, notes));
+    }
+
+    /**
+     * Checks that the amount of a conditional debit is greater than zero. A negative amount would pass the
+     * balance check and turn the debit into an unchecked credit.
+     *
+     * @param amount The amount to move.
+     * @return {@code true} if the amount is positive; otherwise the problem is logged.
+     */
+    private boolean isPositiveAmount(MCEngineCurrencyApiMoney amount) {
+        if (amount != null && amount.isPositive()) return true;
+        plugin.getLogger().severe("Invalid amount, must be greater than zero: " + amount);
+        return false;
+    }
+
+    /**
+     * Checks that a ledger type only credits, or only debits, a single account.
+     *
+     * @param type The ledger type.
+     * @param credit {@code true} for a credit, {@code false} for a debit.
+     * @return {@code true} if the type fits; otherwise the problem is logged.
+     */
+    private boolean isSingleAccount(MCEngineCurrencyApiTransactionType type, boolean credit) {
+        if (type != null && type.creditsReceiver() == credit && type.debitsSender() != credit) return true;
+        plugin.getLogger().severe("Invalid " + (credit ? "credit" : "debit") + " transaction type: " + type);
+        return false;
+    }
+}
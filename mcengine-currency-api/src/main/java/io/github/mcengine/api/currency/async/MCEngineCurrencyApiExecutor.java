@@ -0,0 +1,169 @@
+package io.github.mcengine.api.currency.async;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiMetrics;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.IllegalPluginAccessException;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Runs database work on a dedicated executor and hands the results back to the server main thread.
+ *
+ * <p>Futures returned by this class are completed through the Bukkit scheduler, so dependent
+ * stages such as {@code thenAccept} run on the main thread and may safely touch players,
+ * inventories and the world. Never call {@code join()} or {@code get()} on one of these futures
+ * from the main thread: the completion is queued on that same thread and would never run.</p>
+ */
+public class MCEngineCurrencyApiExecutor {
+    private final Plugin plugin;
+    private final ThreadPoolExecutor executor;
+    private final MCEngineCurrencyApiMetrics metrics;
+    private final long shutdownTimeoutSeconds;
+
+    /**
+     * Creates the database executor using the {@code database.async.*} configuration.
+     *
+     * @param plugin The plugin instance, used for configuration, logging and scheduling.
+     */
+    public MCEngineCurrencyApiExecutor(Plugin plugin) {
+        this(plugin, new MCEngineCurrencyApiMetrics(false));
+    }
+
+    /**
+     * Creates the database executor using the {@code database.async.*} configuration and records how long
+     * tasks wait in its queue into the {@code executor.wait} timer.
+     *
+     * @param plugin  The plugin instance, used for configuration, logging and scheduling.
+     * @param metrics The registry receiving the queue wait times.
+     */
+    public MCEngineCurrencyApiExecutor(Plugin plugin, MCEngineCurrencyApiMetrics metrics) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+        int threads = Math.max(1, plugin.getConfig().getInt("database.async.threads", 1));
+        this.shutdownTimeoutSeconds = plugin.getConfig().getLong("database.async.shutdown-timeout", 10L);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MCEngineCurrency-DB-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Runs a task on the database executor and completes the returned future on the main thread.
+     *
+     * @param task The database work to run.
+     * @param <T>  The result type.
+     * @return A future completed with the task result on the server main thread.
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            long queued = System.nanoTime();
+            executor.execute(() -> {
+                metrics.record("executor.wait", System.nanoTime() - queued);
+                T value;
+                try {
+                    value = task.get();
+                } catch (Throwable t) {
+                    completeOnMainThread(() -> result.completeExceptionally(t));
+                    return;
+                }
+                completeOnMainThread(() -> result.complete(value));
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Runs a task on the database executor and completes the returned future on the main thread.
+     *
+     * @param task The database work to run.
+     * @return A future completed on the server main thread once the task has finished.
+     */
+    public CompletableFuture<Void> run(Runnable task) {
+        return supply(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs a task on the database executor without reporting back to the main thread.
+     * Failures are logged.
+     *
+     * @param task The database work to run.
+     */
+    public void execute(Runnable task) {
+        try {
+            long queued = System.nanoTime();
+            executor.execute(() -> {
+                metrics.record("executor.wait", System.nanoTime() - queued);
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    plugin.getLogger().severe("Database task failed: " + t.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            plugin.getLogger().warning("Database executor is shut down; task skipped.");
+        }
+    }
+
+    /** @return The number of tasks waiting for a database thread. */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /** @return The number of database threads currently running a task. */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Stops accepting new work and waits for queued database work to finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("Timed out waiting for pending database tasks to finish.");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Schedules a completion on the main thread, or runs it directly once the plugin is disabled
+     * and the scheduler no longer accepts tasks.
+     *
+     * @param completion The completion to run.
+     */
+    private void completeOnMainThread(Runnable completion) {
+        if (plugin.isEnabled()) {
+            try {
+                Bukkit.getScheduler().runTask(plugin, completion);
+                return;
+            } catch (IllegalPluginAccessException e) {
+                // The plugin is being disabled; fall through and complete on this thread.
+            }
+        }
+        completion.run();
+    }
+}
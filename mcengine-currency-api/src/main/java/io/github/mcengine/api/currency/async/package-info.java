@@ -0,0 +1,4 @@
+/**
+ * This package contains the executor used to run database work off the server main thread.
+ */
+package io.github.mcengine.api.currency.async;
@@ -0,0 +1,72 @@
+package io.github.mcengine.api.currency.audit;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One audit log entry. Fields that do not apply to an event are {@code null}; the amount is in minor units.
+ *
+ * @param timeMillis  When the event happened, in milliseconds since the epoch.
+ * @param event       The event name, e.g. {@code balance.add} or {@code transfer}.
+ * @param player      The player the event is about.
+ * @param counterpart The other player of a transfer or transaction, or {@code null}.
+ * @param coinType    The coin type, or {@code null}.
+ * @param amount      The amount in minor units.
+ * @param detail      Free-form detail such as the transaction type or outcome, or {@code null}.
+ */
+public record MCEngineCurrencyApiAuditEvent(long timeMillis, String event, UUID player, UUID counterpart,
+                                            String coinType, long amount, String detail) {
+
+    /**
+     * Formats the event as one line of JSON. Strings are built here, on the writer thread, rather than
+     * by the caller on the money path.
+     *
+     * @return The JSON object, without a trailing newline.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(160);
+        json.append("{\"time\":\"").append(Instant.ofEpochMilli(timeMillis)).append('"');
+        json.append(",\"event\":");
+        quote(json, event);
+        if (player != null) json.append(",\"player\":\"").append(player).append('"');
+        if (counterpart != null) json.append(",\"counterpart\":\"").append(counterpart).append('"');
+        if (coinType != null) {
+            json.append(",\"coin\":");
+            quote(json, coinType);
+        }
+        json.append(",\"amount\":").append(amount);
+        if (detail != null) {
+            json.append(",\"detail\":");
+            quote(json, detail);
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Appends a JSON string literal.
+     *
+     * @param json  The output.
+     * @param value The string to quote.
+     */
+    private static void quote(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+}
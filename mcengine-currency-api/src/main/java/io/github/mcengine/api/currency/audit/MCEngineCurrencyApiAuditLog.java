@@ -0,0 +1,224 @@
+package io.github.mcengine.api.currency.audit;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Asynchronous, sampled audit log of balance changes and transactions, configured under {@code logging.audit}.
+ *
+ * <p>Callers on the money path only check the level and the sample rate and, if the event is kept, put it
+ * into a {@link MCEngineCurrencyApiRingBuffer}. A background thread formats the events as JSON lines and
+ * writes them to a file in the plugin folder, or to the console. Nothing is formatted and no lock is taken
+ * on the caller's thread, and when the buffer is full the event is dropped and counted instead of making the
+ * caller wait.</p>
+ */
+public class MCEngineCurrencyApiAuditLog {
+
+    /**
+     * How much is logged. Each level includes the ones before it.
+     */
+    public enum Level {
+        /** Nothing is logged. */
+        OFF,
+        /** Balance changes, transfers, transactions and account creation. */
+        AUDIT,
+        /** Also balance reads and account preloads. */
+        DEBUG
+    }
+
+    private final Plugin plugin;
+    private final Level level;
+    private final double sampleRate;
+    private final boolean console;
+    private final File file;
+    private final MCEngineCurrencyApiRingBuffer<MCEngineCurrencyApiAuditEvent> buffer;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final long idleNanos;
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * Creates the audit log from {@code logging.audit.*} and starts its writer thread unless the level is off.
+     *
+     * @param plugin The plugin instance, used for configuration and logging.
+     */
+    public MCEngineCurrencyApiAuditLog(Plugin plugin) {
+        this.plugin = plugin;
+        this.level = parseLevel(plugin.getConfig().getString("logging.audit.level", "audit"));
+        this.sampleRate = Math.max(0.0, Math.min(1.0, plugin.getConfig().getDouble("logging.audit.sample-rate", 1.0)));
+        this.console = "console".equalsIgnoreCase(plugin.getConfig().getString("logging.audit.target", "file"));
+        this.file = new File(plugin.getDataFolder(), plugin.getConfig().getString("logging.audit.file", "audit.log"));
+        this.buffer = new MCEngineCurrencyApiRingBuffer<>(Math.max(16, plugin.getConfig().getInt("logging.audit.buffer-size", 8192)));
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, plugin.getConfig().getLong("logging.audit.flush-interval", 100L)));
+        if (level != Level.OFF && sampleRate > 0.0) {
+            running = true;
+            writer = new Thread(this::run, "MCEngineCurrency-Audit");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Returns whether an event at the given level would be considered at all. Callers with costly
+     * arguments can check this first.
+     *
+     * @param eventLevel The level of the event.
+     * @return {@code true} if events at this level are logged (subject to sampling).
+     */
+    public boolean isEnabled(Level eventLevel) {
+        return running && eventLevel.compareTo(level) <= 0;
+    }
+
+    /**
+     * Records an event if its level is enabled and it is picked by sampling. Never blocks.
+     *
+     * @param eventLevel  The level of the event.
+     * @param event       The event name, e.g. {@code balance.add}.
+     * @param player      The player the event is about.
+     * @param counterpart The other player of a transfer or transaction, or {@code null}.
+     * @param coinType    The coin type, or {@code null}.
+     * @param amount      The amount in minor units.
+     * @param detail      Free-form detail, or {@code null}.
+     */
+    public void record(Level eventLevel, String event, UUID player, UUID counterpart, String coinType, long amount, String detail) {
+        if (!isEnabled(eventLevel)) return;
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) return;
+        MCEngineCurrencyApiAuditEvent entry = new MCEngineCurrencyApiAuditEvent(System.currentTimeMillis(), event, player, counterpart, coinType, amount, detail);
+        if (!buffer.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Stops the writer thread after it has written every buffered event.
+     */
+    public void shutdown() {
+        if (writer == null) return;
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        if (dropped.sum() > 0L) {
+            plugin.getLogger().warning("Audit log dropped " + dropped.sum() + " events because its buffer was full.");
+        }
+    }
+
+    /** @return The number of events waiting to be written. */
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    /** @return The number of events written. */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /** @return The number of events dropped because the buffer was full. */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Writer loop: drains the buffer, flushes, and parks for {@code logging.audit.flush-interval} when idle.
+     * If the file cannot be written, the remaining events go to the console.
+     */
+    private void run() {
+        BufferedWriter out = console ? null : open();
+        while (true) {
+            boolean stopping = !running;
+            int count = 0;
+            MCEngineCurrencyApiAuditEvent event;
+            while ((event = buffer.poll()) != null) {
+                String line = event.toJson();
+                if (out != null) {
+                    try {
+                        out.write(line);
+                        out.newLine();
+                    } catch (IOException e) {
+                        plugin.getLogger().severe("Failed to write the audit log " + file + ", logging to the console instead: " + e.getMessage());
+                        close(out);
+                        out = null;
+                    }
+                }
+                if (out == null) {
+                    plugin.getLogger().info("[audit] " + line);
+                }
+                count++;
+            }
+            if (count > 0) {
+                written.add(count);
+                if (out != null) {
+                    try {
+                        out.flush();
+                    } catch (IOException e) {
+                        plugin.getLogger().severe("Failed to flush the audit log " + file + ": " + e.getMessage());
+                    }
+                }
+            }
+            if (stopping) break;
+            if (count == 0) LockSupport.parkNanos(idleNanos);
+        }
+        if (out != null) close(out);
+    }
+
+    /**
+     * Closes the audit log file.
+     *
+     * @param out The writer to close.
+     */
+    private void close(BufferedWriter out) {
+        try {
+            out.close();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to close the audit log " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens the audit log file for appending, falling back to the console if it cannot be opened.
+     *
+     * @return The writer, or {@code null} to log to the console.
+     */
+    private BufferedWriter open() {
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) Files.createDirectories(parent.toPath());
+            return Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open the audit log " + file + ", logging to the console instead: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Parses {@code logging.audit.level}.
+     *
+     * @param value The configured value.
+     * @return The level, {@link Level#AUDIT} if the value is unknown.
+     */
+    private Level parseLevel(String value) {
+        try {
+            return Level.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().severe("Unsupported audit log level: " + value + "; using audit.");
+            return Level.AUDIT;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.mcengine.api.currency.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and one consumer, after Dmitry Vyukov's bounded queue.
+ *
+ * <p>Each slot carries a sequence number that tells producers and the consumer whose turn it is, so
+ * {@link #offer} is one compare-and-set on the tail and never blocks: when the buffer is full it returns
+ * {@code false} and the caller drops the element. {@link #poll} must only be called from a single thread.</p>
+ *
+ * @param <T> The element type.
+ */
+public class MCEngineCurrencyApiRingBuffer<T> {
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Creates a buffer holding at least the given number of elements, rounded up to a power of two.
+     *
+     * @param capacity The requested capacity.
+     */
+    public MCEngineCurrencyApiRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, Math.min(capacity, 1 << 24)) * 2 - 1);
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds an element without blocking.
+     *
+     * @param element The element to add.
+     * @return {@code true} if the element was added, {@code false} if the buffer is full.
+     */
+    public boolean offer(T element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                return false;
+            }
+            // Another producer claimed this position; retry with the new tail
+        }
+    }
+
+    /**
+     * Removes the oldest element. Must only be called by the single consumer.
+     *
+     * @return The element, or {@code null} if the buffer is empty.
+     */
+    public T poll() {
+        long position = head.get();
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) return null;
+        T element = elements.get(index);
+        elements.lazySet(index, null);
+        head.lazySet(position + 1);
+        sequences.set(index, position + mask + 1);
+        return element;
+    }
+
+    /**
+     * @return The approximate number of queued elements.
+     */
+    public int size() {
+        return (int) Math.max(0L, tail.get() - head.get());
+    }
+
+    /**
+     * @return The number of slots.
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
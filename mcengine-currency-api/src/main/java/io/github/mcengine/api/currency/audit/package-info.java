@@ -0,0 +1,4 @@
+/**
+ * This package contains the asynchronous, sampled audit log of balance changes and transactions.
+ */
+package io.github.mcengine.api.currency.audit;
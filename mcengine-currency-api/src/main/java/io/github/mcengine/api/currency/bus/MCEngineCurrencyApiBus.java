@@ -0,0 +1,42 @@
+package io.github.mcengine.api.currency.bus;
+
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiMetrics;
+import java.util.function.Consumer;
+
+/**
+ * Broadcasts balance changes between the servers of a network so each server's balance cache
+ * stays coherent with changes made elsewhere.
+ *
+ * <p>Implementations deliver every published message to the listener of every other server, at most once
+ * and on any thread, and never back to the publishing server. Delivery is best effort; the cache falls back
+ * to the database whenever a player is reloaded.</p>
+ */
+public interface MCEngineCurrencyApiBus {
+
+    /**
+     * Sends a message to every other server.
+     *
+     * @param message The message to broadcast.
+     */
+    void publish(MCEngineCurrencyApiBusMessage message);
+
+    /**
+     * Sets the listener that receives messages published by other servers.
+     *
+     * @param listener The listener, replacing any previous one.
+     */
+    void subscribe(Consumer<MCEngineCurrencyApiBusMessage> listener);
+
+    /**
+     * Stops sending and receiving messages.
+     */
+    void close();
+
+    /**
+     * Registers transport-specific gauges and counters, such as messages waiting to be sent.
+     *
+     * @param metrics The registry to add to.
+     */
+    default void registerMetrics(MCEngineCurrencyApiMetrics metrics) {
+    }
+}
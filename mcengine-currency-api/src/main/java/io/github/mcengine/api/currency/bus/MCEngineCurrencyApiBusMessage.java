@@ -0,0 +1,126 @@
+package io.github.mcengine.api.currency.bus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * A balance change broadcast on the {@link MCEngineCurrencyApiBus}.
+ *
+ * @param type       What happened to the player's balances.
+ * @param playerUuid The UUID of the player.
+ * @param deltas     The changes for {@link Type#DELTA}, indexed by currency id; {@code null} otherwise.
+ */
+public record MCEngineCurrencyApiBusMessage(Type type, String playerUuid, long[] deltas) {
+    /** Version 2 prefixes the deltas with their count; version 1 always carried four. */
+    private static final int VERSION = 2;
+    private static final int LEGACY_DELTAS = 4;
+
+    /**
+     * The kinds of bus messages.
+     */
+    public enum Type {
+        /** Balances changed in the publisher's cache and are not yet in the database; add the deltas. */
+        DELTA,
+        /** The database holds new balances for the player; reload them. */
+        INVALIDATE
+    }
+
+    /**
+     * Creates a message announcing cached changes that have not been written yet.
+     *
+     * @param playerUuid The UUID of the player.
+     * @param deltas     The changes, indexed by currency id.
+     * @return The message.
+     */
+    public static MCEngineCurrencyApiBusMessage delta(String playerUuid, long[] deltas) {
+        return new MCEngineCurrencyApiBusMessage(Type.DELTA, playerUuid, deltas);
+    }
+
+    /**
+     * Creates a message announcing that the database holds new balances for a player.
+     *
+     * @param playerUuid The UUID of the player.
+     * @return The message.
+     */
+    public static MCEngineCurrencyApiBusMessage invalidate(String playerUuid) {
+        return new MCEngineCurrencyApiBusMessage(Type.INVALIDATE, playerUuid, null);
+    }
+
+    /**
+     * Encodes the message for transports that carry bytes.
+     *
+     * @param origin The identifier of the publishing server, so it can ignore its own messages.
+     * @return The encoded message.
+     */
+    public byte[] encode(UUID origin) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(80);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeByte(type.ordinal());
+            out.writeLong(origin.getMostSignificantBits());
+            out.writeLong(origin.getLeastSignificantBits());
+            out.writeUTF(playerUuid);
+            if (type == Type.DELTA) {
+                out.writeShort(deltas.length);
+                for (long delta : deltas) {
+                    out.writeLong(delta);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the publishing server's identifier from an encoded message.
+     *
+     * @param data The encoded message.
+     * @return The origin passed to {@link #encode(UUID)}.
+     * @throws IOException If the data is not an encoded message.
+     */
+    public static UUID origin(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        readVersion(in);
+        in.readByte();
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    /**
+     * Decodes a message produced by {@link #encode(UUID)}.
+     *
+     * @param data The encoded message.
+     * @return The message.
+     * @throws IOException If the data is not an encoded message.
+     */
+    public static MCEngineCurrencyApiBusMessage decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int version = readVersion(in);
+        Type[] types = Type.values();
+        int ordinal = in.readByte();
+        if (ordinal < 0 || ordinal >= types.length) throw new IOException("Unknown bus message type " + ordinal);
+        in.readLong();
+        in.readLong();
+        String playerUuid = in.readUTF();
+        if (types[ordinal] == Type.INVALIDATE) return invalidate(playerUuid);
+
+        long[] deltas = new long[version == 1 ? LEGACY_DELTAS : in.readUnsignedShort()];
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] = in.readLong();
+        }
+        return delta(playerUuid, deltas);
+    }
+
+    /**
+     * Reads the format version. Version 1 messages are still accepted so servers can be updated one at a time.
+     */
+    private static int readVersion(DataInputStream in) throws IOException {
+        int version = in.readByte();
+        if (version != 1 && version != VERSION) throw new IOException("Unsupported bus message version " + version);
+        return version;
+    }
+}
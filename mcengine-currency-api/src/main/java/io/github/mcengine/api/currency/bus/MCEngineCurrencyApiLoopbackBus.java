@@ -0,0 +1,52 @@
+package io.github.mcengine.api.currency.bus;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process {@link MCEngineCurrencyApiBus} that connects every loopback bus created in the same JVM.
+ *
+ * <p>Messages are delivered synchronously on the publishing thread. This lets several currency API
+ * instances share one database inside a single process, for tests and local development.
+ * Selected with {@code bus.type: loopback}.</p>
+ */
+public class MCEngineCurrencyApiLoopbackBus implements MCEngineCurrencyApiBus {
+    private static final List<MCEngineCurrencyApiLoopbackBus> BUSES = new CopyOnWriteArrayList<>();
+
+    private volatile Consumer<MCEngineCurrencyApiBusMessage> listener;
+
+    /**
+     * Creates a bus and connects it to every other open loopback bus.
+     */
+    public MCEngineCurrencyApiLoopbackBus() {
+        BUSES.add(this);
+    }
+
+    /**
+     * Delivers the message to the listener of every other open loopback bus.
+     */
+    @Override
+    public void publish(MCEngineCurrencyApiBusMessage message) {
+        for (MCEngineCurrencyApiLoopbackBus bus : BUSES) {
+            Consumer<MCEngineCurrencyApiBusMessage> target = bus.listener;
+            if (bus != this && target != null) {
+                target.accept(message);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<MCEngineCurrencyApiBusMessage> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Disconnects the bus from the others.
+     */
+    @Override
+    public void close() {
+        BUSES.remove(this);
+        listener = null;
+    }
+}
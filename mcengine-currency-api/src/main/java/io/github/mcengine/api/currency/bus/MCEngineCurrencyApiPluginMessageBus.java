@@ -0,0 +1,126 @@
+package io.github.mcengine.api.currency.bus;
+
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiMetrics;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+
+/**
+ * {@link MCEngineCurrencyApiBus} over the BungeeCord plugin messaging channel, which BungeeCord and
+ * Velocity (with its BungeeCord channel enabled) both support.
+ *
+ * <p>Messages are sent with the {@code Forward ALL} subchannel, so the proxy relays them to every other
+ * server of the network. Plugin messages travel through a player connection: a server without online
+ * players can neither send nor receive, and messages published while it is empty are dropped. Such a
+ * server has no players cached either, and every server reloads a player from the database on join and
+ * once more a flush interval later, after the server they left has written their last changes.
+ * Selected with {@code bus.type: plugin-messaging}.</p>
+ */
+public class MCEngineCurrencyApiPluginMessageBus implements MCEngineCurrencyApiBus, PluginMessageListener {
+    private static final String CHANNEL = "BungeeCord";
+    private static final String SUBCHANNEL = "MCEngineCurrency";
+
+    private final Plugin plugin;
+    private final UUID origin = UUID.randomUUID();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private volatile Consumer<MCEngineCurrencyApiBusMessage> listener;
+
+    /**
+     * Registers the plugin messaging channels.
+     *
+     * @param plugin The plugin instance, used to register the channels and schedule sends.
+     */
+    public MCEngineCurrencyApiPluginMessageBus(Plugin plugin) {
+        this.plugin = plugin;
+        plugin.getServer().getMessenger().registerOutgoingPluginChannel(plugin, CHANNEL);
+        plugin.getServer().getMessenger().registerIncomingPluginChannel(plugin, CHANNEL, this);
+    }
+
+    /**
+     * Forwards the message to every other server through any online player's connection.
+     * The send itself is scheduled on the main thread.
+     */
+    @Override
+    public void publish(MCEngineCurrencyApiBusMessage message) {
+        byte[] payload = message.encode(origin);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF("Forward");
+            out.writeUTF("ALL");
+            out.writeUTF(SUBCHANNEL);
+            out.writeShort(payload.length);
+            out.write(payload);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Error encoding currency bus message: " + e.getMessage());
+            return;
+        }
+        byte[] data = bytes.toByteArray();
+        if (!plugin.isEnabled()) return;
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            Iterator<? extends Player> players = plugin.getServer().getOnlinePlayers().iterator();
+            if (players.hasNext()) {
+                players.next().sendPluginMessage(plugin, CHANNEL, data);
+                sent.increment();
+            } else {
+                dropped.increment();
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(Consumer<MCEngineCurrencyApiBusMessage> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Unwraps forwarded currency messages from other servers and hands them to the listener.
+     */
+    @Override
+    public void onPluginMessageReceived(String channel, Player player, byte[] message) {
+        Consumer<MCEngineCurrencyApiBusMessage> target = listener;
+        if (!CHANNEL.equals(channel) || target == null) return;
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+            if (!SUBCHANNEL.equals(in.readUTF())) return;
+            byte[] payload = new byte[in.readUnsignedShort()];
+            in.readFully(payload);
+            if (origin.equals(MCEngineCurrencyApiBusMessage.origin(payload))) return;
+            received.increment();
+            target.accept(MCEngineCurrencyApiBusMessage.decode(payload));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Ignoring malformed currency bus message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Registers the sent, dropped and received message totals. A growing dropped count means
+     * balance changes were published while no player was online to carry them.
+     */
+    @Override
+    public void registerMetrics(MCEngineCurrencyApiMetrics metrics) {
+        metrics.counter("bus.sent", sent::sum);
+        metrics.counter("bus.dropped", dropped::sum);
+        metrics.counter("bus.received", received::sum);
+    }
+
+    /**
+     * Unregisters the plugin messaging channels.
+     */
+    @Override
+    public void close() {
+        listener = null;
+        plugin.getServer().getMessenger().unregisterIncomingPluginChannel(plugin, CHANNEL, this);
+        plugin.getServer().getMessenger().unregisterOutgoingPluginChannel(plugin, CHANNEL);
+    }
+}
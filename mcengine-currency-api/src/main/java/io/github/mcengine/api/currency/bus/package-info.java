@@ -0,0 +1,4 @@
+/**
+ * This package contains the message bus that keeps balance caches coherent across servers.
+ */
+package io.github.mcengine.api.currency.bus;
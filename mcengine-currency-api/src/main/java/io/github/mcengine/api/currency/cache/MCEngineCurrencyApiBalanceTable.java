@@ -0,0 +1,470 @@
+package io.github.mcengine.api.currency.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Open-addressing table of cached accounts, keyed by the two halves of the player UUID.
+ *
+ * <p>Each account takes one stride of a flat {@code long[]}: the UUID bits, one balance per currency id and
+ * one pending delta per currency id, 80 bytes for four currencies with no per-account objects, so millions
+ * of cached accounts add almost nothing to garbage collection. Lookups probe linearly and allocate nothing; canonical UUID
+ * strings are parsed straight into the two key halves.</p>
+ *
+ * <p>The table is split into independently locked segments chosen by key hash, so threads working on
+ * different players rarely contend. The all-zero UUID is reserved as the empty marker.</p>
+ */
+public class MCEngineCurrencyApiBalanceTable {
+    /** Returned by {@link #getCoin} when the account is not cached. */
+    public static final long ABSENT = Long.MIN_VALUE;
+
+    /** Number of independently locked segments; package-private so tests can build keys that collide. */
+    static final int SEGMENTS = 16;
+    private static final int BALANCES = 2;
+
+    /** The number of currency ids, i.e. the length of every balances array. */
+    private final int types;
+    /** Offset of the pending deltas within a slot, right after the balances. */
+    private final int pending;
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * One independently locked part of the table. Every method must be called while holding its monitor.
+     */
+    private static final class Segment {
+        private final int stride;
+        private long[] data;
+        private int mask;
+        private int size;
+
+        private Segment(int buckets, int stride) {
+            this.stride = stride;
+            data = new long[buckets * stride];
+            mask = buckets - 1;
+        }
+
+        /**
+         * @return the offset of the account in {@link #data}, or {@code -1} if it is not present
+         */
+        private int find(long msb, long lsb, int hash) {
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int offset = i * stride;
+                long m = data[offset];
+                long l = data[offset + 1];
+                if (m == 0 && l == 0) return -1;
+                if (m == msb && l == lsb) return offset;
+            }
+        }
+
+        /**
+         * @return the offset of a newly claimed bucket for the account, which must not be present
+         */
+        private int insert(long msb, long lsb, int hash) {
+            // Keep the load factor at or below three quarters so probe chains stay short
+            if ((size + 1) * 4 > (mask + 1) * 3) {
+                resize();
+            }
+            int i = hash & mask;
+            while (data[i * stride] != 0 || data[i * stride + 1] != 0) {
+                i = (i + 1) & mask;
+            }
+            int offset = i * stride;
+            data[offset] = msb;
+            data[offset + 1] = lsb;
+            size++;
+            return offset;
+        }
+
+        /**
+         * Removes the account at the offset and shifts later entries of its probe chain back,
+         * so lookups never need tombstones.
+         */
+        private void delete(int offset) {
+            int hole = offset / stride;
+            for (int i = (hole + 1) & mask; ; i = (i + 1) & mask) {
+                int from = i * stride;
+                long m = data[from];
+                long l = data[from + 1];
+                if (m == 0 && l == 0) break;
+                int home = hash(m, l) & mask;
+                // Move the entry into the hole unless its home bucket lies cyclically in (hole, i]
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    System.arraycopy(data, from, data, hole * stride, stride);
+                    hole = i;
+                }
+            }
+            Arrays.fill(data, hole * stride, hole * stride + stride, 0L);
+            size--;
+        }
+
+        private void resize() {
+            long[] old = data;
+            data = new long[old.length * 2];
+            mask = data.length / stride - 1;
+            for (int from = 0; from < old.length; from += stride) {
+                long m = old[from];
+                long l = old[from + 1];
+                if (m == 0 && l == 0) continue;
+                int i = hash(m, l) & mask;
+                while (data[i * stride] != 0 || data[i * stride + 1] != 0) {
+                    i = (i + 1) & mask;
+                }
+                System.arraycopy(old, from, data, i * stride, stride);
+            }
+        }
+    }
+
+    /**
+     * Creates an empty table sized for the given number of accounts.
+     *
+     * @param expected The number of accounts expected to be cached at once.
+     * @param types    The number of currency ids, see
+     *                 {@link io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry#size()}.
+     */
+    public MCEngineCurrencyApiBalanceTable(int expected, int types) {
+        this.types = types;
+        this.pending = BALANCES + types;
+        int perSegment = Math.max(1, expected / SEGMENTS);
+        int buckets = Integer.highestOneBit(Math.max(8, perSegment * 4 / 3 + 1) - 1) << 1;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(buckets, pending + types);
+        }
+    }
+
+    /**
+     * Spreads the key bits; the high bits pick the segment and the low bits the bucket inside it.
+     * Package-private so tests can build keys that collide.
+     */
+    static int hash(long msb, long lsb) {
+        long h = msb ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private Segment segment(int hash) {
+        return segments[(hash >>> 28) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Checks whether a string is a UUID in canonical form, which is what Bukkit produces.
+     *
+     * @param uuid The string to check.
+     * @return {@code true} if the string can be passed to {@link #mostBits} and {@link #leastBits}.
+     */
+    public static boolean isCanonical(String uuid) {
+        if (uuid == null || uuid.length() != 36) return false;
+        for (int i = 0; i < 36; i++) {
+            char c = uuid.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return false;
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param uuid A canonical UUID string.
+     * @return The most significant 64 bits, as {@link UUID#getMostSignificantBits()}.
+     */
+    public static long mostBits(String uuid) {
+        return hex(uuid, 0, 8) << 32 | hex(uuid, 9, 13) << 16 | hex(uuid, 14, 18);
+    }
+
+    /**
+     * @param uuid A canonical UUID string.
+     * @return The least significant 64 bits, as {@link UUID#getLeastSignificantBits()}.
+     */
+    public static long leastBits(String uuid) {
+        return hex(uuid, 19, 23) << 48 | hex(uuid, 24, 36);
+    }
+
+    private static long hex(String s, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value << 4 | Character.digit(s.charAt(i), 16);
+        }
+        return value;
+    }
+
+    /**
+     * @return Whether the account is cached.
+     */
+    public boolean contains(long msb, long lsb) {
+        int hash = hash(msb, lsb);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            return segment.find(msb, lsb, hash) >= 0;
+        }
+    }
+
+    /**
+     * Caches an account unless it is already cached.
+     *
+     * @param balances The balances, indexed by currency id.
+     * @return {@code true} if the account was added; {@code false} if it was already cached or is the all-zero UUID.
+     */
+    public boolean putIfAbsent(long msb, long lsb, long[] balances) {
+        if (msb == 0 && lsb == 0) return false;
+        int hash = hash(msb, lsb);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            if (segment.find(msb, lsb, hash) >= 0) return false;
+            int offset = segment.insert(msb, lsb, hash);
+            System.arraycopy(balances, 0, segment.data, offset + BALANCES, types);
+            return true;
+        }
+    }
+
+    /**
+     * @return The cached balance of one currency, or {@link #ABSENT} if the account is not cached.
+     */
+    public long getCoin(long msb, long lsb, int type) {
+        int hash = hash(msb, lsb);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int offset = segment.find(msb, lsb, hash);
+            return offset < 0 ? ABSENT : segment.data[offset + BALANCES + type];
+        }
+    }
+
+    /**
+     * Copies the cached balances into {@code out}.
+     *
+     * @return {@code false} if the account is not cached, in which case {@code out} is untouched.
+     */
+    public boolean getBalances(long msb, long lsb, long[] out) {
+        int hash = hash(msb, lsb);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int offset = segment.find(msb, lsb, hash);
+            if (offset < 0) return false;
+            System.arraycopy(segment.data, offset + BALANCES, out, 0, types);
+            return true;
+        }
+    }
+
+    /**
+     * Adds a change to a cached balance and records it as pending.
+     *
+     * @return {@code false} if the account is not cached.
+     */
+    public boolean add(long msb, long lsb, int type, long delta) {
+        int hash = hash(msb, lsb);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int offset = segment.find(msb, lsb, hash);
+            if (offset < 0) return false;
+            segment.data[offset + BALANCES + type] += delta;
+            segment.data[offset + pending + type] += delta;
+            return true;
+        }
+    }
+
+    /**
+     * Adds changes to all cached balances and records them as pending.
+     *
+     * @return {@code false} if the account is not cached.
+     */
+    public boolean addAll(long msb, long lsb, long[] deltas) {
+        int hash = hash(msb, lsb);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int offset = segment.find(msb, lsb, hash);
+            if (offset < 0) return false;
+            for (int i = 0; i < types; i++) {
+                segment.data[offset + BALANCES + i] += deltas[i];
+                segment.data[offset + pending + i] += deltas[i];
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Adjusts a cached balance for a change that has already been written to the database.
+     *
+     * @return {@code false} if the account is not cached.
+     */
+    public boolean adjust(long msb, long lsb, int type, long amount) {
+        int hash = hash(msb, lsb);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int offset = segment.find(msb, lsb, hash);
+            if (offset < 0) return false;
+            segment.data[offset + BALANCES + type] += amount;
+            return true;
+        }
+    }
+
+    /**
+     * Adds changes made elsewhere to the cached balances, leaving the pending deltas as they are.
+     *
+     * @return {@code false} if the account is not cached.
+     */
+    public boolean adjustAll(long msb, long lsb, long[] amounts) {
+        int hash = hash(msb, lsb);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int offset = segment.find(msb, lsb, hash);
+            if (offset < 0) return false;
+            for (int i = 0; i < types; i++) {
+                segment.data[offset + BALANCES + i] += amounts[i];
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Replaces the cached balances with freshly read stored balances plus the still pending deltas.
+     *
+     * @param stored The balances as currently stored in the database.
+     * @return {@code false} if the account is not cached.
+     */
+    public boolean reload(long msb, long lsb, long[] stored) {
+        int hash = hash(msb, lsb);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int offset = segment.find(msb, lsb, hash);
+            if (offset < 0) return false;
+            for (int i = 0; i < types; i++) {
+                segment.data[offset + BALANCES + i] = stored[i] + segment.data[offset + pending + i];
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Adds deltas that failed to be written back to the pending deltas, leaving the balances as they are.
+     *
+     * @return {@code false} if the account is no longer cached.
+     */
+    public boolean requeue(long msb, long lsb, long[] deltas) {
+        int hash = hash(msb, lsb);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int offset = segment.find(msb, lsb, hash);
+            if (offset < 0) return false;
+            for (int i = 0; i < types; i++) {
+                segment.data[offset + pending + i] += deltas[i];
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Takes the pending deltas of an account and resets them to zero.
+     *
+     * @return The deltas, or {@code null} if the account is not cached or has nothing pending.
+     */
+    public long[] drain(long msb, long lsb) {
+        int hash = hash(msb, lsb);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int offset = segment.find(msb, lsb, hash);
+            return offset < 0 ? null : takeDeltas(segment.data, offset);
+        }
+    }
+
+    /**
+     * Removes an account from the table.
+     *
+     * @return Its pending deltas, or {@code null} if the account was not cached or had nothing pending.
+     */
+    public long[] remove(long msb, long lsb) {
+        int hash = hash(msb, lsb);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            int offset = segment.find(msb, lsb, hash);
+            if (offset < 0) return null;
+            long[] pending = takeDeltas(segment.data, offset);
+            segment.delete(offset);
+            return pending;
+        }
+    }
+
+    /**
+     * Takes the pending deltas of every cached account, one segment at a time.
+     *
+     * @param batch Receives the deltas keyed by UUID string.
+     */
+    public void drainAll(Map<String, long[]> batch) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                long[] data = segment.data;
+                for (int offset = 0; offset < data.length; offset += segment.stride) {
+                    if (data[offset] == 0 && data[offset + 1] == 0) continue;
+                    long[] pending = takeDeltas(data, offset);
+                    if (pending != null) {
+                        batch.put(new UUID(data[offset], data[offset + 1]).toString(), pending);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists the cached accounts that have pending deltas, one segment at a time, leaving the deltas in place.
+     *
+     * @param accounts Receives the accounts.
+     */
+    public void pendingAccounts(Collection<UUID> accounts) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                long[] data = segment.data;
+                for (int offset = 0; offset < data.length; offset += segment.stride) {
+                    if (data[offset] == 0 && data[offset + 1] == 0) continue;
+                    for (int i = offset + pending; i < offset + pending + types; i++) {
+                        if (data[i] != 0) {
+                            accounts.add(new UUID(data[offset], data[offset + 1]));
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private long[] takeDeltas(long[] data, int offset) {
+        int from = offset + pending;
+        int to = from + types;
+        int i = from;
+        while (i < to && data[i] == 0) {
+            i++;
+        }
+        if (i == to) return null;
+        long[] pending = new long[types];
+        System.arraycopy(data, from, pending, 0, types);
+        Arrays.fill(data, from, to, 0L);
+        return pending;
+    }
+
+    /**
+     * @return The number of cached accounts.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes every account, discarding pending deltas.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Arrays.fill(segment.data, 0L);
+                segment.size = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,638 @@
+package io.github.mcengine.api.currency.cache;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import io.github.mcengine.api.currency.bus.MCEngineCurrencyApiBus;
+import io.github.mcengine.api.currency.bus.MCEngineCurrencyApiBusMessage;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiVersionedBalances;
+import io.github.mcengine.api.currency.leaderboard.MCEngineCurrencyApiTopEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiCheckpoint;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryCursor;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiInsertResult;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiRollup;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiTransaction;
+import io.github.mcengine.api.currency.lock.MCEngineCurrencyApiAccountLocks;
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiMetrics;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Write-behind balance cache placed in front of another {@link MCEngineCurrencyApiDBInterface}.
+ *
+ * <p>Balances of loaded players are served from memory. Updates to loaded players are applied
+ * in memory and accumulated as deltas, which {@link #flush()} writes to the underlying database
+ * in one batched statement. Players that are not loaded are passed straight through.</p>
+ *
+ * <p>Loaded players are kept in a {@link MCEngineCurrencyApiBalanceTable}, so the cache costs a few dozen
+ * bytes per player and no allocation per lookup even with millions of players loaded.</p>
+ *
+ * <p>On a network, an optional {@link MCEngineCurrencyApiBus} keeps the caches of all servers coherent:
+ * cached changes are broadcast as deltas, and every write that reaches the database is followed by an
+ * invalidation, on which other servers reload the player from the database plus their own pending deltas.</p>
+ *
+ * <p>Pending deltas are taken and written, and players reloaded, while holding the same
+ * {@link MCEngineCurrencyApiAccountLocks} as the balance changes of the API. Between taking a player's deltas and
+ * writing them, the stored balance does not include them yet, so no check or reload may read it then.</p>
+ */
+public class MCEngineCurrencyApiCache implements MCEngineCurrencyApiDBInterface {
+    private final Plugin plugin;
+    private final MCEngineCurrencyApiCurrencyRegistry currencies;
+    private final MCEngineCurrencyApiDBInterface db;
+    private final MCEngineCurrencyApiBalanceTable table;
+    private final MCEngineCurrencyApiBus bus;
+    private final MCEngineCurrencyApiAccountLocks locks;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    /** Players whose unload could not write their deltas; they stay cached until a retry succeeds. */
+    private final Set<String> failedUnloads = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a cache in front of the given database for a single server.
+     *
+     * @param plugin The plugin instance, used for configuration and logging.
+     * @param db     The database that loaded balances are read from and flushed to.
+     */
+    public MCEngineCurrencyApiCache(Plugin plugin, MCEngineCurrencyApiDBInterface db) {
+        this(plugin, db, null);
+    }
+
+    /**
+     * Creates a cache in front of the given database for the currencies in the plugin's configuration.
+     *
+     * @param plugin The plugin instance, used for configuration and logging.
+     * @param db     The database that loaded balances are read from and flushed to.
+     * @param bus    The bus balance changes are broadcast on, or {@code null} on a single server.
+     */
+    public MCEngineCurrencyApiCache(Plugin plugin, MCEngineCurrencyApiDBInterface db, MCEngineCurrencyApiBus bus) {
+        this(plugin, MCEngineCurrencyApiCurrencyRegistry.load(plugin), db, bus);
+    }
+
+    /**
+     * Creates a cache in front of the given database with account locks of its own.
+     *
+     * @param plugin     The plugin instance, used for configuration and logging.
+     * @param currencies The configured currencies; the database must use the same registry.
+     * @param db         The database that loaded balances are read from and flushed to.
+     * @param bus        The bus balance changes are broadcast on, or {@code null} on a single server.
+     */
+    public MCEngineCurrencyApiCache(Plugin plugin, MCEngineCurrencyApiCurrencyRegistry currencies, MCEngineCurrencyApiDBInterface db, MCEngineCurrencyApiBus bus) {
+        this(plugin, currencies, db, bus, new MCEngineCurrencyApiAccountLocks(plugin));
+    }
+
+    /**
+     * Creates a cache in front of the given database, sized by {@code cache.initial-capacity}.
+     *
+     * @param plugin     The plugin instance, used for configuration and logging.
+     * @param currencies The configured currencies; the database must use the same registry.
+     * @param db         The database that loaded balances are read from and flushed to.
+     * @param bus        The bus balance changes are broadcast on, or {@code null} on a single server.
+     *                   Messages from other servers are passed in through {@link #receive} and {@link #refresh}.
+     * @param locks      The account locks every balance change of a cached player is made under.
+     */
+    public MCEngineCurrencyApiCache(Plugin plugin, MCEngineCurrencyApiCurrencyRegistry currencies, MCEngineCurrencyApiDBInterface db, MCEngineCurrencyApiBus bus,
+                                    MCEngineCurrencyApiAccountLocks locks) {
+        this.plugin = plugin;
+        this.currencies = currencies;
+        this.db = db;
+        this.bus = bus;
+        this.locks = locks;
+        this.table = new MCEngineCurrencyApiBalanceTable(Math.max(16, plugin.getConfig().getInt("cache.initial-capacity", 1024)), currencies.size());
+    }
+
+    /**
+     * Applies a delta broadcast by another server to a cached player. Cheap enough for any thread.
+     * Invalidations need a database read and are handled by {@link #refresh(String)}.
+     *
+     * @param message The message received from the bus.
+     */
+    public void receive(MCEngineCurrencyApiBusMessage message) {
+        String playerUuid = message.playerUuid();
+        if (message.type() != MCEngineCurrencyApiBusMessage.Type.DELTA || !MCEngineCurrencyApiBalanceTable.isCanonical(playerUuid)) return;
+        // A server with a different currency list may send fewer or more ids; unknown ones are ignored
+        long[] deltas = Arrays.copyOf(message.deltas(), currencies.size());
+        table.adjustAll(MCEngineCurrencyApiBalanceTable.mostBits(playerUuid), MCEngineCurrencyApiBalanceTable.leastBits(playerUuid), deltas);
+    }
+
+    /**
+     * Reloads a cached player's balances from the database, keeping this server's pending deltas on top.
+     * Does nothing for players that are not cached.
+     *
+     * @param playerUuid The UUID of the player.
+     */
+    public void refresh(String playerUuid) {
+        if (!MCEngineCurrencyApiBalanceTable.isCanonical(playerUuid)) return;
+        long msb = MCEngineCurrencyApiBalanceTable.mostBits(playerUuid);
+        long lsb = MCEngineCurrencyApiBalanceTable.leastBits(playerUuid);
+        // Not while a flush has taken the deltas but not written them yet
+        locks.withLock(new UUID(msb, lsb), () -> {
+            if (!table.contains(msb, lsb)) return;
+            long[] stored = db.getBalances(playerUuid);
+            if (stored != null) {
+                table.reload(msb, lsb, stored);
+            }
+        });
+    }
+
+    /**
+     * Broadcasts a message when a bus is configured.
+     */
+    private void publish(MCEngineCurrencyApiBusMessage message) {
+        if (bus != null) {
+            bus.publish(message);
+        }
+    }
+
+    /**
+     * Tells other servers that the database holds new balances for the given players.
+     */
+    private void invalidate(Collection<String> playerUuids) {
+        if (bus == null) return;
+        for (String playerUuid : playerUuids) {
+            bus.publish(MCEngineCurrencyApiBusMessage.invalidate(playerUuid));
+        }
+    }
+
+    /**
+     * Loads a player's balances into the cache. Does nothing if the player has no currency record.
+     *
+     * @param playerUuid The UUID of the player.
+     */
+    public void load(String playerUuid) {
+        if (!MCEngineCurrencyApiBalanceTable.isCanonical(playerUuid)) return;
+        failedUnloads.remove(playerUuid);
+        long msb = MCEngineCurrencyApiBalanceTable.mostBits(playerUuid);
+        long lsb = MCEngineCurrencyApiBalanceTable.leastBits(playerUuid);
+        if (table.contains(msb, lsb)) return;
+        long[] balances = db.getBalances(playerUuid);
+        if (balances != null) {
+            table.putIfAbsent(msb, lsb, balances);
+        }
+    }
+
+    /**
+     * Writes a player's pending deltas and removes the player from the cache once they are written.
+     * If the write fails, the deltas are put back and the player stays cached; {@link #retryUnload(String)}
+     * tries again for every player listed by {@link #getFailedUnloads()}. Callers hold the player's account
+     * lock, so no balance change or reload of the player runs between the write and the removal.
+     *
+     * @param playerUuid The UUID of the player.
+     */
+    public void unload(String playerUuid) {
+        if (!MCEngineCurrencyApiBalanceTable.isCanonical(playerUuid)) return;
+        long msb = MCEngineCurrencyApiBalanceTable.mostBits(playerUuid);
+        long lsb = MCEngineCurrencyApiBalanceTable.leastBits(playerUuid);
+        long[] pending = table.drain(msb, lsb);
+        if (pending != null && !write(playerUuid, pending)) {
+            if (table.requeue(msb, lsb, pending)) {
+                failedUnloads.add(playerUuid);
+                plugin.getLogger().warning("Failed to write pending balance changes for player uuid: " + playerUuid
+                    + "; keeping them cached until the next flush.");
+            } else {
+                plugin.getLogger().severe("Lost pending balance changes for player uuid: " + playerUuid);
+            }
+            return;
+        }
+        failedUnloads.remove(playerUuid);
+        // Balance changes hold the account lock as well, so only a caller bypassing it can leave deltas here
+        long[] late = table.remove(msb, lsb);
+        if (late != null && !write(playerUuid, late)) {
+            plugin.getLogger().severe("Lost pending balance changes for player uuid: " + playerUuid);
+        }
+        if (pending != null || late != null) {
+            publish(MCEngineCurrencyApiBusMessage.invalidate(playerUuid));
+        }
+    }
+
+    /**
+     * Unloads a player again if an earlier unload failed to write their deltas and they have not rejoined.
+     * Callers hold the player's account lock.
+     *
+     * @param playerUuid The UUID of the player.
+     */
+    public void retryUnload(String playerUuid) {
+        if (failedUnloads.contains(playerUuid)) {
+            unload(playerUuid);
+        }
+    }
+
+    /**
+     * @return A snapshot of the players whose unload failed and is waiting to be retried.
+     */
+    public List<String> getFailedUnloads() {
+        return new ArrayList<>(failedUnloads);
+    }
+
+    /**
+     * Writes the deltas of one player.
+     *
+     * @return {@code true} if they were written.
+     */
+    private boolean write(String playerUuid, long[] deltas) {
+        Map<String, long[]> batch = new HashMap<>();
+        batch.put(playerUuid, deltas);
+        return db.updateCurrencyValues(batch);
+    }
+
+    /**
+     * Writes the pending deltas of every loaded player, in one batch per account lock stripe that has any.
+     * Each batch is taken and written while holding its stripe, so no balance change of its players reads
+     * their stored balances before the deltas are in them.
+     * Deltas that fail to be written are kept and retried on the next flush.
+     */
+    public void flush() {
+        List<UUID> accounts = new ArrayList<>();
+        table.pendingAccounts(accounts);
+        Map<Integer, List<UUID>> stripes = new TreeMap<>();
+        for (UUID account : accounts) {
+            stripes.computeIfAbsent(locks.stripeOf(account), stripe -> new ArrayList<>()).add(account);
+        }
+        for (Map.Entry<Integer, List<UUID>> stripe : stripes.entrySet()) {
+            locks.withStripe(stripe.getKey(), () -> flush(stripe.getValue()));
+        }
+    }
+
+    /**
+     * Takes and writes the pending deltas of some players in a single batch; callers hold their locks.
+     */
+    private void flush(List<UUID> accounts) {
+        Map<String, long[]> batch = new HashMap<>();
+        for (UUID account : accounts) {
+            long[] deltas = table.drain(account.getMostSignificantBits(), account.getLeastSignificantBits());
+            if (deltas != null) {
+                batch.put(account.toString(), deltas);
+            }
+        }
+        if (batch.isEmpty()) return;
+        if (db.updateCurrencyValues(batch)) {
+            invalidate(batch.keySet());
+            return;
+        }
+
+        // Put the deltas back so they are retried with the next flush
+        for (Map.Entry<String, long[]> failed : batch.entrySet()) {
+            if (!requeue(failed.getKey(), failed.getValue())) {
+                Map<String, long[]> single = new HashMap<>();
+                single.put(failed.getKey(), failed.getValue());
+                if (db.updateCurrencyValues(single)) {
+                    invalidate(single.keySet());
+                } else {
+                    plugin.getLogger().severe("Lost pending balance changes for player uuid: " + failed.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds deltas that failed to flush back to a cached player.
+     *
+     * @return {@code false} if the player has been evicted in the meantime.
+     */
+    private boolean requeue(String playerUuid, long[] deltas) {
+        return table.requeue(MCEngineCurrencyApiBalanceTable.mostBits(playerUuid), MCEngineCurrencyApiBalanceTable.leastBits(playerUuid), deltas);
+    }
+
+    @Override
+    public void connect() {
+        db.connect();
+    }
+
+    @Override
+    public void createTable() {
+        db.createTable();
+    }
+
+    /**
+     * Flushes every pending delta and closes the underlying database connection.
+     */
+    @Override
+    public void disConnection() {
+        flush();
+        table.clear();
+        db.disConnection();
+    }
+
+    @Override
+    public long getCoin(String playerUuid, int currencyId) {
+        if (currencies.isValid(currencyId) && MCEngineCurrencyApiBalanceTable.isCanonical(playerUuid)) {
+            long balance = table.getCoin(MCEngineCurrencyApiBalanceTable.mostBits(playerUuid), MCEngineCurrencyApiBalanceTable.leastBits(playerUuid), currencyId);
+            if (balance != MCEngineCurrencyApiBalanceTable.ABSENT) {
+                hits.increment();
+                return balance;
+            }
+        }
+        misses.increment();
+        return db.getCoin(playerUuid, currencyId);
+    }
+
+    @Override
+    public long[] getBalances(String playerUuid) {
+        long[] balances = cached(playerUuid);
+        if (balances != null) {
+            hits.increment();
+            return balances;
+        }
+        misses.increment();
+        return db.getBalances(playerUuid);
+    }
+
+    /**
+     * @return A copy of a cached player's balances, or {@code null} if the player is not cached.
+     */
+    private long[] cached(String playerUuid) {
+        if (!MCEngineCurrencyApiBalanceTable.isCanonical(playerUuid)) return null;
+        long[] balances = new long[currencies.size()];
+        return table.getBalances(MCEngineCurrencyApiBalanceTable.mostBits(playerUuid), MCEngineCurrencyApiBalanceTable.leastBits(playerUuid), balances)
+            ? balances
+            : null;
+    }
+
+    /**
+     * Delegates to the underlying database, which only sees flushed balances.
+     */
+    @Override
+    public List<MCEngineCurrencyApiTopEntry> getTop(int currencyId, int offset, int limit) {
+        return db.getTop(currencyId, offset, limit);
+    }
+
+    /**
+     * Serves cached players from memory and looks up the remaining players in one bulk query.
+     */
+    @Override
+    public Map<String, long[]> getBalances(Collection<String> playerUuids) {
+        Map<String, long[]> balances = new HashMap<>();
+        List<String> uncached = new ArrayList<>();
+        for (String playerUuid : playerUuids) {
+            long[] cached = cached(playerUuid);
+            if (cached == null) {
+                uncached.add(playerUuid);
+            } else {
+                balances.put(playerUuid, cached);
+            }
+        }
+        hits.add(balances.size());
+        misses.add(uncached.size());
+        if (!uncached.isEmpty()) {
+            balances.putAll(db.getBalances(uncached));
+        }
+        return balances;
+    }
+
+    @Override
+    public Connection getConnection() {
+        return db.getConnection();
+    }
+
+    @Override
+    public void insertCurrency(String playerUuid, long[] balances) {
+        db.insertCurrency(playerUuid, balances);
+    }
+
+    /**
+     * Serves a cached player from memory; otherwise creates or loads the record and caches it.
+     */
+    @Override
+    public long[] loadOrCreateBalances(String playerUuid) {
+        failedUnloads.remove(playerUuid);
+        long[] cached = cached(playerUuid);
+        if (cached != null) return cached;
+        long[] balances = db.loadOrCreateBalances(playerUuid);
+        if (balances == null || !MCEngineCurrencyApiBalanceTable.isCanonical(playerUuid)) return balances;
+
+        long msb = MCEngineCurrencyApiBalanceTable.mostBits(playerUuid);
+        long lsb = MCEngineCurrencyApiBalanceTable.leastBits(playerUuid);
+        // Another thread may have cached the player meanwhile; its entry may already hold newer changes
+        if (!table.putIfAbsent(msb, lsb, balances)) {
+            table.getBalances(msb, lsb, balances);
+        }
+        return balances;
+    }
+
+    @Override
+    public void insertTransaction(String playerUuidSender, String playerUuidReceiver, String currencyType, String transactionType, long amount, String notes) {
+        db.insertTransaction(playerUuidSender, playerUuidReceiver, currencyType, transactionType, amount, notes);
+    }
+
+    @Override
+    public List<MCEngineCurrencyApiHistoryEntry> getTransactions(String playerUuid, MCEngineCurrencyApiHistoryCursor before, int limit) {
+        return db.getTransactions(playerUuid, before, limit);
+    }
+
+    @Override
+    public List<MCEngineCurrencyApiRollup> getRollups(String playerUuid, long fromDay, long toDay) {
+        return db.getRollups(playerUuid, fromDay, toDay);
+    }
+
+    @Override
+    public void maintainLedger() {
+        db.maintainLedger();
+    }
+
+    @Override
+    public MCEngineCurrencyApiCheckpoint getCheckpoint(long epochSeconds) {
+        return db.getCheckpoint(epochSeconds);
+    }
+
+    @Override
+    public Map<String, long[]> getCheckpointBalances(long checkpointId) {
+        return db.getCheckpointBalances(checkpointId);
+    }
+
+    @Override
+    public long[] getCheckpointBalances(long checkpointId, String playerUuid) {
+        return db.getCheckpointBalances(checkpointId, playerUuid);
+    }
+
+    @Override
+    public MCEngineCurrencyApiCheckpoint getLedgerHead(long epochSeconds) {
+        return db.getLedgerHead(epochSeconds);
+    }
+
+    @Override
+    public Map<String, long[]> sumLedger(long afterId, long lastId) {
+        return db.sumLedger(afterId, lastId);
+    }
+
+    @Override
+    public long[] sumLedger(String playerUuid, MCEngineCurrencyApiCheckpoint after, long toEpochSeconds) {
+        return db.sumLedger(playerUuid, after, toEpochSeconds);
+    }
+
+    @Override
+    public MCEngineCurrencyApiCheckpoint saveCheckpoint(MCEngineCurrencyApiCheckpoint position, Map<String, long[]> balances) {
+        return db.saveCheckpoint(position, balances);
+    }
+
+    @Override
+    public void deleteCheckpoints(long beforeEpochSeconds, long keepId) {
+        db.deleteCheckpoints(beforeEpochSeconds, keepId);
+    }
+
+    /**
+     * Flushes both players' pending deltas so the database sees their current balances,
+     * performs the transfer in the database and mirrors a committed transfer in memory.
+     */
+    @Override
+    public boolean transfer(String playerUuidSender, String playerUuidReceiver, int currencyId, long amount, String notes) {
+        Map<String, long[]> pending = new HashMap<>();
+        drain(playerUuidSender, pending);
+        drain(playerUuidReceiver, pending);
+        if (!pending.isEmpty() && !db.updateCurrencyValues(pending)) {
+            for (Map.Entry<String, long[]> failed : pending.entrySet()) {
+                if (!requeue(failed.getKey(), failed.getValue())) {
+                    plugin.getLogger().severe("Lost pending balance changes for player uuid: " + failed.getKey());
+                }
+            }
+            return false;
+        }
+
+        if (!db.transfer(playerUuidSender, playerUuidReceiver, currencyId, amount, notes)) {
+            return false;
+        }
+        adjust(playerUuidSender, currencyId, -amount);
+        adjust(playerUuidReceiver, currencyId, amount);
+        invalidate(List.of(playerUuidSender, playerUuidReceiver));
+        return true;
+    }
+
+    /**
+     * Moves a cached player's pending deltas into the given batch.
+     */
+    private void drain(String playerUuid, Map<String, long[]> batch) {
+        if (!MCEngineCurrencyApiBalanceTable.isCanonical(playerUuid)) return;
+        long[] deltas = table.drain(MCEngineCurrencyApiBalanceTable.mostBits(playerUuid), MCEngineCurrencyApiBalanceTable.leastBits(playerUuid));
+        if (deltas != null) {
+            batch.put(playerUuid, deltas);
+        }
+    }
+
+    /**
+     * Adjusts a cached balance for a change that has already been written to the database.
+     */
+    private void adjust(String playerUuid, int currencyId, long amount) {
+        if (!currencies.isValid(currencyId) || !MCEngineCurrencyApiBalanceTable.isCanonical(playerUuid)) return;
+        table.adjust(MCEngineCurrencyApiBalanceTable.mostBits(playerUuid), MCEngineCurrencyApiBalanceTable.leastBits(playerUuid), currencyId, amount);
+    }
+
+    @Override
+    public MCEngineCurrencyApiInsertResult insertTransactions(List<MCEngineCurrencyApiTransaction> transactions) {
+        return db.insertTransactions(transactions);
+    }
+
+    @Override
+    public boolean playerExists(String uuid) {
+        return (MCEngineCurrencyApiBalanceTable.isCanonical(uuid)
+            && table.contains(MCEngineCurrencyApiBalanceTable.mostBits(uuid), MCEngineCurrencyApiBalanceTable.leastBits(uuid)))
+            || db.playerExists(uuid);
+    }
+
+    @Override
+    public void updateCurrencyValue(String playerUuid, String operator, int currencyId, long amt) {
+        if (currencies.isValid(currencyId) && MCEngineCurrencyApiBalanceTable.isCanonical(playerUuid)) {
+            long delta = "-".equals(operator) ? -amt : amt;
+            if (table.add(MCEngineCurrencyApiBalanceTable.mostBits(playerUuid), MCEngineCurrencyApiBalanceTable.leastBits(playerUuid), currencyId, delta)) {
+                if (bus != null) {
+                    long[] deltas = new long[currencies.size()];
+                    deltas[currencyId] = delta;
+                    bus.publish(MCEngineCurrencyApiBusMessage.delta(playerUuid, deltas));
+                }
+                return;
+            }
+        }
+        db.updateCurrencyValue(playerUuid, operator, currencyId, amt);
+        publish(MCEngineCurrencyApiBusMessage.invalidate(playerUuid));
+    }
+
+    @Override
+    public boolean updateCurrencyValues(Map<String, long[]> deltas) {
+        Map<String, long[]> uncached = new HashMap<>();
+        for (Map.Entry<String, long[]> update : deltas.entrySet()) {
+            String playerUuid = update.getKey();
+            if (!MCEngineCurrencyApiBalanceTable.isCanonical(playerUuid)
+                || !table.addAll(MCEngineCurrencyApiBalanceTable.mostBits(playerUuid), MCEngineCurrencyApiBalanceTable.leastBits(playerUuid), update.getValue())) {
+                uncached.put(playerUuid, update.getValue());
+            } else {
+                publish(MCEngineCurrencyApiBusMessage.delta(playerUuid, update.getValue().clone()));
+            }
+        }
+        if (uncached.isEmpty()) return true;
+        if (!db.updateCurrencyValues(uncached)) return false;
+        invalidate(uncached.keySet());
+        return true;
+    }
+
+    /**
+     * Reads the stored balances and version. A cached player's pending deltas are not included;
+     * {@link #compareAndSetBalances} writes them first and then fails, so the caller retries with fresh values.
+     */
+    @Override
+    public MCEngineCurrencyApiVersionedBalances getVersionedBalances(String playerUuid) {
+        return db.getVersionedBalances(playerUuid);
+    }
+
+    /**
+     * Writes a cached player's pending deltas, then compares and sets the stored balances and mirrors
+     * a successful write in memory. Pending deltas bump the stored version, so the call fails whenever
+     * there were any and the caller retries from balances that include them.
+     */
+    @Override
+    public boolean compareAndSetBalances(String playerUuid, long expectedVersion, long[] balances) {
+        Map<String, long[]> pending = new HashMap<>();
+        drain(playerUuid, pending);
+        if (!pending.isEmpty()) {
+            if (db.updateCurrencyValues(pending)) {
+                invalidate(pending.keySet());
+            } else if (!requeue(playerUuid, pending.get(playerUuid))) {
+                plugin.getLogger().severe("Lost pending balance changes for player uuid: " + playerUuid);
+            }
+            return false;
+        }
+
+        if (!db.compareAndSetBalances(playerUuid, expectedVersion, balances)) return false;
+        if (MCEngineCurrencyApiBalanceTable.isCanonical(playerUuid)) {
+            table.reload(MCEngineCurrencyApiBalanceTable.mostBits(playerUuid), MCEngineCurrencyApiBalanceTable.leastBits(playerUuid), balances);
+        }
+        publish(MCEngineCurrencyApiBusMessage.invalidate(playerUuid));
+        return true;
+    }
+
+    /**
+     * Registers the cache's hit, miss and size values and the bus's, then the underlying engine's.
+     */
+    @Override
+    public void registerMetrics(MCEngineCurrencyApiMetrics metrics) {
+        metrics.counter("cache.hits", this::getHits);
+        metrics.counter("cache.misses", this::getMisses);
+        metrics.gauge("cache.size", this::getSize);
+        if (bus != null) {
+            bus.registerMetrics(metrics);
+        }
+        db.registerMetrics(metrics);
+    }
+
+    /** @return The number of balance reads served from memory. */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** @return The number of balance reads passed to the database because the player was not loaded. */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** @return The number of loaded players. */
+    public long getSize() {
+        return table.size();
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * This package contains the in-memory balance cache placed in front of the database.
+ */
+package io.github.mcengine.api.currency.cache;
@@ -1,9 +1,28 @@
 package io.github.mcengine.api.currency.database;
 
 import java.sql.Connection;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import io.github.mcengine.api.currency.leaderboard.MCEngineCurrencyApiTopEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiCheckpoint;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryCursor;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiInsertResult;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiRollup;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiTransaction;
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiMetrics;
 
 /**
  * Interface for handling database operations related to the MCEngine Currency system.
+ * All amounts and balances are whole numbers of minor units (hundredths), see
+ * {@link io.github.mcengine.api.currency.money.MCEngineCurrencyApiMoney}.
+ *
+ * <p>Currencies are identified by their id in the
+ * {@link io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry}, and balance arrays
+ * are indexed by that id and sized by {@link io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry#size()}.
+ * Names are resolved once by the caller, so implementations only need to bounds-check an id.</p>
  */
 public interface MCEngineCurrencyApiDBInterface {
 
@@ -23,31 +42,66 @@ public interface MCEngineCurrencyApiDBInterface {
     void disConnection();
 
     /**
-     * Retrieves the amount of a specific coin type for a given player.
+     * Retrieves the balance of one currency for a given player.
      *
      * @param playerUuid The UUID of the player.
-     * @param coinType   The type of coin (e.g., "Copper", "Silver", "Gold").
-     * @return The balance of the specified coin type.
+     * @param currencyId The id of the currency.
+     * @return The balance of the currency in minor units.
      */
-    double getCoin(String playerUuid, String coinType);
+    long getCoin(String playerUuid, int currencyId);
+
+    /**
+     * Retrieves every currency balance of a player in a single query.
+     *
+     * @param playerUuid The UUID of the player.
+     * @return The balances indexed by currency id, or {@code null} if the player has no currency record or an error occurs.
+     */
+    long[] getBalances(String playerUuid);
+
+    /**
+     * Retrieves every currency balance of many players with one query per
+     * {@link io.github.mcengine.api.currency.database.MCEngineCurrencyApiSQL#BALANCES_CHUNK_SIZE} players.
+     *
+     * @param playerUuids The UUIDs of the players.
+     * @return The balances of every player that has a currency record, keyed by UUID; players without a record
+     *         are absent. Returns the balances found so far if an error occurs.
+     */
+    Map<String, long[]> getBalances(Collection<String> playerUuids);
+
+    /**
+     * Retrieves the players with the highest balance of one currency, using an index on the balances.
+     *
+     * @param currencyId The id of the currency to rank by.
+     * @param offset     The number of leading entries to skip.
+     * @param limit      The maximum number of entries to return.
+     * @return The entries in descending balance order; empty if the currency id is invalid or an error occurs.
+     */
+    List<MCEngineCurrencyApiTopEntry> getTop(int currencyId, int offset, int limit);
 
     /**
      * Retrieves the active database connection.
+     * Implementations backed by a connection pool return a borrowed connection that the caller must close.
      *
      * @return The active {@link Connection} object.
      */
     Connection getConnection();
 
     /**
-     * Inserts a new currency record for a player.
+     * Inserts a new currency record for a player. Does nothing if the player already has one.
+     *
+     * @param playerUuid The UUID of the player.
+     * @param balances   The starting balances in minor units, indexed by currency id.
+     */
+    void insertCurrency(String playerUuid, long[] balances);
+
+    /**
+     * Creates a player's currency record with zero balances if it does not exist yet and returns
+     * the player's balances, in as few round trips as the backend allows.
      *
      * @param playerUuid The UUID of the player.
-     * @param coin       The total coin balance.
-     * @param copper     The amount of copper coins.
-     * @param silver     The amount of silver coins.
-     * @param gold       The amount of gold coins.
+     * @return The balances indexed by currency id, or {@code null} if an error occurs.
      */
-    void insertCurrency(String playerUuid, double coin, double copper, double silver, double gold);
+    long[] loadOrCreateBalances(String playerUuid);
 
     /**
      * Records a currency transaction between two players.
@@ -56,10 +110,152 @@ public interface MCEngineCurrencyApiDBInterface {
      * @param playerUuidReceiver The UUID of the receiver.
      * @param currencyType       The type of currency being transacted.
      * @param transactionType    The type of transaction (e.g., "SEND", "RECEIVE").
-     * @param amount             The amount of currency involved in the transaction.
+     * @param amount             The amount of currency involved in the transaction, in minor units.
      * @param notes              Additional notes about the transaction.
      */
-    void insertTransaction(String playerUuidSender, String playerUuidReceiver, String currencyType, String transactionType, double amount, String notes);
+    void insertTransaction(String playerUuidSender, String playerUuidReceiver, String currencyType, String transactionType, long amount, String notes);
+
+    /**
+     * Records many currency transactions as one batched insert in a single commit.
+     *
+     * @param transactions The ledger entries to insert.
+     * @return Whether every entry was written, or why the batch was rolled back.
+     */
+    MCEngineCurrencyApiInsertResult insertTransactions(List<MCEngineCurrencyApiTransaction> transactions);
+
+    /**
+     * Reads the ledger entries a player sent or received, newest first, continuing after a cursor with an
+     * index seek rather than an offset. Engines without an index on the ledger return an empty list.
+     *
+     * @param playerUuid The UUID of the player.
+     * @param before     The cursor to continue after, or {@code null} for the newest entries.
+     * @param limit      The maximum number of entries to return.
+     * @return The entries; empty if there are none or an error occurs.
+     */
+    default List<MCEngineCurrencyApiHistoryEntry> getTransactions(String playerUuid, MCEngineCurrencyApiHistoryCursor before, int limit) {
+        return List.of();
+    }
+
+    /**
+     * Reads a player's daily ledger totals from the rollup table instead of the raw ledger.
+     * Engines without rollups return an empty list.
+     *
+     * @param playerUuid The UUID of the player.
+     * @param fromDay    The first UTC day, in days since the epoch.
+     * @param toDay      The last UTC day, inclusive.
+     * @return The rollups by day and currency; empty if there are none or an error occurs.
+     */
+    default List<MCEngineCurrencyApiRollup> getRollups(String playerUuid, long fromDay, long toDay) {
+        return List.of();
+    }
+
+    /**
+     * Runs the periodic ledger housekeeping: rolls up the days that are over, splits off the months that are
+     * over when the ledger is partitioned and archives and drops the months past {@code ledger.retention.months}
+     * that end before the newest checkpoint. Every step is repeatable, so a run interrupted by a shutdown continues on the next one. Engines without
+     * ledger tables do nothing.
+     */
+    default void maintainLedger() {
+    }
+
+    /**
+     * Finds the newest saved checkpoint taken at or before a time. Engines without checkpoints return {@code null}.
+     *
+     * @param epochSeconds The time in Unix seconds; {@link Long#MAX_VALUE} for the newest checkpoint.
+     * @return The checkpoint, or {@code null} if there is none or an error occurs.
+     */
+    default MCEngineCurrencyApiCheckpoint getCheckpoint(long epochSeconds) {
+        return null;
+    }
+
+    /**
+     * Reads every balance stored in a checkpoint.
+     *
+     * @param checkpointId The id of the checkpoint.
+     * @return The balances keyed by player UUID and indexed by currency id, or {@code null} if an error occurs.
+     */
+    default Map<String, long[]> getCheckpointBalances(long checkpointId) {
+        return null;
+    }
+
+    /**
+     * Reads one player's balances stored in a checkpoint.
+     *
+     * @param checkpointId The id of the checkpoint.
+     * @param playerUuid   The UUID of the player.
+     * @return The balances indexed by currency id, all zero if the player had none, or {@code null} if an error occurs.
+     */
+    default long[] getCheckpointBalances(long checkpointId, String playerUuid) {
+        return null;
+    }
+
+    /**
+     * Finds the last ledger entry written at or before a time, as an unsaved checkpoint position.
+     *
+     * @param epochSeconds The time in Unix seconds; {@link Long#MAX_VALUE} for the newest entry.
+     * @return The position of the entry, or {@code null} if there is none or an error occurs.
+     */
+    default MCEngineCurrencyApiCheckpoint getLedgerHead(long epochSeconds) {
+        return null;
+    }
+
+    /**
+     * Sums the balance changes of every player recorded in a range of transaction ids. Ranges are independent,
+     * so a long ledger can be summed in chunks on several threads.
+     *
+     * @param afterId The last transaction id before the range.
+     * @param lastId  The last transaction id of the range.
+     * @return The changes keyed by player UUID and indexed by currency id, or {@code null} if an error occurs.
+     */
+    default Map<String, long[]> sumLedger(long afterId, long lastId) {
+        return null;
+    }
+
+    /**
+     * Sums the balance changes of one player recorded after a checkpoint, up to a time, using the history indexes.
+     *
+     * @param playerUuid     The UUID of the player.
+     * @param after          The checkpoint whose entries are already counted.
+     * @param toEpochSeconds The end of the range in Unix seconds, inclusive.
+     * @return The changes indexed by currency id, or {@code null} if an error occurs.
+     */
+    default long[] sumLedger(String playerUuid, MCEngineCurrencyApiCheckpoint after, long toEpochSeconds) {
+        return null;
+    }
+
+    /**
+     * Saves a checkpoint position with the balances of every player at that position, in one transaction.
+     *
+     * @param position The position the balances belong to.
+     * @param balances The balances keyed by player UUID and indexed by currency id; zero balances are not stored.
+     * @return The saved checkpoint, or {@code null} if it was rolled back or the engine has no checkpoints.
+     */
+    default MCEngineCurrencyApiCheckpoint saveCheckpoint(MCEngineCurrencyApiCheckpoint position, Map<String, long[]> balances) {
+        return null;
+    }
+
+    /**
+     * Deletes the checkpoints taken before a time, except one that must be kept.
+     *
+     * @param beforeEpochSeconds The time in Unix seconds.
+     * @param keepId             The id of a checkpoint to keep regardless, normally the newest.
+     */
+    default void deleteCheckpoints(long beforeEpochSeconds, long keepId) {
+    }
+
+    /**
+     * Moves currency from one player to another and records the transfer as a "pay" transaction,
+     * all inside a single database transaction. The debit only happens if the sender's balance covers it.
+     *
+     * @param playerUuidSender   The UUID of the sender.
+     * @param playerUuidReceiver The UUID of the receiver.
+     * @param currencyId         The id of the currency being transferred.
+     * @param amount             The amount to transfer, in minor units.
+     * @param notes              Additional notes about the transfer.
+     * @return {@code true} if the transfer was committed, {@code false} if the sender could not cover it,
+     *         either player has no currency record, or an error occurred.
+     */
+    boolean transfer(String playerUuidSender, String playerUuidReceiver, int currencyId, long amount, String notes);
 
     /**
      * Checks if a player exists in the database.
@@ -74,8 +270,67 @@ public interface MCEngineCurrencyApiDBInterface {
      *
      * @param playerUuid The UUID of the player.
      * @param operator   The arithmetic operator (e.g., "+", "-").
-     * @param coinType   The type of coin being updated.
-     * @param amt        The amount to be updated.
+     * @param currencyId The id of the currency being updated.
+     * @param amt        The amount to be updated, in minor units.
+     */
+    void updateCurrencyValue(String playerUuid, String operator, int currencyId, long amt);
+
+    /**
+     * Applies balance deltas for many players as one batched statement in a single commit.
+     *
+     * @param deltas The deltas to add, keyed by player UUID and indexed by currency id.
+     * @return {@code true} if every delta was written, {@code false} if the batch was rolled back.
+     */
+    boolean updateCurrencyValues(Map<String, long[]> deltas);
+
+    /**
+     * Reads a player's balances together with the version of their record.
+     *
+     * @param playerUuid The UUID of the player.
+     * @return The balances and version, or {@code null} if the player has no record or an error occurs.
+     */
+    MCEngineCurrencyApiVersionedBalances getVersionedBalances(String playerUuid);
+
+    /**
+     * Replaces a player's balances only if their record still has the expected version,
+     * without taking any lock beyond the single-row update.
+     *
+     * @param playerUuid      The UUID of the player.
+     * @param expectedVersion The version read with {@link #getVersionedBalances(String)}.
+     * @param balances        The new balances, indexed by currency id.
+     * @return {@code true} if the balances were replaced, {@code false} if the record changed in the meantime,
+     *         does not exist, or an error occurs.
+     */
+    boolean compareAndSetBalances(String playerUuid, long expectedVersion, long[] balances);
+
+    /**
+     * Applies a change to a player's balances optimistically: reads the versioned balances, computes the new
+     * balances and writes them with {@link #compareAndSetBalances}, retrying on a concurrent change.
+     *
+     * @param playerUuid  The UUID of the player.
+     * @param change      Computes the new balances from a copy of the current ones, or returns {@code null}
+     *                    to reject the change (e.g. for insufficient funds). May run more than once.
+     * @param maxAttempts The maximum number of read-and-write attempts.
+     * @return {@code true} if the change was written; {@code false} if it was rejected, the player has no record,
+     *         or every attempt lost to a concurrent change.
+     */
+    default boolean updateBalances(String playerUuid, UnaryOperator<long[]> change, int maxAttempts) {
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            MCEngineCurrencyApiVersionedBalances current = getVersionedBalances(playerUuid);
+            if (current == null) return false;
+            long[] next = change.apply(current.balances().clone());
+            if (next == null) return false;
+            if (compareAndSetBalances(playerUuid, current.version(), next)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Registers engine-specific gauges and counters, such as connection pool usage or write queue depth.
+     * Wrapping implementations register their own values and forward to the wrapped engine.
+     *
+     * @param metrics The registry to add to.
      */
-    void updateCurrencyValue(String playerUuid, String operator, String coinType, double amt);
+    default void registerMetrics(MCEngineCurrencyApiMetrics metrics) {
+    }
 }
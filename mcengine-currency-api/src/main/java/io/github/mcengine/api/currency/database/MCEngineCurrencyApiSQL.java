@@ -0,0 +1,664 @@
+package io.github.mcengine.api.currency.database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import io.github.mcengine.api.currency.enums.MCEngineCurrencyApiTransactionType;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiCheckpoint;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryCursor;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiInsertResult;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiRollup;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiTransaction;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
+
+/**
+ * The fixed set of SQL statements shared by the SQL backends.
+ *
+ * <p>Balances live in {@code currency_balance}, one row per player and currency id, while {@code currency}
+ * holds one row per account with its version. The currency id is a bound parameter, so the statement texts
+ * never depend on which currencies are configured, no SQL is assembled from caller input and every
+ * statement is stable enough to be cached by the driver or the backend.</p>
+ *
+ * <p>Statements whose syntax differs between databases, such as upserts, are defined by each backend.</p>
+ */
+public final class MCEngineCurrencyApiSQL {
+    /** Reads one balance of a player; no row means a zero balance. */
+    public static final String SELECT_COIN = "SELECT amount FROM currency_balance WHERE player_uuid = ? AND currency_id = ?";
+
+    /** Conditional debit used by transfers; only matches when the balance covers the amount. */
+    public static final String DEBIT_COIN = "UPDATE currency_balance SET amount = amount - ? WHERE player_uuid = ? AND currency_id = ? AND amount >= ?";
+
+    /** Top-N query for one currency, walking the {@code (currency_id, amount)} index; bound with {@code LIMIT ? OFFSET ?}. */
+    public static final String SELECT_TOP = "SELECT player_uuid, amount FROM currency_balance WHERE currency_id = ? ORDER BY amount DESC LIMIT ? OFFSET ?";
+
+    /**
+     * Reads the version and every balance of a player, one row per stored currency.
+     * The outer join yields a single row with a {@code NULL} currency id for an account without balances,
+     * and no row at all for a player without an account. Read it with {@link #readBalances(ResultSet, int)}.
+     */
+    public static final String SELECT_BALANCES = "SELECT c.version, b.currency_id, b.amount FROM currency c "
+        + "LEFT JOIN currency_balance b ON b.player_uuid = c.player_uuid WHERE c.player_uuid = ?";
+
+    /** Number of players looked up per statement by {@link #SELECT_BALANCES_IN}. */
+    public static final int BALANCES_CHUNK_SIZE = 100;
+
+    /**
+     * Reads the UUID and every balance of up to {@link #BALANCES_CHUNK_SIZE} players, one row per stored currency.
+     * Bind it with {@link #bindUuidChunk(PreparedStatement, List, int)} so the statement text never changes,
+     * and read it with {@link #readBalances(ResultSet, int, Map)}.
+     */
+    public static final String SELECT_BALANCES_IN = "SELECT c.player_uuid, b.currency_id, b.amount FROM currency c "
+        + "LEFT JOIN currency_balance b ON b.player_uuid = c.player_uuid WHERE c.player_uuid IN ("
+        + String.join(", ", Collections.nCopies(BALANCES_CHUNK_SIZE, "?")) + ")";
+
+    /**
+     * Increments the version of an account. Runs in the same transaction as every statement that changes
+     * one of its balances; an update count of zero means the account does not exist.
+     */
+    public static final String BUMP_VERSION = "UPDATE currency SET version = version + 1 WHERE player_uuid = ?";
+
+    /**
+     * Increments the version of an account only if it still has the expected version. Every balance change
+     * bumps the version, so any concurrent change makes it miss.
+     */
+    public static final String COMPARE_AND_BUMP_VERSION = "UPDATE currency SET version = version + 1 WHERE player_uuid = ? AND version = ?";
+
+
+    /** Every transaction type name as a SQL list, for the ledger's type constraint. */
+    public static final String TRANSACTION_TYPES = transactionTypes(type -> true);
+
+    /** Columns read by the history query, in the order {@link #readHistory(ResultSet)} expects. */
+    private static final String HISTORY_COLUMNS = "transaction_id, timestamp, player_uuid_sender, player_uuid_receiver, "
+        + "currency_type, transaction_type, amount, notes";
+
+    /** Checks whether a player has a currency record. */
+    public static final String PLAYER_EXISTS = "SELECT COUNT(*) FROM currency WHERE player_uuid = ?";
+
+    /**
+     * Reads the daily rollups of a player between two UTC days, inclusive, walking the primary key;
+     * bound with the UUID and both days in days since the epoch, and read with {@link #readRollups(ResultSet)}.
+     */
+    public static final String SELECT_ROLLUPS = "SELECT day, currency_type, sent_count, sent_amount, received_count, received_amount "
+        + "FROM currency_rollup_daily WHERE player_uuid = ? AND day >= ? AND day <= ? ORDER BY day, currency_type";
+
+    /**
+     * Start of the statements adding to the daily rollups; each backend completes it with its own values or
+     * query and upsert clause.
+     */
+    public static final String INSERT_ROLLUPS = "INSERT INTO currency_rollup_daily "
+        + "(player_uuid, day, currency_type, sent_count, sent_amount, received_count, received_amount) ";
+
+    /** Reads the first UTC day that has not been rolled up yet; no row means rollups have never run. */
+    public static final String SELECT_ROLLUP_DAY = "SELECT value FROM currency_ledger_state WHERE name = 'rollup_day'";
+
+    /**
+     * Reads the newest checkpoint taken at or before a bound time in Unix seconds, with
+     * {@link #readCheckpoint(ResultSet)}.
+     */
+    public static final String SELECT_CHECKPOINT = "SELECT checkpoint_id, transaction_id, epoch_seconds FROM currency_checkpoint "
+        + "WHERE epoch_seconds <= ? ORDER BY epoch_seconds DESC, checkpoint_id DESC LIMIT 1";
+
+    /**
+     * Reads every balance of a checkpoint, with {@link #readBalances(ResultSet, int, Map)}.
+     */
+    public static final String SELECT_CHECKPOINT_BALANCES = "SELECT player_uuid, currency_id, amount FROM currency_checkpoint_balance "
+        + "WHERE checkpoint_id = ?";
+
+    /**
+     * Reads the balances of one player in a checkpoint, walking the primary key, with {@link #readBalances(ResultSet, int, Map)}.
+     */
+    public static final String SELECT_CHECKPOINT_BALANCE = SELECT_CHECKPOINT_BALANCES + " AND player_uuid = ?";
+
+    /** Records a checkpoint, bound with the last transaction id it covers and its time in Unix seconds. */
+    public static final String INSERT_CHECKPOINT = "INSERT INTO currency_checkpoint (transaction_id, epoch_seconds) VALUES (?, ?)";
+
+    /** Stores one balance of a checkpoint. */
+    public static final String INSERT_CHECKPOINT_BALANCE = "INSERT INTO currency_checkpoint_balance "
+        + "(checkpoint_id, player_uuid, currency_id, amount) VALUES (?, ?, ?, ?)";
+
+    /** Copies every stored balance into a checkpoint, bound with its id; used for the first checkpoint of a database. */
+    public static final String SNAPSHOT_BALANCES = "INSERT INTO currency_checkpoint_balance (checkpoint_id, player_uuid, currency_id, amount) "
+        + "SELECT ?, player_uuid, currency_id, amount FROM currency_balance WHERE amount <> 0";
+
+    /** Checks whether any checkpoint exists. */
+    public static final String HAS_CHECKPOINT = "SELECT 1 FROM currency_checkpoint LIMIT 1";
+
+    /**
+     * Delete the checkpoints taken before a bound time in Unix seconds, except one bound checkpoint id; the
+     * balances first, then the checkpoints. Both are bound with the same two parameters.
+     */
+    public static final String DELETE_CHECKPOINT_BALANCES = "DELETE FROM currency_checkpoint_balance WHERE checkpoint_id IN "
+        + "(SELECT checkpoint_id FROM currency_checkpoint WHERE epoch_seconds < ? AND checkpoint_id <> ?)";
+    public static final String DELETE_CHECKPOINTS = "DELETE FROM currency_checkpoint WHERE epoch_seconds < ? AND checkpoint_id <> ?";
+
+    /** SQLite's primary result code for a violated constraint. */
+    private static final int SQLITE_CONSTRAINT = 19;
+
+    /** SQLite's primary result codes for a value that is too big or of the wrong type. */
+    private static final int SQLITE_TOOBIG = 18;
+    private static final int SQLITE_MISMATCH = 20;
+
+    private MCEngineCurrencyApiSQL() {}
+
+    /**
+     * Classifies a failed insert. Constraint violations and values that do not fit their column, reported as
+     * {@link SQLIntegrityConstraintViolationException}, {@link SQLDataException}, SQL state class {@code 22} or
+     * {@code 23}, or SQLite's constraint, too-big and mismatch result codes, fail again on every retry; any other
+     * error, such as a lost connection or a lock timeout, may pass. Causes and chained exceptions are checked
+     * too, since drivers wrap the real error of a batch in a {@link java.sql.BatchUpdateException}.
+     *
+     * @param e      the error the insert failed with
+     * @param sqlite {@code true} if the error comes from the SQLite driver, whose vendor codes are result codes
+     * @return {@link MCEngineCurrencyApiInsertResult#REJECTED} or {@link MCEngineCurrencyApiInsertResult#FAILED}
+     */
+    public static MCEngineCurrencyApiInsertResult classify(SQLException e, boolean sqlite) {
+        for (Throwable cause = e; cause != null; cause = nextCause(cause)) {
+            if (cause instanceof SQLIntegrityConstraintViolationException || cause instanceof SQLDataException) {
+                return MCEngineCurrencyApiInsertResult.REJECTED;
+            }
+            if (cause instanceof SQLException sql) {
+                String state = sql.getSQLState();
+                if (state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                    return MCEngineCurrencyApiInsertResult.REJECTED;
+                }
+                int code = sql.getErrorCode() & 0xff;
+                if (sqlite && (code == SQLITE_CONSTRAINT || code == SQLITE_TOOBIG || code == SQLITE_MISMATCH)) {
+                    return MCEngineCurrencyApiInsertResult.REJECTED;
+                }
+            }
+        }
+        return MCEngineCurrencyApiInsertResult.FAILED;
+    }
+
+    /**
+     * Steps from an error to its cause, or to the next exception of a chain of SQL errors.
+     */
+    private static Throwable nextCause(Throwable e) {
+        if (e.getCause() != null && e.getCause() != e) return e.getCause();
+        return e instanceof SQLException sql ? sql.getNextException() : null;
+    }
+
+    /**
+     * Lists the names of the matching transaction types as quoted SQL literals. The names are constants,
+     * so the list can be part of a statement text.
+     */
+    private static String transactionTypes(Predicate<MCEngineCurrencyApiTransactionType> filter) {
+        List<String> names = new ArrayList<>();
+        for (MCEngineCurrencyApiTransactionType type : MCEngineCurrencyApiTransactionType.values()) {
+            if (filter.test(type)) names.add("'" + type.getName() + "'");
+        }
+        return String.join(", ", names);
+    }
+
+    /**
+     * Builds the history query of one player: the newest ledger entries they sent or received, optionally
+     * starting after a cursor. Each side is a backwards range scan of its {@code (player, timestamp)} index,
+     * whose implicit trailing primary key orders ties by transaction id, and is cut off by its own
+     * {@code LIMIT}; only the two short lists are merged. A page therefore costs the same at any depth of a
+     * ledger of any size, unlike {@code OFFSET}, which reads and discards every skipped row.
+     *
+     * <p>Bind it with {@link #bindHistory(PreparedStatement, String, MCEngineCurrencyApiHistoryCursor, int)}
+     * and read it with {@link #readHistory(ResultSet)}.</p>
+     *
+     * @param epochSeconds     the backend's expression converting the {@code timestamp} column to Unix seconds
+     * @param fromEpochSeconds the backend's expression converting a bound Unix seconds parameter ({@code ?})
+     *                         to a value comparable with the {@code timestamp} column
+     * @param seek             whether the query continues after a cursor
+     * @return the statement text
+     */
+    public static String selectHistory(String epochSeconds, String fromEpochSeconds, boolean seek) {
+        return selectHistory("currency_transaction", epochSeconds, fromEpochSeconds, seek);
+    }
+
+    /**
+     * Builds the history query of {@link #selectHistory(String, String, boolean)} for another table with the
+     * ledger's columns and indexes, such as one month of a partitioned ledger.
+     *
+     * @param table            the ledger table to read
+     * @param epochSeconds     the backend's expression converting the {@code timestamp} column to Unix seconds
+     * @param fromEpochSeconds the backend's expression converting a bound Unix seconds parameter
+     * @param seek             whether the query continues after a cursor
+     * @return the statement text
+     */
+    public static String selectHistory(String table, String epochSeconds, String fromEpochSeconds, boolean seek) {
+        // The redundant upper bound turns the seek into an index range; the OR alone would be a filter
+        String after = seek
+            ? " AND timestamp <= " + fromEpochSeconds + " AND (timestamp < " + fromEpochSeconds
+                + " OR (timestamp = " + fromEpochSeconds + " AND transaction_id < ?))"
+            : "";
+        String order = " ORDER BY timestamp DESC, transaction_id DESC LIMIT ?";
+        return "SELECT " + HISTORY_COLUMNS.replace("timestamp,", epochSeconds + ",") + " FROM ("
+            + "SELECT * FROM (SELECT " + HISTORY_COLUMNS + " FROM " + table + " WHERE player_uuid_sender = ?" + after + order + ") s"
+            + " UNION ALL "
+            + "SELECT * FROM (SELECT " + HISTORY_COLUMNS + " FROM " + table + " WHERE player_uuid_receiver = ?"
+            + " AND player_uuid_sender <> ?" + after + order + ") r"
+            + ") h" + order;
+    }
+
+    /**
+     * Builds the statement appending a ledger entry with the time it was made rather than the time it is
+     * inserted, so entries written late, e.g. recovered from a spill file, keep their place in the ledger's
+     * months, rollups and point-in-time balances. Bound by {@link #bindTransaction(PreparedStatement, MCEngineCurrencyApiTransaction)}.
+     *
+     * @param fromEpochSeconds the backend's expression converting a bound Unix seconds parameter
+     * @return the statement text
+     */
+    public static String insertTransaction(String fromEpochSeconds) {
+        return "INSERT INTO currency_transaction (player_uuid_sender, player_uuid_receiver, currency_type, "
+            + "transaction_type, amount, notes, timestamp) VALUES (?, ?, ?, ?, ?, ?, " + fromEpochSeconds + ")";
+    }
+
+    /**
+     * Builds the archive query of a ledger table or partition: its entries after a transaction id, in id order,
+     * bound with that id and a limit. The columns are those {@link #readHistory(ResultSet)} and
+     * {@link io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiLedgerArchive#append(ResultSet)} expect.
+     *
+     * @param from         the table to read, optionally with the backend's partition selection
+     * @param epochSeconds the backend's expression converting the {@code timestamp} column to Unix seconds
+     * @return the statement text
+     */
+    public static String selectArchive(String from, String epochSeconds) {
+        return "SELECT " + HISTORY_COLUMNS.replace("timestamp,", epochSeconds + ",") + " FROM " + from
+            + " WHERE transaction_id > ? ORDER BY transaction_id LIMIT ?";
+    }
+
+    /**
+     * Builds the daily totals of one side of a ledger table: per player, UTC day and currency, the number and
+     * total amount of the entries the player sent, or received, in a bound range of Unix seconds. The columns
+     * match {@link #INSERT_ROLLUPS}, with zeros for the other side, so a backend can feed them to it directly
+     * or read them and upsert them in batches. Entries that only credit their player, such as an add, do not
+     * count as sent, and entries that only debit them, such as a cash withdrawal, do not count as received.
+     *
+     * @param table            the ledger table to read, optionally with the backend's partition selection
+     * @param sent             {@code true} for the sender side, {@code false} for the receiver side
+     * @param epochDay         the backend's expression converting the {@code timestamp} column to UTC days since the epoch
+     * @param fromEpochSeconds the backend's expression converting a bound Unix seconds parameter
+     * @return the statement text, bound with the start and the exclusive end of the range
+     */
+    public static String aggregateRollups(String table, boolean sent, String epochDay, String fromEpochSeconds) {
+        String player = sent ? "player_uuid_sender" : "player_uuid_receiver";
+        String totals = sent ? "COUNT(*), SUM(amount), 0, 0" : "0, 0, COUNT(*), SUM(amount)";
+        String types = sent
+            ? transactionTypes(type -> type.debitsSender() || !type.creditsReceiver())
+            : transactionTypes(type -> type.creditsReceiver() || !type.debitsSender());
+        return "SELECT " + player + ", " + epochDay + " AS rollup_day, currency_type, " + totals + " FROM " + table
+            + " WHERE timestamp >= " + fromEpochSeconds + " AND timestamp < " + fromEpochSeconds
+            + " AND transaction_type IN (" + types + ")"
+            + " GROUP BY " + player + ", rollup_day, currency_type";
+    }
+
+    /**
+     * Builds the balance changes of every player recorded in a range of transaction ids of one ledger table:
+     * per player and currency, the amounts credited minus the amounts debited, by the rules of
+     * {@link MCEngineCurrencyApiTransactionType}. Both sides walk the primary key, so the ledger can be summed
+     * in independent chunks. Bound with the exclusive first and the inclusive last id, once per side, and read
+     * with {@link #readLedgerSums(ResultSet, MCEngineCurrencyApiCurrencyRegistry, Map)}.
+     *
+     * @param table the ledger table to read
+     * @return the statement text
+     */
+    public static String sumLedger(String table) {
+        String range = "transaction_id > ? AND transaction_id <= ?";
+        return sumLedger(table, range, range);
+    }
+
+    /**
+     * Builds the balance changes of one player recorded in a range of time of one ledger table, after a
+     * transaction id. Each side is a range scan of its {@code (player, timestamp)} index. Bound, once per side,
+     * with the UUID, the exclusive start and the inclusive end of the range in Unix seconds and the id, and
+     * read with {@link #readLedgerSums(ResultSet, MCEngineCurrencyApiCurrencyRegistry, Map)}.
+     *
+     * @param table            the ledger table to read
+     * @param fromEpochSeconds the backend's expression converting a bound Unix seconds parameter
+     * @return the statement text
+     */
+    public static String sumLedger(String table, String fromEpochSeconds) {
+        String range = " AND timestamp > " + fromEpochSeconds + " AND timestamp <= " + fromEpochSeconds + " AND transaction_id > ?";
+        return sumLedger(table, "player_uuid_receiver = ?" + range, "player_uuid_sender = ?" + range);
+    }
+
+    /**
+     * Sums the entries crediting their receiver and the entries debiting their sender, each side with its own condition.
+     */
+    private static String sumLedger(String table, String receiverCondition, String senderCondition) {
+        return "SELECT player, currency_type, SUM(delta) FROM ("
+            + "SELECT player_uuid_receiver AS player, currency_type, amount AS delta FROM " + table + " WHERE " + receiverCondition
+            + " AND transaction_type IN (" + transactionTypes(MCEngineCurrencyApiTransactionType::creditsReceiver) + ")"
+            + " UNION ALL "
+            + "SELECT player_uuid_sender, currency_type, -amount FROM " + table + " WHERE " + senderCondition
+            + " AND transaction_type IN (" + transactionTypes(MCEngineCurrencyApiTransactionType::debitsSender) + ")"
+            + ") d GROUP BY player, currency_type";
+    }
+
+    /**
+     * Binds a statement built by {@link #sumLedger(String)}.
+     *
+     * @param pstmt the prepared statement
+     * @param after the last transaction id before the range
+     * @param last  the last transaction id of the range
+     * @throws SQLException if a parameter cannot be bound
+     */
+    public static void bindLedgerSum(PreparedStatement pstmt, long after, long last) throws SQLException {
+        for (int side = 0; side < 2; side++) {
+            pstmt.setLong(side * 2 + 1, after);
+            pstmt.setLong(side * 2 + 2, last);
+        }
+    }
+
+    /**
+     * Binds a statement built by {@link #sumLedger(String, String)}.
+     *
+     * @param pstmt      the prepared statement
+     * @param playerUuid the UUID of the player
+     * @param from       the start of the range in Unix seconds, exclusive
+     * @param to         the end of the range in Unix seconds, inclusive
+     * @param after      the last transaction id before the entries to sum
+     * @throws SQLException if a parameter cannot be bound
+     */
+    public static void bindLedgerSum(PreparedStatement pstmt, String playerUuid, long from, long to, long after) throws SQLException {
+        for (int side = 0; side < 2; side++) {
+            pstmt.setString(side * 4 + 1, playerUuid);
+            pstmt.setLong(side * 4 + 2, from);
+            pstmt.setLong(side * 4 + 3, to);
+            pstmt.setLong(side * 4 + 4, after);
+        }
+    }
+
+    /**
+     * Adds the result of a {@code sumLedger} statement to balance changes. Entries of currencies that are no
+     * longer configured are skipped.
+     *
+     * @param rs         the result set, positioned before the first row
+     * @param currencies the configured currencies, which map names to ids
+     * @param sums       receives the changes, keyed by player UUID and indexed by currency id
+     * @throws SQLException if a row cannot be read
+     */
+    public static void readLedgerSums(ResultSet rs, MCEngineCurrencyApiCurrencyRegistry currencies, Map<String, long[]> sums) throws SQLException {
+        while (rs.next()) {
+            int currencyId = currencies.indexOf(rs.getString(2));
+            if (currencyId < 0) continue;
+            sums.computeIfAbsent(rs.getString(1), uuid -> new long[currencies.size()])[currencyId] += rs.getLong(3);
+        }
+    }
+
+    /**
+     * Reads the result of {@link #SELECT_CHECKPOINT}.
+     *
+     * @param rs the result set, positioned before the first row
+     * @return the checkpoint, or {@code null} if there is none
+     * @throws SQLException if the row cannot be read
+     */
+    public static MCEngineCurrencyApiCheckpoint readCheckpoint(ResultSet rs) throws SQLException {
+        return rs.next() ? new MCEngineCurrencyApiCheckpoint(rs.getLong(1), rs.getLong(2), rs.getLong(3)) : null;
+    }
+
+    /**
+     * Builds the query of the last ledger entry of a table at or before a bound time in Unix seconds, walking
+     * the primary key backwards from the newest entry, with {@link #readCheckpoint(ResultSet)}-compatible columns.
+     *
+     * @param table            the ledger table to read
+     * @param epochSeconds     the backend's expression converting the {@code timestamp} column to Unix seconds
+     * @param fromEpochSeconds the backend's expression converting a bound Unix seconds parameter
+     * @return the statement text
+     */
+    public static String selectLedgerHead(String table, String epochSeconds, String fromEpochSeconds) {
+        return "SELECT 0, transaction_id, " + epochSeconds + " FROM " + table
+            + " WHERE timestamp <= " + fromEpochSeconds + " ORDER BY transaction_id DESC LIMIT 1";
+    }
+
+    /**
+     * Limits a time bound to a statement to the range the backends' time conversions accept; both
+     * {@code FROM_UNIXTIME} and SQLite's {@code datetime} return {@code NULL} far beyond it.
+     *
+     * @param epochSeconds a time in Unix seconds, possibly {@link Long#MAX_VALUE} for "no end"
+     * @return the time, at most the end of 32-bit Unix time
+     */
+    public static long clampEpochSeconds(long epochSeconds) {
+        return Math.max(0L, Math.min(epochSeconds, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Adds the non-zero balances of a checkpoint to the batch of {@link #INSERT_CHECKPOINT_BALANCE}, executing
+     * the batch every {@code chunkSize} rows so a large economy never builds one huge batch.
+     *
+     * @param pstmt        the prepared {@link #INSERT_CHECKPOINT_BALANCE} statement
+     * @param checkpointId the id of the checkpoint
+     * @param balances     the balances keyed by player UUID and indexed by currency id
+     * @param chunkSize    the number of rows per batch
+     * @throws SQLException if a batch fails
+     */
+    public static void batchCheckpoint(PreparedStatement pstmt, long checkpointId, Map<String, long[]> balances, int chunkSize) throws SQLException {
+        int rows = 0;
+        for (Map.Entry<String, long[]> entry : balances.entrySet()) {
+            long[] amounts = entry.getValue();
+            for (int currencyId = 0; currencyId < amounts.length; currencyId++) {
+                if (amounts[currencyId] == 0) continue;
+                pstmt.setLong(1, checkpointId);
+                pstmt.setString(2, entry.getKey());
+                pstmt.setInt(3, currencyId);
+                pstmt.setLong(4, amounts[currencyId]);
+                pstmt.addBatch();
+                if (++rows % chunkSize == 0) pstmt.executeBatch();
+            }
+        }
+        if (rows % chunkSize != 0) pstmt.executeBatch();
+    }
+
+    /**
+     * Reads the result of {@link #SELECT_ROLLUPS}.
+     *
+     * @param rs the result set, positioned before the first row
+     * @return the rollups, by day and currency
+     * @throws SQLException if a row cannot be read
+     */
+    public static List<MCEngineCurrencyApiRollup> readRollups(ResultSet rs) throws SQLException {
+        List<MCEngineCurrencyApiRollup> rollups = new ArrayList<>();
+        while (rs.next()) {
+            rollups.add(new MCEngineCurrencyApiRollup(LocalDate.ofEpochDay(rs.getLong(1)), rs.getString(2),
+                rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6)));
+        }
+        return rollups;
+    }
+
+    /**
+     * Binds a statement built by {@link #selectHistory(String, String, boolean)}.
+     *
+     * @param pstmt      the prepared history statement; built with {@code seek} if {@code cursor} is not {@code null}
+     * @param playerUuid the UUID of the player
+     * @param cursor     the cursor to continue after, or {@code null} for the newest entries
+     * @param limit      the maximum number of entries to return
+     * @throws SQLException if a parameter cannot be bound
+     */
+    public static void bindHistory(PreparedStatement pstmt, String playerUuid, MCEngineCurrencyApiHistoryCursor cursor, int limit) throws SQLException {
+        int index = 1;
+        for (int side = 0; side < 2; side++) {
+            pstmt.setString(index++, playerUuid);
+            if (side == 1) pstmt.setString(index++, playerUuid);
+            if (cursor != null) {
+                long seconds = Math.floorDiv(cursor.timestamp(), 1000L);
+                for (int bound = 0; bound < 3; bound++) {
+                    pstmt.setLong(index++, seconds);
+                }
+                pstmt.setLong(index++, cursor.transactionId());
+            }
+            pstmt.setInt(index++, limit);
+        }
+        pstmt.setInt(index, limit);
+    }
+
+    /**
+     * Reads the result of a history statement.
+     *
+     * @param rs the result set, positioned before the first row
+     * @return the entries, newest first
+     * @throws SQLException if a row cannot be read
+     */
+    public static List<MCEngineCurrencyApiHistoryEntry> readHistory(ResultSet rs) throws SQLException {
+        List<MCEngineCurrencyApiHistoryEntry> entries = new ArrayList<>();
+        while (rs.next()) {
+            entries.add(new MCEngineCurrencyApiHistoryEntry(rs.getLong(1), rs.getLong(2) * 1000L, rs.getString(3),
+                rs.getString(4), rs.getString(5), rs.getString(6), rs.getLong(7), rs.getString(8)));
+        }
+        return entries;
+    }
+
+    /**
+     * Binds the next chunk of UUIDs, starting at {@code from}, to {@link #SELECT_BALANCES_IN}.
+     * A short final chunk is padded by repeating its last UUID, which matches no extra rows.
+     *
+     * @param pstmt       the prepared {@link #SELECT_BALANCES_IN} statement
+     * @param playerUuids the UUIDs being looked up; must not be empty
+     * @param from        the index of the first UUID of this chunk
+     * @throws SQLException if a parameter cannot be bound
+     */
+    public static void bindUuidChunk(PreparedStatement pstmt, List<String> playerUuids, int from) throws SQLException {
+        int to = Math.min(from + BALANCES_CHUNK_SIZE, playerUuids.size());
+        for (int i = 0; i < BALANCES_CHUNK_SIZE; i++) {
+            pstmt.setString(i + 1, playerUuids.get(Math.min(from + i, to - 1)));
+        }
+    }
+
+    /**
+     * Reads the result of {@link #SELECT_BALANCES}.
+     *
+     * @param rs   the result set, positioned before the first row
+     * @param size the length of the balances array, see
+     *             {@link io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry#size()}
+     * @return the balances and version, or {@code null} if the player has no account
+     * @throws SQLException if a row cannot be read
+     */
+    public static MCEngineCurrencyApiVersionedBalances readBalances(ResultSet rs, int size) throws SQLException {
+        if (!rs.next()) return null;
+        long version = rs.getLong(1);
+        long[] balances = new long[size];
+        do {
+            putBalance(balances, rs, 2);
+        } while (rs.next());
+        return new MCEngineCurrencyApiVersionedBalances(balances, version);
+    }
+
+    /**
+     * Reads the result of {@link #SELECT_BALANCES_IN}.
+     *
+     * @param rs       the result set, positioned before the first row
+     * @param size     the length of each balances array
+     * @param balances receives the balances of every player with an account, keyed by UUID
+     * @throws SQLException if a row cannot be read
+     */
+    public static void readBalances(ResultSet rs, int size, Map<String, long[]> balances) throws SQLException {
+        while (rs.next()) {
+            putBalance(balances.computeIfAbsent(rs.getString(1), uuid -> new long[size]), rs, 2);
+        }
+    }
+
+    /**
+     * Stores one {@code (currency_id, amount)} pair. Ids outside the array belong to currencies that are no
+     * longer configured and are skipped, as is the {@code NULL} id of an account without balances.
+     */
+    private static void putBalance(long[] balances, ResultSet rs, int column) throws SQLException {
+        int currencyId = rs.getInt(column);
+        if (!rs.wasNull() && currencyId >= 0 && currencyId < balances.length) {
+            balances[currencyId] = rs.getLong(column + 1);
+        }
+    }
+
+    /**
+     * Binds a backend's add-amount upsert, which takes the currency id, the delta and the player UUID in that
+     * order and only inserts a row for a player that has an account.
+     *
+     * @param pstmt      the prepared add-amount statement
+     * @param playerUuid the UUID of the player
+     * @param currencyId the id of the currency
+     * @param delta      the amount to add, negative to subtract
+     * @throws SQLException if a parameter cannot be bound
+     */
+    public static void bindAddAmount(PreparedStatement pstmt, String playerUuid, int currencyId, long delta) throws SQLException {
+        pstmt.setInt(1, currencyId);
+        pstmt.setLong(2, delta);
+        pstmt.setString(3, playerUuid);
+    }
+
+    /**
+     * Binds a statement built by {@link #insertTransaction(String)}.
+     *
+     * @param pstmt       the prepared insert statement
+     * @param transaction the ledger entry
+     * @throws SQLException if a parameter cannot be bound
+     */
+    public static void bindTransaction(PreparedStatement pstmt, MCEngineCurrencyApiTransaction transaction) throws SQLException {
+        pstmt.setString(1, transaction.playerUuidSender());
+        pstmt.setString(2, transaction.playerUuidReceiver());
+        pstmt.setString(3, transaction.currencyType());
+        pstmt.setString(4, transaction.transactionType());
+        pstmt.setLong(5, transaction.amount());
+        pstmt.setString(6, transaction.notes());
+        pstmt.setLong(7, Math.floorDiv(transaction.timestamp(), 1000L));
+    }
+
+    /**
+     * Binds a backend's set-amount upsert, which takes the player UUID, the currency id and the amount in that order.
+     *
+     * @param pstmt      the prepared set-amount statement
+     * @param playerUuid the UUID of the player
+     * @param currencyId the id of the currency
+     * @param amount     the new balance
+     * @throws SQLException if a parameter cannot be bound
+     */
+    public static void bindSetAmount(PreparedStatement pstmt, String playerUuid, int currencyId, long amount) throws SQLException {
+        pstmt.setString(1, playerUuid);
+        pstmt.setInt(2, currencyId);
+        pstmt.setLong(3, amount);
+    }
+
+    /**
+     * Adds every non-zero delta to the batch of an add-amount statement and one {@link #BUMP_VERSION} per player
+     * to the batch of a version statement. The caller executes both batches in one transaction.
+     *
+     * @param addStmt the prepared add-amount statement
+     * @param bumpStmt the prepared {@link #BUMP_VERSION} statement
+     * @param deltas   the deltas to add, keyed by player UUID and indexed by currency id
+     * @throws SQLException if a parameter cannot be bound
+     */
+    public static void batchDeltas(PreparedStatement addStmt, PreparedStatement bumpStmt, Map<String, long[]> deltas) throws SQLException {
+        for (Map.Entry<String, long[]> entry : deltas.entrySet()) {
+            long[] delta = entry.getValue();
+            for (int currencyId = 0; currencyId < delta.length; currencyId++) {
+                if (delta[currencyId] == 0) continue;
+                bindAddAmount(addStmt, entry.getKey(), currencyId, delta[currencyId]);
+                addStmt.addBatch();
+            }
+            bumpStmt.setString(1, entry.getKey());
+            bumpStmt.addBatch();
+        }
+    }
+
+    /**
+     * Adds one row per balance to the batch of a set-amount statement.
+     *
+     * @param setStmt    the prepared set-amount statement
+     * @param playerUuid the UUID of the player
+     * @param balances   the balances, indexed by currency id
+     * @param skipZero   whether zero balances are left out, e.g. for a new account that has no rows yet
+     * @return the number of rows added to the batch
+     * @throws SQLException if a parameter cannot be bound
+     */
+    public static int batchBalances(PreparedStatement setStmt, String playerUuid, long[] balances, boolean skipZero) throws SQLException {
+        int rows = 0;
+        for (int currencyId = 0; currencyId < balances.length; currencyId++) {
+            if (skipZero && balances[currencyId] == 0) continue;
+            bindSetAmount(setStmt, playerUuid, currencyId, balances[currencyId]);
+            setStmt.addBatch();
+            rows++;
+        }
+        return rows;
+    }
+}
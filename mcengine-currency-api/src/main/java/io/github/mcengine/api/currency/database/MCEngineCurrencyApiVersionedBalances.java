@@ -0,0 +1,9 @@
+package io.github.mcengine.api.currency.database;
+
+/**
+ * A player's balances together with the version of their currency record.
+ *
+ * @param balances The balances in minor units, indexed by currency id.
+ * @param version  The record version; it changes whenever any balance changes.
+ */
+public record MCEngineCurrencyApiVersionedBalances(long[] balances, long version) {}
@@ -0,0 +1,1146 @@
+package io.github.mcengine.api.currency.database.mapped;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiVersionedBalances;
+import io.github.mcengine.api.currency.enums.MCEngineCurrencyApiTransactionType;
+import io.github.mcengine.api.currency.leaderboard.MCEngineCurrencyApiTopEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryCursor;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiInsertResult;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiTransaction;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Embedded implementation of {@link MCEngineCurrencyApiDBInterface} that needs no external database.
+ *
+ * <p>The store lives in {@code database.mapped.path} inside the plugin folder and consists of three files:</p>
+ * <ul>
+ *     <li>{@code balances.dat} – a memory-mapped array of fixed-size slots (UUID and one balance per currency id),
+ *     found through an in-memory open-addressing UUID index that is rebuilt on startup. The number of balances
+ *     per slot is stored in the header; when more currency ids are configured than a slot holds, the file is
+ *     rewritten with wider slots on startup.</li>
+ *     <li>{@code balances.journal} – a memory-mapped redo journal. Every change writes the new slot contents
+ *     here first, the last record of a change flagged as its commit, and only then updates the slots.
+ *     A checkpoint forces the slots to disk and starts a new journal epoch.</li>
+ *     <li>{@code ledger.log} – the append-only transaction ledger, one checksummed frame per entry.
+ *     The byte offset of a frame is the transaction id of its entry. The first history lookup scans the
+ *     ledger once into an in-memory list of frame offsets per player, which appends keep current.</li>
+ * </ul>
+ *
+ * <p>Writes to mapped memory land in the OS page cache immediately, so a killed server loses nothing.
+ * On startup the committed journal records of the current epoch are replayed, which repairs a change that
+ * was cut off halfway, and a torn tail of the ledger is truncated. Both mapped files are forced to disk at
+ * every checkpoint and on each batch from the balance cache or the ledger writer, which bounds what a power
+ * loss can take.</p>
+ *
+ * <p>All methods are synchronized; a balance update is a handful of memory writes, so one lock sustains
+ * millions of updates per second. Selected with {@code database.type: mapped}.</p>
+ */
+public class MCEngineCurrencyApiMapped implements MCEngineCurrencyApiDBInterface {
+    /** File magic of {@code balances.dat}, "MCCB". */
+    private static final int BALANCES_MAGIC = 0x4D434342;
+    /** File magic of {@code balances.journal}, "MCCJ". */
+    private static final int JOURNAL_MAGIC = 0x4D43434A;
+    /** Version 2 stores the slot width in the header; version 1 files always hold four balances per slot. */
+    private static final int VERSION = 2;
+    private static final int LEGACY_WIDTH = 4;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int COUNT_OFFSET = 8;
+    private static final int LEDGER_LENGTH_OFFSET = 16;
+    private static final int WIDTH_OFFSET = 24;
+    private static final int EPOCH_OFFSET = 8;
+
+    /** A slot is the UUID (16 bytes) followed by {@link #width} balances. */
+    private static final int BALANCE_OFFSET = 16;
+
+    /** A journal record is the epoch, flags, slot and checksum followed by the slot contents. */
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int RECORD_CRC_OFFSET = 12;
+    private static final int FLAG_COMMIT = 1;
+
+    /** A complete copy of {@code balances.dat} with wider slots, waiting to be copied over the original. */
+    private static final String WIDEN_FILE = "balances.widen";
+
+    private final Plugin plugin;
+    private final MCEngineCurrencyApiCurrencyRegistry currencies;
+    private final File directory;
+    private final int initialCapacity;
+    private final int journalRecords;
+    private final int configuredWidth;
+
+    /** Balances per slot, and the slot, journal record and journal sizes that follow from it. */
+    private int width;
+    private int slotSize;
+    private int recordSize;
+    private int journalSize;
+
+    private FileChannel balancesChannel;
+    private FileChannel journalChannel;
+    private FileChannel ledgerChannel;
+    private MappedByteBuffer balances;
+    private MappedByteBuffer journal;
+    private int capacity;
+    private int count;
+    /** Per-slot change counters for optimistic updates; kept in memory, as only this process writes the store. */
+    private long[] versions = new long[0];
+    private int epoch;
+    private int journalPosition;
+    private Index index;
+    /** Ledger frame offsets per player, in ledger order; {@code null} until the first history lookup. */
+    private Map<String, Positions> ledgerIndex;
+
+    private byte[] record;
+    private ByteBuffer recordBuffer;
+    private final CRC32C crc = new CRC32C();
+
+    /**
+     * Growable list of ledger frame offsets, ascending because the ledger is only appended to.
+     */
+    private static final class Positions {
+        private long[] values = new long[4];
+        private int size;
+
+        private void add(long position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+
+        /**
+         * @return The number of offsets below {@code position}.
+         */
+        private int countBelow(long position) {
+            int i = Arrays.binarySearch(values, 0, size, position);
+            return i >= 0 ? i : -i - 1;
+        }
+    }
+
+    /**
+     * Open-addressing map from UUID to slot number, using linear probing over flat arrays.
+     * Entries are never removed, as slots are never freed.
+     */
+    private static final class Index {
+        /** Most and least significant UUID bits, interleaved. */
+        private long[] keys;
+        /** Slot number plus one; zero marks an empty bucket. */
+        private int[] slots;
+        private int mask;
+        private int size;
+
+        private Index(int expected) {
+            int buckets = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            keys = new long[buckets * 2];
+            slots = new int[buckets];
+            mask = buckets - 1;
+        }
+
+        private int get(long msb, long lsb) {
+            for (int i = hash(msb, lsb) & mask; ; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot == 0) return -1;
+                if (keys[i * 2] == msb && keys[i * 2 + 1] == lsb) return slot - 1;
+            }
+        }
+
+        private void put(long msb, long lsb, int slot) {
+            // Keep the load factor at or below one half so probe chains stay short
+            if ((size + 1) * 2 > slots.length) {
+                resize();
+            }
+            int i = hash(msb, lsb) & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i * 2] = msb;
+            keys[i * 2 + 1] = lsb;
+            slots[i] = slot + 1;
+            size++;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldSlots = slots;
+            keys = new long[oldKeys.length * 2];
+            slots = new int[oldSlots.length * 2];
+            mask = slots.length - 1;
+            size = 0;
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != 0) {
+                    put(oldKeys[i * 2], oldKeys[i * 2 + 1], oldSlots[i] - 1);
+                }
+            }
+        }
+
+        private static int hash(long msb, long lsb) {
+            long h = msb ^ lsb;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return (int) h;
+        }
+    }
+
+    /**
+     * Constructor to open the store using the {@code database.mapped.*} configuration, for the currencies
+     * in the plugin's configuration.
+     *
+     * @param plugin the plugin instance
+     */
+    public MCEngineCurrencyApiMapped(Plugin plugin) {
+        this(plugin, MCEngineCurrencyApiCurrencyRegistry.load(plugin));
+    }
+
+    /**
+     * Constructor to open the store using the {@code database.mapped.*} configuration. Slots are made wide
+     * enough for every configured currency id and at least {@code database.mapped.currency-slots}, so adding
+     * a currency rarely requires rewriting the file.
+     *
+     * @param plugin     the plugin instance
+     * @param currencies the configured currencies
+     */
+    public MCEngineCurrencyApiMapped(Plugin plugin, MCEngineCurrencyApiCurrencyRegistry currencies) {
+        this.plugin = plugin;
+        this.currencies = currencies;
+        this.directory = new File(plugin.getDataFolder(), plugin.getConfig().getString("database.mapped.path", "currency-store"));
+        this.initialCapacity = Math.max(1, plugin.getConfig().getInt("database.mapped.initial-capacity", 65536));
+        this.journalRecords = Math.max(16, plugin.getConfig().getInt("database.mapped.journal-records", 262144));
+        this.configuredWidth = Math.max(currencies.size(), Math.min(MCEngineCurrencyApiCurrencyRegistry.MAX_ID + 1,
+            plugin.getConfig().getInt("database.mapped.currency-slots", 16)));
+        connect();
+    }
+
+    /**
+     * Sets the number of balances per slot and the sizes derived from it.
+     */
+    private void layout(int balancesPerSlot) {
+        width = balancesPerSlot;
+        slotSize = BALANCE_OFFSET + 8 * width;
+        recordSize = RECORD_HEADER_SIZE + slotSize;
+        journalSize = HEADER_SIZE + recordSize * journalRecords;
+        record = new byte[recordSize];
+        recordBuffer = ByteBuffer.wrap(record);
+    }
+
+    /**
+     * Opens and maps the store files, replays the journal, repairs the ledger tail and rebuilds the UUID index,
+     * then widens the slots if more currency ids are configured than they hold.
+     */
+    public synchronized void connect() {
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create directory " + directory);
+            }
+            balancesChannel = open("balances.dat");
+            journalChannel = open("balances.journal");
+            ledgerChannel = open("ledger.log");
+            ledgerIndex = null;
+            finishWiden();
+
+            boolean created = balancesChannel.size() == 0;
+            layout(created ? configuredWidth : storedWidth());
+            capacity = Math.max(initialCapacity, (int) ((balancesChannel.size() - HEADER_SIZE) / slotSize));
+            versions = new long[capacity];
+            balances = balancesChannel.map(FileChannel.MapMode.READ_WRITE, 0, slotOffset(capacity));
+            journal = journalChannel.map(FileChannel.MapMode.READ_WRITE, 0, journalSize);
+            if (created) {
+                balances.putInt(0, BALANCES_MAGIC);
+                balances.putInt(4, VERSION);
+                balances.putInt(WIDTH_OFFSET, width);
+                journal.putInt(0, JOURNAL_MAGIC);
+                journal.putInt(4, VERSION);
+            } else if (balances.getInt(0) != BALANCES_MAGIC || journal.getInt(0) != JOURNAL_MAGIC) {
+                throw new IOException("Not a currency store: " + directory);
+            }
+            count = balances.getInt(COUNT_OFFSET);
+            epoch = journal.getInt(EPOCH_OFFSET);
+
+            int replayed = replayJournal();
+            long truncated = repairLedger(balances.getLong(LEDGER_LENGTH_OFFSET));
+            rebuildIndex();
+            checkpoint();
+            if (width < configuredWidth) {
+                widen(configuredWidth);
+            }
+
+            plugin.getLogger().info("Opened mapped currency store at: " + directory.getAbsolutePath() + " (" + count + " accounts)");
+            if (replayed > 0 || truncated > 0) {
+                plugin.getLogger().warning("Recovered mapped currency store: replayed " + replayed + " changes, truncated "
+                    + truncated + " bytes of ledger.");
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open mapped currency store: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the number of balances per slot from the header of {@code balances.dat}.
+     */
+    private int storedWidth() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        balancesChannel.read(header, 0);
+        if (header.getInt(4) < 2) return LEGACY_WIDTH;
+        int stored = header.getInt(WIDTH_OFFSET);
+        if (stored < LEGACY_WIDTH || stored > MCEngineCurrencyApiCurrencyRegistry.MAX_ID + 1) {
+            throw new IOException("Invalid slot width " + stored + " in " + directory);
+        }
+        return stored;
+    }
+
+    /**
+     * Rewrites {@code balances.dat} with the given number of balances per slot. Must run right after a
+     * checkpoint, while the journal holds no records of the current epoch.
+     *
+     * <p>A complete copy with the wider slots is written to {@value #WIDEN_FILE} first and marked complete
+     * by writing its magic last. Copying it over the original is repeatable, so a crash before the mark
+     * leaves the original untouched and a crash after it is finished by {@link #finishWiden()} on the
+     * next start. The original is overwritten in place rather than replaced, as a mapped file cannot be
+     * renamed on every platform.</p>
+     */
+    private void widen(int newWidth) throws IOException {
+        int oldWidth = width;
+        int oldSlotSize = slotSize;
+        MappedByteBuffer source = balances;
+        layout(newWidth);
+
+        try (FileChannel channel = FileChannel.open(new File(directory, WIDEN_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer copy = channel.map(FileChannel.MapMode.READ_WRITE, 0, slotOffset(count));
+            for (int i = 8; i < HEADER_SIZE; i += 8) {
+                copy.putLong(i, source.getLong(i));
+            }
+            copy.putInt(4, VERSION);
+            copy.putInt(WIDTH_OFFSET, width);
+            for (int slot = 0; slot < count; slot++) {
+                int from = HEADER_SIZE + slot * oldSlotSize;
+                int to = (int) slotOffset(slot);
+                for (int i = 0; i < oldSlotSize; i += 8) {
+                    copy.putLong(to + i, source.getLong(from + i));
+                }
+            }
+            copy.force();
+            copy.putInt(0, BALANCES_MAGIC);
+            copy.force();
+        }
+        finishWiden();
+
+        capacity = Math.max(capacity, (int) ((balancesChannel.size() - HEADER_SIZE) / slotSize));
+        versions = Arrays.copyOf(versions, capacity);
+        balances = balancesChannel.map(FileChannel.MapMode.READ_WRITE, 0, slotOffset(capacity));
+        journal = journalChannel.map(FileChannel.MapMode.READ_WRITE, 0, journalSize);
+        journal.putInt(4, VERSION);
+        // A new epoch, so records written with the old width are never replayed
+        checkpoint();
+        plugin.getLogger().info("Widened mapped currency store from " + oldWidth + " to " + width + " currency slots.");
+    }
+
+    /**
+     * Copies a complete {@value #WIDEN_FILE} over {@code balances.dat} and deletes it; an incomplete one is
+     * only deleted. Slots past the stored account count may keep bytes of the old layout, as a slot is
+     * written in full when it is taken.
+     */
+    private void finishWiden() throws IOException {
+        File file = new File(directory, WIDEN_FILE);
+        if (!file.exists()) return;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer image = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (image.limit() >= HEADER_SIZE && image.getInt(0) == BALANCES_MAGIC) {
+                long position = 0;
+                while (image.hasRemaining()) {
+                    position += balancesChannel.write(image, position);
+                }
+                balancesChannel.force(true);
+            }
+        }
+        Files.delete(file.toPath());
+    }
+
+    /**
+     * Opens one of the store files for reading and writing, creating it if needed.
+     */
+    private FileChannel open(String name) throws IOException {
+        return FileChannel.open(new File(directory, name).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * The store has no schema; the files are created by {@link #connect()}.
+     */
+    public void createTable() {
+        plugin.getLogger().info("Mapped currency store needs no tables.");
+    }
+
+    /**
+     * Checkpoints the store and closes its files.
+     */
+    public synchronized void disConnection() {
+        if (balancesChannel == null) return;
+        try {
+            checkpoint();
+            balancesChannel.close();
+            journalChannel.close();
+            ledgerChannel.close();
+            plugin.getLogger().info("Closed mapped currency store.");
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to close mapped currency store: " + e.getMessage());
+        }
+        balancesChannel = null;
+        balances = null;
+        journal = null;
+        ledgerIndex = null;
+    }
+
+    /**
+     * Applies every committed journal record of the current epoch to the slots.
+     * Records of a change that was not committed are dropped.
+     *
+     * @return the number of committed changes replayed
+     */
+    private int replayJournal() {
+        List<byte[]> pending = new ArrayList<>();
+        int replayed = 0;
+        for (int position = HEADER_SIZE; position + recordSize <= journalSize; position += recordSize) {
+            journal.get(position, record);
+            if (recordBuffer.getInt(0) != epoch || recordBuffer.getInt(RECORD_CRC_OFFSET) != recordChecksum()) break;
+            pending.add(record.clone());
+            if ((recordBuffer.getInt(4) & FLAG_COMMIT) != 0) {
+                for (byte[] bytes : pending) {
+                    ByteBuffer entry = ByteBuffer.wrap(bytes);
+                    int slot = entry.getInt(8);
+                    long[] values = new long[width];
+                    for (int i = 0; i < width; i++) {
+                        values[i] = entry.getLong(RECORD_HEADER_SIZE + BALANCE_OFFSET + i * 8);
+                    }
+                    ensureCapacity(slot + 1);
+                    store(slot, entry.getLong(RECORD_HEADER_SIZE), entry.getLong(RECORD_HEADER_SIZE + 8), values);
+                }
+                pending.clear();
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Checks the ledger frames written since the last checkpoint and cuts off a torn or corrupt tail.
+     *
+     * @param checkpointed the ledger length recorded by the last checkpoint
+     * @return the number of bytes truncated
+     */
+    private long repairLedger(long checkpointed) throws IOException {
+        long size = ledgerChannel.size();
+        long position = Math.min(checkpointed, size);
+        ByteBuffer header = ByteBuffer.allocate(8);
+        while (position + 8 <= size) {
+            header.clear();
+            ledgerChannel.read(header, position);
+            int length = header.getInt(0);
+            if (length < 0 || position + 8 + length > size) break;
+            ByteBuffer body = ByteBuffer.allocate(length);
+            ledgerChannel.read(body, position + 8);
+            crc.reset();
+            crc.update(body.array());
+            if ((int) crc.getValue() != header.getInt(4)) break;
+            position += 8 + length;
+        }
+        if (position == size) return 0;
+        ledgerChannel.truncate(position);
+        return size - position;
+    }
+
+    /**
+     * Rebuilds the UUID index from the occupied slots.
+     */
+    private void rebuildIndex() {
+        index = new Index(Math.max(count, initialCapacity));
+        for (int slot = 0; slot < count; slot++) {
+            long offset = slotOffset(slot);
+            long msb = balances.getLong((int) offset);
+            long lsb = balances.getLong((int) offset + 8);
+            if (msb != 0 || lsb != 0) {
+                index.put(msb, lsb, slot);
+            }
+        }
+    }
+
+    /**
+     * Forces the slots and the ledger to disk, records the ledger length and starts a new journal epoch,
+     * after which the old journal records are no longer needed.
+     */
+    private void checkpoint() throws IOException {
+        ledgerChannel.force(false);
+        balances.putInt(COUNT_OFFSET, count);
+        balances.putLong(LEDGER_LENGTH_OFFSET, ledgerChannel.size());
+        balances.force();
+        epoch++;
+        journal.putInt(EPOCH_OFFSET, epoch);
+        journal.force();
+        journalPosition = HEADER_SIZE;
+    }
+
+    /**
+     * Makes room for a change of the given number of journal records, checkpointing when the journal is full.
+     */
+    private void reserveJournal(int records) throws IOException {
+        if (journalPosition + records * recordSize > journalSize) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Appends the new contents of one slot to the journal.
+     *
+     * @param commit whether this is the last record of the change
+     */
+    private void journal(int slot, long msb, long lsb, long[] values, boolean commit) {
+        recordBuffer.putInt(0, epoch);
+        recordBuffer.putInt(4, commit ? FLAG_COMMIT : 0);
+        recordBuffer.putInt(8, slot);
+        recordBuffer.putLong(RECORD_HEADER_SIZE, msb);
+        recordBuffer.putLong(RECORD_HEADER_SIZE + 8, lsb);
+        for (int i = 0; i < width; i++) {
+            recordBuffer.putLong(RECORD_HEADER_SIZE + BALANCE_OFFSET + i * 8, values[i]);
+        }
+        recordBuffer.putInt(RECORD_CRC_OFFSET, recordChecksum());
+        journal.put(journalPosition, record);
+        journalPosition += recordSize;
+    }
+
+    /**
+     * @return the checksum of the record in {@link #record}, skipping its checksum field
+     */
+    private int recordChecksum() {
+        crc.reset();
+        crc.update(record, 0, RECORD_CRC_OFFSET);
+        crc.update(record, RECORD_CRC_OFFSET + 4, recordSize - RECORD_CRC_OFFSET - 4);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes a whole slot and extends the stored account count to cover it.
+     *
+     * @param values the balances, {@link #width} of them
+     */
+    private void store(int slot, long msb, long lsb, long[] values) {
+        int offset = (int) slotOffset(slot);
+        balances.putLong(offset, msb);
+        balances.putLong(offset + 8, lsb);
+        for (int i = 0; i < width; i++) {
+            balances.putLong(offset + BALANCE_OFFSET + i * 8, values[i]);
+        }
+        if (slot >= count) {
+            count = slot + 1;
+            balances.putInt(COUNT_OFFSET, count);
+        }
+        versions[slot]++;
+    }
+
+    /**
+     * Journals and then applies one slot change as a single committed change.
+     *
+     * @param values the balances, {@link #width} of them
+     */
+    private void write(int slot, long msb, long lsb, long[] values) throws IOException {
+        reserveJournal(1);
+        journal(slot, msb, lsb, values, true);
+        store(slot, msb, lsb, values);
+    }
+
+    /**
+     * Grows the mapping so it holds at least the given number of slots.
+     */
+    private void ensureCapacity(int slots) {
+        if (slots <= capacity) return;
+        long newCapacity = Math.max(slots, (long) capacity * 2);
+        if (slotOffset((int) Math.min(newCapacity, Integer.MAX_VALUE)) > Integer.MAX_VALUE) {
+            newCapacity = (Integer.MAX_VALUE - HEADER_SIZE) / slotSize;
+            if (newCapacity < slots) throw new IllegalStateException("Mapped currency store is full");
+        }
+        try {
+            balances = balancesChannel.map(FileChannel.MapMode.READ_WRITE, 0, slotOffset((int) newCapacity));
+            capacity = (int) newCapacity;
+            versions = Arrays.copyOf(versions, capacity);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot grow mapped currency store: " + e.getMessage(), e);
+        }
+    }
+
+    private long slotOffset(int slot) {
+        return HEADER_SIZE + (long) slot * slotSize;
+    }
+
+    /**
+     * @return the slot of a player, or {@code -1} if the player has no account or the UUID is invalid
+     */
+    private int slotOf(String playerUuid) {
+        UUID uuid = parse(playerUuid);
+        return uuid == null ? -1 : index.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    private UUID parse(String playerUuid) {
+        try {
+            return UUID.fromString(playerUuid);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().severe("Invalid player uuid: " + playerUuid);
+            return null;
+        }
+    }
+
+    private long balance(int slot, int currencyId) {
+        return balances.getLong((int) slotOffset(slot) + BALANCE_OFFSET + currencyId * 8);
+    }
+
+    /**
+     * @return every balance stored in a slot, including ids of currencies that are no longer configured,
+     *         so writing them back preserves those balances
+     */
+    private long[] slotValues(int slot) {
+        int offset = (int) slotOffset(slot) + BALANCE_OFFSET;
+        long[] values = new long[width];
+        for (int i = 0; i < width; i++) {
+            values[i] = balances.getLong(offset + i * 8);
+        }
+        return values;
+    }
+
+    /**
+     * @return the balances of the configured currencies, indexed by currency id
+     */
+    private long[] balancesOf(int slot) {
+        return Arrays.copyOf(slotValues(slot), currencies.size());
+    }
+
+    private UUID uuidOf(int slot) {
+        int offset = (int) slotOffset(slot);
+        return new UUID(balances.getLong(offset), balances.getLong(offset + 8));
+    }
+
+    /**
+     * Retrieves the amount of a currency for a player.
+     *
+     * @param playerUuid the UUID of the player whose balance is to be retrieved
+     * @param currencyId the id of the currency to retrieve
+     * @return the amount of the currency the player has; returns 0 if no record is found or the currency id is invalid
+     */
+    public synchronized long getCoin(String playerUuid, int currencyId) {
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return 0L;
+        }
+        int slot = slotOf(playerUuid);
+        return slot < 0 ? 0L : balance(slot, currencyId);
+    }
+
+    /**
+     * Retrieves all balances of a player.
+     *
+     * @param playerUuid the UUID of the player whose balances are to be retrieved
+     * @return the balances indexed by currency id; {@code null} if no record is found
+     */
+    public synchronized long[] getBalances(String playerUuid) {
+        int slot = slotOf(playerUuid);
+        return slot < 0 ? null : balancesOf(slot);
+    }
+
+    /**
+     * Retrieves all balances of many players.
+     *
+     * @param playerUuids the UUIDs of the players whose balances are to be retrieved
+     * @return the balances of every player with a record, keyed by UUID
+     */
+    public synchronized Map<String, long[]> getBalances(Collection<String> playerUuids) {
+        Map<String, long[]> result = new HashMap<>();
+        for (String playerUuid : playerUuids) {
+            int slot = slotOf(playerUuid);
+            if (slot >= 0) {
+                result.put(playerUuid, balancesOf(slot));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the players with the highest balance of one currency by scanning the slots
+     * and keeping the best {@code offset + limit} in a bounded heap.
+     *
+     * @param currencyId the id of the currency to rank by
+     * @param offset     the number of leading entries to skip
+     * @param limit      the maximum number of entries to return
+     * @return the entries in descending balance order; empty if the currency id is invalid
+     */
+    public synchronized List<MCEngineCurrencyApiTopEntry> getTop(int currencyId, int offset, int limit) {
+        List<MCEngineCurrencyApiTopEntry> top = new ArrayList<>();
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return top;
+        }
+        int wanted = offset + limit;
+        if (limit <= 0 || wanted <= 0) return top;
+
+        // Min-heap of slots by balance; the root is the weakest entry still in the ranking
+        PriorityQueue<long[]> heap = new PriorityQueue<>(Math.min(wanted, Math.max(1, count)) + 1,
+            Comparator.comparingLong((long[] e) -> e[0]));
+        for (int slot = 0; slot < count; slot++) {
+            long balance = balance(slot, currencyId);
+            if (heap.size() < wanted) {
+                heap.add(new long[] { balance, slot });
+            } else if (balance > heap.peek()[0]) {
+                heap.poll();
+                heap.add(new long[] { balance, slot });
+            }
+        }
+        List<long[]> ranked = new ArrayList<>(heap);
+        ranked.sort(Comparator.comparingLong((long[] e) -> e[0]).reversed());
+        for (int i = offset; i < ranked.size(); i++) {
+            long[] entry = ranked.get(i);
+            top.add(new MCEngineCurrencyApiTopEntry(uuidOf((int) entry[1]).toString(), entry[0]));
+        }
+        return top;
+    }
+
+    /**
+     * The store is not backed by JDBC.
+     *
+     * @return always {@code null}
+     */
+    public Connection getConnection() {
+        return null;
+    }
+
+    /**
+     * Creates a player's account with the given balances unless the player already has one.
+     *
+     * @param playerUuid the unique identifier for the player.
+     * @param balances the starting balances, indexed by currency id.
+     */
+    public synchronized void insertCurrency(String playerUuid, long[] balances) {
+        UUID uuid = parse(playerUuid);
+        if (uuid == null) return;
+        try {
+            create(uuid, Arrays.copyOf(balances, Math.min(balances.length, currencies.size())));
+        } catch (IOException | IllegalStateException e) {
+            plugin.getLogger().severe("Error inserting currency for player uuid: " + playerUuid + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a new account in the next free slot.
+     *
+     * @param balances the starting balances; missing ids start at zero
+     * @return the new slot, or {@code -1} if the player already has an account
+     */
+    private int create(UUID uuid, long[] balances) throws IOException {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        if (index.get(msb, lsb) >= 0) return -1;
+        int slot = count;
+        ensureCapacity(slot + 1);
+        write(slot, msb, lsb, Arrays.copyOf(balances, width));
+        index.put(msb, lsb, slot);
+        return slot;
+    }
+
+    /**
+     * Creates a player's account with zero balances if it does not exist and returns the balances.
+     *
+     * @param playerUuid the unique identifier for the player
+     * @return the balances in minor units, indexed by currency id; {@code null} if the UUID is invalid or an error occurs
+     */
+    public synchronized long[] loadOrCreateBalances(String playerUuid) {
+        UUID uuid = parse(playerUuid);
+        if (uuid == null) return null;
+        int slot = index.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (slot >= 0) return balancesOf(slot);
+        try {
+            create(uuid, new long[0]);
+            return new long[currencies.size()];
+        } catch (IOException | IllegalStateException e) {
+            plugin.getLogger().severe("Error loading currency for player uuid: " + playerUuid + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Appends a transaction to the ledger.
+     *
+     * @param playerUuidSender the unique identifier of the sender.
+     * @param playerUuidReceiver the unique identifier of the receiver.
+     * @param currencyType the name of the currency involved in the transaction.
+     * @param transactionType the type of transaction, see {@link MCEngineCurrencyApiTransactionType}.
+     * @param amount the amount of currency involved in the transaction.
+     * @param notes optional notes about the transaction.
+     */
+    public synchronized void insertTransaction(String playerUuidSender, String playerUuidReceiver, String currencyType,
+        String transactionType, long amount, String notes) {
+
+        if (currencies.indexOf(currencyType) < 0) {
+            plugin.getLogger().severe("Invalid currency type: " + currencyType);
+        }
+        if (MCEngineCurrencyApiTransactionType.of(transactionType) == null) {
+            plugin.getLogger().severe("Invalid transaction type: " + transactionType);
+        }
+
+        try {
+            appendLedger(List.of(new MCEngineCurrencyApiTransaction(playerUuidSender, playerUuidReceiver, currencyType, transactionType, amount, notes)));
+        } catch (IOException e) {
+            plugin.getLogger().severe("Error inserting transaction: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends many transactions to the ledger with one write and forces the store to disk.
+     *
+     * @param transactions the ledger entries to insert
+     * @return whether the entries were written; a failed write is always worth retrying
+     */
+    public synchronized MCEngineCurrencyApiInsertResult insertTransactions(List<MCEngineCurrencyApiTransaction> transactions) {
+        if (transactions.isEmpty()) return MCEngineCurrencyApiInsertResult.WRITTEN;
+        try {
+            appendLedger(transactions);
+            sync();
+            return MCEngineCurrencyApiInsertResult.WRITTEN;
+        } catch (IOException e) {
+            plugin.getLogger().severe("Error inserting " + transactions.size() + " transactions - " + e.getMessage());
+            return MCEngineCurrencyApiInsertResult.FAILED;
+        }
+    }
+
+    /**
+     * Writes ledger frames ({@code length}, {@code CRC32C}, body) at the end of the ledger in one write.
+     */
+    private void appendLedger(List<MCEngineCurrencyApiTransaction> transactions) throws IOException {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream(transactions.size() * 128);
+        DataOutputStream out = new DataOutputStream(frames);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+        DataOutputStream bodyOut = new DataOutputStream(body);
+        long start = ledgerChannel.size();
+        long[] offsets = new long[transactions.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            MCEngineCurrencyApiTransaction transaction = transactions.get(i);
+            offsets[i] = start + frames.size();
+            body.reset();
+            bodyOut.writeLong(transaction.timestamp());
+            writeString(bodyOut, transaction.playerUuidSender());
+            writeString(bodyOut, transaction.playerUuidReceiver());
+            writeString(bodyOut, transaction.currencyType());
+            writeString(bodyOut, transaction.transactionType());
+            bodyOut.writeLong(transaction.amount());
+            writeString(bodyOut, transaction.notes());
+            byte[] bytes = body.toByteArray();
+            crc.reset();
+            crc.update(bytes);
+            out.writeInt(bytes.length);
+            out.writeInt((int) crc.getValue());
+            out.write(bytes);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(frames.toByteArray());
+        long position = start;
+        while (buffer.hasRemaining()) {
+            position += ledgerChannel.write(buffer, position);
+        }
+        if (ledgerIndex != null) {
+            for (int i = 0; i < offsets.length; i++) {
+                indexLedgerEntry(transactions.get(i).playerUuidSender(), transactions.get(i).playerUuidReceiver(), offsets[i]);
+            }
+        }
+    }
+
+    /**
+     * Records a ledger frame under its sender and, if different, its receiver.
+     */
+    private void indexLedgerEntry(String playerUuidSender, String playerUuidReceiver, long position) {
+        ledgerIndex.computeIfAbsent(playerUuidSender, uuid -> new Positions()).add(position);
+        if (playerUuidReceiver != null && !playerUuidReceiver.equals(playerUuidSender)) {
+            ledgerIndex.computeIfAbsent(playerUuidReceiver, uuid -> new Positions()).add(position);
+        }
+    }
+
+    /**
+     * Builds {@link #ledgerIndex} with one sequential pass over the ledger, reading only the parties of each entry.
+     */
+    private void indexLedger() throws IOException {
+        ledgerIndex = new HashMap<>();
+        long size = ledgerChannel.size();
+        // Not closed: closing the stream would close the channel. Appends write at explicit positions,
+        // so moving the channel position here does not affect them.
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ledgerChannel.position(0)), 1 << 16));
+        long position = 0;
+        while (position + 8 <= size) {
+            int length = in.readInt();
+            in.readInt();
+            in.readLong();
+            String sender = readString(in);
+            String receiver = readString(in);
+            int read = 8 + stringLength(sender) + stringLength(receiver);
+            in.skipNBytes(length - read);
+            indexLedgerEntry(sender, receiver, position);
+            position += 8 + length;
+        }
+    }
+
+    /**
+     * Reads the ledger frame at a position back into a history entry.
+     */
+    private MCEngineCurrencyApiHistoryEntry readLedgerEntry(long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        ledgerChannel.read(header, position);
+        ByteBuffer body = ByteBuffer.allocate(header.getInt(0));
+        while (body.hasRemaining()) {
+            if (ledgerChannel.read(body, position + 8 + body.position()) < 0) throw new IOException("Ledger ends inside an entry");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array()));
+        long timestamp = in.readLong();
+        String sender = readString(in);
+        String receiver = readString(in);
+        String currencyType = readString(in);
+        String transactionType = readString(in);
+        long amount = in.readLong();
+        return new MCEngineCurrencyApiHistoryEntry(position, timestamp, sender, receiver, currencyType, transactionType, amount, readString(in));
+    }
+
+    /**
+     * Reads the ledger entries a player sent or received, newest first. Entries are ordered by transaction id,
+     * their offset in the ledger, which is also the order they were written in, so only the id of the cursor is
+     * used: a binary search finds where the page starts and only the entries shown are read from disk.
+     *
+     * @param playerUuid the UUID of the player
+     * @param before     the cursor to continue after, or {@code null} for the newest entries
+     * @param limit      the maximum number of entries to return
+     * @return the entries; empty if there are none or an error occurs
+     */
+    @Override
+    public synchronized List<MCEngineCurrencyApiHistoryEntry> getTransactions(String playerUuid, MCEngineCurrencyApiHistoryCursor before, int limit) {
+        try {
+            if (ledgerIndex == null) {
+                indexLedger();
+            }
+            Positions positions = ledgerIndex.get(playerUuid);
+            if (positions == null) return List.of();
+            int end = before != null ? positions.countBelow(before.transactionId()) : positions.size;
+            List<MCEngineCurrencyApiHistoryEntry> entries = new ArrayList<>(Math.min(limit, end));
+            for (int i = end - 1; i >= 0 && entries.size() < limit; i--) {
+                entries.add(readLedgerEntry(positions.values[i]));
+            }
+            return entries;
+        } catch (IOException e) {
+            ledgerIndex = null;
+            plugin.getLogger().severe("Error retrieving transaction history - " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string; {@code null} is written as length {@code -1}.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The number of bytes {@link #writeString(DataOutputStream, String)} wrote for a string.
+     */
+    private static int stringLength(String value) {
+        return 4 + (value != null ? value.getBytes(StandardCharsets.UTF_8).length : 0);
+    }
+
+    /**
+     * Forces the ledger, the journal and the slots to disk without starting a new journal epoch.
+     */
+    private void sync() throws IOException {
+        ledgerChannel.force(false);
+        journal.force();
+        balances.force();
+    }
+
+    /**
+     * Checks if a player with the specified UUID has an account.
+     *
+     * @param uuid the UUID of the player to check
+     * @return {@code true} if a player with the specified UUID exists, {@code false} otherwise
+     */
+    public synchronized boolean playerExists(String uuid) {
+        return slotOf(uuid) >= 0;
+    }
+
+    /**
+     * Updates one currency of a player.
+     * @param playerUuid the unique identifier for the player.
+     * @param operator the operation to apply ("+" or "-").
+     * @param currencyId the id of the currency to update.
+     * @param amt the amount by which to update the currency.
+     */
+    public synchronized void updateCurrencyValue(String playerUuid, String operator, int currencyId, long amt) {
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return;
+        }
+
+        long delta;
+        if ("+".equals(operator)) {
+            delta = amt;
+        } else if ("-".equals(operator)) {
+            delta = -amt;
+        } else {
+            plugin.getLogger().severe("Invalid operator: " + operator);
+            return;
+        }
+
+        int slot = slotOf(playerUuid);
+        if (slot < 0) return;
+        try {
+            long[] values = slotValues(slot);
+            values[currencyId] += delta;
+            UUID uuid = uuidOf(slot);
+            write(slot, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), values);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Error updating " + currencies.nameOf(currencyId) + " for player uuid: " + playerUuid + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies coin deltas for many players, one committed change per player, and forces the store to disk.
+     *
+     * @param deltas the deltas to add, keyed by player UUID and indexed by currency id
+     * @return {@code true} if every delta was applied, {@code false} if an error occurred
+     */
+    public synchronized boolean updateCurrencyValues(Map<String, long[]> deltas) {
+        if (deltas.isEmpty()) return true;
+        try {
+            for (Map.Entry<String, long[]> entry : deltas.entrySet()) {
+                int slot = slotOf(entry.getKey());
+                if (slot < 0) continue;
+                long[] values = slotValues(slot);
+                long[] delta = entry.getValue();
+                for (int i = 0, n = Math.min(values.length, delta.length); i < n; i++) {
+                    values[i] += delta[i];
+                }
+                UUID uuid = uuidOf(slot);
+                write(slot, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), values);
+            }
+            sync();
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().severe("Error flushing " + deltas.size() + " balance updates - " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Transfers currency between two players as one committed change, then appends the "pay" ledger entry.
+     *
+     * @param playerUuidSender   the unique identifier of the sender
+     * @param playerUuidReceiver the unique identifier of the receiver
+     * @param currencyId         the id of the currency to transfer
+     * @param amount             the amount to transfer
+     * @param notes              optional notes about the transfer
+     * @return {@code true} if the transfer was committed; {@code false} if the sender's balance is too low,
+     *         either player has no account, or an error occurred
+     */
+    public synchronized boolean transfer(String playerUuidSender, String playerUuidReceiver, int currencyId, long amount, String notes) {
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return false;
+        }
+        int senderSlot = slotOf(playerUuidSender);
+        int receiverSlot = slotOf(playerUuidReceiver);
+        if (senderSlot < 0 || receiverSlot < 0 || balance(senderSlot, currencyId) < amount) return false;
+
+        String currencyType = currencies.nameOf(currencyId);
+        try {
+            long[] senderValues = slotValues(senderSlot);
+            senderValues[currencyId] -= amount;
+            long[] receiverValues = senderSlot == receiverSlot ? senderValues : slotValues(receiverSlot);
+            receiverValues[currencyId] += amount;
+            UUID sender = uuidOf(senderSlot);
+            UUID receiver = uuidOf(receiverSlot);
+
+            reserveJournal(2);
+            journal(senderSlot, sender.getMostSignificantBits(), sender.getLeastSignificantBits(), senderValues, false);
+            journal(receiverSlot, receiver.getMostSignificantBits(), receiver.getLeastSignificantBits(), receiverValues, true);
+            store(senderSlot, sender.getMostSignificantBits(), sender.getLeastSignificantBits(), senderValues);
+            store(receiverSlot, receiver.getMostSignificantBits(), receiver.getLeastSignificantBits(), receiverValues);
+
+            appendLedger(List.of(new MCEngineCurrencyApiTransaction(playerUuidSender, playerUuidReceiver, currencyType, "pay", amount, notes)));
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().severe("Error transferring " + currencyType + " from " + playerUuidSender + " to " + playerUuidReceiver + " - " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads a player's balances together with the in-memory version of their slot.
+     *
+     * @param playerUuid the UUID of the player
+     * @return the balances and version; {@code null} if no record is found
+     */
+    public synchronized MCEngineCurrencyApiVersionedBalances getVersionedBalances(String playerUuid) {
+        int slot = slotOf(playerUuid);
+        return slot < 0 ? null : new MCEngineCurrencyApiVersionedBalances(balancesOf(slot), versions[slot]);
+    }
+
+    /**
+     * Replaces a player's balances as one committed change if their slot still has the expected version.
+     *
+     * @param playerUuid      the UUID of the player
+     * @param expectedVersion the version the new balances were computed from
+     * @param balances        the new balances, indexed by currency id; balances of ids that are not configured are kept
+     * @return {@code true} if the balances were replaced; {@code false} if the version no longer matches, the player has no account, or an error occurs
+     */
+    public synchronized boolean compareAndSetBalances(String playerUuid, long expectedVersion, long[] balances) {
+        int slot = slotOf(playerUuid);
+        if (slot < 0 || versions[slot] != expectedVersion) return false;
+        try {
+            long[] values = slotValues(slot);
+            System.arraycopy(balances, 0, values, 0, Math.min(balances.length, currencies.size()));
+            UUID uuid = uuidOf(slot);
+            write(slot, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), values);
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().severe("Error updating balances for player uuid: " + playerUuid + " - " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.mcengine.api.currency.database.mapped;
+
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.database.provider.MCEngineCurrencyApiStorageProvider;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Built-in storage provider for {@code database.type: mapped}.
+ */
+public class MCEngineCurrencyApiMappedProvider implements MCEngineCurrencyApiStorageProvider {
+
+    /** @return {@code "mapped"}. */
+    @Override
+    public String getType() {
+        return "mapped";
+    }
+
+    /**
+     * Opens the embedded memory-mapped store for the currencies in the plugin's configuration.
+     *
+     * @param plugin The plugin instance.
+     * @return A new {@link MCEngineCurrencyApiMapped}.
+     */
+    @Override
+    public MCEngineCurrencyApiDBInterface create(Plugin plugin) {
+        return create(plugin, MCEngineCurrencyApiCurrencyRegistry.load(plugin));
+    }
+
+    /**
+     * Opens the embedded memory-mapped store.
+     *
+     * @param plugin     The plugin instance.
+     * @param currencies The configured currencies.
+     * @return A new {@link MCEngineCurrencyApiMapped}.
+     */
+    @Override
+    public MCEngineCurrencyApiDBInterface create(Plugin plugin, MCEngineCurrencyApiCurrencyRegistry currencies) {
+        return new MCEngineCurrencyApiMapped(plugin, currencies);
+    }
+}
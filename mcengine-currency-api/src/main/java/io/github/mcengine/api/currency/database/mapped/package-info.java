@@ -0,0 +1,4 @@
+/**
+ * This package contains the embedded memory-mapped storage engine.
+ */
+package io.github.mcengine.api.currency.database.mapped;
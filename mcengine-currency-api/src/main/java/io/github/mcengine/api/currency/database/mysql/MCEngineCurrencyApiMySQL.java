@@ -1,49 +1,211 @@
 package io.github.mcengine.api.currency.database.mysql;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToIntFunction;
 import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiSQL;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiVersionedBalances;
+import io.github.mcengine.api.currency.enums.MCEngineCurrencyApiType;
+import io.github.mcengine.api.currency.enums.MCEngineCurrencyApiTransactionType;
+import io.github.mcengine.api.currency.leaderboard.MCEngineCurrencyApiTopEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiCheckpoint;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryCursor;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiInsertResult;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiLedgerArchive;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiLedgerRetention;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiRollup;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiTransaction;
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiMetrics;
+import io.github.mcengine.api.currency.money.MCEngineCurrencyApiMoney;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
 import org.bukkit.plugin.Plugin;
 
+/**
+ * MySQL implementation of {@link MCEngineCurrencyApiDBInterface} backed by a HikariCP connection pool.
+ * Every operation borrows a connection from the pool, so the backend can be used from several
+ * threads at once and recovers from connections dropped by the server (e.g. after {@code wait_timeout}).
+ *
+ * <p>All statements come from the fixed set in {@link MCEngineCurrencyApiSQL}. The driver is configured
+ * to keep server-side prepared statements cached per connection, so re-preparing one of them on a
+ * pooled connection does not reach the server again.</p>
+ */
 public class MCEngineCurrencyApiMySQL implements MCEngineCurrencyApiDBInterface {
     private final Plugin plugin;
+    private final MCEngineCurrencyApiCurrencyRegistry currencies;
     private final String dbHost, dbPort, dbName, dbUser, dbPassword, dbSSL;
-    private Connection connection;
+    private HikariDataSource dataSource;
+    private final MCEngineCurrencyApiLedgerRetention retention;
 
     /**
-     * Constructs an instance of MCEngineCurrencyApiMySQL.
+     * MySQL-specific statement that creates a player's account if it does not exist yet. {@code INSERT IGNORE}
+     * reports an update count of zero for an existing account, which the driver's found-rows mode would hide
+     * for {@code ON DUPLICATE KEY UPDATE}.
+     */
+    private static final String INSERT_ACCOUNT = "INSERT IGNORE INTO currency (player_uuid) VALUES (?)";
+
+    /**
+     * MySQL-specific upsert adding to one balance of an existing account; bound with
+     * {@link MCEngineCurrencyApiSQL#bindAddAmount}. Players without an account match no row.
+     */
+    private static final String ADD_AMOUNT = "INSERT INTO currency_balance (player_uuid, currency_id, amount) "
+        + "SELECT player_uuid, ?, ? FROM currency WHERE player_uuid = ? "
+        + "ON DUPLICATE KEY UPDATE amount = currency_balance.amount + VALUES(amount)";
+
+    /**
+     * MySQL-specific upsert replacing one balance; bound with {@link MCEngineCurrencyApiSQL#bindSetAmount}.
+     */
+    private static final String SET_AMOUNT = "INSERT INTO currency_balance (player_uuid, currency_id, amount) VALUES (?, ?, ?) "
+        + "ON DUPLICATE KEY UPDATE amount = VALUES(amount)";
+
+    /**
+     * MySQL's conversions between the {@code timestamp} column and Unix seconds. {@code UNIX_TIMESTAMP} and
+     * {@code FROM_UNIXTIME} both use the session time zone, so a bound value always maps back to the stored one.
+     */
+    private static final String EPOCH_SECONDS = "UNIX_TIMESTAMP(timestamp)";
+    private static final String FROM_EPOCH_SECONDS = "FROM_UNIXTIME(?)";
+
+    /**
+     * History queries for the first page and for the pages after a cursor.
+     */
+    private static final String SELECT_HISTORY = MCEngineCurrencyApiSQL.selectHistory(EPOCH_SECONDS, FROM_EPOCH_SECONDS, false);
+    private static final String SELECT_HISTORY_AFTER = MCEngineCurrencyApiSQL.selectHistory(EPOCH_SECONDS, FROM_EPOCH_SECONDS, true);
+
+    /** Appends a ledger entry with the time it was made, bound by {@link MCEngineCurrencyApiSQL#bindTransaction}. */
+    private static final String INSERT_TRANSACTION = MCEngineCurrencyApiSQL.insertTransaction(FROM_EPOCH_SECONDS);
+
+    /**
+     * MySQL-specific upsert adding one row of daily totals to the rollups. Both sides are added, so it takes
+     * the sender and the receiver totals alike.
+     */
+    private static final String ADD_ROLLUP = MCEngineCurrencyApiSQL.INSERT_ROLLUPS + "VALUES (?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+        + "sent_count = currency_rollup_daily.sent_count + VALUES(sent_count), "
+        + "sent_amount = currency_rollup_daily.sent_amount + VALUES(sent_amount), "
+        + "received_count = currency_rollup_daily.received_count + VALUES(received_count), "
+        + "received_amount = currency_rollup_daily.received_amount + VALUES(received_amount)";
+
+    /** MySQL-specific upsert of the first UTC day that has not been rolled up. */
+    private static final String SET_ROLLUP_DAY = "INSERT INTO currency_ledger_state (name, value) VALUES ('rollup_day', ?) "
+        + "ON DUPLICATE KEY UPDATE value = VALUES(value)";
+
+    /** Lists the partitions of the ledger in order; no row means it is not partitioned. */
+    private static final String SELECT_PARTITIONS = "SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'currency_transaction' AND PARTITION_NAME IS NOT NULL "
+        + "ORDER BY PARTITION_ORDINAL_POSITION";
+
+    /** Number of months after the current one that always have their own partition. */
+    private static final int PARTITIONS_AHEAD = 2;
+
+    /** The type constraint of the ledger, listing every transaction type. */
+    private static final String TRANSACTION_TYPE_ENUM = "ENUM(" + MCEngineCurrencyApiSQL.TRANSACTION_TYPES + ")";
+
+    /**
+     * Replay queries: the changes of every player in a range of ids, the changes of one player in a range of
+     * time and the last entry at or before a time.
+     */
+    private static final String SUM_LEDGER = MCEngineCurrencyApiSQL.sumLedger("currency_transaction");
+    private static final String SUM_PLAYER_LEDGER = MCEngineCurrencyApiSQL.sumLedger("currency_transaction", FROM_EPOCH_SECONDS);
+    private static final String SELECT_LEDGER_HEAD = MCEngineCurrencyApiSQL.selectLedgerHead("currency_transaction", EPOCH_SECONDS, FROM_EPOCH_SECONDS);
+
+    /**
+     * MySQL-specific first checkpoint of a database: the last entry the ledger holds and the server's current time.
+     */
+    private static final String INSERT_FIRST_CHECKPOINT = "INSERT INTO currency_checkpoint (transaction_id, epoch_seconds) "
+        + "SELECT COALESCE(MAX(transaction_id), 0), UNIX_TIMESTAMP() FROM currency_transaction";
+
+    /**
+     * Work run inside a transaction on a pooled connection.
+     */
+    @FunctionalInterface
+    private interface Work<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Constructs an instance of MCEngineCurrencyApiMySQL for the currencies in the plugin's configuration.
      *
-     * @param plugin     The main plugin instance, used to access configuration.
-     * @param dbHost     The database host address
-     * @param dbPort     The database port number
-     * @param dbName     The name of the database
-     * @param dbUser     The username for the database connection
-     * @param dbPassword The password for the database connection
+     * @param plugin The main plugin instance, used to access configuration.
      */
     public MCEngineCurrencyApiMySQL(Plugin plugin) {
+        this(plugin, MCEngineCurrencyApiCurrencyRegistry.load(plugin));
+    }
+
+    /**
+     * Constructs an instance of MCEngineCurrencyApiMySQL from the {@code database.mysql.*} settings:
+     * host, port, name, user, password and ssl.
+     *
+     * @param plugin     The main plugin instance, used to access configuration.
+     * @param currencies The configured currencies.
+     */
+    public MCEngineCurrencyApiMySQL(Plugin plugin, MCEngineCurrencyApiCurrencyRegistry currencies) {
         this.plugin = plugin;
+        this.currencies = currencies;
         this.dbHost = plugin.getConfig().getString("database.mysql.host", "localhost");
         this.dbPort = plugin.getConfig().getString("database.mysql.port", "3306");
         this.dbName = plugin.getConfig().getString("database.mysql.name", "minecraft");
         this.dbUser = plugin.getConfig().getString("database.mysql.user", "root");
         this.dbPassword = plugin.getConfig().getString("database.mysql.password", "");
         this.dbSSL = plugin.getConfig().getString("database.mysql.ssl", "false");
+        this.retention = new MCEngineCurrencyApiLedgerRetention(plugin);
         connect();
     }
 
     /**
-     * Establishes a connection to the MySQL database.
+     * Establishes the connection pool to the MySQL database using the {@code database.mysql.pool.*} settings.
+     *
+     * <p>Connections are retired after {@code max-lifetime} and pinged every {@code keepalive-time},
+     * both of which should stay below the server's {@code wait_timeout} so the pool never hands out
+     * a connection the server has already closed.</p>
      */
     public void connect() {
-        String dbUrl = "jdbc:mysql://" + dbHost + ":" + dbPort + "/" + dbName + "?useSSL=" + dbSSL + "&serverTimezone=UTC";
+        String dbUrl = "jdbc:mysql://" + dbHost + ":" + dbPort + "/" + dbName + "?useSSL=" + dbSSL + "&serverTimezone=UTC&rewriteBatchedStatements=true";
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(dbUrl);
+        config.setUsername(dbUser);
+        config.setPassword(dbPassword);
+        config.setPoolName("MCEngineCurrency-MySQL");
+        config.setMaximumPoolSize(plugin.getConfig().getInt("database.mysql.pool.maximum-size", 10));
+        config.setMinimumIdle(plugin.getConfig().getInt("database.mysql.pool.minimum-idle", 2));
+        config.setIdleTimeout(plugin.getConfig().getLong("database.mysql.pool.idle-timeout", 600000L));
+        config.setMaxLifetime(plugin.getConfig().getLong("database.mysql.pool.max-lifetime", 1800000L));
+        config.setKeepaliveTime(plugin.getConfig().getLong("database.mysql.pool.keepalive-time", 300000L));
+        config.setConnectionTimeout(plugin.getConfig().getLong("database.mysql.pool.connection-timeout", 30000L));
+        config.setLeakDetectionThreshold(plugin.getConfig().getLong("database.mysql.pool.leak-detection-threshold", 0L));
+
+        // Keep server-side prepared statements cached on every pooled connection
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "250");
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        config.addDataSourceProperty("useLocalSessionState", "true");
+        config.addDataSourceProperty("cacheResultSetMetadata", "true");
+
+        // Without a validation query the pool uses the driver's Connection.isValid()
+        String validationQuery = plugin.getConfig().getString("database.mysql.pool.validation-query", "");
+        if (validationQuery != null && !validationQuery.isEmpty()) {
+            config.setConnectionTestQuery(validationQuery);
+        }
+
         try {
-            this.connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+            this.dataSource = new HikariDataSource(config);
             plugin.getLogger().info("Connected to MySQL database");
-        } catch (SQLException e) {
+        } catch (RuntimeException e) {
             plugin.getLogger().severe("Failed to connect to MySQL database: " + e.getMessage());
         }
     }
@@ -51,220 +213,1269 @@ public class MCEngineCurrencyApiMySQL implements MCEngineCurrencyApiDBInterface
     /**
      * Creates the required tables in the database if they do not already exist.
      *
-     * @param connection The active database connection used to execute SQL statements.
-     *
-     * The 'currency' table stores player-specific balances for different currency types:
+     * The 'currency' table stores one record per player:
      * - player_uuid: Unique identifier for the player (primary key).
-     * - coin, copper, silver, gold: Decimal values representing the player's balance for each currency type.
+     * - version: Incremented by every balance change, for optimistic updates.
+     *
+     * The 'currency_balance' table stores player-specific balances, one row per currency:
+     * - player_uuid: Identifier of the player (foreign key referencing 'currency.player_uuid').
+     * - currency_id: The id of the currency in the currency registry.
+     * - amount: The player's balance in minor units (hundredths).
      *
      * The 'currency_transaction' table records individual transactions involving currency:
      * - transaction_id: Unique identifier for each transaction (primary key, auto-incremented).
      * - player_uuid: Identifier linking the transaction to a player (foreign key referencing 'currency.player_uuid').
-     * - currency_type: Specifies the type of currency involved ('coin', 'copper', 'silver', or 'gold').
+     * - currency_type: The name of the currency involved.
      * - transaction_type: Indicates the type of transaction ('credit' or 'debit').
-     * - amount: The amount of currency involved in the transaction.
+     * - amount: The amount of currency involved in the transaction, in minor units.
      * - timestamp: Automatically records the time of the transaction.
      * - notes: Optional field for additional transaction details.
+     *
+     * With {@code ledger.partitioning} the ledger is partitioned by UTC month. Partitioned tables need the
+     * timestamp in their primary key and cannot have foreign keys, so those are dropped from an existing ledger.
+     * The 'currency_rollup_daily' table holds per-player daily totals and 'currency_ledger_state' the progress
+     * of {@link #maintainLedger()}, which fills it.
+     *
+     * Tables created by earlier versions with DECIMAL(10,2) columns are converted to minor units first,
+     * and balances kept in one column per coin are then moved to 'currency_balance'.
      */
     public void createTable() {
         // SQL for creating the 'currency' table
         String createCurrencyTableSQL = "CREATE TABLE IF NOT EXISTS currency ("
             + "player_uuid CHAR(36) PRIMARY KEY, "
-            + "coin DECIMAL(10,2), "
-            + "copper DECIMAL(10,2), "
-            + "silver DECIMAL(10,2), "
-            + "gold DECIMAL(10,2));";
+            + "version BIGINT NOT NULL DEFAULT 0);";
+
+        // SQL for creating the 'currency_balance' table; its index serves leaderboards without a table scan
+        String createBalanceTableSQL = "CREATE TABLE IF NOT EXISTS currency_balance ("
+            + "player_uuid CHAR(36) NOT NULL, "
+            + "currency_id INT NOT NULL, "
+            + "amount BIGINT NOT NULL DEFAULT 0, "
+            + "PRIMARY KEY (player_uuid, currency_id), "
+            + "INDEX idx_currency_balance_top (currency_id, amount), "
+            + "FOREIGN KEY (player_uuid) REFERENCES currency(player_uuid));";
 
         // SQL for creating the 'currency_transaction' table
         String createTransactionTableSQL = "CREATE TABLE IF NOT EXISTS currency_transaction ("
-            + "transaction_id INT AUTO_INCREMENT PRIMARY KEY, "
+            + "transaction_id INT AUTO_INCREMENT, "
             + "player_uuid_sender CHAR(36) NOT NULL, "
             + "player_uuid_receiver CHAR(36) NOT NULL, "
-            + "currency_type ENUM('coin', 'copper', 'silver', 'gold') NOT NULL, "
-            + "transaction_type ENUM('pay', 'purchase') NOT NULL, "
-            + "amount DECIMAL(10,2) NOT NULL, "
-            + "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+            + "currency_type VARCHAR(32) NOT NULL, "
+            + "transaction_type " + TRANSACTION_TYPE_ENUM + " NOT NULL, "
+            + "amount BIGINT NOT NULL, "
+            + "timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
             + "notes VARCHAR(255), "
-            + "FOREIGN KEY (player_uuid_sender) REFERENCES currency(player_uuid), "
-            + "FOREIGN KEY (player_uuid_receiver) REFERENCES currency(player_uuid));";
+            + "INDEX idx_transaction_sender (player_uuid_sender, timestamp), "
+            + "INDEX idx_transaction_receiver (player_uuid_receiver, timestamp), "
+            + (retention.isPartitioned()
+                ? "PRIMARY KEY (transaction_id, timestamp)) " + partitionBy(MCEngineCurrencyApiLedgerRetention.currentMonth())
+                : "PRIMARY KEY (transaction_id), "
+                    + "FOREIGN KEY (player_uuid_sender) REFERENCES currency(player_uuid), "
+                    + "FOREIGN KEY (player_uuid_receiver) REFERENCES currency(player_uuid));");
 
-        try (Statement stmt = connection.createStatement()) {
+        // SQL for creating the daily rollups, keyed for reading one player's days in order
+        String createRollupTableSQL = "CREATE TABLE IF NOT EXISTS currency_rollup_daily ("
+            + "player_uuid CHAR(36) NOT NULL, "
+            + "day INT NOT NULL, "
+            + "currency_type VARCHAR(32) NOT NULL, "
+            + "sent_count BIGINT NOT NULL DEFAULT 0, "
+            + "sent_amount BIGINT NOT NULL DEFAULT 0, "
+            + "received_count BIGINT NOT NULL DEFAULT 0, "
+            + "received_amount BIGINT NOT NULL DEFAULT 0, "
+            + "PRIMARY KEY (player_uuid, day, currency_type));";
+
+        // SQL for creating the table keeping the progress of ledger maintenance
+        String createLedgerStateTableSQL = "CREATE TABLE IF NOT EXISTS currency_ledger_state ("
+            + "name VARCHAR(64) PRIMARY KEY, "
+            + "value BIGINT NOT NULL);";
+
+        // SQL for creating the checkpoints the ledger replay starts from, and their balances
+        String createCheckpointTableSQL = "CREATE TABLE IF NOT EXISTS currency_checkpoint ("
+            + "checkpoint_id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+            + "transaction_id BIGINT NOT NULL, "
+            + "epoch_seconds BIGINT NOT NULL);";
+        String createCheckpointBalanceTableSQL = "CREATE TABLE IF NOT EXISTS currency_checkpoint_balance ("
+            + "checkpoint_id BIGINT NOT NULL, "
+            + "player_uuid CHAR(36) NOT NULL, "
+            + "currency_id INT NOT NULL, "
+            + "amount BIGINT NOT NULL, "
+            + "PRIMARY KEY (checkpoint_id, player_uuid, currency_id));";
+
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement()) {
             // Execute the SQL to create the 'currency' table
             stmt.executeUpdate(createCurrencyTableSQL);
             plugin.getLogger().info("Table 'currency' created successfully in MySQL database.");
 
+            // Execute the SQL to create the 'currency_balance' table
+            stmt.executeUpdate(createBalanceTableSQL);
+            plugin.getLogger().info("Table 'currency_balance' created successfully in MySQL database.");
+
             // Execute the SQL to create the 'currency_transaction' table
             stmt.executeUpdate(createTransactionTableSQL);
             plugin.getLogger().info("Table 'currency_transaction' created successfully in MySQL database.");
+
+            stmt.executeUpdate(createRollupTableSQL);
+            stmt.executeUpdate(createLedgerStateTableSQL);
+            stmt.executeUpdate(createCheckpointTableSQL);
+            stmt.executeUpdate(createCheckpointBalanceTableSQL);
+
+            // Convert tables created with DECIMAL(10,2) columns to minor units
+            migrateToMinorUnits(connection, "currency", "coin", "copper", "silver", "gold");
+            migrateToMinorUnits(connection, "currency_transaction", "amount");
+
+            // Tables created before optimistic updates have no row version yet
+            if (columnType(connection, "currency", "version") == null) {
+                stmt.executeUpdate("ALTER TABLE currency ADD COLUMN version BIGINT NOT NULL DEFAULT 0");
+                plugin.getLogger().info("Added 'version' column to 'currency' table.");
+            }
+
+            migrateToBalanceTable(connection);
+
+            // The ledger used to accept only the four built-in currency names
+            if ("enum".equals(columnType(connection, "currency_transaction", "currency_type"))) {
+                stmt.executeUpdate("ALTER TABLE currency_transaction MODIFY currency_type VARCHAR(32) NOT NULL");
+                plugin.getLogger().info("Removed the fixed currency list from 'currency_transaction'.");
+            }
+
+            // Ledgers created before every balance change was recorded only accept pays and purchases
+            if (!TRANSACTION_TYPE_ENUM.replace(", ", ",").equalsIgnoreCase(columnDefinition(connection, "currency_transaction", "transaction_type"))) {
+                stmt.executeUpdate("ALTER TABLE currency_transaction MODIFY transaction_type " + TRANSACTION_TYPE_ENUM + " NOT NULL");
+                plugin.getLogger().info("Added every transaction type to 'currency_transaction'.");
+            }
+
+            // Ledgers created before the history query have no seek indexes; built online without locking writes
+            for (String index : new String[] {"idx_transaction_sender", "idx_transaction_receiver"}) {
+                if (!indexExists(connection, "currency_transaction", index)) {
+                    String column = index.endsWith("sender") ? "player_uuid_sender" : "player_uuid_receiver";
+                    stmt.executeUpdate("ALTER TABLE currency_transaction ADD INDEX " + index + " (" + column + ", timestamp), "
+                        + "ALGORITHM=INPLACE, LOCK=NONE");
+                    plugin.getLogger().info("Added index '" + index + "' to 'currency_transaction'.");
+                }
+            }
+
+            if (retention.isPartitioned()) {
+                partitionLedger(connection);
+            }
+
+            createFirstCheckpoint();
         } catch (SQLException e) {
             plugin.getLogger().severe("Error creating tables: " + e.getMessage());
         }
     }
 
     /**
-     * Closes the current database connection.
+     * Takes the first checkpoint of a database, which has none yet: a copy of the stored balances at the last
+     * entry of the ledger. Entries written before it are not replayed, so balances changed before every change
+     * was recorded replay correctly.
+     *
+     * @throws SQLException If the checkpoint cannot be written.
+     */
+    private void createFirstCheckpoint() throws SQLException {
+        inTransaction(connection -> {
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(MCEngineCurrencyApiSQL.HAS_CHECKPOINT)) {
+                if (rs.next()) return null;
+            }
+            long checkpointId;
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate(INSERT_FIRST_CHECKPOINT, Statement.RETURN_GENERATED_KEYS);
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    if (!keys.next()) throw new SQLException("No checkpoint id was generated");
+                    checkpointId = keys.getLong(1);
+                }
+            }
+            try (PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.SNAPSHOT_BALANCES)) {
+                pstmt.setLong(1, checkpointId);
+                pstmt.executeUpdate();
+            }
+            plugin.getLogger().info("Took the first ledger checkpoint of the MySQL database.");
+            return null;
+        });
+    }
+
+    /**
+     * Partitions an existing ledger by month, with one partition for every month since its oldest entry.
+     * The foreign keys are dropped and the timestamp joins the primary key, as partitioning requires; the
+     * table is copied once, during which ledger writes wait.
+     *
+     * @param connection The connection to migrate on.
+     * @throws SQLException If a migration statement fails.
+     */
+    private void partitionLedger(Connection connection) throws SQLException {
+        if (!partitions(connection).isEmpty()) return;
+        plugin.getLogger().info("Partitioning 'currency_transaction' by month...");
+
+        List<String> foreignKeys = new ArrayList<>();
+        try (PreparedStatement pstmt = connection.prepareStatement("SELECT CONSTRAINT_NAME FROM information_schema.TABLE_CONSTRAINTS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'currency_transaction' AND CONSTRAINT_TYPE = 'FOREIGN KEY'");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                foreignKeys.add("DROP FOREIGN KEY " + rs.getString(1));
+            }
+        }
+
+        try (Statement stmt = connection.createStatement()) {
+            if (!foreignKeys.isEmpty()) {
+                stmt.executeUpdate("ALTER TABLE currency_transaction " + String.join(", ", foreignKeys));
+            }
+            YearMonth first = MCEngineCurrencyApiLedgerRetention.currentMonth();
+            try (ResultSet rs = stmt.executeQuery("SELECT UNIX_TIMESTAMP(MIN(timestamp)) FROM currency_transaction")) {
+                if (rs.next()) {
+                    long oldest = rs.getLong(1);
+                    if (!rs.wasNull() && MCEngineCurrencyApiLedgerRetention.monthOf(oldest).isBefore(first)) {
+                        first = MCEngineCurrencyApiLedgerRetention.monthOf(oldest);
+                    }
+                }
+            }
+            stmt.executeUpdate("ALTER TABLE currency_transaction MODIFY timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                + "DROP PRIMARY KEY, ADD PRIMARY KEY (transaction_id, timestamp) " + partitionBy(first));
+        }
+        plugin.getLogger().info("Partitioned 'currency_transaction' by month.");
+    }
+
+    /**
+     * Builds the partitioning clause of the ledger: one partition per month from {@code first} to
+     * {@link #PARTITIONS_AHEAD} months after the current one, and a catch-all partition after them.
+     */
+    private static String partitionBy(YearMonth first) {
+        List<String> partitions = new ArrayList<>();
+        YearMonth last = MCEngineCurrencyApiLedgerRetention.currentMonth().plusMonths(PARTITIONS_AHEAD);
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            partitions.add(partition(month));
+        }
+        partitions.add("PARTITION pmax VALUES LESS THAN MAXVALUE");
+        return "PARTITION BY RANGE (UNIX_TIMESTAMP(timestamp)) (" + String.join(", ", partitions) + ")";
+    }
+
+    /**
+     * Defines the partition of one month, which holds the entries before the start of the next month.
+     */
+    private static String partition(YearMonth month) {
+        return "PARTITION p" + MCEngineCurrencyApiLedgerRetention.suffix(month)
+            + " VALUES LESS THAN (" + MCEngineCurrencyApiLedgerRetention.startOf(month.plusMonths(1)) + ")";
+    }
+
+    /**
+     * Lists the partitions of the ledger in order.
+     *
+     * @return The partition names; empty if the ledger is not partitioned.
+     */
+    private List<String> partitions(Connection connection) throws SQLException {
+        List<String> partitions = new ArrayList<>();
+        try (PreparedStatement pstmt = connection.prepareStatement(SELECT_PARTITIONS);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                partitions.add(rs.getString(1));
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Moves balances kept in one 'currency' column per coin into 'currency_balance'.
+     *
+     * <p>Each column is copied under the id of the configured currency with the same name and then dropped,
+     * which also drops its index. The copy skips rows that already exist, so a migration interrupted between
+     * the two steps completes on the next start. A column without a matching currency is kept, so its
+     * balances are not lost, and migrated once one is configured.</p>
+     *
+     * @param connection The connection to migrate on.
+     * @throws SQLException If a migration statement fails.
+     */
+    private void migrateToBalanceTable(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (MCEngineCurrencyApiType type : MCEngineCurrencyApiType.values()) {
+                String column = type.name().toLowerCase(Locale.ROOT);
+                if (columnType(connection, "currency", column) == null) continue;
+                int currencyId = currencies.indexOf(column);
+                if (currencyId < 0) {
+                    plugin.getLogger().warning("Keeping column 'currency." + column + "': no currency named '" + column + "' is configured to move its balances to.");
+                    continue;
+                }
+                stmt.executeUpdate("INSERT IGNORE INTO currency_balance (player_uuid, currency_id, amount) "
+                    + "SELECT player_uuid, " + currencyId + ", " + column + " FROM currency WHERE " + column + " <> 0");
+                stmt.executeUpdate("ALTER TABLE currency DROP COLUMN " + column);
+                plugin.getLogger().info("Moved '" + column + "' balances to 'currency_balance' as currency id " + currencyId + ".");
+            }
+        }
+    }
+
+    /**
+     * Converts DECIMAL amount columns into BIGINT minor units.
+     *
+     * <p>Each column gets a {@code <column>_minor} copy that is filled from the original, then the
+     * originals are dropped and the copies renamed in one ALTER. Every step can be repeated, so a
+     * migration interrupted by a crash completes on the next start without scaling any value twice.</p>
+     *
+     * @param connection The connection to migrate on.
+     * @param table      The table holding the columns.
+     * @param columns    The amount columns.
+     * @throws SQLException If a migration statement fails.
+     */
+    private void migrateToMinorUnits(Connection connection, String table, String... columns) throws SQLException {
+        if (!"decimal".equalsIgnoreCase(columnType(connection, table, columns[0]))) return;
+        plugin.getLogger().info("Converting '" + table + "' amounts to minor units...");
+
+        List<String> add = new ArrayList<>();
+        List<String> copy = new ArrayList<>();
+        List<String> replace = new ArrayList<>();
+        for (String column : columns) {
+            if (columnType(connection, table, column + "_minor") == null) {
+                add.add("ADD COLUMN " + column + "_minor BIGINT NOT NULL DEFAULT 0");
+            }
+            copy.add(column + "_minor = ROUND(COALESCE(" + column + ", 0) * " + MCEngineCurrencyApiMoney.MINOR_PER_UNIT + ")");
+            replace.add("DROP COLUMN " + column);
+            replace.add("CHANGE COLUMN " + column + "_minor " + column + " BIGINT NOT NULL DEFAULT 0");
+        }
+
+        try (Statement stmt = connection.createStatement()) {
+            if (!add.isEmpty()) {
+                stmt.executeUpdate("ALTER TABLE " + table + " " + String.join(", ", add));
+            }
+            stmt.executeUpdate("UPDATE " + table + " SET " + String.join(", ", copy));
+            stmt.executeUpdate("ALTER TABLE " + table + " " + String.join(", ", replace));
+        }
+        plugin.getLogger().info("Converted '" + table + "' amounts to minor units.");
+    }
+
+    /**
+     * Looks up the data type of a column in the current database.
+     *
+     * @return The lower-case data type, or {@code null} if the column does not exist.
+     */
+    private String columnType(Connection connection, String table, String column) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "SELECT DATA_TYPE FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, column);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1).toLowerCase(Locale.ROOT) : null;
+            }
+        }
+    }
+
+    /**
+     * Looks up the full column type of a column in the current database, e.g. the values of an ENUM.
+     *
+     * @return The lower-case column type, or {@code null} if the column does not exist.
+     */
+    private String columnDefinition(Connection connection, String table, String column) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "SELECT COLUMN_TYPE FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?")) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, column);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1).toLowerCase(Locale.ROOT) : null;
+            }
+        }
+    }
+
+    /**
+     * Checks whether an index exists in the current database.
+     *
+     * @return {@code true} if the table has an index with that name.
+     */
+    private boolean indexExists(Connection connection, String table, String index) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "SELECT 1 FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ?")) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, index);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Closes the connection pool and every connection it holds.
      */
     public void disConnection() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                plugin.getLogger().info("Disconnected from MySQL database.");
+        if (dataSource != null && !dataSource.isClosed()) {
+            dataSource.close();
+            plugin.getLogger().info("Disconnected from MySQL database.");
+        }
+    }
+
+    /**
+     * Runs work in one transaction on a pooled connection. Work that rejects an operation rolls back
+     * itself before returning; an exception rolls back everything and is rethrown.
+     */
+    private <T> T inTransaction(Work<T> work) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                T result = work.apply(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
             }
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Error while disconnecting from MySQL database: " + e.getMessage());
         }
     }
 
     /**
-     * Retrieves the amount of a specified coin type for a player from the database.
+     * Retrieves the amount of a currency for a player from the database.
      *
-     * @param playerUuid the UUID of the player whose coin balance is to be retrieved
-     * @param coinType   the type of coin to retrieve (e.g., "Copper", "Silver", "Gold")
-     * @return the amount of the specified coin type the player has; returns 0.0 if no record is found or if an error occurs
-     * @throws IllegalArgumentException if the coinType parameter is invalid or null
-     * @implNote This method queries the database table "currency" for the coin balance.
-     *           Ensure that the `connection` object is properly initialized and connected to the database.
-     * @implSpec The `coinType` parameter should match a valid column name in the "currency" table.
+     * @param playerUuid the UUID of the player whose balance is to be retrieved
+     * @param currencyId the id of the currency to retrieve
+     * @return the amount of the currency the player has; returns 0 if no record is found, the currency id is invalid or an error occurs
      */
-    public double getCoin(String playerUuid, String coinType) {
-        String query = "SELECT " + coinType + " FROM currency WHERE player_uuid = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+    public long getCoin(String playerUuid, int currencyId) {
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return 0L;
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.SELECT_COIN)) {
             pstmt.setString(1, playerUuid);
+            pstmt.setInt(2, currencyId);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getDouble(1);
+                    return rs.getLong(1);
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error retrieving " + coinType + " for player uuid: " + playerUuid + " - " + e.getMessage());
+            plugin.getLogger().severe("Error retrieving " + currencies.nameOf(currencyId) + " for player uuid: " + playerUuid + " - " + e.getMessage());
         }
-        return 0.0; // Default value if no record is found
+        return 0L; // Default value if no record is found
     }
 
     /**
-     * Returns the active database connection.
+     * Retrieves all balances of a player in a single query.
      *
-     * @return the current database connection
+     * @param playerUuid the UUID of the player whose balances are to be retrieved
+     * @return the balances indexed by currency id; {@code null} if no record is found or if an error occurs
      */
-    public Connection getConnection() {
-        return connection;
+    public long[] getBalances(String playerUuid) {
+        MCEngineCurrencyApiVersionedBalances versioned = getVersionedBalances(playerUuid);
+        return versioned != null ? versioned.balances() : null;
     }
 
     /**
-     * Inserts or updates a player's currency values in the database.
+     * Retrieves all balances of many players, {@link MCEngineCurrencyApiSQL#BALANCES_CHUNK_SIZE} per query.
      *
-     * @param playerUuid the unique identifier for the player
-     * @param coin       the amount of coin currency
-     * @param copper     the amount of copper currency
-     * @param silver     the amount of silver currency
-     * @param gold       the amount of gold currency
-     */
-    public void insertCurrency(String playerUuid, double coin, double copper, double silver, double gold) {
-        String query = "INSERT INTO currency (player_uuid, coin, copper, silver, gold) VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE player_uuid = player_uuid;";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+     * @param playerUuids the UUIDs of the players whose balances are to be retrieved
+     * @return the balances of every player with a record, keyed by UUID; the balances read so far if an error occurs
+     */
+    public Map<String, long[]> getBalances(Collection<String> playerUuids) {
+        Map<String, long[]> balances = new HashMap<>();
+        if (playerUuids.isEmpty()) return balances;
+        List<String> uuids = new ArrayList<>(playerUuids);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.SELECT_BALANCES_IN)) {
+            for (int from = 0; from < uuids.size(); from += MCEngineCurrencyApiSQL.BALANCES_CHUNK_SIZE) {
+                MCEngineCurrencyApiSQL.bindUuidChunk(pstmt, uuids, from);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    MCEngineCurrencyApiSQL.readBalances(rs, currencies.size(), balances);
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving balances for " + uuids.size() + " players - " + e.getMessage());
+        }
+        return balances;
+    }
+
+    /**
+     * Retrieves the players with the highest balance of one currency, walking the balance index.
+     *
+     * @param currencyId the id of the currency to rank by
+     * @param offset     the number of leading entries to skip
+     * @param limit      the maximum number of entries to return
+     * @return the entries in descending balance order; empty if the currency id is invalid or an error occurs
+     */
+    public List<MCEngineCurrencyApiTopEntry> getTop(int currencyId, int offset, int limit) {
+        List<MCEngineCurrencyApiTopEntry> top = new ArrayList<>();
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return top;
+        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.SELECT_TOP)) {
+            pstmt.setInt(1, currencyId);
+            pstmt.setInt(2, limit);
+            pstmt.setInt(3, offset);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    top.add(new MCEngineCurrencyApiTopEntry(rs.getString(1), rs.getLong(2)));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving top " + currencies.nameOf(currencyId) + " balances - " + e.getMessage());
+        }
+        return top;
+    }
+
+    /**
+     * Reads the ledger entries a player sent or received, newest first, seeking past the cursor
+     * on the sender and receiver indexes. InnoDB appends the primary key to every secondary index,
+     * so they also order entries with the same timestamp.
+     *
+     * @param playerUuid the UUID of the player
+     * @param before     the cursor to continue after, or {@code null} for the newest entries
+     * @param limit      the maximum number of entries to return
+     * @return the entries; empty if there are none or an error occurs
+     */
+    @Override
+    public List<MCEngineCurrencyApiHistoryEntry> getTransactions(String playerUuid, MCEngineCurrencyApiHistoryCursor before, int limit) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(before != null ? SELECT_HISTORY_AFTER : SELECT_HISTORY)) {
+            MCEngineCurrencyApiSQL.bindHistory(pstmt, playerUuid, before, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return MCEngineCurrencyApiSQL.readHistory(rs);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving transaction history - " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Reads a player's daily ledger totals from the rollup table.
+     *
+     * @param playerUuid the UUID of the player
+     * @param fromDay    the first UTC day, in days since the epoch
+     * @param toDay      the last UTC day, inclusive
+     * @return the rollups by day and currency; empty if there are none or an error occurs
+     */
+    @Override
+    public List<MCEngineCurrencyApiRollup> getRollups(String playerUuid, long fromDay, long toDay) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.SELECT_ROLLUPS)) {
             pstmt.setString(1, playerUuid);
-            pstmt.setDouble(2, coin);
-            pstmt.setDouble(3, copper);
-            pstmt.setDouble(4, silver);
-            pstmt.setDouble(5, gold);
+            pstmt.setLong(2, fromDay);
+            pstmt.setLong(3, toDay);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return MCEngineCurrencyApiSQL.readRollups(rs);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving ledger rollups for player uuid: " + playerUuid + " - " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Adds the partitions of the coming months, rolls up the days that are over and archives and drops the
+     * partitions past {@code ledger.retention.months}. Dropping a partition only discards its files, so the
+     * cost does not depend on how large the ledger is. Stops between steps when the thread is interrupted.
+     */
+    @Override
+    public void maintainLedger() {
+        try {
+            List<String> partitions;
+            try (Connection connection = dataSource.getConnection()) {
+                partitions = partitions(connection);
+            }
+            if (retention.isPartitioned() && !partitions.isEmpty()) {
+                addPartitions(partitions);
+            }
+            rollUp();
+            expirePartitions(partitions);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error maintaining the MySQL ledger - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Splits the catch-all partition so every month up to {@link #PARTITIONS_AHEAD} months ahead has its own.
+     * The catch-all partition is empty by then, so reorganizing it copies nothing.
+     */
+    private void addPartitions(List<String> partitions) throws SQLException {
+        YearMonth last = null;
+        for (String name : partitions) {
+            YearMonth month = name.startsWith("p") ? MCEngineCurrencyApiLedgerRetention.parseSuffix(name) : null;
+            if (month != null && (last == null || month.isAfter(last))) last = month;
+        }
+        YearMonth current = MCEngineCurrencyApiLedgerRetention.currentMonth();
+        YearMonth from = last != null ? last.plusMonths(1) : current;
+        List<String> added = new ArrayList<>();
+        for (YearMonth month = from; !month.isAfter(current.plusMonths(PARTITIONS_AHEAD)); month = month.plusMonths(1)) {
+            added.add(partition(month));
+        }
+        if (added.isEmpty()) return;
+
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement()) {
+            if (partitions.contains("pmax")) {
+                stmt.executeUpdate("ALTER TABLE currency_transaction REORGANIZE PARTITION pmax INTO ("
+                    + String.join(", ", added) + ", PARTITION pmax VALUES LESS THAN MAXVALUE)");
+            } else {
+                stmt.executeUpdate("ALTER TABLE currency_transaction ADD PARTITION (" + String.join(", ", added) + ")");
+            }
+        }
+        plugin.getLogger().info("Added " + added.size() + " monthly partitions to 'currency_transaction'.");
+    }
+
+    /**
+     * Adds the days that are over to 'currency_rollup_daily', a few days per transaction, and advances the
+     * {@code rollup_day} watermark with them, so no day is ever counted twice. The totals are read with a
+     * plain consistent read and written in batches, so unlike {@code INSERT ... SELECT} they never lock
+     * ledger rows that concurrent inserts are waiting for.
+     */
+    private void rollUp() throws SQLException {
+        long end = MCEngineCurrencyApiLedgerRetention.rollupEnd();
+        long from = inTransaction(connection -> {
+            Long day = rollupDay(connection);
+            if (day != null) return day;
+            // First run: start at the oldest entry
+            long first = end;
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT UNIX_TIMESTAMP(timestamp) FROM currency_transaction ORDER BY transaction_id LIMIT 1")) {
+                if (rs.next()) first = Math.min(first, MCEngineCurrencyApiLedgerRetention.dayOf(rs.getLong(1)));
+            }
+            setRollupDay(connection, first);
+            return first;
+        });
+
+        while (from < end && !Thread.currentThread().isInterrupted()) {
+            long start = from;
+            long stop = Math.min(end, from + MCEngineCurrencyApiLedgerRetention.ROLLUP_DAYS_PER_STEP);
+            inTransaction(connection -> {
+                try (PreparedStatement addStmt = connection.prepareStatement(ADD_ROLLUP)) {
+                    for (boolean sent : new boolean[] {true, false}) {
+                        String sql = MCEngineCurrencyApiSQL.aggregateRollups("currency_transaction", sent, EPOCH_SECONDS + " DIV 86400", FROM_EPOCH_SECONDS);
+                        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                            pstmt.setLong(1, MCEngineCurrencyApiLedgerRetention.startOfDay(start));
+                            pstmt.setLong(2, MCEngineCurrencyApiLedgerRetention.startOfDay(stop));
+                            try (ResultSet rs = pstmt.executeQuery()) {
+                                while (rs.next()) {
+                                    addStmt.setString(1, rs.getString(1));
+                                    addStmt.setLong(2, rs.getLong(2));
+                                    addStmt.setString(3, rs.getString(3));
+                                    for (int column = 4; column <= 7; column++) {
+                                        addStmt.setLong(column, rs.getLong(column));
+                                    }
+                                    addStmt.addBatch();
+                                }
+                            }
+                        }
+                    }
+                    addStmt.executeBatch();
+                }
+                setRollupDay(connection, stop);
+                return null;
+            });
+            from = stop;
+        }
+    }
+
+    /**
+     * @return The first day that has not been rolled up, or {@code null} if rollups have never run.
+     */
+    private static Long rollupDay(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(MCEngineCurrencyApiSQL.SELECT_ROLLUP_DAY)) {
+            return rs.next() ? rs.getLong(1) : null;
+        }
+    }
+
+    /**
+     * Stores the first day that has not been rolled up.
+     */
+    private static void setRollupDay(Connection connection, long day) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(SET_ROLLUP_DAY)) {
+            pstmt.setLong(1, day);
             pstmt.executeUpdate();
-            plugin.getLogger().info("Currency information added for player uuid: " + playerUuid);
+        }
+    }
+
+    /**
+     * Archives and drops every monthly partition past the retention window whose days are all rolled up and
+     * that ends before the newest checkpoint, so the ledger replay never needs a dropped entry.
+     */
+    private void expirePartitions(List<String> partitions) throws SQLException {
+        Long rolledUp = null;
+        MCEngineCurrencyApiCheckpoint checkpoint = null;
+        for (String name : partitions) {
+            if (Thread.currentThread().isInterrupted()) return;
+            YearMonth month = name.startsWith("p") ? MCEngineCurrencyApiLedgerRetention.parseSuffix(name) : null;
+            if (month == null || !retention.isExpired(month)) continue;
+            if (rolledUp == null) {
+                try (Connection connection = dataSource.getConnection()) {
+                    rolledUp = rollupDay(connection);
+                    checkpoint = checkpoint(connection, Long.MAX_VALUE);
+                }
+                if (rolledUp == null || checkpoint == null) return;
+            }
+            long monthEnd = MCEngineCurrencyApiLedgerRetention.startOf(month.plusMonths(1));
+            if (rolledUp < MCEngineCurrencyApiLedgerRetention.dayOf(monthEnd) || checkpoint.epochSeconds() < monthEnd) continue;
+            archivePartition(name, month);
+        }
+    }
+
+    /**
+     * Writes a partition to its archive one chunk at a time and drops it once the archive is on disk.
+     */
+    private void archivePartition(String name, YearMonth month) throws SQLException {
+        String sql = MCEngineCurrencyApiSQL.selectArchive("currency_transaction PARTITION (" + name + ")", EPOCH_SECONDS);
+        try (MCEngineCurrencyApiLedgerArchive archive = retention.openArchive(month)) {
+            int appended;
+            do {
+                if (Thread.currentThread().isInterrupted()) return;
+                try (Connection connection = dataSource.getConnection();
+                     PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    pstmt.setLong(1, archive.getLastTransactionId());
+                    pstmt.setInt(2, MCEngineCurrencyApiLedgerRetention.CHUNK_SIZE);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        appended = archive.append(rs);
+                    }
+                }
+            } while (appended == MCEngineCurrencyApiLedgerRetention.CHUNK_SIZE);
+            archive.commit();
+
+            try (Connection connection = dataSource.getConnection();
+                 Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate("ALTER TABLE currency_transaction DROP PARTITION " + name);
+            }
+            plugin.getLogger().info("Archived " + archive.getRows() + " ledger entries of " + month + " to '" + archive.getFile().getName()
+                + "' and dropped partition '" + name + "'.");
+        } catch (IOException e) {
+            throw new SQLException("Could not archive partition '" + name + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Finds the newest checkpoint taken at or before a time.
+     *
+     * @param epochSeconds the time in Unix seconds
+     * @return the checkpoint, or {@code null} if there is none or an error occurs
+     */
+    @Override
+    public MCEngineCurrencyApiCheckpoint getCheckpoint(long epochSeconds) {
+        try (Connection connection = dataSource.getConnection()) {
+            return checkpoint(connection, epochSeconds);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving ledger checkpoint - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the newest checkpoint taken at or before a time on a given connection.
+     */
+    private static MCEngineCurrencyApiCheckpoint checkpoint(Connection connection, long epochSeconds) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.SELECT_CHECKPOINT)) {
+            pstmt.setLong(1, epochSeconds);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return MCEngineCurrencyApiSQL.readCheckpoint(rs);
+            }
+        }
+    }
+
+    /**
+     * Reads every balance stored in a checkpoint.
+     *
+     * @param checkpointId the id of the checkpoint
+     * @return the balances keyed by player UUID and indexed by currency id, or {@code null} if an error occurs
+     */
+    @Override
+    public Map<String, long[]> getCheckpointBalances(long checkpointId) {
+        Map<String, long[]> balances = new HashMap<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.SELECT_CHECKPOINT_BALANCES)) {
+            pstmt.setLong(1, checkpointId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MCEngineCurrencyApiSQL.readBalances(rs, currencies.size(), balances);
+            }
+            return balances;
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving balances of ledger checkpoint " + checkpointId + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads one player's balances stored in a checkpoint.
+     *
+     * @param checkpointId the id of the checkpoint
+     * @param playerUuid   the UUID of the player
+     * @return the balances indexed by currency id, all zero if the player had none, or {@code null} if an error occurs
+     */
+    @Override
+    public long[] getCheckpointBalances(long checkpointId, String playerUuid) {
+        Map<String, long[]> balances = new HashMap<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.SELECT_CHECKPOINT_BALANCE)) {
+            pstmt.setLong(1, checkpointId);
+            pstmt.setString(2, playerUuid);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MCEngineCurrencyApiSQL.readBalances(rs, currencies.size(), balances);
+            }
+            return balances.getOrDefault(playerUuid, new long[currencies.size()]);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving checkpoint balances for player uuid: " + playerUuid + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Finds the last ledger entry written at or before a time by walking the primary key backwards; on a
+     * partitioned ledger the partitions after the time are pruned.
+     *
+     * @param epochSeconds the time in Unix seconds
+     * @return the position of the entry, or {@code null} if there is none or an error occurs
+     */
+    @Override
+    public MCEngineCurrencyApiCheckpoint getLedgerHead(long epochSeconds) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(SELECT_LEDGER_HEAD)) {
+            pstmt.setLong(1, MCEngineCurrencyApiSQL.clampEpochSeconds(epochSeconds));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return MCEngineCurrencyApiSQL.readCheckpoint(rs);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving the last ledger entry - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sums the balance changes of every player in a range of transaction ids with a non-locking read of the
+     * primary key, so a replay never blocks ledger writes. Each call borrows its own connection, so several
+     * ranges can be summed at once.
+     *
+     * @param afterId the last transaction id before the range
+     * @param lastId  the last transaction id of the range
+     * @return the changes keyed by player UUID and indexed by currency id, or {@code null} if an error occurs
+     */
+    @Override
+    public Map<String, long[]> sumLedger(long afterId, long lastId) {
+        Map<String, long[]> sums = new HashMap<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(SUM_LEDGER)) {
+            MCEngineCurrencyApiSQL.bindLedgerSum(pstmt, afterId, lastId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MCEngineCurrencyApiSQL.readLedgerSums(rs, currencies, sums);
+            }
+            return sums;
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error summing ledger entries " + (afterId + 1) + " to " + lastId + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sums the balance changes of one player after a checkpoint, up to a time.
+     *
+     * @param playerUuid     the UUID of the player
+     * @param after          the checkpoint whose entries are already counted
+     * @param toEpochSeconds the end of the range in Unix seconds, inclusive
+     * @return the changes indexed by currency id, or {@code null} if an error occurs
+     */
+    @Override
+    public long[] sumLedger(String playerUuid, MCEngineCurrencyApiCheckpoint after, long toEpochSeconds) {
+        Map<String, long[]> sums = new HashMap<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(SUM_PLAYER_LEDGER)) {
+            MCEngineCurrencyApiSQL.bindLedgerSum(pstmt, playerUuid, after.epochSeconds(),
+                MCEngineCurrencyApiSQL.clampEpochSeconds(toEpochSeconds), after.transactionId());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                MCEngineCurrencyApiSQL.readLedgerSums(rs, currencies, sums);
+            }
+            return sums.getOrDefault(playerUuid, new long[currencies.size()]);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error summing ledger entries for player uuid: " + playerUuid + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Saves a checkpoint and its balances in one transaction, sending the balances in batches of
+     * {@link MCEngineCurrencyApiLedgerRetention#CHUNK_SIZE} rows.
+     *
+     * @param position the position the balances belong to
+     * @param balances the balances keyed by player UUID and indexed by currency id
+     * @return the saved checkpoint, or {@code null} if it was rolled back
+     */
+    @Override
+    public MCEngineCurrencyApiCheckpoint saveCheckpoint(MCEngineCurrencyApiCheckpoint position, Map<String, long[]> balances) {
+        try {
+            return inTransaction(connection -> {
+                long checkpointId;
+                try (PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.INSERT_CHECKPOINT, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmt.setLong(1, position.transactionId());
+                    pstmt.setLong(2, position.epochSeconds());
+                    pstmt.executeUpdate();
+                    try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                        if (!keys.next()) throw new SQLException("No checkpoint id was generated");
+                        checkpointId = keys.getLong(1);
+                    }
+                }
+                try (PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.INSERT_CHECKPOINT_BALANCE)) {
+                    MCEngineCurrencyApiSQL.batchCheckpoint(pstmt, checkpointId, balances, MCEngineCurrencyApiLedgerRetention.CHUNK_SIZE);
+                }
+                return new MCEngineCurrencyApiCheckpoint(checkpointId, position.transactionId(), position.epochSeconds());
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error saving ledger checkpoint - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the checkpoints taken before a time, except one that must be kept.
+     *
+     * @param beforeEpochSeconds the time in Unix seconds
+     * @param keepId             the id of a checkpoint to keep regardless
+     */
+    @Override
+    public void deleteCheckpoints(long beforeEpochSeconds, long keepId) {
+        try {
+            inTransaction(connection -> {
+                for (String sql : new String[] {MCEngineCurrencyApiSQL.DELETE_CHECKPOINT_BALANCES, MCEngineCurrencyApiSQL.DELETE_CHECKPOINTS}) {
+                    try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                        pstmt.setLong(1, beforeEpochSeconds);
+                        pstmt.setLong(2, keepId);
+                        pstmt.executeUpdate();
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error deleting ledger checkpoints - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool. The caller must close it to return it to the pool.
+     *
+     * @return a pooled database connection, or {@code null} if none could be obtained
+     */
+    public Connection getConnection() {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to borrow a MySQL connection: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Creates a player's record with the given balances. Does nothing if the player already has one.
+     *
+     * @param playerUuid the unique identifier for the player
+     * @param balances   the starting balances, indexed by currency id
+     */
+    public void insertCurrency(String playerUuid, long[] balances) {
+        try {
+            inTransaction(connection -> {
+                try (PreparedStatement accountStmt = connection.prepareStatement(INSERT_ACCOUNT);
+                     PreparedStatement setStmt = connection.prepareStatement(SET_AMOUNT)) {
+                    accountStmt.setString(1, playerUuid);
+                    if (accountStmt.executeUpdate() == 1 && MCEngineCurrencyApiSQL.batchBalances(setStmt, playerUuid, balances, true) > 0) {
+                        setStmt.executeBatch();
+                    }
+                }
+                return null;
+            });
         } catch (SQLException e) {
             plugin.getLogger().severe("Error inserting currency for player uuid: " + playerUuid + " - " + e.getMessage());
         }
     }
 
+    /**
+     * Creates a player's record with zero balances if it does not exist and returns the balances.
+     * MySQL has no {@code RETURNING}, so the insert and the read are two statements in one transaction.
+     *
+     * @param playerUuid the unique identifier for the player
+     * @return the balances in minor units, indexed by currency id; {@code null} if an error occurs
+     */
+    public long[] loadOrCreateBalances(String playerUuid) {
+        try {
+            return inTransaction(connection -> {
+                try (PreparedStatement insertStmt = connection.prepareStatement(INSERT_ACCOUNT);
+                     PreparedStatement selectStmt = connection.prepareStatement(MCEngineCurrencyApiSQL.SELECT_BALANCES)) {
+                    insertStmt.setString(1, playerUuid);
+                    insertStmt.executeUpdate();
+
+                    selectStmt.setString(1, playerUuid);
+                    try (ResultSet rs = selectStmt.executeQuery()) {
+                        MCEngineCurrencyApiVersionedBalances versioned = MCEngineCurrencyApiSQL.readBalances(rs, currencies.size());
+                        return versioned != null ? versioned.balances() : null;
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error loading currency for player uuid: " + playerUuid + " - " + e.getMessage());
+        }
+        return null;
+    }
+
     /**
      * Inserts a transaction record into the currency_transaction table.
      * 
      * @param playerUuidSender the unique identifier of the sender.
      * @param playerUuidReceiver the unique identifier of the receiver.
-     * @param currencyType the type of currency involved in the transaction (coin, copper, silver, gold).
-     * @param transactionType the type of transaction (pay, purchase).
+     * @param currencyType the name of the currency involved in the transaction.
+     * @param transactionType the type of transaction, see {@link MCEngineCurrencyApiTransactionType}.
      * @param amount the amount of currency involved in the transaction.
      * @param notes optional notes about the transaction.
      */
     public void insertTransaction(String playerUuidSender, String playerUuidReceiver, String currencyType, 
-        String transactionType, double amount, String notes) {
+        String transactionType, long amount, String notes) {
 
         // Validate currencyType and transactionType
-        if (!currencyType.matches("coin|copper|silver|gold")) {
+        if (currencies.indexOf(currencyType) < 0) {
             plugin.getLogger().severe("Invalid currency type: " + currencyType);
         }
-        if (!transactionType.matches("pay|purchase")) {
+        if (MCEngineCurrencyApiTransactionType.of(transactionType) == null) {
             plugin.getLogger().severe("Invalid transaction type: " + transactionType);
         }
 
-        String query = "INSERT INTO currency_transaction (player_uuid_sender, player_uuid_receiver, currency_type, "
-        + "transaction_type, amount, notes) VALUES (?, ?, ?, ?, ?, ?);";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, playerUuidSender);
-            pstmt.setString(2, playerUuidReceiver);
-            pstmt.setString(3, currencyType);
-            pstmt.setString(4, transactionType);
-            pstmt.setDouble(5, amount);
-            pstmt.setString(6, notes);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(INSERT_TRANSACTION)) {
+            MCEngineCurrencyApiSQL.bindTransaction(pstmt, new MCEngineCurrencyApiTransaction(playerUuidSender, playerUuidReceiver, currencyType, transactionType, amount, notes));
 
             pstmt.executeUpdate();
-            plugin.getLogger().info("Transaction successfully recorded between " 
-            + playerUuidSender + " and " + playerUuidReceiver);
         } catch (SQLException e) {
             plugin.getLogger().severe("Error inserting transaction: " + e.getMessage());
         }
     }
 
+    /**
+     * Inserts many transaction records using one batched insert inside a single transaction.
+     * With {@code rewriteBatchedStatements} the driver sends the batch as multi-row inserts.
+     *
+     * @param transactions the ledger entries to insert
+     * @return whether the batch was committed, or why it was rolled back
+     */
+    public MCEngineCurrencyApiInsertResult insertTransactions(List<MCEngineCurrencyApiTransaction> transactions) {
+        if (transactions.isEmpty()) return MCEngineCurrencyApiInsertResult.WRITTEN;
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement pstmt = connection.prepareStatement(INSERT_TRANSACTION)) {
+                for (MCEngineCurrencyApiTransaction transaction : transactions) {
+                    MCEngineCurrencyApiSQL.bindTransaction(pstmt, transaction);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                connection.commit();
+                return MCEngineCurrencyApiInsertResult.WRITTEN;
+            } catch (SQLException e) {
+                connection.rollback();
+                plugin.getLogger().severe("Error inserting " + transactions.size() + " transactions - " + e.getMessage());
+                return MCEngineCurrencyApiSQL.classify(e, false);
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error inserting " + transactions.size() + " transactions - " + e.getMessage());
+            return MCEngineCurrencyApiInsertResult.FAILED;
+        }
+    }
+
     /**
      * Checks if a player with the specified UUID exists in the database.
      *
      * @param uuid the UUID of the player to check
      * @return {@code true} if a player with the specified UUID exists, {@code false} otherwise
-     * @throws SQLException if a database access error occurs
      *
      * <p>This method executes a SQL query to count the number of players with the given UUID
-     * in the 'players' table. If the query result is greater than 0, the player exists.</p>
-     *
-     * <p>Note: Exceptions are caught and printed to the standard error stream. Ensure proper
-     * exception handling and logging in production code.</p>
+     * in the 'currency' table. If the query result is greater than 0, the player exists.</p>
      */
     public boolean playerExists(String uuid) {
-        String query = "SELECT COUNT(*) FROM players WHERE uuid = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(MCEngineCurrencyApiSQL.PLAYER_EXISTS)) {
             stmt.setString(1, uuid);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1) > 0;
+                }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            plugin.getLogger().severe("Error checking player uuid: " + uuid + " - " + e.getMessage());
         }
         return false;
     }
 
     /**
-     * Updates a specific currency value for a player.
+     * Updates one currency of a player and bumps the record's version in one transaction.
      *
      * @param playerUuid the unique identifier for the player
-     * @param operator   the operation to perform ('+' or '-')
-     * @param coinType   the type of currency to update (e.g., 'coin', 'copper', 'silver', 'gold')
+     * @param operator   the operation to perform ("+" or "-")
+     * @param currencyId the id of the currency to update
      * @param amt        the amount to adjust the currency value by
      */
-    public void updateCurrencyValue(String playerUuid, String operator, String coinType, double amt) {
-        // Validate coinType against allowed columns
-        if (!coinType.matches("coin|copper|silver|gold")) {
-            plugin.getLogger().severe("Invalid coin type: " + coinType);
+    public void updateCurrencyValue(String playerUuid, String operator, int currencyId, long amt) {
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return;
         }
 
-        String query = "UPDATE currency SET " + coinType + " = " + coinType + " " + operator
-        + " ? WHERE player_uuid = ?";
+        long delta;
+        if ("+".equals(operator)) {
+            delta = amt;
+        } else if ("-".equals(operator)) {
+            delta = -amt;
+        } else {
+            plugin.getLogger().severe("Invalid operator: " + operator);
+            return;
+        }
 
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setDouble(1, amt);
-            pstmt.setString(2, playerUuid);
-            pstmt.executeUpdate();
-            plugin.getLogger().info("Updated " + coinType + " for player uuid: " + playerUuid);
+        try {
+            inTransaction(connection -> {
+                try (PreparedStatement addStmt = connection.prepareStatement(ADD_AMOUNT);
+                     PreparedStatement bumpStmt = connection.prepareStatement(MCEngineCurrencyApiSQL.BUMP_VERSION)) {
+                    MCEngineCurrencyApiSQL.bindAddAmount(addStmt, playerUuid, currencyId, delta);
+                    if (addStmt.executeUpdate() == 0) return 0;
+                    bumpStmt.setString(1, playerUuid);
+                    return bumpStmt.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error updating " + currencies.nameOf(currencyId) + " for player uuid: " + playerUuid + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies balance deltas for many players using batched upserts inside a single transaction.
+     *
+     * @param deltas the deltas to add, keyed by player UUID and indexed by currency id
+     * @return {@code true} if the batch was committed, {@code false} if it was rolled back
+     */
+    public boolean updateCurrencyValues(Map<String, long[]> deltas) {
+        if (deltas.isEmpty()) return true;
+
+        try {
+            return inTransaction(connection -> {
+                try (PreparedStatement addStmt = connection.prepareStatement(ADD_AMOUNT);
+                     PreparedStatement bumpStmt = connection.prepareStatement(MCEngineCurrencyApiSQL.BUMP_VERSION)) {
+                    MCEngineCurrencyApiSQL.batchDeltas(addStmt, bumpStmt, deltas);
+                    addStmt.executeBatch();
+                    bumpStmt.executeBatch();
+                    return true;
+                }
+            });
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error updating " + coinType + " for player uuid: " + playerUuid + " - " + e.getMessage());
+            plugin.getLogger().severe("Error flushing " + deltas.size() + " balance updates - " + e.getMessage());
+            return false;
         }
     }
+
+    /**
+     * Transfers currency between two players in one transaction: a conditional debit of the sender,
+     * a credit of the receiver and the "pay" ledger entry are committed together or not at all.
+     *
+     * @param playerUuidSender   the unique identifier of the sender
+     * @param playerUuidReceiver the unique identifier of the receiver
+     * @param currencyId         the id of the currency to transfer
+     * @param amount             the amount to transfer
+     * @param notes              optional notes about the transfer
+     * @return {@code true} if the transfer was committed; {@code false} if the sender's balance is too low,
+     *         either player has no record, or an error occurred
+     */
+    public boolean transfer(String playerUuidSender, String playerUuidReceiver, int currencyId, long amount, String notes) {
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return false;
+        }
+
+        try {
+            return inTransaction(connection -> {
+                try (PreparedStatement debitStmt = connection.prepareStatement(MCEngineCurrencyApiSQL.DEBIT_COIN);
+                     PreparedStatement bumpStmt = connection.prepareStatement(MCEngineCurrencyApiSQL.BUMP_VERSION);
+                     PreparedStatement creditStmt = connection.prepareStatement(ADD_AMOUNT);
+                     PreparedStatement ledgerStmt = connection.prepareStatement(INSERT_TRANSACTION)) {
+                    debitStmt.setLong(1, amount);
+                    debitStmt.setString(2, playerUuidSender);
+                    debitStmt.setInt(3, currencyId);
+                    debitStmt.setLong(4, amount);
+                    if (debitStmt.executeUpdate() != 1) {
+                        connection.rollback();
+                        return false;
+                    }
+
+                    bumpStmt.setString(1, playerUuidReceiver);
+                    if (bumpStmt.executeUpdate() != 1) {
+                        connection.rollback();
+                        return false;
+                    }
+                    bumpStmt.setString(1, playerUuidSender);
+                    bumpStmt.executeUpdate();
+
+                    MCEngineCurrencyApiSQL.bindAddAmount(creditStmt, playerUuidReceiver, currencyId, amount);
+                    creditStmt.executeUpdate();
+
+                    MCEngineCurrencyApiSQL.bindTransaction(ledgerStmt, new MCEngineCurrencyApiTransaction(playerUuidSender, playerUuidReceiver, currencies.nameOf(currencyId), "pay", amount, notes));
+                    ledgerStmt.executeUpdate();
+                    return true;
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error transferring " + currencies.nameOf(currencyId) + " from " + playerUuidSender + " to " + playerUuidReceiver + " - " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads a player's balances together with the version of their record.
+     *
+     * @param playerUuid the UUID of the player
+     * @return the balances and version; {@code null} if no record is found or if an error occurs
+     */
+    public MCEngineCurrencyApiVersionedBalances getVersionedBalances(String playerUuid) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.SELECT_BALANCES)) {
+            pstmt.setString(1, playerUuid);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return MCEngineCurrencyApiSQL.readBalances(rs, currencies.size());
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving balances for player uuid: " + playerUuid + " - " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Replaces a player's balances if their record still has the expected version.
+     * The version check locks only the player's own row and needs no {@code SELECT ... FOR UPDATE}.
+     *
+     * @param playerUuid      the UUID of the player
+     * @param expectedVersion the version the new balances were computed from
+     * @param balances        the new balances, indexed by currency id
+     * @return {@code true} if the balances were replaced; {@code false} if the version no longer matches or an error occurs
+     */
+    public boolean compareAndSetBalances(String playerUuid, long expectedVersion, long[] balances) {
+        try {
+            return inTransaction(connection -> {
+                try (PreparedStatement versionStmt = connection.prepareStatement(MCEngineCurrencyApiSQL.COMPARE_AND_BUMP_VERSION);
+                     PreparedStatement setStmt = connection.prepareStatement(SET_AMOUNT)) {
+                    versionStmt.setString(1, playerUuid);
+                    versionStmt.setLong(2, expectedVersion);
+                    if (versionStmt.executeUpdate() != 1) return false;
+                    MCEngineCurrencyApiSQL.batchBalances(setStmt, playerUuid, Arrays.copyOf(balances, currencies.size()), false);
+                    setStmt.executeBatch();
+                    return true;
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error updating balances for player uuid: " + playerUuid + " - " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Registers the connection pool's active, idle, total and waiting counts.
+     */
+    @Override
+    public void registerMetrics(MCEngineCurrencyApiMetrics metrics) {
+        metrics.gauge("pool.active", () -> poolValue(HikariPoolMXBean::getActiveConnections));
+        metrics.gauge("pool.idle", () -> poolValue(HikariPoolMXBean::getIdleConnections));
+        metrics.gauge("pool.total", () -> poolValue(HikariPoolMXBean::getTotalConnections));
+        metrics.gauge("pool.waiting", () -> poolValue(HikariPoolMXBean::getThreadsAwaitingConnection));
+    }
+
+    /**
+     * Reads one value of the pool's management bean.
+     *
+     * @param value The value to read.
+     * @return The value, or {@code 0} if the pool is not running.
+     */
+    private long poolValue(ToIntFunction<HikariPoolMXBean> value) {
+        HikariPoolMXBean pool = dataSource != null && !dataSource.isClosed() ? dataSource.getHikariPoolMXBean() : null;
+        return pool != null ? value.applyAsInt(pool) : 0L;
+    }
 }
@@ -0,0 +1,41 @@
+package io.github.mcengine.api.currency.database.mysql;
+
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.database.provider.MCEngineCurrencyApiStorageProvider;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Built-in storage provider for {@code database.type: mysql}.
+ */
+public class MCEngineCurrencyApiMySQLProvider implements MCEngineCurrencyApiStorageProvider {
+
+    /** @return {@code "mysql"}. */
+    @Override
+    public String getType() {
+        return "mysql";
+    }
+
+    /**
+     * Creates the pooled MySQL engine for the currencies in the plugin's configuration.
+     *
+     * @param plugin The plugin instance.
+     * @return A new {@link MCEngineCurrencyApiMySQL}.
+     */
+    @Override
+    public MCEngineCurrencyApiDBInterface create(Plugin plugin) {
+        return create(plugin, MCEngineCurrencyApiCurrencyRegistry.load(plugin));
+    }
+
+    /**
+     * Creates the pooled MySQL engine.
+     *
+     * @param plugin     The plugin instance.
+     * @param currencies The configured currencies.
+     * @return A new {@link MCEngineCurrencyApiMySQL}.
+     */
+    @Override
+    public MCEngineCurrencyApiDBInterface create(Plugin plugin, MCEngineCurrencyApiCurrencyRegistry currencies) {
+        return new MCEngineCurrencyApiMySQL(plugin, currencies);
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.mcengine.api.currency.database.provider;
+
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Service provider for a storage engine, discovered with {@link java.util.ServiceLoader}.
+ *
+ * <p>Implementations are listed in
+ * {@code META-INF/services/io.github.mcengine.api.currency.database.provider.MCEngineCurrencyApiStorageProvider},
+ * either inside the plugin jar or in a jar dropped into the storage providers directory, and are
+ * selected by matching {@link #getType()} against {@code database.type}. Implementations need a
+ * public no-argument constructor.</p>
+ */
+public interface MCEngineCurrencyApiStorageProvider {
+
+    /**
+     * Returns the name this engine is selected by in {@code database.type}, e.g. {@code "mysql"}.
+     * Names are compared case-insensitively.
+     *
+     * @return The engine type name.
+     */
+    String getType();
+
+    /**
+     * Creates a new, not yet connected instance of the engine.
+     * The engine is expected to read its own settings from {@code database.<type>.*}.
+     *
+     * @param plugin The plugin instance, used for configuration and logging.
+     * @return The storage engine.
+     */
+    MCEngineCurrencyApiDBInterface create(Plugin plugin);
+
+    /**
+     * Creates a new, not yet connected instance of the engine for the configured currencies.
+     * Engines that store one value per currency should override this and size their storage by
+     * {@link MCEngineCurrencyApiCurrencyRegistry#size()}; the default ignores the registry.
+     *
+     * @param plugin     The plugin instance, used for configuration and logging.
+     * @param currencies The currencies the engine stores balances for.
+     * @return The storage engine.
+     */
+    default MCEngineCurrencyApiDBInterface create(Plugin plugin, MCEngineCurrencyApiCurrencyRegistry currencies) {
+        return create(plugin);
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.mcengine.api.currency.database.provider;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Discovers {@link MCEngineCurrencyApiStorageProvider}s from the plugin's own jar and from the jars in
+ * the {@code database.providers-directory} folder inside the plugin's data folder.
+ *
+ * <p>The class loader of dropped-in jars delegates to the plugin's class loader, so providers can
+ * implement the API interfaces directly. It stays open for the lifetime of the engine and is released
+ * by {@link #close()}.</p>
+ */
+public class MCEngineCurrencyApiStorageProviders implements AutoCloseable {
+    private final Plugin plugin;
+    private final Map<String, MCEngineCurrencyApiStorageProvider> providers = new LinkedHashMap<>();
+    private URLClassLoader externalLoader;
+
+    /**
+     * Discovers every available storage provider.
+     *
+     * @param plugin The plugin instance, used for configuration, its data folder and logging.
+     */
+    public MCEngineCurrencyApiStorageProviders(Plugin plugin) {
+        this.plugin = plugin;
+        ClassLoader parent = MCEngineCurrencyApiStorageProvider.class.getClassLoader();
+        discover(parent, false);
+
+        File directory = new File(plugin.getDataFolder(), plugin.getConfig().getString("database.providers-directory", "storage"));
+        File[] jars = directory.listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".jar"));
+        if (jars == null || jars.length == 0) return;
+
+        List<URL> urls = new ArrayList<>();
+        for (File jar : jars) {
+            try {
+                urls.add(jar.toURI().toURL());
+            } catch (MalformedURLException e) {
+                plugin.getLogger().severe("Invalid storage provider jar: " + jar.getName() + " - " + e.getMessage());
+            }
+        }
+        externalLoader = new URLClassLoader(urls.toArray(new URL[0]), parent);
+        // The loader also sees the plugin's own services file, whose providers are registered already
+        discover(externalLoader, true);
+    }
+
+    /**
+     * Loads the providers visible to a class loader. Providers that fail to load are logged and skipped,
+     * and the first provider registered for a type wins, so built-in engines cannot be shadowed.
+     *
+     * @param loader         The class loader to search.
+     * @param ownClassesOnly {@code true} to skip providers defined by the loader's parents.
+     */
+    private void discover(ClassLoader loader, boolean ownClassesOnly) {
+        ServiceLoader<MCEngineCurrencyApiStorageProvider> serviceLoader = ServiceLoader.load(MCEngineCurrencyApiStorageProvider.class, loader);
+        Iterator<MCEngineCurrencyApiStorageProvider> iterator = serviceLoader.iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) break;
+                MCEngineCurrencyApiStorageProvider provider = iterator.next();
+                if (ownClassesOnly && provider.getClass().getClassLoader() != loader) continue;
+                String type = provider.getType().toLowerCase(Locale.ROOT);
+                if (providers.putIfAbsent(type, provider) != null) {
+                    plugin.getLogger().warning("Ignoring duplicate storage provider for type " + type + ": " + provider.getClass().getName());
+                }
+            } catch (ServiceConfigurationError e) {
+                plugin.getLogger().severe("Error loading storage provider: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the provider registered for a storage type.
+     *
+     * @param type The value of {@code database.type}.
+     * @return The provider, or {@code null} if no provider is registered for the type.
+     */
+    public MCEngineCurrencyApiStorageProvider get(String type) {
+        return providers.get(type.toLowerCase(Locale.ROOT));
+    }
+
+    /** @return The names of every discovered storage type, in discovery order. */
+    public List<String> getTypes() {
+        return List.copyOf(providers.keySet());
+    }
+
+    /**
+     * Releases the class loader of dropped-in provider jars. Call only after the engine has disconnected.
+     */
+    @Override
+    public void close() {
+        if (externalLoader == null) return;
+        try {
+            externalLoader.close();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Error closing storage provider jars: " + e.getMessage());
+        }
+        externalLoader = null;
+    }
+}
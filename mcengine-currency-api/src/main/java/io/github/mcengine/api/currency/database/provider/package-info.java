@@ -0,0 +1,4 @@
+/**
+ * This package contains the storage provider SPI used to discover database engines.
+ */
+package io.github.mcengine.api.currency.database.provider;
@@ -6,28 +6,222 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
 import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiSQL;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiVersionedBalances;
+import io.github.mcengine.api.currency.enums.MCEngineCurrencyApiTransactionType;
+import io.github.mcengine.api.currency.enums.MCEngineCurrencyApiType;
+import io.github.mcengine.api.currency.leaderboard.MCEngineCurrencyApiTopEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiCheckpoint;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryCursor;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiInsertResult;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiLedgerRetention;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiRollup;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiTransaction;
+import io.github.mcengine.api.currency.money.MCEngineCurrencyApiMoney;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
 import org.bukkit.plugin.Plugin;
 
+/**
+ * SQLite implementation of {@link MCEngineCurrencyApiDBInterface}.
+ *
+ * <p>All operations share one connection and are serialized on this instance. Statements are
+ * prepared once per connection and reused for every call; the cache is dropped when the
+ * connection is closed.</p>
+ */
 public class MCEngineCurrencyApiSQLite implements MCEngineCurrencyApiDBInterface {
     private final Plugin plugin;
+    private final MCEngineCurrencyApiCurrencyRegistry currencies;
     private final String dbPath;
     private Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private final MCEngineCurrencyApiSQLiteLedger ledger;
 
     /**
-     * Constructor to initialize the SQLite API with a database path.
+     * Runs ledger maintenance on the shared connection, one step at a time, so other operations
+     * interleave between chunks.
+     */
+    private final MCEngineCurrencyApiSQLiteLedger.Session ledgerSession = new MCEngineCurrencyApiSQLiteLedger.Session() {
+        @Override
+        public <T> T write(MCEngineCurrencyApiSQLiteLedger.Work<T> work) throws SQLException {
+            synchronized (MCEngineCurrencyApiSQLite.this) {
+                return inTransaction(() -> work.apply(connection));
+            }
+        }
+
+        @Override
+        public <T> T read(MCEngineCurrencyApiSQLiteLedger.Work<T> work) throws SQLException {
+            synchronized (MCEngineCurrencyApiSQLite.this) {
+                return work.apply(connection);
+            }
+        }
+    };
+
+    /**
+     * SQL for creating the 'currency' table, one row per account.
+     */
+    static final String CREATE_CURRENCY_TABLE = "CREATE TABLE IF NOT EXISTS currency ("
+        + "player_uuid CHAR(36) PRIMARY KEY, "
+        + "version INTEGER NOT NULL DEFAULT 0);";
+
+    /**
+     * SQL for creating the 'currency_balance' table, one row per account and currency id.
+     */
+    static final String CREATE_BALANCE_TABLE = "CREATE TABLE IF NOT EXISTS currency_balance ("
+        + "player_uuid CHAR(36) NOT NULL, "
+        + "currency_id INTEGER NOT NULL, "
+        + "amount INTEGER NOT NULL DEFAULT 0, "
+        + "PRIMARY KEY (player_uuid, currency_id), "
+        + "FOREIGN KEY (player_uuid) REFERENCES currency(player_uuid)) WITHOUT ROWID;";
+
+    /**
+     * Index serving leaderboard queries of one currency without scanning the table.
+     */
+    static final String CREATE_BALANCE_INDEX = "CREATE INDEX IF NOT EXISTS idx_currency_balance_top ON currency_balance (currency_id, amount)";
+
+    /**
+     * Indexes serving the history of one player as sender and as receiver. The rowid every SQLite index ends
+     * with is the transaction id, so they also order entries with the same timestamp.
+     */
+    static final String CREATE_HISTORY_SENDER_INDEX = "CREATE INDEX IF NOT EXISTS idx_transaction_sender ON currency_transaction (player_uuid_sender, timestamp)";
+    static final String CREATE_HISTORY_RECEIVER_INDEX = "CREATE INDEX IF NOT EXISTS idx_transaction_receiver ON currency_transaction (player_uuid_receiver, timestamp)";
+
+    /**
+     * SQL for creating the 'currency_transaction' table.
+     */
+    static final String CREATE_TRANSACTION_TABLE = "CREATE TABLE IF NOT EXISTS currency_transaction ("
+        + "transaction_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+        + "player_uuid_sender CHAR(36) NOT NULL, "
+        + "player_uuid_receiver CHAR(36) NOT NULL, "
+        + "currency_type TEXT NOT NULL, "
+        + "transaction_type TEXT CHECK(transaction_type IN (" + MCEngineCurrencyApiSQL.TRANSACTION_TYPES + ")) NOT NULL, "
+        + "amount INTEGER NOT NULL, "
+        + "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
+        + "notes VARCHAR(255), "
+        + "FOREIGN KEY (player_uuid_sender) REFERENCES currency(player_uuid), "
+        + "FOREIGN KEY (player_uuid_receiver) REFERENCES currency(player_uuid));";
+
+    /**
+     * SQL for creating the 'currency_rollup_daily' table: per player, UTC day (days since the epoch) and currency,
+     * the number and total amount of the ledger entries sent and received.
+     */
+    static final String CREATE_ROLLUP_TABLE = "CREATE TABLE IF NOT EXISTS currency_rollup_daily ("
+        + "player_uuid CHAR(36) NOT NULL, "
+        + "day INTEGER NOT NULL, "
+        + "currency_type TEXT NOT NULL, "
+        + "sent_count INTEGER NOT NULL DEFAULT 0, "
+        + "sent_amount INTEGER NOT NULL DEFAULT 0, "
+        + "received_count INTEGER NOT NULL DEFAULT 0, "
+        + "received_amount INTEGER NOT NULL DEFAULT 0, "
+        + "PRIMARY KEY (player_uuid, day, currency_type)) WITHOUT ROWID;";
+
+    /**
+     * SQL for creating the 'currency_ledger_state' table, which keeps the progress of ledger maintenance.
+     */
+    static final String CREATE_LEDGER_STATE_TABLE = "CREATE TABLE IF NOT EXISTS currency_ledger_state ("
+        + "name TEXT PRIMARY KEY, "
+        + "value INTEGER NOT NULL);";
+
+    /**
+     * SQL for creating the checkpoints the ledger replay starts from, and their balances.
+     */
+    static final String CREATE_CHECKPOINT_TABLE = "CREATE TABLE IF NOT EXISTS currency_checkpoint ("
+        + "checkpoint_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+        + "transaction_id INTEGER NOT NULL, "
+        + "epoch_seconds INTEGER NOT NULL);";
+    static final String CREATE_CHECKPOINT_BALANCE_TABLE = "CREATE TABLE IF NOT EXISTS currency_checkpoint_balance ("
+        + "checkpoint_id INTEGER NOT NULL, "
+        + "player_uuid CHAR(36) NOT NULL, "
+        + "currency_id INTEGER NOT NULL, "
+        + "amount INTEGER NOT NULL, "
+        + "PRIMARY KEY (checkpoint_id, player_uuid, currency_id)) WITHOUT ROWID;";
+
+    /**
+     * SQLite-specific first checkpoint of a database: the last id the ledger handed out and the current time.
+     */
+    private static final String INSERT_FIRST_CHECKPOINT = "INSERT INTO currency_checkpoint (transaction_id, epoch_seconds) "
+        + "SELECT COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'currency_transaction'), 0), CAST(strftime('%s', 'now') AS INTEGER)";
+
+    /**
+     * Value of {@code PRAGMA user_version} for the current schema: 2 added minor units, 3 the row version,
+     * 4 moved balances into 'currency_balance', 5 added the single-account transaction types.
+     * Databases created before the pragma was set report 0.
+     */
+    static final int SCHEMA_VERSION = 5;
+
+    /** The first {@link #SCHEMA_VERSION} that stores amounts in minor units. */
+    private static final int MINOR_UNITS_VERSION = 2;
+
+    /**
+     * The first {@link #SCHEMA_VERSION} whose ledger constraints are current: any currency name since 4,
+     * every {@link io.github.mcengine.api.currency.enums.MCEngineCurrencyApiTransactionType} since 5.
+     */
+    private static final int LEDGER_CONSTRAINTS_VERSION = 5;
+
+    /**
+     * SQLite-specific statement that creates a player's account if it does not exist yet.
+     */
+    static final String INSERT_ACCOUNT = "INSERT INTO currency (player_uuid) VALUES (?) ON CONFLICT(player_uuid) DO NOTHING";
+
+    /**
+     * SQLite-specific upsert adding to one balance of an existing account; bound with
+     * {@link MCEngineCurrencyApiSQL#bindAddAmount}. Players without an account match no row.
+     */
+    static final String ADD_AMOUNT = "INSERT INTO currency_balance (player_uuid, currency_id, amount) "
+        + "SELECT player_uuid, ?, ? FROM currency WHERE player_uuid = ? "
+        + "ON CONFLICT(player_uuid, currency_id) DO UPDATE SET amount = amount + excluded.amount";
+
+    /**
+     * SQLite-specific upsert replacing one balance; bound with {@link MCEngineCurrencyApiSQL#bindSetAmount}.
+     */
+    static final String SET_AMOUNT = "INSERT INTO currency_balance (player_uuid, currency_id, amount) VALUES (?, ?, ?) "
+        + "ON CONFLICT(player_uuid, currency_id) DO UPDATE SET amount = excluded.amount";
+
+    /**
+     * Work run inside a transaction on the shared connection.
+     */
+    @FunctionalInterface
+    private interface Work<T> {
+        T apply() throws SQLException;
+    }
+
+    /**
+     * Constructor to initialize the SQLite API with a database path, for the currencies in the plugin's configuration.
      * @param plugin the plugin instance
      */
     public MCEngineCurrencyApiSQLite(Plugin plugin) {
+        this(plugin, MCEngineCurrencyApiCurrencyRegistry.load(plugin));
+    }
+
+    /**
+     * Constructor to initialize the SQLite API with a database path.
+     * @param plugin     the plugin instance
+     * @param currencies the configured currencies
+     */
+    public MCEngineCurrencyApiSQLite(Plugin plugin, MCEngineCurrencyApiCurrencyRegistry currencies) {
         this.plugin = plugin;
+        this.currencies = currencies;
         this.dbPath = plugin.getConfig().getString("database.sqlite.path", "currency.db");
+        this.ledger = new MCEngineCurrencyApiSQLiteLedger(plugin.getLogger(), new MCEngineCurrencyApiLedgerRetention(plugin));
         connect();
     }
 
     /**
      * Establishes a connection to the SQLite database.
      */
-    public void connect() {
+    public synchronized void connect() {
+        closeStatements();
         try {
             String fullPath = plugin.getDataFolder().getAbsolutePath() + "/" + dbPath;
             this.connection = DriverManager.getConnection("jdbc:sqlite:" + fullPath);
@@ -38,63 +232,183 @@ public class MCEngineCurrencyApiSQLite implements MCEngineCurrencyApiDBInterface
     }
 
     /**
-     * Creates the 'currency' and 'currency_transaction' tables in the database if they do not exist.
+     * Creates the 'currency', 'currency_balance' and 'currency_transaction' tables in the database if they do not exist.
      * 
-     * @param connection The active database connection used to execute SQL statements.
-     * 
-     * The 'currency' table stores player-specific balances for different currency types:
+     * The 'currency' table stores one record per player:
      * - player_uuid: Unique identifier for the player (primary key).
-     * - coin, copper, silver, gold: Decimal values representing the player's balance for each currency type.
+     * - version: Incremented by every balance change, for optimistic updates.
+     *
+     * The 'currency_balance' table stores player-specific balances, one row per currency:
+     * - player_uuid: Identifier of the player (foreign key referencing 'currency.player_uuid').
+     * - currency_id: The id of the currency in the currency registry.
+     * - amount: The player's balance in minor units (hundredths).
      * 
      * The 'currency_transaction' table records individual transactions involving currency:
      * - transaction_id: Unique identifier for each transaction (primary key, auto-incremented).
      * - player_uuid: Identifier linking the transaction to a player (foreign key referencing 'currency.player_uuid').
-     * - currency_type: Specifies the type of currency involved ('coin', 'copper', 'silver', or 'gold').
+     * - currency_type: The name of the currency involved.
      * - transaction_type: Indicates the type of transaction ('credit' or 'debit').
-     * - amount: The amount of currency involved in the transaction.
+     * - amount: The amount of currency involved in the transaction, in minor units.
      * - timestamp: Automatically records the time of the transaction.
      * - notes: Optional field for additional transaction details.
+     *
+     * Months that are over are moved to 'currency_transaction_yyyyMM' tables with the same columns by
+     * {@link #maintainLedger()}, which also fills 'currency_rollup_daily' with per-player daily totals and
+     * keeps its progress in 'currency_ledger_state'.
      */
-    public void createTable() {
-        // SQL for creating the 'currency' table
-        String createCurrencyTableSQL = "CREATE TABLE IF NOT EXISTS currency ("
-            + "player_uuid CHAR(36) PRIMARY KEY, "
-            + "coin DECIMAL(10,2), "
-            + "copper DECIMAL(10,2), "
-            + "silver DECIMAL(10,2), "
-            + "gold DECIMAL(10,2));";
-
-        // SQL for creating the 'currency_transaction' table
-        String createTransactionTableSQL = "CREATE TABLE IF NOT EXISTS currency_transaction ("
-            + "transaction_id INTEGER PRIMARY KEY AUTOINCREMENT, "
-            + "player_uuid_sender CHAR(36) NOT NULL, "
-            + "player_uuid_receiver CHAR(36) NOT NULL, "
-            + "currency_type TEXT CHECK(currency_type IN ('coin', 'copper', 'silver', 'gold')) NOT NULL, "
-            + "transaction_type TEXT CHECK(transaction_type IN ('pay', 'purchase')) NOT NULL, "
-            + "amount DECIMAL(10,2) NOT NULL, "
-            + "timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, "
-            + "notes VARCHAR(255), "
-            + "FOREIGN KEY (player_uuid_sender) REFERENCES currency(player_uuid), "
-            + "FOREIGN KEY (player_uuid_receiver) REFERENCES currency(player_uuid));";
-
+    public synchronized void createTable() {
+        try {
+            connection.setAutoCommit(false);
+            createSchema(connection, currencies, plugin.getLogger());
+            connection.commit();
+            ledger.load(connection);
+            plugin.getLogger().info("Tables 'currency', 'currency_balance' and 'currency_transaction' created successfully in SQLite database.");
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error creating tables: " + e.getMessage());
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackException) {
+                plugin.getLogger().severe("Error rolling back table creation: " + rollbackException.getMessage());
+            }
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Error restoring auto-commit: " + e.getMessage());
+            }
+        }
+    }
 
+    /**
+     * Creates the tables and indexes and brings a database written by an earlier version up to
+     * {@link #SCHEMA_VERSION}. Must run inside a transaction, so an interrupted migration leaves
+     * the database as it was.
+     *
+     * <p>Earlier versions stored amounts in DECIMAL(10,2) columns. Those columns have NUMERIC affinity,
+     * which keeps whole numbers as integers, so scaling the stored values is all the conversion needs.
+     * Databases from before schema version 3 also get the {@code version} column used by optimistic updates.</p>
+     *
+     * <p>Before schema version 4 every coin had its own column in 'currency'. Each such column is copied into
+     * 'currency_balance' under the id of the configured currency with the same name and then dropped; a column
+     * without a matching currency is kept, so its balances are not lost, and migrated once one is configured.
+     * The ledger's fixed list of currency names is removed by rebuilding the table, which also widens its list of
+     * transaction types for databases from before schema version 5.</p>
+     *
+     * <p>A database without checkpoints gets its first one, a copy of the stored balances at the last ledger
+     * entry, so the ledger replay never needs the entries written before every balance change was recorded.</p>
+     *
+     * @param connection the connection to run on, with auto-commit disabled
+     * @param currencies the configured currencies, which decide the ids of migrated balances
+     * @param logger     the logger the migration is reported to
+     * @throws SQLException if a statement fails
+     */
+    static void createSchema(Connection connection, MCEngineCurrencyApiCurrencyRegistry currencies, Logger logger) throws SQLException {
         try (Statement stmt = connection.createStatement()) {
-            // Execute the SQL to create the 'currency' table
-            stmt.executeUpdate(createCurrencyTableSQL);
-            plugin.getLogger().info("Table 'currency' created successfully in SQLite database.");
+            int version;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+                version = rs.next() ? rs.getInt(1) : 0;
+            }
+            boolean existing = false;
+            if (version < SCHEMA_VERSION) {
+                try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'currency'")) {
+                    existing = rs.next();
+                }
+            }
+            boolean legacy = existing && version < MINOR_UNITS_VERSION;
 
-            // Execute the SQL to create the 'currency_transaction' table
-            stmt.executeUpdate(createTransactionTableSQL);
-            plugin.getLogger().info("Table 'currency_transaction' created successfully in SQLite database.");
-        } catch (SQLException e) {
-            plugin.getLogger().severe("Error creating tables: " + e.getMessage());
+            stmt.executeUpdate(CREATE_CURRENCY_TABLE);
+            stmt.executeUpdate(CREATE_BALANCE_TABLE);
+            stmt.executeUpdate(CREATE_TRANSACTION_TABLE);
+            stmt.executeUpdate(CREATE_ROLLUP_TABLE);
+            stmt.executeUpdate(CREATE_LEDGER_STATE_TABLE);
+            stmt.executeUpdate(CREATE_CHECKPOINT_TABLE);
+            stmt.executeUpdate(CREATE_CHECKPOINT_BALANCE_TABLE);
+
+            if (legacy) {
+                String scale = " * " + MCEngineCurrencyApiMoney.MINOR_PER_UNIT + ") AS INTEGER)";
+                stmt.executeUpdate("UPDATE currency SET coin = CAST(ROUND(COALESCE(coin, 0)" + scale + ", "
+                    + "copper = CAST(ROUND(COALESCE(copper, 0)" + scale + ", "
+                    + "silver = CAST(ROUND(COALESCE(silver, 0)" + scale + ", "
+                    + "gold = CAST(ROUND(COALESCE(gold, 0)" + scale);
+                stmt.executeUpdate("UPDATE currency_transaction SET amount = CAST(ROUND(amount" + scale);
+                logger.info("Converted SQLite amounts to minor units.");
+            }
+
+            Set<String> columns = columns(stmt, "currency");
+            if (existing && !columns.contains("version")) {
+                stmt.executeUpdate("ALTER TABLE currency ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+                logger.info("Added 'version' column to SQLite 'currency' table.");
+            }
+
+            for (MCEngineCurrencyApiType type : MCEngineCurrencyApiType.values()) {
+                String column = type.name().toLowerCase(Locale.ROOT);
+                if (!columns.contains(column)) continue;
+                int currencyId = currencies.indexOf(column);
+                if (currencyId < 0) {
+                    logger.warning("Keeping column 'currency." + column + "': no currency named '" + column + "' is configured to move its balances to.");
+                    continue;
+                }
+                stmt.executeUpdate("INSERT OR IGNORE INTO currency_balance (player_uuid, currency_id, amount) "
+                    + "SELECT player_uuid, " + currencyId + ", " + column + " FROM currency WHERE " + column + " <> 0");
+                stmt.executeUpdate("DROP INDEX IF EXISTS idx_currency_" + column);
+                stmt.executeUpdate("ALTER TABLE currency DROP COLUMN " + column);
+                logger.info("Moved SQLite '" + column + "' balances to 'currency_balance' as currency id " + currencyId + ".");
+            }
+
+            if (existing && version < LEDGER_CONSTRAINTS_VERSION) {
+                stmt.executeUpdate("ALTER TABLE currency_transaction RENAME TO currency_transaction_legacy");
+                stmt.executeUpdate(CREATE_TRANSACTION_TABLE);
+                stmt.executeUpdate("INSERT INTO currency_transaction (transaction_id, player_uuid_sender, player_uuid_receiver, currency_type, "
+                    + "transaction_type, amount, timestamp, notes) SELECT transaction_id, player_uuid_sender, player_uuid_receiver, currency_type, "
+                    + "transaction_type, amount, timestamp, notes FROM currency_transaction_legacy");
+                stmt.executeUpdate("DROP TABLE currency_transaction_legacy");
+                logger.info("Rebuilt SQLite 'currency_transaction' with the current currency and transaction type constraints.");
+            }
+
+            stmt.executeUpdate(CREATE_BALANCE_INDEX);
+            stmt.executeUpdate(CREATE_HISTORY_SENDER_INDEX);
+            stmt.executeUpdate(CREATE_HISTORY_RECEIVER_INDEX);
+
+            boolean checkpointed;
+            try (ResultSet rs = stmt.executeQuery(MCEngineCurrencyApiSQL.HAS_CHECKPOINT)) {
+                checkpointed = rs.next();
+            }
+            if (!checkpointed) {
+                stmt.executeUpdate(INSERT_FIRST_CHECKPOINT);
+                try (PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.SNAPSHOT_BALANCES)) {
+                    try (ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                        rs.next();
+                        pstmt.setLong(1, rs.getLong(1));
+                    }
+                    pstmt.executeUpdate();
+                }
+                logger.info("Took the first ledger checkpoint of the SQLite database.");
+            }
+
+            if (version < SCHEMA_VERSION) {
+                stmt.executeUpdate("PRAGMA user_version = " + SCHEMA_VERSION);
+            }
+        }
+    }
+
+    /**
+     * Lists the lower-case column names of a table.
+     */
+    private static Set<String> columns(Statement stmt, String table) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                columns.add(rs.getString("name").toLowerCase(Locale.ROOT));
+            }
         }
+        return columns;
     }
 
     /**
-     * Disconnects from the SQLite database.
+     * Disconnects from the SQLite database and closes every cached statement.
      */
-    public void disConnection() {
+    public synchronized void disConnection() {
+        closeStatements();
         try {
             if (connection != null && !connection.isClosed()) {
                 connection.close();
@@ -106,29 +420,335 @@ public class MCEngineCurrencyApiSQLite implements MCEngineCurrencyApiDBInterface
     }
 
     /**
-     * Retrieves the amount of a specified coin type for a player from the database.
+     * Returns the cached prepared statement for the given SQL, preparing it on first use.
+     * The returned statement belongs to the cache and must not be closed by the caller.
+     *
+     * @param sql the statement text, one of the fixed statements used by this backend
+     * @return the prepared statement bound to the current connection
+     * @throws SQLException if the statement cannot be prepared
+     */
+    private PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Closes and forgets every cached prepared statement.
+     */
+    private void closeStatements() {
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to close cached statement: " + e.getMessage());
+            }
+        }
+        statements.clear();
+    }
+
+    /**
+     * Runs work in one transaction on the shared connection. Work that rejects an operation rolls back
+     * itself before returning; an exception rolls back everything and is rethrown.
+     */
+    private <T> T inTransaction(Work<T> work) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            T result = work.apply();
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Retrieves the amount of a currency for a player from the database.
      *
-     * @param playerUuid the UUID of the player whose coin balance is to be retrieved
-     * @param coinType   the type of coin to retrieve (e.g., "Copper", "Silver", "Gold")
-     * @return the amount of the specified coin type the player has; returns 0.0 if no record is found or if an error occurs
-     * @throws IllegalArgumentException if the coinType parameter is invalid or null
-     * @implNote This method queries the database table "currency" for the coin balance.
-     *           Ensure that the `connection` object is properly initialized and connected to the database.
-     * @implSpec The `coinType` parameter should match a valid column name in the "currency" table.
-     */
-    public double getCoin(String playerUuid, String coinType) {
-        String query = "SELECT " + coinType + " FROM currency WHERE player_uuid = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+     * @param playerUuid the UUID of the player whose balance is to be retrieved
+     * @param currencyId the id of the currency to retrieve
+     * @return the amount of the currency the player has; returns 0 if no record is found, the currency id is invalid or an error occurs
+     */
+    public synchronized long getCoin(String playerUuid, int currencyId) {
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return 0L;
+        }
+        try {
+            PreparedStatement pstmt = prepare(MCEngineCurrencyApiSQL.SELECT_COIN);
             pstmt.setString(1, playerUuid);
+            pstmt.setInt(2, currencyId);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getDouble(1);
+                    return rs.getLong(1);
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving " + currencies.nameOf(currencyId) + " for player uuid: " + playerUuid + " - " + e.getMessage());
+        }
+        return 0L; // Default value if no record is found
+    }
+
+    /**
+     * Retrieves all balances of a player in a single query.
+     *
+     * @param playerUuid the UUID of the player whose balances are to be retrieved
+     * @return the balances indexed by currency id; {@code null} if no record is found or if an error occurs
+     */
+    public synchronized long[] getBalances(String playerUuid) {
+        MCEngineCurrencyApiVersionedBalances versioned = getVersionedBalances(playerUuid);
+        return versioned != null ? versioned.balances() : null;
+    }
+
+    /**
+     * Retrieves all balances of many players, {@link MCEngineCurrencyApiSQL#BALANCES_CHUNK_SIZE} per query.
+     *
+     * @param playerUuids the UUIDs of the players whose balances are to be retrieved
+     * @return the balances of every player with a record, keyed by UUID; the balances read so far if an error occurs
+     */
+    public synchronized Map<String, long[]> getBalances(Collection<String> playerUuids) {
+        Map<String, long[]> balances = new HashMap<>();
+        if (playerUuids.isEmpty()) return balances;
+        List<String> uuids = new ArrayList<>(playerUuids);
+        try {
+            PreparedStatement pstmt = prepare(MCEngineCurrencyApiSQL.SELECT_BALANCES_IN);
+            for (int from = 0; from < uuids.size(); from += MCEngineCurrencyApiSQL.BALANCES_CHUNK_SIZE) {
+                MCEngineCurrencyApiSQL.bindUuidChunk(pstmt, uuids, from);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    MCEngineCurrencyApiSQL.readBalances(rs, currencies.size(), balances);
                 }
             }
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error retrieving " + coinType + " for player uuid: " + playerUuid + " - " + e.getMessage());
+            plugin.getLogger().severe("Error retrieving balances for " + uuids.size() + " players - " + e.getMessage());
+        }
+        return balances;
+    }
+
+    /**
+     * Retrieves the players with the highest balance of one currency, walking the balance index.
+     *
+     * @param currencyId the id of the currency to rank by
+     * @param offset     the number of leading entries to skip
+     * @param limit      the maximum number of entries to return
+     * @return the entries in descending balance order; empty if the currency id is invalid or an error occurs
+     */
+    public synchronized List<MCEngineCurrencyApiTopEntry> getTop(int currencyId, int offset, int limit) {
+        List<MCEngineCurrencyApiTopEntry> top = new ArrayList<>();
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return top;
+        }
+        try {
+            PreparedStatement pstmt = prepare(MCEngineCurrencyApiSQL.SELECT_TOP);
+            pstmt.setInt(1, currencyId);
+            pstmt.setInt(2, limit);
+            pstmt.setInt(3, offset);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    top.add(new MCEngineCurrencyApiTopEntry(rs.getString(1), rs.getLong(2)));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving top " + currencies.nameOf(currencyId) + " balances - " + e.getMessage());
+        }
+        return top;
+    }
+
+    /**
+     * Reads the ledger entries a player sent or received, newest first, seeking past the cursor
+     * on the sender and receiver indexes of the current table and, while the page is not full,
+     * of the monthly tables.
+     *
+     * @param playerUuid the UUID of the player
+     * @param before     the cursor to continue after, or {@code null} for the newest entries
+     * @param limit      the maximum number of entries to return
+     * @return the entries; empty if there are none or an error occurs
+     */
+    @Override
+    public synchronized List<MCEngineCurrencyApiHistoryEntry> getTransactions(String playerUuid, MCEngineCurrencyApiHistoryCursor before, int limit) {
+        try {
+            return ledger.getTransactions(this::prepare, playerUuid, before, limit);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving transaction history - " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Reads a player's daily ledger totals from the rollup table.
+     *
+     * @param playerUuid the UUID of the player
+     * @param fromDay    the first UTC day, in days since the epoch
+     * @param toDay      the last UTC day, inclusive
+     * @return the rollups by day and currency; empty if there are none or an error occurs
+     */
+    @Override
+    public synchronized List<MCEngineCurrencyApiRollup> getRollups(String playerUuid, long fromDay, long toDay) {
+        try {
+            PreparedStatement pstmt = prepare(MCEngineCurrencyApiSQL.SELECT_ROLLUPS);
+            pstmt.setString(1, playerUuid);
+            pstmt.setLong(2, fromDay);
+            pstmt.setLong(3, toDay);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return MCEngineCurrencyApiSQL.readRollups(rs);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving ledger rollups for player uuid: " + playerUuid + " - " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Splits off the months that are over, rolls up the days that are over and archives the expired months.
+     * Not synchronized as a whole: every chunk takes the connection on its own, so the server keeps
+     * being served while a month is moved or archived.
+     */
+    @Override
+    public void maintainLedger() {
+        try {
+            ledger.maintain(ledgerSession);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error maintaining the SQLite ledger - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finds the newest checkpoint taken at or before a time.
+     *
+     * @param epochSeconds the time in Unix seconds
+     * @return the checkpoint, or {@code null} if there is none or an error occurs
+     */
+    @Override
+    public MCEngineCurrencyApiCheckpoint getCheckpoint(long epochSeconds) {
+        try {
+            return ledger.getCheckpoint(ledgerSession, epochSeconds);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving ledger checkpoint - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads every balance stored in a checkpoint.
+     *
+     * @param checkpointId the id of the checkpoint
+     * @return the balances keyed by player UUID and indexed by currency id, or {@code null} if an error occurs
+     */
+    @Override
+    public Map<String, long[]> getCheckpointBalances(long checkpointId) {
+        try {
+            return ledger.getCheckpointBalances(ledgerSession, checkpointId, null, currencies.size());
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving balances of ledger checkpoint " + checkpointId + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads one player's balances stored in a checkpoint.
+     *
+     * @param checkpointId the id of the checkpoint
+     * @param playerUuid   the UUID of the player
+     * @return the balances indexed by currency id, all zero if the player had none, or {@code null} if an error occurs
+     */
+    @Override
+    public long[] getCheckpointBalances(long checkpointId, String playerUuid) {
+        try {
+            return ledger.getCheckpointBalances(ledgerSession, checkpointId, playerUuid, currencies.size())
+                .getOrDefault(playerUuid, new long[currencies.size()]);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving checkpoint balances for player uuid: " + playerUuid + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Finds the last ledger entry written at or before a time, in the current table or the monthly tables.
+     *
+     * @param epochSeconds the time in Unix seconds
+     * @return the position of the entry, or {@code null} if there is none or an error occurs
+     */
+    @Override
+    public MCEngineCurrencyApiCheckpoint getLedgerHead(long epochSeconds) {
+        try {
+            return ledger.getLedgerHead(ledgerSession, epochSeconds);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving the last ledger entry - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sums the balance changes of every player in a range of transaction ids.
+     *
+     * @param afterId the last transaction id before the range
+     * @param lastId  the last transaction id of the range
+     * @return the changes keyed by player UUID and indexed by currency id, or {@code null} if an error occurs
+     */
+    @Override
+    public Map<String, long[]> sumLedger(long afterId, long lastId) {
+        try {
+            return ledger.sumLedger(ledgerSession, currencies, afterId, lastId);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error summing ledger entries " + (afterId + 1) + " to " + lastId + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sums the balance changes of one player after a checkpoint, up to a time.
+     *
+     * @param playerUuid     the UUID of the player
+     * @param after          the checkpoint whose entries are already counted
+     * @param toEpochSeconds the end of the range in Unix seconds, inclusive
+     * @return the changes indexed by currency id, or {@code null} if an error occurs
+     */
+    @Override
+    public long[] sumLedger(String playerUuid, MCEngineCurrencyApiCheckpoint after, long toEpochSeconds) {
+        try {
+            return ledger.sumLedger(ledgerSession, currencies, playerUuid, after, toEpochSeconds);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error summing ledger entries for player uuid: " + playerUuid + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Saves a checkpoint and its balances in one transaction.
+     *
+     * @param position the position the balances belong to
+     * @param balances the balances keyed by player UUID and indexed by currency id
+     * @return the saved checkpoint, or {@code null} if it was rolled back
+     */
+    @Override
+    public MCEngineCurrencyApiCheckpoint saveCheckpoint(MCEngineCurrencyApiCheckpoint position, Map<String, long[]> balances) {
+        try {
+            return ledger.saveCheckpoint(ledgerSession, position, balances);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error saving ledger checkpoint - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the checkpoints taken before a time, except one that must be kept.
+     *
+     * @param beforeEpochSeconds the time in Unix seconds
+     * @param keepId             the id of a checkpoint to keep regardless
+     */
+    @Override
+    public void deleteCheckpoints(long beforeEpochSeconds, long keepId) {
+        try {
+            ledger.deleteCheckpoints(ledgerSession, beforeEpochSeconds, keepId);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error deleting ledger checkpoints - " + e.getMessage());
         }
-        return 0.0; // Default value if no record is found
     }
 
     /**
@@ -140,119 +760,301 @@ public class MCEngineCurrencyApiSQLite implements MCEngineCurrencyApiDBInterface
     }
 
     /**
-     * Inserts currency information for a player into the database.
+     * Creates a player's record with the given balances. Does nothing if the player already has one.
      * @param playerUuid the unique identifier for the player.
-     * @param coin the amount of coin currency.
-     * @param copper the amount of copper currency.
-     * @param silver the amount of silver currency.
-     * @param gold the amount of gold currency.
-     */
-    public void insertCurrency(String playerUuid, double coin, double copper, double silver, double gold) {
-        String query = "INSERT INTO currency (player_uuid, coin, copper, silver, gold) VALUES (?, ?, ?, ?, ?) ON CONFLICT(player_uuid) DO NOTHING;";
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, playerUuid);
-            pstmt.setDouble(2, coin);
-            pstmt.setDouble(3, copper);
-            pstmt.setDouble(4, silver);
-            pstmt.setDouble(5, gold);
-            pstmt.executeUpdate();
-            plugin.getLogger().info("Currency information added for player uuid: " + playerUuid);
+     * @param balances the starting balances, indexed by currency id.
+     */
+    public synchronized void insertCurrency(String playerUuid, long[] balances) {
+        try {
+            inTransaction(() -> {
+                PreparedStatement accountStmt = prepare(INSERT_ACCOUNT);
+                accountStmt.setString(1, playerUuid);
+                if (accountStmt.executeUpdate() == 1) {
+                    PreparedStatement setStmt = prepare(SET_AMOUNT);
+                    if (MCEngineCurrencyApiSQL.batchBalances(setStmt, playerUuid, balances, true) > 0) {
+                        setStmt.executeBatch();
+                    }
+                }
+                return null;
+            });
         } catch (SQLException e) {
             plugin.getLogger().severe("Error inserting currency for player uuid: " + playerUuid + " - " + e.getMessage());
         }
     }
 
+    /**
+     * Creates a player's record with zero balances if it does not exist and returns the balances,
+     * in one transaction.
+     *
+     * @param playerUuid the unique identifier for the player
+     * @return the balances in minor units, indexed by currency id; {@code null} if an error occurs
+     */
+    public synchronized long[] loadOrCreateBalances(String playerUuid) {
+        try {
+            return inTransaction(() -> {
+                PreparedStatement accountStmt = prepare(INSERT_ACCOUNT);
+                accountStmt.setString(1, playerUuid);
+                accountStmt.executeUpdate();
+                PreparedStatement pstmt = prepare(MCEngineCurrencyApiSQL.SELECT_BALANCES);
+                pstmt.setString(1, playerUuid);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    MCEngineCurrencyApiVersionedBalances versioned = MCEngineCurrencyApiSQL.readBalances(rs, currencies.size());
+                    return versioned != null ? versioned.balances() : null;
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error loading currency for player uuid: " + playerUuid + " - " + e.getMessage());
+        }
+        return null;
+    }
+
     /**
      * Inserts a transaction record into the currency_transaction table.
      * 
      * @param playerUuidSender the unique identifier of the sender.
      * @param playerUuidReceiver the unique identifier of the receiver.
-     * @param currencyType the type of currency involved in the transaction (coin, copper, silver, gold).
-     * @param transactionType the type of transaction (pay, purchase).
+     * @param currencyType the name of the currency involved in the transaction.
+     * @param transactionType the type of transaction, see {@link MCEngineCurrencyApiTransactionType}.
      * @param amount the amount of currency involved in the transaction.
      * @param notes optional notes about the transaction.
      */
-    public void insertTransaction(String playerUuidSender, String playerUuidReceiver, String currencyType, 
-        String transactionType, double amount, String notes) {
+    public synchronized void insertTransaction(String playerUuidSender, String playerUuidReceiver, String currencyType, 
+        String transactionType, long amount, String notes) {
 
         // Validate currencyType and transactionType
-        if (!currencyType.matches("coin|copper|silver|gold")) {
+        if (currencies.indexOf(currencyType) < 0) {
             plugin.getLogger().severe("Invalid currency type: " + currencyType);
         }
-        if (!transactionType.matches("pay|purchase")) {
+        if (MCEngineCurrencyApiTransactionType.of(transactionType) == null) {
             plugin.getLogger().severe("Invalid transaction type: " + transactionType);
         }
 
-        String query = "INSERT INTO currency_transaction (player_uuid_sender, player_uuid_receiver, currency_type, "
-        + "transaction_type, amount, notes) VALUES (?, ?, ?, ?, ?, ?);";
-
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setString(1, playerUuidSender);
-            pstmt.setString(2, playerUuidReceiver);
-            pstmt.setString(3, currencyType);
-            pstmt.setString(4, transactionType);
-            pstmt.setDouble(5, amount);
-            pstmt.setString(6, notes);
+        try {
+            PreparedStatement pstmt = prepare(MCEngineCurrencyApiSQLiteLedger.INSERT_TRANSACTION);
+            MCEngineCurrencyApiSQL.bindTransaction(pstmt, new MCEngineCurrencyApiTransaction(playerUuidSender, playerUuidReceiver, currencyType, transactionType, amount, notes));
 
             pstmt.executeUpdate();
-            plugin.getLogger().info("Transaction successfully recorded between " 
-            + playerUuidSender + " and " + playerUuidReceiver);
         } catch (SQLException e) {
             plugin.getLogger().severe("Error inserting transaction: " + e.getMessage());
         }
     }
 
+    /**
+     * Inserts many transaction records using one batched insert inside a single transaction.
+     *
+     * @param transactions the ledger entries to insert
+     * @return whether the batch was committed, or why it was rolled back
+     */
+    public synchronized MCEngineCurrencyApiInsertResult insertTransactions(List<MCEngineCurrencyApiTransaction> transactions) {
+        if (transactions.isEmpty()) return MCEngineCurrencyApiInsertResult.WRITTEN;
+
+        try {
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement pstmt = prepare(MCEngineCurrencyApiSQLiteLedger.INSERT_TRANSACTION);
+                for (MCEngineCurrencyApiTransaction transaction : transactions) {
+                    MCEngineCurrencyApiSQL.bindTransaction(pstmt, transaction);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                connection.commit();
+                return MCEngineCurrencyApiInsertResult.WRITTEN;
+            } catch (SQLException e) {
+                connection.rollback();
+                plugin.getLogger().severe("Error inserting " + transactions.size() + " transactions - " + e.getMessage());
+                return MCEngineCurrencyApiSQL.classify(e, true);
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error inserting " + transactions.size() + " transactions - " + e.getMessage());
+            return MCEngineCurrencyApiInsertResult.FAILED;
+        }
+    }
+
     /**
      * Checks if a player with the specified UUID exists in the database.
      *
      * @param uuid the UUID of the player to check
      * @return {@code true} if a player with the specified UUID exists, {@code false} otherwise
-     * @throws SQLException if a database access error occurs
      *
      * <p>This method executes a SQL query to count the number of players with the given UUID
-     * in the 'players' table. If the query result is greater than 0, the player exists.</p>
-     *
-     * <p>Note: Exceptions are caught and printed to the standard error stream. Ensure proper
-     * exception handling and logging in production code.</p>
+     * in the 'currency' table. If the query result is greater than 0, the player exists.</p>
      */
-    public boolean playerExists(String uuid) {
-        String query = "SELECT COUNT(*) FROM currency WHERE player_uuid = ?"; // Corrected column name
-        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+    public synchronized boolean playerExists(String uuid) {
+        try {
+            PreparedStatement stmt = prepare(MCEngineCurrencyApiSQL.PLAYER_EXISTS);
             stmt.setString(1, uuid);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1) > 0;
+                }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            plugin.getLogger().severe("Error checking player uuid: " + uuid + " - " + e.getMessage());
         }
         return false;
     }
 
     /**
-     * Updates a specific type of currency for a player.
+     * Updates one currency of a player and bumps the record's version in one transaction.
      * @param playerUuid the unique identifier for the player.
-     * @param operator the SQL operator to apply (+, -, etc.).
-     * @param coinType the type of currency to update (coin, copper, silver, or gold).
+     * @param operator the operation to apply ("+" or "-").
+     * @param currencyId the id of the currency to update.
      * @param amt the amount by which to update the currency.
-     * @throws IllegalArgumentException if the coinType is invalid.
      */
-    public void updateCurrencyValue(String playerUuid, String operator, String coinType, double amt) {
-        // Validate coinType against allowed columns
-        if (!coinType.matches("coin|copper|silver|gold")) {
-            plugin.getLogger().severe("Invalid coin type: " + coinType);
+    public synchronized void updateCurrencyValue(String playerUuid, String operator, int currencyId, long amt) {
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return;
         }
 
-        String query = "UPDATE currency SET " + coinType + " = " + coinType + " " + operator
-        + " ? WHERE player_uuid = ?";
+        long delta;
+        if ("+".equals(operator)) {
+            delta = amt;
+        } else if ("-".equals(operator)) {
+            delta = -amt;
+        } else {
+            plugin.getLogger().severe("Invalid operator: " + operator);
+            return;
+        }
 
-        try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-            pstmt.setDouble(1, amt);
-            pstmt.setString(2, playerUuid);
-            pstmt.executeUpdate();
-            plugin.getLogger().info("Updated " + coinType + " for player uuid: " + playerUuid);
+        try {
+            inTransaction(() -> {
+                PreparedStatement addStmt = prepare(ADD_AMOUNT);
+                MCEngineCurrencyApiSQL.bindAddAmount(addStmt, playerUuid, currencyId, delta);
+                if (addStmt.executeUpdate() == 1) {
+                    PreparedStatement bumpStmt = prepare(MCEngineCurrencyApiSQL.BUMP_VERSION);
+                    bumpStmt.setString(1, playerUuid);
+                    bumpStmt.executeUpdate();
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error updating " + currencies.nameOf(currencyId) + " for player uuid: " + playerUuid + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies balance deltas for many players using batched upserts inside a single transaction.
+     *
+     * @param deltas the deltas to add, keyed by player UUID and indexed by currency id
+     * @return {@code true} if the batch was committed, {@code false} if it was rolled back
+     */
+    public synchronized boolean updateCurrencyValues(Map<String, long[]> deltas) {
+        if (deltas.isEmpty()) return true;
+
+        try {
+            return inTransaction(() -> {
+                PreparedStatement addStmt = prepare(ADD_AMOUNT);
+                PreparedStatement bumpStmt = prepare(MCEngineCurrencyApiSQL.BUMP_VERSION);
+                MCEngineCurrencyApiSQL.batchDeltas(addStmt, bumpStmt, deltas);
+                addStmt.executeBatch();
+                bumpStmt.executeBatch();
+                return true;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error flushing " + deltas.size() + " balance updates - " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Transfers currency between two players in one transaction: a conditional debit of the sender,
+     * a credit of the receiver and the "pay" ledger entry are committed together or not at all.
+     *
+     * @param playerUuidSender   the unique identifier of the sender
+     * @param playerUuidReceiver the unique identifier of the receiver
+     * @param currencyId         the id of the currency to transfer
+     * @param amount             the amount to transfer
+     * @param notes              optional notes about the transfer
+     * @return {@code true} if the transfer was committed; {@code false} if the sender's balance is too low,
+     *         either player has no record, or an error occurred
+     */
+    public synchronized boolean transfer(String playerUuidSender, String playerUuidReceiver, int currencyId, long amount, String notes) {
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return false;
+        }
+
+        try {
+            return inTransaction(() -> {
+                PreparedStatement debitStmt = prepare(MCEngineCurrencyApiSQL.DEBIT_COIN);
+                debitStmt.setLong(1, amount);
+                debitStmt.setString(2, playerUuidSender);
+                debitStmt.setInt(3, currencyId);
+                debitStmt.setLong(4, amount);
+                if (debitStmt.executeUpdate() != 1) {
+                    connection.rollback();
+                    return false;
+                }
+
+                PreparedStatement bumpStmt = prepare(MCEngineCurrencyApiSQL.BUMP_VERSION);
+                bumpStmt.setString(1, playerUuidReceiver);
+                if (bumpStmt.executeUpdate() != 1) {
+                    connection.rollback();
+                    return false;
+                }
+                bumpStmt.setString(1, playerUuidSender);
+                bumpStmt.executeUpdate();
+
+                PreparedStatement creditStmt = prepare(ADD_AMOUNT);
+                MCEngineCurrencyApiSQL.bindAddAmount(creditStmt, playerUuidReceiver, currencyId, amount);
+                creditStmt.executeUpdate();
+
+                PreparedStatement ledgerStmt = prepare(MCEngineCurrencyApiSQLiteLedger.INSERT_TRANSACTION);
+                MCEngineCurrencyApiSQL.bindTransaction(ledgerStmt, new MCEngineCurrencyApiTransaction(playerUuidSender, playerUuidReceiver, currencies.nameOf(currencyId), "pay", amount, notes));
+                ledgerStmt.executeUpdate();
+                return true;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error transferring " + currencies.nameOf(currencyId) + " from " + playerUuidSender + " to " + playerUuidReceiver + " - " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads a player's balances together with the version of their record.
+     *
+     * @param playerUuid the UUID of the player
+     * @return the balances and version; {@code null} if no record is found or if an error occurs
+     */
+    public synchronized MCEngineCurrencyApiVersionedBalances getVersionedBalances(String playerUuid) {
+        try {
+            PreparedStatement pstmt = prepare(MCEngineCurrencyApiSQL.SELECT_BALANCES);
+            pstmt.setString(1, playerUuid);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return MCEngineCurrencyApiSQL.readBalances(rs, currencies.size());
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving balances for player uuid: " + playerUuid + " - " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Replaces a player's balances if their record still has the expected version.
+     *
+     * @param playerUuid      the UUID of the player
+     * @param expectedVersion the version the new balances were computed from
+     * @param balances        the new balances, indexed by currency id
+     * @return {@code true} if the balances were replaced; {@code false} if the version no longer matches or an error occurs
+     */
+    public synchronized boolean compareAndSetBalances(String playerUuid, long expectedVersion, long[] balances) {
+        try {
+            return inTransaction(() -> {
+                PreparedStatement versionStmt = prepare(MCEngineCurrencyApiSQL.COMPARE_AND_BUMP_VERSION);
+                versionStmt.setString(1, playerUuid);
+                versionStmt.setLong(2, expectedVersion);
+                if (versionStmt.executeUpdate() != 1) return false;
+                PreparedStatement setStmt = prepare(SET_AMOUNT);
+                MCEngineCurrencyApiSQL.batchBalances(setStmt, playerUuid, Arrays.copyOf(balances, currencies.size()), false);
+                setStmt.executeBatch();
+                return true;
+            });
         } catch (SQLException e) {
-            plugin.getLogger().severe("Error updating " + coinType + " for player uuid: " + playerUuid + " - " + e.getMessage());
+            plugin.getLogger().severe("Error updating balances for player uuid: " + playerUuid + " - " + e.getMessage());
+            return false;
         }
     }
 }
@@ -0,0 +1,612 @@
+package io.github.mcengine.api.currency.database.sqlite;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiSQL;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiCheckpoint;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryCursor;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiLedgerArchive;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiLedgerRetention;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
+
+/**
+ * The monthly tables, daily rollups and retention of the SQLite ledger, shared by both SQLite engines.
+ *
+ * <p>New entries always go to {@code currency_transaction}, which therefore only holds the current month and
+ * whatever has not been split off yet. Once a month is over, its entries are moved oldest first, one chunk per
+ * transaction, into {@code currency_transaction_yyyyMM}, a table with the same columns and indexes. SQLite's
+ * single writer hands out transaction ids in time order, so moving in id order keeps every table strictly older
+ * than the tables after it: history reads the current table first and only continues into earlier months while
+ * a page is not full. An expired month is archived and removed with {@code DROP TABLE}, which costs the same
+ * however large the month is.</p>
+ *
+ * <p>The ledger replay reads the same tables: sums over a range of ids cover every table, while the
+ * changes of one player over a range of time only read the tables of the months in that range. A month is
+ * only dropped once a checkpoint lies after its end, so the replay never needs an archived entry.</p>
+ */
+final class MCEngineCurrencyApiSQLiteLedger {
+    /**
+     * Work run on a connection of the engine.
+     */
+    @FunctionalInterface
+    interface Work<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    /**
+     * How an engine runs ledger work: each write in its own transaction, reads on any connection.
+     */
+    interface Session {
+        <T> T write(Work<T> work) throws SQLException;
+
+        <T> T read(Work<T> work) throws SQLException;
+    }
+
+    /**
+     * Prepares a statement from the engine's statement cache.
+     */
+    @FunctionalInterface
+    interface Statements {
+        PreparedStatement prepare(String sql) throws SQLException;
+    }
+
+    /** SQLite's conversion of the {@code timestamp} column, stored as UTC text, to Unix seconds. */
+    static final String EPOCH_SECONDS = "CAST(strftime('%s', timestamp) AS INTEGER)";
+
+    /** SQLite's conversion of a bound Unix seconds parameter to the text {@code CURRENT_TIMESTAMP} stores. */
+    static final String FROM_EPOCH_SECONDS = "datetime(?, 'unixepoch')";
+
+    /** Appends a ledger entry with the time it was made, bound by {@link MCEngineCurrencyApiSQL#bindTransaction}. */
+    static final String INSERT_TRANSACTION = MCEngineCurrencyApiSQL.insertTransaction(FROM_EPOCH_SECONDS);
+
+    private static final String COLUMNS = "transaction_id, player_uuid_sender, player_uuid_receiver, currency_type, "
+        + "transaction_type, amount, timestamp, notes";
+
+    private static final String SELECT_MONTHS = "SELECT name FROM sqlite_master WHERE type = 'table' "
+        + "AND name GLOB 'currency_transaction_[0-9][0-9][0-9][0-9][0-9][0-9]' ORDER BY name DESC";
+
+    /** The oldest entry of the current table, found at the start of the rowid tree. */
+    private static final String SELECT_OLDEST = "SELECT " + EPOCH_SECONDS + " FROM currency_transaction ORDER BY transaction_id LIMIT 1";
+
+    /** The last id of the next chunk to move. */
+    private static final String SELECT_CHUNK_END = "SELECT MAX(transaction_id) FROM "
+        + "(SELECT transaction_id FROM currency_transaction ORDER BY transaction_id LIMIT ?)";
+
+    private static final String SET_ROLLUP_DAY = "INSERT INTO currency_ledger_state (name, value) VALUES ('rollup_day', ?) "
+        + "ON CONFLICT(name) DO UPDATE SET value = excluded.value";
+
+    private final Logger logger;
+    private final MCEngineCurrencyApiLedgerRetention retention;
+    private final Map<String, String> historySql = new ConcurrentHashMap<>();
+    private final Map<String, String> replaySql = new ConcurrentHashMap<>();
+    private volatile List<String> months = List.of();
+
+    /**
+     * @param logger    the logger maintenance is reported to
+     * @param retention the partitioning and retention settings
+     */
+    MCEngineCurrencyApiSQLiteLedger(Logger logger, MCEngineCurrencyApiLedgerRetention retention) {
+        this.logger = logger;
+        this.retention = retention;
+    }
+
+    /**
+     * Reads the names of the monthly tables. Called once the schema exists and whenever the tables change.
+     *
+     * @param connection the connection to read on
+     * @throws SQLException if the schema cannot be read
+     */
+    void load(Connection connection) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_MONTHS)) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        months = List.copyOf(names);
+    }
+
+    /**
+     * Reads one page of a player's history from the current table and, while the page is not full,
+     * from the monthly tables, newest first.
+     *
+     * @param statements the statement cache of the connection to read on
+     * @param playerUuid the UUID of the player
+     * @param before     the cursor to continue after, or {@code null} for the newest entries
+     * @param limit      the maximum number of entries to return
+     * @return the entries, newest first
+     * @throws SQLException if a query fails
+     */
+    List<MCEngineCurrencyApiHistoryEntry> getTransactions(Statements statements, String playerUuid,
+                                                          MCEngineCurrencyApiHistoryCursor before, int limit) throws SQLException {
+        List<MCEngineCurrencyApiHistoryEntry> entries = readHistory(statements, "currency_transaction", playerUuid, before, limit);
+        for (String table : months) {
+            if (entries.size() >= limit) break;
+            entries.addAll(readHistory(statements, table, playerUuid, before, limit - entries.size()));
+        }
+        return entries;
+    }
+
+    /**
+     * Reads one page of a player's history from one table.
+     */
+    private List<MCEngineCurrencyApiHistoryEntry> readHistory(Statements statements, String table, String playerUuid,
+                                                              MCEngineCurrencyApiHistoryCursor before, int limit) throws SQLException {
+        boolean seek = before != null;
+        String sql = historySql.computeIfAbsent(seek ? table + "+" : table,
+            key -> MCEngineCurrencyApiSQL.selectHistory(table, EPOCH_SECONDS, FROM_EPOCH_SECONDS, seek));
+        PreparedStatement pstmt = statements.prepare(sql);
+        MCEngineCurrencyApiSQL.bindHistory(pstmt, playerUuid, before, limit);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return MCEngineCurrencyApiSQL.readHistory(rs);
+        }
+    }
+
+    /**
+     * Runs one maintenance pass: splits off the months that are over, rolls up the days that are over and
+     * archives the expired months. Stops between chunks when the thread is interrupted.
+     *
+     * @param session how the engine runs ledger work
+     * @throws SQLException if a step fails; the steps already committed stay committed
+     */
+    void maintain(Session session) throws SQLException {
+        session.read(connection -> {
+            load(connection);
+            return null;
+        });
+        // Splitting first means the rollups of past days scan their own month rather than one large table
+        if (retention.isPartitioned()) {
+            splitMonths(session);
+        }
+        rollUp(session);
+        expire(session);
+    }
+
+    /**
+     * Moves the entries of every month before the current one out of the current table.
+     */
+    private void splitMonths(Session session) throws SQLException {
+        YearMonth current = MCEngineCurrencyApiLedgerRetention.currentMonth();
+        while (!Thread.currentThread().isInterrupted()) {
+            Long oldest = session.read(MCEngineCurrencyApiSQLiteLedger::oldest);
+            if (oldest == null) return;
+            YearMonth month = MCEngineCurrencyApiLedgerRetention.monthOf(oldest);
+            if (!month.isBefore(current)) return;
+
+            String table = "currency_transaction_" + MCEngineCurrencyApiLedgerRetention.suffix(month);
+            long end = MCEngineCurrencyApiLedgerRetention.startOf(month.plusMonths(1));
+            session.write(connection -> {
+                createMonthTable(connection, table);
+                return null;
+            });
+            // History must see the table before the first entries move into it
+            session.read(connection -> {
+                load(connection);
+                return null;
+            });
+
+            long moved = 0L;
+            int chunk;
+            do {
+                chunk = session.write(connection -> moveChunk(connection, table, end));
+                moved += chunk;
+            } while (chunk > 0 && !Thread.currentThread().isInterrupted());
+            logger.info("Moved " + moved + " ledger entries of " + month + " to '" + table + "'.");
+            if (moved == 0L) return;
+        }
+    }
+
+    /**
+     * @return the time of the oldest entry of the current table in Unix seconds, or {@code null} if it is empty
+     */
+    private static Long oldest(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_OLDEST)) {
+            return rs.next() ? rs.getLong(1) : null;
+        }
+    }
+
+    /**
+     * Creates a monthly table with the columns and history indexes of the ledger. Ids are copied rather than
+     * assigned and the entries were checked when they were first written, so it needs neither
+     * {@code AUTOINCREMENT} nor constraints.
+     */
+    private static void createMonthTable(Connection connection, String table) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS " + table + " ("
+                + "transaction_id INTEGER PRIMARY KEY, "
+                + "player_uuid_sender CHAR(36) NOT NULL, "
+                + "player_uuid_receiver CHAR(36) NOT NULL, "
+                + "currency_type TEXT NOT NULL, "
+                + "transaction_type TEXT NOT NULL, "
+                + "amount INTEGER NOT NULL, "
+                + "timestamp TIMESTAMP, "
+                + "notes VARCHAR(255))");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_" + table.substring("currency_".length()) + "_sender ON " + table
+                + " (player_uuid_sender, timestamp)");
+            stmt.executeUpdate("CREATE INDEX IF NOT EXISTS idx_" + table.substring("currency_".length()) + "_receiver ON " + table
+                + " (player_uuid_receiver, timestamp)");
+        }
+    }
+
+    /**
+     * Moves the entries older than {@code end} among the next {@link MCEngineCurrencyApiLedgerRetention#CHUNK_SIZE}
+     * ids of the current table into a monthly table. Both statements walk a rowid range, so a chunk costs the
+     * same however large the table is.
+     *
+     * @return the number of entries moved
+     */
+    private static int moveChunk(Connection connection, String table, long end) throws SQLException {
+        long last;
+        try (PreparedStatement pstmt = connection.prepareStatement(SELECT_CHUNK_END)) {
+            pstmt.setInt(1, MCEngineCurrencyApiLedgerRetention.CHUNK_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) return 0;
+                last = rs.getLong(1);
+                if (rs.wasNull()) return 0;
+            }
+        }
+        String range = " FROM currency_transaction WHERE transaction_id <= ? AND timestamp < " + FROM_EPOCH_SECONDS;
+        try (PreparedStatement copy = connection.prepareStatement("INSERT INTO " + table + " (" + COLUMNS + ") SELECT " + COLUMNS + range);
+             PreparedStatement delete = connection.prepareStatement("DELETE" + range)) {
+            copy.setLong(1, last);
+            copy.setLong(2, end);
+            copy.executeUpdate();
+            delete.setLong(1, last);
+            delete.setLong(2, end);
+            return delete.executeUpdate();
+        }
+    }
+
+    /**
+     * Adds the days that are over to {@code currency_rollup_daily}, a few days per transaction, and advances
+     * the {@code rollup_day} watermark with them, so no day is ever counted twice.
+     */
+    private void rollUp(Session session) throws SQLException {
+        long end = MCEngineCurrencyApiLedgerRetention.rollupEnd();
+        long from = session.write(connection -> {
+            Long day = rollupDay(connection);
+            if (day != null) return day;
+            // First run: start at the oldest entry, wherever it is stored
+            long first = end;
+            Long oldest = oldest(connection);
+            if (oldest != null) first = Math.min(first, MCEngineCurrencyApiLedgerRetention.dayOf(oldest));
+            List<String> tables = months;
+            if (!tables.isEmpty()) {
+                YearMonth month = MCEngineCurrencyApiLedgerRetention.parseSuffix(tables.get(tables.size() - 1));
+                first = Math.min(first, MCEngineCurrencyApiLedgerRetention.dayOf(MCEngineCurrencyApiLedgerRetention.startOf(month)));
+            }
+            setRollupDay(connection, first);
+            return first;
+        });
+
+        while (from < end && !Thread.currentThread().isInterrupted()) {
+            long start = from;
+            long stop = Math.min(end, from + MCEngineCurrencyApiLedgerRetention.ROLLUP_DAYS_PER_STEP);
+            session.write(connection -> {
+                for (String table : tablesBetween(start, stop)) {
+                    rollUp(connection, table, true, start, stop);
+                    rollUp(connection, table, false, start, stop);
+                }
+                setRollupDay(connection, stop);
+                return null;
+            });
+            from = stop;
+        }
+    }
+
+    /**
+     * Lists the current table and the monthly tables that can hold entries of the days {@code [start, stop)}.
+     */
+    private List<String> tablesBetween(long start, long stop) {
+        YearMonth first = MCEngineCurrencyApiLedgerRetention.monthOf(MCEngineCurrencyApiLedgerRetention.startOfDay(start));
+        YearMonth last = MCEngineCurrencyApiLedgerRetention.monthOf(MCEngineCurrencyApiLedgerRetention.startOfDay(stop) - 1L);
+        List<String> tables = new ArrayList<>();
+        tables.add("currency_transaction");
+        for (String table : months) {
+            YearMonth month = MCEngineCurrencyApiLedgerRetention.parseSuffix(table);
+            if (month != null && !month.isBefore(first) && !month.isAfter(last)) {
+                tables.add(table);
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Adds one side of one table's entries in the days {@code [start, stop)} to the rollups.
+     */
+    private static void rollUp(Connection connection, String table, boolean sent, long start, long stop) throws SQLException {
+        String side = sent ? "sent" : "received";
+        String sql = MCEngineCurrencyApiSQL.INSERT_ROLLUPS
+            + MCEngineCurrencyApiSQL.aggregateRollups(table, sent, EPOCH_SECONDS + " / 86400", FROM_EPOCH_SECONDS)
+            + " ON CONFLICT(player_uuid, day, currency_type) DO UPDATE SET "
+            + side + "_count = " + side + "_count + excluded." + side + "_count, "
+            + side + "_amount = " + side + "_amount + excluded." + side + "_amount";
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setLong(1, MCEngineCurrencyApiLedgerRetention.startOfDay(start));
+            pstmt.setLong(2, MCEngineCurrencyApiLedgerRetention.startOfDay(stop));
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * @return the first day that has not been rolled up, or {@code null} if rollups have never run
+     */
+    private static Long rollupDay(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(MCEngineCurrencyApiSQL.SELECT_ROLLUP_DAY)) {
+            return rs.next() ? rs.getLong(1) : null;
+        }
+    }
+
+    /**
+     * Stores the first day that has not been rolled up.
+     */
+    private static void setRollupDay(Connection connection, long day) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(SET_ROLLUP_DAY)) {
+            pstmt.setLong(1, day);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Archives and drops every monthly table past the retention window whose days are all rolled up and that
+     * ends before the newest checkpoint.
+     */
+    private void expire(Session session) throws SQLException {
+        Long rolledUp = null;
+        MCEngineCurrencyApiCheckpoint checkpoint = null;
+        for (String table : months) {
+            if (Thread.currentThread().isInterrupted()) return;
+            YearMonth month = MCEngineCurrencyApiLedgerRetention.parseSuffix(table);
+            if (month == null || !retention.isExpired(month)) continue;
+            if (rolledUp == null) {
+                rolledUp = session.read(MCEngineCurrencyApiSQLiteLedger::rollupDay);
+                checkpoint = getCheckpoint(session, Long.MAX_VALUE);
+                if (rolledUp == null || checkpoint == null) return;
+            }
+            long monthEnd = MCEngineCurrencyApiLedgerRetention.startOf(month.plusMonths(1));
+            if (rolledUp < MCEngineCurrencyApiLedgerRetention.dayOf(monthEnd) || checkpoint.epochSeconds() < monthEnd) continue;
+            archive(session, table, month);
+        }
+    }
+
+    /**
+     * Writes a monthly table to its archive one chunk at a time and drops it once the archive is on disk.
+     */
+    private void archive(Session session, String table, YearMonth month) throws SQLException {
+        String sql = MCEngineCurrencyApiSQL.selectArchive(table, EPOCH_SECONDS);
+        try (MCEngineCurrencyApiLedgerArchive archive = retention.openArchive(month)) {
+            int appended;
+            do {
+                if (Thread.currentThread().isInterrupted()) return;
+                long after = archive.getLastTransactionId();
+                appended = session.read(connection -> {
+                    try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                        pstmt.setLong(1, after);
+                        pstmt.setInt(2, MCEngineCurrencyApiLedgerRetention.CHUNK_SIZE);
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            return archive.append(rs);
+                        }
+                    } catch (IOException e) {
+                        throw new SQLException("Could not write " + archive.getFile() + ": " + e.getMessage(), e);
+                    }
+                });
+            } while (appended == MCEngineCurrencyApiLedgerRetention.CHUNK_SIZE);
+            archive.commit();
+
+            // Stop reading the table before it disappears
+            months = months.stream().filter(name -> !name.equals(table)).toList();
+            session.write(connection -> {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.executeUpdate("DROP TABLE " + table);
+                }
+                return null;
+            });
+            logger.info("Archived " + archive.getRows() + " ledger entries of " + month + " to '" + archive.getFile().getName()
+                + "' and dropped '" + table + "'.");
+        } catch (IOException e) {
+            throw new SQLException("Could not archive '" + table + "': " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Finds the newest checkpoint taken at or before a time.
+     *
+     * @param session      how the engine runs ledger work
+     * @param epochSeconds the time in Unix seconds
+     * @return the checkpoint, or {@code null} if there is none
+     * @throws SQLException if the query fails
+     */
+    MCEngineCurrencyApiCheckpoint getCheckpoint(Session session, long epochSeconds) throws SQLException {
+        return session.read(connection -> {
+            try (PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.SELECT_CHECKPOINT)) {
+                pstmt.setLong(1, epochSeconds);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return MCEngineCurrencyApiSQL.readCheckpoint(rs);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the balances stored in a checkpoint, of every player or of one.
+     *
+     * @param session      how the engine runs ledger work
+     * @param checkpointId the id of the checkpoint
+     * @param playerUuid   the UUID of the player, or {@code null} for every player
+     * @param size         the length of each balances array
+     * @return the balances keyed by player UUID and indexed by currency id
+     * @throws SQLException if the query fails
+     */
+    Map<String, long[]> getCheckpointBalances(Session session, long checkpointId, String playerUuid, int size) throws SQLException {
+        return session.read(connection -> {
+            Map<String, long[]> balances = new HashMap<>();
+            String sql = playerUuid == null ? MCEngineCurrencyApiSQL.SELECT_CHECKPOINT_BALANCES : MCEngineCurrencyApiSQL.SELECT_CHECKPOINT_BALANCE;
+            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                pstmt.setLong(1, checkpointId);
+                if (playerUuid != null) pstmt.setString(2, playerUuid);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    MCEngineCurrencyApiSQL.readBalances(rs, size, balances);
+                }
+            }
+            return balances;
+        });
+    }
+
+    /**
+     * Finds the last entry written at or before a time: in the current table or, if it has none, in the newest
+     * monthly table that has one.
+     *
+     * @param session      how the engine runs ledger work
+     * @param epochSeconds the time in Unix seconds
+     * @return the position of the entry, or {@code null} if there is none
+     * @throws SQLException if a query fails
+     */
+    MCEngineCurrencyApiCheckpoint getLedgerHead(Session session, long epochSeconds) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        tables.add("currency_transaction");
+        tables.addAll(months);
+        for (String table : tables) {
+            String sql = replaySql.computeIfAbsent("head:" + table,
+                key -> MCEngineCurrencyApiSQL.selectLedgerHead(table, EPOCH_SECONDS, FROM_EPOCH_SECONDS));
+            MCEngineCurrencyApiCheckpoint head = session.read(connection -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    pstmt.setLong(1, MCEngineCurrencyApiSQL.clampEpochSeconds(epochSeconds));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        return MCEngineCurrencyApiSQL.readCheckpoint(rs);
+                    }
+                }
+            });
+            if (head != null) return head;
+        }
+        return null;
+    }
+
+    /**
+     * Sums the balance changes of every player in a range of transaction ids over every table; a table
+     * without ids in the range costs one primary key lookup.
+     *
+     * @param session    how the engine runs ledger work
+     * @param currencies the configured currencies
+     * @param afterId    the last transaction id before the range
+     * @param lastId     the last transaction id of the range
+     * @return the changes keyed by player UUID and indexed by currency id
+     * @throws SQLException if a query fails
+     */
+    Map<String, long[]> sumLedger(Session session, MCEngineCurrencyApiCurrencyRegistry currencies, long afterId, long lastId) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        tables.add("currency_transaction");
+        tables.addAll(months);
+        Map<String, long[]> sums = new HashMap<>();
+        for (String table : tables) {
+            String sql = replaySql.computeIfAbsent("sum:" + table, key -> MCEngineCurrencyApiSQL.sumLedger(table));
+            session.read(connection -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    MCEngineCurrencyApiSQL.bindLedgerSum(pstmt, afterId, lastId);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        MCEngineCurrencyApiSQL.readLedgerSums(rs, currencies, sums);
+                    }
+                }
+                return null;
+            });
+        }
+        return sums;
+    }
+
+    /**
+     * Sums the balance changes of one player after a checkpoint, up to a time, over the current table and the
+     * monthly tables of the months in between.
+     *
+     * @param session        how the engine runs ledger work
+     * @param currencies     the configured currencies
+     * @param playerUuid     the UUID of the player
+     * @param after          the checkpoint whose entries are already counted
+     * @param toEpochSeconds the end of the range in Unix seconds, inclusive
+     * @return the changes indexed by currency id
+     * @throws SQLException if a query fails
+     */
+    long[] sumLedger(Session session, MCEngineCurrencyApiCurrencyRegistry currencies, String playerUuid,
+                     MCEngineCurrencyApiCheckpoint after, long toEpochSeconds) throws SQLException {
+        long to = MCEngineCurrencyApiSQL.clampEpochSeconds(toEpochSeconds);
+        long first = MCEngineCurrencyApiLedgerRetention.dayOf(after.epochSeconds());
+        List<String> tables = tablesBetween(first, MCEngineCurrencyApiLedgerRetention.dayOf(to) + 1L);
+        Map<String, long[]> sums = new HashMap<>();
+        for (String table : tables) {
+            String sql = replaySql.computeIfAbsent("player:" + table, key -> MCEngineCurrencyApiSQL.sumLedger(table, FROM_EPOCH_SECONDS));
+            session.read(connection -> {
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    MCEngineCurrencyApiSQL.bindLedgerSum(pstmt, playerUuid, after.epochSeconds(), to, after.transactionId());
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        MCEngineCurrencyApiSQL.readLedgerSums(rs, currencies, sums);
+                    }
+                }
+                return null;
+            });
+        }
+        return sums.getOrDefault(playerUuid, new long[currencies.size()]);
+    }
+
+    /**
+     * Saves a checkpoint and its balances in one transaction.
+     *
+     * @param session  how the engine runs ledger work
+     * @param position the position the balances belong to
+     * @param balances the balances keyed by player UUID and indexed by currency id
+     * @return the saved checkpoint
+     * @throws SQLException if the checkpoint cannot be written; nothing is saved then
+     */
+    MCEngineCurrencyApiCheckpoint saveCheckpoint(Session session, MCEngineCurrencyApiCheckpoint position, Map<String, long[]> balances) throws SQLException {
+        return session.write(connection -> {
+            long checkpointId;
+            try (PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.INSERT_CHECKPOINT)) {
+                pstmt.setLong(1, position.transactionId());
+                pstmt.setLong(2, position.epochSeconds());
+                pstmt.executeUpdate();
+            }
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+                rs.next();
+                checkpointId = rs.getLong(1);
+            }
+            try (PreparedStatement pstmt = connection.prepareStatement(MCEngineCurrencyApiSQL.INSERT_CHECKPOINT_BALANCE)) {
+                MCEngineCurrencyApiSQL.batchCheckpoint(pstmt, checkpointId, balances, MCEngineCurrencyApiLedgerRetention.CHUNK_SIZE);
+            }
+            return new MCEngineCurrencyApiCheckpoint(checkpointId, position.transactionId(), position.epochSeconds());
+        });
+    }
+
+    /**
+     * Deletes the checkpoints taken before a time, except one that must be kept, in one transaction.
+     *
+     * @param session            how the engine runs ledger work
+     * @param beforeEpochSeconds the time in Unix seconds
+     * @param keepId             the id of a checkpoint to keep regardless
+     * @throws SQLException if the checkpoints cannot be deleted; nothing is deleted then
+     */
+    void deleteCheckpoints(Session session, long beforeEpochSeconds, long keepId) throws SQLException {
+        session.write(connection -> {
+            for (String sql : new String[] {MCEngineCurrencyApiSQL.DELETE_CHECKPOINT_BALANCES, MCEngineCurrencyApiSQL.DELETE_CHECKPOINTS}) {
+                try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+                    pstmt.setLong(1, beforeEpochSeconds);
+                    pstmt.setLong(2, keepId);
+                    pstmt.executeUpdate();
+                }
+            }
+            return null;
+        });
+    }
+}
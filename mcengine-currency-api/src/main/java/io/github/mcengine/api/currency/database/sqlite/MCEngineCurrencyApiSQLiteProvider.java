@@ -0,0 +1,44 @@
+package io.github.mcengine.api.currency.database.sqlite;
+
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.database.provider.MCEngineCurrencyApiStorageProvider;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Built-in storage provider for {@code database.type: sqlite}.
+ * Picks the WAL engine or the single-connection engine from {@code database.sqlite.mode}.
+ */
+public class MCEngineCurrencyApiSQLiteProvider implements MCEngineCurrencyApiStorageProvider {
+
+    /** @return {@code "sqlite"}. */
+    @Override
+    public String getType() {
+        return "sqlite";
+    }
+
+    /**
+     * Creates the SQLite engine selected by {@code database.sqlite.mode} for the currencies in the plugin's configuration.
+     *
+     * @param plugin The plugin instance.
+     * @return A new {@link MCEngineCurrencyApiSQLiteWAL} for mode {@code "wal"}, otherwise a new {@link MCEngineCurrencyApiSQLite}.
+     */
+    @Override
+    public MCEngineCurrencyApiDBInterface create(Plugin plugin) {
+        return create(plugin, MCEngineCurrencyApiCurrencyRegistry.load(plugin));
+    }
+
+    /**
+     * Creates the SQLite engine selected by {@code database.sqlite.mode}.
+     *
+     * @param plugin     The plugin instance.
+     * @param currencies The configured currencies.
+     * @return A new {@link MCEngineCurrencyApiSQLiteWAL} for mode {@code "wal"}, otherwise a new {@link MCEngineCurrencyApiSQLite}.
+     */
+    @Override
+    public MCEngineCurrencyApiDBInterface create(Plugin plugin, MCEngineCurrencyApiCurrencyRegistry currencies) {
+        return "wal".equalsIgnoreCase(plugin.getConfig().getString("database.sqlite.mode", "default"))
+            ? new MCEngineCurrencyApiSQLiteWAL(plugin, currencies)
+            : new MCEngineCurrencyApiSQLite(plugin, currencies);
+    }
+}
@@ -0,0 +1,947 @@
+package io.github.mcengine.api.currency.database.sqlite;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiSQL;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiVersionedBalances;
+import io.github.mcengine.api.currency.enums.MCEngineCurrencyApiTransactionType;
+import io.github.mcengine.api.currency.leaderboard.MCEngineCurrencyApiTopEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiCheckpoint;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryCursor;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiInsertResult;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiLedgerRetention;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiRollup;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiTransaction;
+import io.github.mcengine.api.currency.metrics.MCEngineCurrencyApiMetrics;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * SQLite implementation of {@link MCEngineCurrencyApiDBInterface} tuned for throughput.
+ *
+ * <p>The database runs in WAL mode with {@code synchronous=NORMAL} and a configurable page cache
+ * and mmap size. Every write is handed to one writer thread that owns the only writable connection
+ * and groups all writes waiting at that moment into a single commit, each inside its own savepoint
+ * so one failing write does not undo the others. Callers still block until their write is committed.
+ * Reads use a small pool of read-only connections, which WAL lets run alongside the writer.</p>
+ *
+ * <p>Selected with {@code database.sqlite.mode: wal}.</p>
+ */
+public class MCEngineCurrencyApiSQLiteWAL implements MCEngineCurrencyApiDBInterface {
+    private final Plugin plugin;
+    private final MCEngineCurrencyApiCurrencyRegistry currencies;
+    private final String dbPath;
+    private final int readConnections;
+    private final int maxGroupSize;
+    private final long cacheSizeKiB;
+    private final long mmapSize;
+
+    private final BlockingQueue<PendingWrite<?>> writes = new LinkedBlockingQueue<>();
+    private BlockingQueue<Reader> readers;
+    private Connection writer;
+    private final Map<String, PreparedStatement> writerStatements = new HashMap<>();
+    private Thread writerThread;
+    private volatile boolean running;
+    private final MCEngineCurrencyApiSQLiteLedger ledger;
+
+    /**
+     * Runs ledger maintenance as ordinary writes and reads, one step at a time, so other writes are
+     * grouped in between chunks.
+     */
+    private final MCEngineCurrencyApiSQLiteLedger.Session ledgerSession = new MCEngineCurrencyApiSQLiteLedger.Session() {
+        @Override
+        public <T> T write(MCEngineCurrencyApiSQLiteLedger.Work<T> work) throws SQLException {
+            return MCEngineCurrencyApiSQLiteWAL.this.write(work::apply);
+        }
+
+        @Override
+        public <T> T read(MCEngineCurrencyApiSQLiteLedger.Work<T> work) throws SQLException {
+            return MCEngineCurrencyApiSQLiteWAL.this.read(reader -> work.apply(reader.connection));
+        }
+    };
+
+    /**
+     * Work executed on the writer connection.
+     */
+    @FunctionalInterface
+    private interface Write<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Work executed on a read-only connection.
+     */
+    @FunctionalInterface
+    private interface Read<T> {
+        T apply(Reader reader) throws SQLException;
+    }
+
+    /**
+     * A write waiting for the writer thread, with the future its caller blocks on.
+     */
+    private record PendingWrite<T>(Write<T> work, CompletableFuture<T> result) {}
+
+    /**
+     * A read-only connection together with its prepared statement cache.
+     */
+    private static final class Reader {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private Reader(Connection connection) {
+            this.connection = connection;
+        }
+
+        private PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+    }
+
+    /**
+     * Creates the WAL engine from the {@code database.sqlite.*} configuration and connects,
+     * for the currencies in the plugin's configuration.
+     *
+     * @param plugin the plugin instance
+     */
+    public MCEngineCurrencyApiSQLiteWAL(Plugin plugin) {
+        this(plugin, MCEngineCurrencyApiCurrencyRegistry.load(plugin));
+    }
+
+    /**
+     * Creates the WAL engine from the {@code database.sqlite.*} configuration and connects.
+     *
+     * @param plugin     the plugin instance
+     * @param currencies the configured currencies
+     */
+    public MCEngineCurrencyApiSQLiteWAL(Plugin plugin, MCEngineCurrencyApiCurrencyRegistry currencies) {
+        this.plugin = plugin;
+        this.currencies = currencies;
+        this.dbPath = plugin.getConfig().getString("database.sqlite.path", "currency.db");
+        this.readConnections = Math.max(1, plugin.getConfig().getInt("database.sqlite.wal.read-connections", 4));
+        this.maxGroupSize = Math.max(1, plugin.getConfig().getInt("database.sqlite.wal.group-size", 256));
+        this.cacheSizeKiB = plugin.getConfig().getLong("database.sqlite.wal.cache-size", 16384L);
+        this.mmapSize = plugin.getConfig().getLong("database.sqlite.wal.mmap-size", 268435456L);
+        this.ledger = new MCEngineCurrencyApiSQLiteLedger(plugin.getLogger(), new MCEngineCurrencyApiLedgerRetention(plugin));
+        connect();
+    }
+
+    /**
+     * Opens the writer connection, switches the database to WAL mode, opens the read-only
+     * connections and starts the writer thread.
+     */
+    public void connect() {
+        String url = "jdbc:sqlite:" + plugin.getDataFolder().getAbsolutePath() + "/" + dbPath;
+        try {
+            writer = DriverManager.getConnection(url);
+            try (Statement stmt = writer.createStatement()) {
+                stmt.execute("PRAGMA journal_mode=WAL");
+                stmt.execute("PRAGMA synchronous=NORMAL");
+                applyCachePragmas(stmt);
+            }
+            writer.setAutoCommit(false);
+
+            readers = new ArrayBlockingQueue<>(readConnections);
+            Properties readOnly = new Properties();
+            readOnly.setProperty("open_mode", "1"); // SQLITE_OPEN_READONLY
+            for (int i = 0; i < readConnections; i++) {
+                Connection connection = DriverManager.getConnection(url, readOnly);
+                try (Statement stmt = connection.createStatement()) {
+                    applyCachePragmas(stmt);
+                }
+                readers.add(new Reader(connection));
+            }
+
+            running = true;
+            writerThread = new Thread(this::writeLoop, "MCEngineCurrency-SQLite-Writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+            plugin.getLogger().info("Connected to SQLite database in WAL mode at: " + url.substring("jdbc:sqlite:".length()));
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to connect to SQLite database: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the per-connection page cache and mmap settings.
+     */
+    private void applyCachePragmas(Statement stmt) throws SQLException {
+        // A negative cache_size is interpreted by SQLite as KiB rather than pages
+        stmt.execute("PRAGMA cache_size=-" + Math.max(0L, cacheSizeKiB));
+        stmt.execute("PRAGMA mmap_size=" + Math.max(0L, mmapSize));
+        stmt.execute("PRAGMA temp_store=MEMORY");
+    }
+
+    /**
+     * Writer thread: takes every write that is waiting, runs each in its own savepoint and
+     * commits the whole group at once.
+     */
+    private void writeLoop() {
+        List<PendingWrite<?>> group = new ArrayList<>(maxGroupSize);
+        while (running || !writes.isEmpty()) {
+            try {
+                PendingWrite<?> first = writes.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+                writes.drainTo(group, maxGroupSize - 1);
+            } catch (InterruptedException e) {
+                writes.drainTo(group, maxGroupSize);
+            }
+            if (!group.isEmpty()) {
+                commitGroup(group);
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Runs a group of writes and commits them together.
+     */
+    private void commitGroup(List<PendingWrite<?>> group) {
+        List<Runnable> completions = new ArrayList<>(group.size());
+        for (PendingWrite<?> pending : group) {
+            completions.add(run(pending));
+        }
+        try {
+            writer.commit();
+            completions.forEach(Runnable::run);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error committing " + group.size() + " SQLite writes - " + e.getMessage());
+            try {
+                writer.rollback();
+            } catch (SQLException ignored) {
+                // The connection is unusable; the failures are reported to every caller below
+            }
+            for (PendingWrite<?> pending : group) {
+                pending.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Runs one write inside a savepoint and returns the completion to fire after the commit.
+     */
+    private <T> Runnable run(PendingWrite<T> pending) {
+        try {
+            Savepoint savepoint = writer.setSavepoint();
+            try {
+                T value = pending.work().apply(writer);
+                writer.releaseSavepoint(savepoint);
+                return () -> pending.result().complete(value);
+            } catch (SQLException | RuntimeException e) {
+                writer.rollback(savepoint);
+                return () -> pending.result().completeExceptionally(e);
+            }
+        } catch (SQLException e) {
+            return () -> pending.result().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Hands a write to the writer thread and waits until its group has been committed.
+     */
+    private <T> T write(Write<T> work) throws SQLException {
+        if (!running) {
+            throw new SQLException("SQLite writer is not running");
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        writes.add(new PendingWrite<>(work, result));
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException sqlException) throw sqlException;
+            throw new SQLException(e.getCause());
+        }
+    }
+
+    /**
+     * Borrows a read-only connection for the duration of a read.
+     */
+    private <T> T read(Read<T> work) throws SQLException {
+        Reader reader;
+        try {
+            reader = readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a SQLite read connection", e);
+        }
+        try {
+            return work.apply(reader);
+        } finally {
+            readers.add(reader);
+        }
+    }
+
+    /**
+     * Returns the cached writer statement for the given SQL. Only called on the writer thread.
+     */
+    private PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = writerStatements.get(sql);
+        if (statement == null) {
+            statement = writer.prepareStatement(sql);
+            writerStatements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Creates the 'currency', 'currency_balance' and 'currency_transaction' tables on the writer connection
+     * if they do not exist, migrating a database written by an earlier version.
+     */
+    public void createTable() {
+        try {
+            write(connection -> {
+                MCEngineCurrencyApiSQLite.createSchema(connection, currencies, plugin.getLogger());
+                ledger.load(connection);
+                return null;
+            });
+            plugin.getLogger().info("Tables 'currency', 'currency_balance' and 'currency_transaction' created successfully in SQLite database.");
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error creating tables: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lets the writer finish every queued write, then closes all connections.
+     */
+    public void disConnection() {
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Writes that raced with shutdown would otherwise block their callers forever
+        PendingWrite<?> late;
+        while ((late = writes.poll()) != null) {
+            late.result().completeExceptionally(new SQLException("SQLite writer is shut down"));
+        }
+        try {
+            if (writer != null && !writer.isClosed()) {
+                writer.close();
+            }
+            if (readers != null) {
+                for (Reader reader : readers) {
+                    reader.connection.close();
+                }
+                readers.clear();
+            }
+            plugin.getLogger().info("Disconnected from SQLite database.");
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to disconnect from SQLite database: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retrieves the amount of a currency for a player using a read-only connection.
+     *
+     * @param playerUuid the UUID of the player whose balance is to be retrieved
+     * @param currencyId the id of the currency to retrieve
+     * @return the amount of the currency the player has; returns 0 if no record is found, the currency id is invalid or an error occurs
+     */
+    public long getCoin(String playerUuid, int currencyId) {
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return 0L;
+        }
+        try {
+            return read(reader -> {
+                PreparedStatement pstmt = reader.prepare(MCEngineCurrencyApiSQL.SELECT_COIN);
+                pstmt.setString(1, playerUuid);
+                pstmt.setInt(2, currencyId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0L;
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving " + currencies.nameOf(currencyId) + " for player uuid: " + playerUuid + " - " + e.getMessage());
+            return 0L;
+        }
+    }
+
+    /**
+     * Retrieves all balances of a player using a read-only connection.
+     *
+     * @param playerUuid the UUID of the player whose balances are to be retrieved
+     * @return the balances indexed by currency id; {@code null} if no record is found or if an error occurs
+     */
+    public long[] getBalances(String playerUuid) {
+        MCEngineCurrencyApiVersionedBalances versioned = getVersionedBalances(playerUuid);
+        return versioned != null ? versioned.balances() : null;
+    }
+
+    /**
+     * Retrieves all balances of many players, {@link MCEngineCurrencyApiSQL#BALANCES_CHUNK_SIZE} per query, using a read-only connection.
+     *
+     * @param playerUuids the UUIDs of the players whose balances are to be retrieved
+     * @return the balances of every player with a record, keyed by UUID; the balances read so far if an error occurs
+     */
+    public Map<String, long[]> getBalances(Collection<String> playerUuids) {
+        Map<String, long[]> balances = new HashMap<>();
+        if (playerUuids.isEmpty()) return balances;
+        List<String> uuids = new ArrayList<>(playerUuids);
+        try {
+            read(reader -> {
+                PreparedStatement pstmt = reader.prepare(MCEngineCurrencyApiSQL.SELECT_BALANCES_IN);
+                for (int from = 0; from < uuids.size(); from += MCEngineCurrencyApiSQL.BALANCES_CHUNK_SIZE) {
+                    MCEngineCurrencyApiSQL.bindUuidChunk(pstmt, uuids, from);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        MCEngineCurrencyApiSQL.readBalances(rs, currencies.size(), balances);
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving balances for " + uuids.size() + " players - " + e.getMessage());
+        }
+        return balances;
+    }
+
+    /**
+     * Retrieves the players with the highest balance of one currency, walking the balance index
+     * on a read-only connection.
+     *
+     * @param currencyId the id of the currency to rank by
+     * @param offset     the number of leading entries to skip
+     * @param limit      the maximum number of entries to return
+     * @return the entries in descending balance order; empty if the currency id is invalid or an error occurs
+     */
+    public List<MCEngineCurrencyApiTopEntry> getTop(int currencyId, int offset, int limit) {
+        List<MCEngineCurrencyApiTopEntry> top = new ArrayList<>();
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return top;
+        }
+        try {
+            read(reader -> {
+                PreparedStatement pstmt = reader.prepare(MCEngineCurrencyApiSQL.SELECT_TOP);
+                pstmt.setInt(1, currencyId);
+                pstmt.setInt(2, limit);
+                pstmt.setInt(3, offset);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        top.add(new MCEngineCurrencyApiTopEntry(rs.getString(1), rs.getLong(2)));
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving top " + currencies.nameOf(currencyId) + " balances - " + e.getMessage());
+        }
+        return top;
+    }
+
+    /**
+     * Reads the ledger entries a player sent or received on a reader connection, newest first, seeking past
+     * the cursor on the sender and receiver indexes of the current table and, while the page is not full,
+     * of the monthly tables.
+     *
+     * @param playerUuid the UUID of the player
+     * @param before     the cursor to continue after, or {@code null} for the newest entries
+     * @param limit      the maximum number of entries to return
+     * @return the entries; empty if there are none or an error occurs
+     */
+    @Override
+    public List<MCEngineCurrencyApiHistoryEntry> getTransactions(String playerUuid, MCEngineCurrencyApiHistoryCursor before, int limit) {
+        try {
+            return read(reader -> ledger.getTransactions(reader::prepare, playerUuid, before, limit));
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving transaction history - " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Reads a player's daily ledger totals from the rollup table on a reader connection.
+     *
+     * @param playerUuid the UUID of the player
+     * @param fromDay    the first UTC day, in days since the epoch
+     * @param toDay      the last UTC day, inclusive
+     * @return the rollups by day and currency; empty if there are none or an error occurs
+     */
+    @Override
+    public List<MCEngineCurrencyApiRollup> getRollups(String playerUuid, long fromDay, long toDay) {
+        try {
+            return read(reader -> {
+                PreparedStatement pstmt = reader.prepare(MCEngineCurrencyApiSQL.SELECT_ROLLUPS);
+                pstmt.setString(1, playerUuid);
+                pstmt.setLong(2, fromDay);
+                pstmt.setLong(3, toDay);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return MCEngineCurrencyApiSQL.readRollups(rs);
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving ledger rollups for player uuid: " + playerUuid + " - " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Splits off the months that are over, rolls up the days that are over and archives the expired months.
+     * Moves and rollups are writes of the writer thread, one chunk each; archives are read on a reader connection.
+     */
+    @Override
+    public void maintainLedger() {
+        try {
+            ledger.maintain(ledgerSession);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error maintaining the SQLite ledger - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finds the newest checkpoint taken at or before a time.
+     *
+     * @param epochSeconds the time in Unix seconds
+     * @return the checkpoint, or {@code null} if there is none or an error occurs
+     */
+    @Override
+    public MCEngineCurrencyApiCheckpoint getCheckpoint(long epochSeconds) {
+        try {
+            return ledger.getCheckpoint(ledgerSession, epochSeconds);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving ledger checkpoint - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads every balance stored in a checkpoint on a reader connection.
+     *
+     * @param checkpointId the id of the checkpoint
+     * @return the balances keyed by player UUID and indexed by currency id, or {@code null} if an error occurs
+     */
+    @Override
+    public Map<String, long[]> getCheckpointBalances(long checkpointId) {
+        try {
+            return ledger.getCheckpointBalances(ledgerSession, checkpointId, null, currencies.size());
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving balances of ledger checkpoint " + checkpointId + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads one player's balances stored in a checkpoint on a reader connection.
+     *
+     * @param checkpointId the id of the checkpoint
+     * @param playerUuid   the UUID of the player
+     * @return the balances indexed by currency id, all zero if the player had none, or {@code null} if an error occurs
+     */
+    @Override
+    public long[] getCheckpointBalances(long checkpointId, String playerUuid) {
+        try {
+            return ledger.getCheckpointBalances(ledgerSession, checkpointId, playerUuid, currencies.size())
+                .getOrDefault(playerUuid, new long[currencies.size()]);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving checkpoint balances for player uuid: " + playerUuid + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Finds the last ledger entry written at or before a time, in the current table or the monthly tables.
+     *
+     * @param epochSeconds the time in Unix seconds
+     * @return the position of the entry, or {@code null} if there is none or an error occurs
+     */
+    @Override
+    public MCEngineCurrencyApiCheckpoint getLedgerHead(long epochSeconds) {
+        try {
+            return ledger.getLedgerHead(ledgerSession, epochSeconds);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving the last ledger entry - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sums the balance changes of every player in a range of transaction ids on a reader connection, so several ranges are summed at once.
+     *
+     * @param afterId the last transaction id before the range
+     * @param lastId  the last transaction id of the range
+     * @return the changes keyed by player UUID and indexed by currency id, or {@code null} if an error occurs
+     */
+    @Override
+    public Map<String, long[]> sumLedger(long afterId, long lastId) {
+        try {
+            return ledger.sumLedger(ledgerSession, currencies, afterId, lastId);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error summing ledger entries " + (afterId + 1) + " to " + lastId + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sums the balance changes of one player after a checkpoint, up to a time.
+     *
+     * @param playerUuid     the UUID of the player
+     * @param after          the checkpoint whose entries are already counted
+     * @param toEpochSeconds the end of the range in Unix seconds, inclusive
+     * @return the changes indexed by currency id, or {@code null} if an error occurs
+     */
+    @Override
+    public long[] sumLedger(String playerUuid, MCEngineCurrencyApiCheckpoint after, long toEpochSeconds) {
+        try {
+            return ledger.sumLedger(ledgerSession, currencies, playerUuid, after, toEpochSeconds);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error summing ledger entries for player uuid: " + playerUuid + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Saves a checkpoint and its balances in one transaction.
+     *
+     * @param position the position the balances belong to
+     * @param balances the balances keyed by player UUID and indexed by currency id
+     * @return the saved checkpoint, or {@code null} if it was rolled back
+     */
+    @Override
+    public MCEngineCurrencyApiCheckpoint saveCheckpoint(MCEngineCurrencyApiCheckpoint position, Map<String, long[]> balances) {
+        try {
+            return ledger.saveCheckpoint(ledgerSession, position, balances);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error saving ledger checkpoint - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the checkpoints taken before a time, except one that must be kept.
+     *
+     * @param beforeEpochSeconds the time in Unix seconds
+     * @param keepId             the id of a checkpoint to keep regardless
+     */
+    @Override
+    public void deleteCheckpoints(long beforeEpochSeconds, long keepId) {
+        try {
+            ledger.deleteCheckpoints(ledgerSession, beforeEpochSeconds, keepId);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error deleting ledger checkpoints - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens a new connection to the database file. The caller must close it.
+     *
+     * @return a new {@link Connection}, or {@code null} if it could not be opened
+     */
+    public Connection getConnection() {
+        try {
+            return DriverManager.getConnection("jdbc:sqlite:" + plugin.getDataFolder().getAbsolutePath() + "/" + dbPath);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to open SQLite connection: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Creates a player's record with the given balances through the writer thread. Does nothing if the player already has one.
+     * @param playerUuid the unique identifier for the player.
+     * @param balances the starting balances, indexed by currency id.
+     */
+    public void insertCurrency(String playerUuid, long[] balances) {
+        try {
+            write(connection -> {
+                PreparedStatement accountStmt = prepare(MCEngineCurrencyApiSQLite.INSERT_ACCOUNT);
+                accountStmt.setString(1, playerUuid);
+                if (accountStmt.executeUpdate() == 1) {
+                    PreparedStatement setStmt = prepare(MCEngineCurrencyApiSQLite.SET_AMOUNT);
+                    if (MCEngineCurrencyApiSQL.batchBalances(setStmt, playerUuid, balances, true) > 0) {
+                        setStmt.executeBatch();
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error inserting currency for player uuid: " + playerUuid + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a player's record with zero balances if it does not exist and returns the balances,
+     * in one write on the writer thread.
+     *
+     * @param playerUuid the unique identifier for the player
+     * @return the balances in minor units, indexed by currency id; {@code null} if an error occurs
+     */
+    public long[] loadOrCreateBalances(String playerUuid) {
+        try {
+            return write(connection -> {
+                PreparedStatement accountStmt = prepare(MCEngineCurrencyApiSQLite.INSERT_ACCOUNT);
+                accountStmt.setString(1, playerUuid);
+                accountStmt.executeUpdate();
+                PreparedStatement pstmt = prepare(MCEngineCurrencyApiSQL.SELECT_BALANCES);
+                pstmt.setString(1, playerUuid);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    MCEngineCurrencyApiVersionedBalances versioned = MCEngineCurrencyApiSQL.readBalances(rs, currencies.size());
+                    return versioned != null ? versioned.balances() : null;
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error loading currency for player uuid: " + playerUuid + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Inserts a transaction record through the writer thread.
+     *
+     * @param playerUuidSender the unique identifier of the sender.
+     * @param playerUuidReceiver the unique identifier of the receiver.
+     * @param currencyType the name of the currency involved in the transaction.
+     * @param transactionType the type of transaction, see {@link MCEngineCurrencyApiTransactionType}.
+     * @param amount the amount of currency involved in the transaction.
+     * @param notes optional notes about the transaction.
+     */
+    public void insertTransaction(String playerUuidSender, String playerUuidReceiver, String currencyType,
+        String transactionType, long amount, String notes) {
+        insertTransactions(List.of(new MCEngineCurrencyApiTransaction(playerUuidSender, playerUuidReceiver, currencyType, transactionType, amount, notes)));
+    }
+
+    /**
+     * Inserts many transaction records as one batch through the writer thread.
+     *
+     * @param transactions the ledger entries to insert
+     * @return whether the batch was committed, or why it was rolled back
+     */
+    public MCEngineCurrencyApiInsertResult insertTransactions(List<MCEngineCurrencyApiTransaction> transactions) {
+        if (transactions.isEmpty()) return MCEngineCurrencyApiInsertResult.WRITTEN;
+        try {
+            write(connection -> {
+                PreparedStatement pstmt = prepare(MCEngineCurrencyApiSQLiteLedger.INSERT_TRANSACTION);
+                for (MCEngineCurrencyApiTransaction transaction : transactions) {
+                    MCEngineCurrencyApiSQL.bindTransaction(pstmt, transaction);
+                    pstmt.addBatch();
+                }
+                return pstmt.executeBatch();
+            });
+            return MCEngineCurrencyApiInsertResult.WRITTEN;
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error inserting " + transactions.size() + " transactions - " + e.getMessage());
+            return MCEngineCurrencyApiSQL.classify(e, true);
+        }
+    }
+
+    /**
+     * Checks if a player with the specified UUID exists using a read-only connection.
+     *
+     * @param uuid the UUID of the player to check
+     * @return {@code true} if a player with the specified UUID exists, {@code false} otherwise
+     */
+    public boolean playerExists(String uuid) {
+        try {
+            return read(reader -> {
+                PreparedStatement stmt = reader.prepare(MCEngineCurrencyApiSQL.PLAYER_EXISTS);
+                stmt.setString(1, uuid);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() && rs.getInt(1) > 0;
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error checking player uuid: " + uuid + " - " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Updates one currency of a player and bumps the record's version through the writer thread.
+     * @param playerUuid the unique identifier for the player.
+     * @param operator the operation to apply ("+" or "-").
+     * @param currencyId the id of the currency to update.
+     * @param amt the amount by which to update the currency.
+     */
+    public void updateCurrencyValue(String playerUuid, String operator, int currencyId, long amt) {
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return;
+        }
+
+        long delta;
+        if ("+".equals(operator)) {
+            delta = amt;
+        } else if ("-".equals(operator)) {
+            delta = -amt;
+        } else {
+            plugin.getLogger().severe("Invalid operator: " + operator);
+            return;
+        }
+
+        try {
+            write(connection -> {
+                PreparedStatement addStmt = prepare(MCEngineCurrencyApiSQLite.ADD_AMOUNT);
+                MCEngineCurrencyApiSQL.bindAddAmount(addStmt, playerUuid, currencyId, delta);
+                if (addStmt.executeUpdate() != 1) return 0;
+                PreparedStatement bumpStmt = prepare(MCEngineCurrencyApiSQL.BUMP_VERSION);
+                bumpStmt.setString(1, playerUuid);
+                return bumpStmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error updating " + currencies.nameOf(currencyId) + " for player uuid: " + playerUuid + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies balance deltas for many players as batched upserts through the writer thread.
+     *
+     * @param deltas the deltas to add, keyed by player UUID and indexed by currency id
+     * @return {@code true} if the batch was committed, {@code false} if it was rolled back
+     */
+    public boolean updateCurrencyValues(Map<String, long[]> deltas) {
+        if (deltas.isEmpty()) return true;
+        try {
+            write(connection -> {
+                PreparedStatement addStmt = prepare(MCEngineCurrencyApiSQLite.ADD_AMOUNT);
+                PreparedStatement bumpStmt = prepare(MCEngineCurrencyApiSQL.BUMP_VERSION);
+                MCEngineCurrencyApiSQL.batchDeltas(addStmt, bumpStmt, deltas);
+                addStmt.executeBatch();
+                return bumpStmt.executeBatch();
+            });
+            return true;
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error flushing " + deltas.size() + " balance updates - " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Transfers currency between two players through the writer thread. The conditional debit,
+     * the credit and the "pay" ledger entry run in one savepoint and are rolled back together
+     * if any step does not apply.
+     *
+     * @param playerUuidSender   the unique identifier of the sender
+     * @param playerUuidReceiver the unique identifier of the receiver
+     * @param currencyId         the id of the currency to transfer
+     * @param amount             the amount to transfer
+     * @param notes              optional notes about the transfer
+     * @return {@code true} if the transfer was committed; {@code false} if the sender's balance is too low,
+     *         either player has no record, or an error occurred
+     */
+    public boolean transfer(String playerUuidSender, String playerUuidReceiver, int currencyId, long amount, String notes) {
+        if (!currencies.isValid(currencyId)) {
+            plugin.getLogger().severe("Invalid currency id: " + currencyId);
+            return false;
+        }
+
+        try {
+            return write(connection -> {
+                Savepoint savepoint = connection.setSavepoint();
+                PreparedStatement debitStmt = prepare(MCEngineCurrencyApiSQL.DEBIT_COIN);
+                debitStmt.setLong(1, amount);
+                debitStmt.setString(2, playerUuidSender);
+                debitStmt.setInt(3, currencyId);
+                debitStmt.setLong(4, amount);
+                if (debitStmt.executeUpdate() != 1) {
+                    connection.rollback(savepoint);
+                    return false;
+                }
+
+                PreparedStatement bumpStmt = prepare(MCEngineCurrencyApiSQL.BUMP_VERSION);
+                bumpStmt.setString(1, playerUuidReceiver);
+                if (bumpStmt.executeUpdate() != 1) {
+                    connection.rollback(savepoint);
+                    return false;
+                }
+                bumpStmt.setString(1, playerUuidSender);
+                bumpStmt.executeUpdate();
+
+                PreparedStatement creditStmt = prepare(MCEngineCurrencyApiSQLite.ADD_AMOUNT);
+                MCEngineCurrencyApiSQL.bindAddAmount(creditStmt, playerUuidReceiver, currencyId, amount);
+                creditStmt.executeUpdate();
+
+                PreparedStatement ledgerStmt = prepare(MCEngineCurrencyApiSQLiteLedger.INSERT_TRANSACTION);
+                MCEngineCurrencyApiSQL.bindTransaction(ledgerStmt, new MCEngineCurrencyApiTransaction(playerUuidSender, playerUuidReceiver, currencies.nameOf(currencyId), "pay", amount, notes));
+                ledgerStmt.executeUpdate();
+                connection.releaseSavepoint(savepoint);
+                return true;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error transferring " + currencies.nameOf(currencyId) + " from " + playerUuidSender + " to " + playerUuidReceiver + " - " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads a player's balances together with the version of their record using a read-only connection.
+     *
+     * @param playerUuid the UUID of the player
+     * @return the balances and version; {@code null} if no record is found or if an error occurs
+     */
+    public MCEngineCurrencyApiVersionedBalances getVersionedBalances(String playerUuid) {
+        try {
+            return read(reader -> {
+                PreparedStatement pstmt = reader.prepare(MCEngineCurrencyApiSQL.SELECT_BALANCES);
+                pstmt.setString(1, playerUuid);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return MCEngineCurrencyApiSQL.readBalances(rs, currencies.size());
+                }
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error retrieving balances for player uuid: " + playerUuid + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Replaces a player's balances on the writer thread if their record still has the expected version.
+     *
+     * @param playerUuid      the UUID of the player
+     * @param expectedVersion the version the new balances were computed from
+     * @param balances        the new balances, indexed by currency id
+     * @return {@code true} if the balances were replaced; {@code false} if the version no longer matches or an error occurs
+     */
+    public boolean compareAndSetBalances(String playerUuid, long expectedVersion, long[] balances) {
+        try {
+            return write(connection -> {
+                PreparedStatement versionStmt = prepare(MCEngineCurrencyApiSQL.COMPARE_AND_BUMP_VERSION);
+                versionStmt.setString(1, playerUuid);
+                versionStmt.setLong(2, expectedVersion);
+                if (versionStmt.executeUpdate() != 1) return false;
+                PreparedStatement setStmt = prepare(MCEngineCurrencyApiSQLite.SET_AMOUNT);
+                MCEngineCurrencyApiSQL.batchBalances(setStmt, playerUuid, Arrays.copyOf(balances, currencies.size()), false);
+                setStmt.executeBatch();
+                return true;
+            });
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Error updating balances for player uuid: " + playerUuid + " - " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Registers the depth of the writer queue and the number of idle read connections.
+     */
+    @Override
+    public void registerMetrics(MCEngineCurrencyApiMetrics metrics) {
+        metrics.gauge("sqlite.write_queue", writes::size);
+        metrics.gauge("sqlite.idle_readers", () -> readers != null ? readers.size() : 0L);
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.mcengine.api.currency.enums;
+
+import java.util.Locale;
+
+/**
+ * The types of ledger entries and how each one changes balances. Every balance change the API makes is
+ * recorded under one of the balance-changing types, which is what lets the ledger replay rebuild balances:
+ * a pay moves the amount from the sender to the receiver, while the single-account types name the player as
+ * both sender and receiver and only credit or only debit them. A purchase is recorded by other plugins next
+ * to a balance change they make themselves, so it never changes a balance on replay.
+ */
+public enum MCEngineCurrencyApiTransactionType {
+    PAY(true, true),
+    PURCHASE(false, false),
+    ADD(false, true),
+    MINUS(true, false),
+    CASH(true, false),
+    DEPOSIT(false, true);
+
+    private final boolean debitsSender;
+    private final boolean creditsReceiver;
+
+    MCEngineCurrencyApiTransactionType(boolean debitsSender, boolean creditsReceiver) {
+        this.debitsSender = debitsSender;
+        this.creditsReceiver = creditsReceiver;
+    }
+
+    /** @return The name stored in the ledger, e.g. "pay". */
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /** @return {@code true} if the amount is taken from the sender's balance. */
+    public boolean debitsSender() {
+        return debitsSender;
+    }
+
+    /** @return {@code true} if the amount is added to the receiver's balance. */
+    public boolean creditsReceiver() {
+        return creditsReceiver;
+    }
+
+    /**
+     * Resolves a stored transaction type name.
+     *
+     * @param name The name, e.g. "pay".
+     * @return The matching type, or {@code null} if the name is not a transaction type.
+     */
+    public static MCEngineCurrencyApiTransactionType of(String name) {
+        if (name == null) return null;
+        for (MCEngineCurrencyApiTransactionType type : values()) {
+            if (type.getName().equals(name)) return type;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.mcengine.api.currency.enums;
+
+/**
+ * The outcome of a transfer between two players, telling the reasons a transfer is refused apart.
+ */
+public enum MCEngineCurrencyApiTransferResult {
+    /** The transfer was committed. */
+    PAID,
+
+    /** The sender's balance does not cover the amount. */
+    INSUFFICIENT_FUNDS,
+
+    /** The receiver has no currency record. */
+    NO_ACCOUNT,
+
+    /** The coin type is unknown or the amount is not greater than zero. */
+    INVALID,
+
+    /** The database could not complete the transfer; trying again later may succeed. */
+    FAILED;
+
+    /** @return {@code true} if the transfer was committed. */
+    public boolean isPaid() {
+        return this == PAID;
+    }
+}
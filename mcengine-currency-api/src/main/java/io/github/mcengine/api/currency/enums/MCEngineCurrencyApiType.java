@@ -1,5 +1,28 @@
 package io.github.mcengine.api.currency.enums;
 
+/**
+ * The built-in coin types, used when no {@code currencies} section is configured. Their ordinals are the
+ * ids the built-in currencies keep in the
+ * {@link io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry}, and their names are
+ * the per-coin columns of schemas that storage engines migrate from.
+ */
 public enum MCEngineCurrencyApiType {
-    COIN, COPPER, SILVER, GOLD
+    COIN, COPPER, SILVER, GOLD;
+
+    /**
+     * Resolves a coin type name to its balance index without compiling a pattern.
+     *
+     * @param coinType The coin type name (e.g., "coin", "copper", "silver", "gold").
+     * @return The ordinal of the matching type, or {@code -1} if the name is not a coin type.
+     */
+    public static int indexOf(String coinType) {
+        if (coinType == null) return -1;
+        return switch (coinType) {
+            case "coin" -> COIN.ordinal();
+            case "copper" -> COPPER.ordinal();
+            case "silver" -> SILVER.ordinal();
+            case "gold" -> GOLD.ordinal();
+            default -> -1;
+        };
+    }
 }
@@ -0,0 +1,79 @@
+package io.github.mcengine.api.currency.leaderboard;
+
+import java.util.List;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrency;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * In-memory snapshot of the top {@code leaderboard.size} players of every configured currency.
+ *
+ * <p>{@link #refresh()} reads each ranking with one indexed query and swaps the snapshot in as a
+ * whole, so readers never see a half-updated ranking and frequent leaderboard polling costs
+ * no database work at all. Pages beyond the snapshot are not served from here.</p>
+ */
+public class MCEngineCurrencyApiLeaderboard {
+    private final MCEngineCurrencyApiCurrencyRegistry currencies;
+    private final MCEngineCurrencyApiDBInterface db;
+    private final int size;
+    private volatile List<MCEngineCurrencyApiTopEntry>[] snapshot;
+    private volatile long refreshedAt;
+
+    /**
+     * Creates an empty leaderboard using the {@code leaderboard.*} configuration.
+     *
+     * @param plugin     The plugin instance, used for configuration.
+     * @param currencies The currencies to rank.
+     * @param db         The database the rankings are read from.
+     */
+    public MCEngineCurrencyApiLeaderboard(Plugin plugin, MCEngineCurrencyApiCurrencyRegistry currencies, MCEngineCurrencyApiDBInterface db) {
+        this.currencies = currencies;
+        this.db = db;
+        this.size = Math.max(1, plugin.getConfig().getInt("leaderboard.size", 100));
+    }
+
+    /**
+     * Reads the top entries of every currency and replaces the snapshot. Runs on a database thread.
+     */
+    @SuppressWarnings("unchecked")
+    public void refresh() {
+        List<MCEngineCurrencyApiTopEntry>[] next = new List[currencies.size()];
+        for (MCEngineCurrencyApiCurrency currency : currencies.getCurrencies()) {
+            next[currency.id()] = List.copyOf(db.getTop(currency.id(), 0, size));
+        }
+        snapshot = next;
+        refreshedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns a page of a ranking from the snapshot.
+     *
+     * @param currencyId The id of the currency to rank by.
+     * @param offset     The number of leading entries to skip.
+     * @param limit      The maximum number of entries to return.
+     * @return The entries in descending balance order, or {@code null} if no snapshot has been taken yet,
+     *         the currency id is invalid or the page reaches beyond the snapshot.
+     */
+    public List<MCEngineCurrencyApiTopEntry> getTop(int currencyId, int offset, int limit) {
+        List<MCEngineCurrencyApiTopEntry>[] current = snapshot;
+        if (current == null || !currencies.isValid(currencyId)) return null;
+
+        List<MCEngineCurrencyApiTopEntry> ranking = current[currencyId];
+        // A ranking shorter than the snapshot size already holds every player
+        if (offset + limit > size && ranking.size() >= size) return null;
+        int from = Math.min(offset, ranking.size());
+        int to = Math.min(offset + limit, ranking.size());
+        return ranking.subList(from, to);
+    }
+
+    /** @return The number of entries kept per currency. */
+    public int getSize() {
+        return size;
+    }
+
+    /** @return The time of the last refresh in epoch milliseconds, or {@code 0} if none has completed. */
+    public long getRefreshedAt() {
+        return refreshedAt;
+    }
+}
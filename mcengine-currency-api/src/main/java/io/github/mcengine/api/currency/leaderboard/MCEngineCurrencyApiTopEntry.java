@@ -0,0 +1,9 @@
+package io.github.mcengine.api.currency.leaderboard;
+
+/**
+ * One row of a leaderboard.
+ *
+ * @param playerUuid The UUID of the player.
+ * @param balance    The player's balance of the ranked coin type, in minor units.
+ */
+public record MCEngineCurrencyApiTopEntry(String playerUuid, long balance) {}
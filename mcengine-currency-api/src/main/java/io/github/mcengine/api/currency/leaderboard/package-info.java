@@ -0,0 +1,4 @@
+/**
+ * This package contains the leaderboard entry type and the periodically refreshed top-N snapshot.
+ */
+package io.github.mcengine.api.currency.leaderboard;
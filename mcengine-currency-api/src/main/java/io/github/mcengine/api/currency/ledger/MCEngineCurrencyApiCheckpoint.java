@@ -0,0 +1,20 @@
+package io.github.mcengine.api.currency.ledger;
+
+/**
+ * A position in the ledger and, once saved, the balances of every player at that position, kept in
+ * {@code currency_checkpoint} and {@code currency_checkpoint_balance}. Replaying only the entries after a
+ * checkpoint is what keeps a rebuild short however long the ledger is.
+ *
+ * <p>Every entry up to {@code transactionId} is covered, and every later entry was written after
+ * {@code epochSeconds}, so the balances at any later time are the checkpoint plus the entries after its id
+ * up to that time.</p>
+ *
+ * @param checkpointId  The id of the saved checkpoint, or 0 for a position that is not saved.
+ * @param transactionId The id of the last ledger entry covered, or 0 if none is.
+ * @param epochSeconds  The time of the checkpoint in Unix seconds.
+ */
+public record MCEngineCurrencyApiCheckpoint(
+    long checkpointId,
+    long transactionId,
+    long epochSeconds
+) {}
@@ -0,0 +1,14 @@
+package io.github.mcengine.api.currency.ledger;
+
+/**
+ * Position in a transaction history listing, newest first. A page continues with the entries that sort
+ * strictly after the cursor in {@code (timestamp, transactionId)} descending order, which the storage engines
+ * answer with an index seek instead of skipping rows, so every page costs the same however deep it is.
+ *
+ * <p>Cursors stay valid while entries are added: new entries are newer than any cursor and never shift
+ * the following pages.</p>
+ *
+ * @param timestamp     The timestamp of the last entry shown, in milliseconds since the epoch.
+ * @param transactionId The id of the last entry shown.
+ */
+public record MCEngineCurrencyApiHistoryCursor(long timestamp, long transactionId) {}
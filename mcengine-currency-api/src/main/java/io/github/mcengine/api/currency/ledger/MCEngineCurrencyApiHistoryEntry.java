@@ -0,0 +1,31 @@
+package io.github.mcengine.api.currency.ledger;
+
+/**
+ * One entry of a player's transaction history, as read back from the ledger.
+ *
+ * @param transactionId      The id of the entry, unique within the store.
+ * @param timestamp          When the entry was recorded, in milliseconds since the epoch.
+ * @param playerUuidSender   The UUID of the sender.
+ * @param playerUuidReceiver The UUID of the receiver.
+ * @param currencyType       The name of the currency involved.
+ * @param transactionType    The type of transaction (pay, purchase).
+ * @param amount             The amount of currency involved, in minor units.
+ * @param notes              Optional notes about the transaction.
+ */
+public record MCEngineCurrencyApiHistoryEntry(
+    long transactionId,
+    long timestamp,
+    String playerUuidSender,
+    String playerUuidReceiver,
+    String currencyType,
+    String transactionType,
+    long amount,
+    String notes
+) {
+    /**
+     * @return The cursor that continues a history listing with the entries older than this one.
+     */
+    public MCEngineCurrencyApiHistoryCursor cursor() {
+        return new MCEngineCurrencyApiHistoryCursor(timestamp, transactionId);
+    }
+}
@@ -0,0 +1,11 @@
+package io.github.mcengine.api.currency.ledger;
+
+import java.util.List;
+
+/**
+ * One page of a player's transaction history.
+ *
+ * @param entries The entries, newest first.
+ * @param next    The cursor of the following page, or {@code null} if this is the last page.
+ */
+public record MCEngineCurrencyApiHistoryPage(List<MCEngineCurrencyApiHistoryEntry> entries, MCEngineCurrencyApiHistoryCursor next) {}
@@ -0,0 +1,19 @@
+package io.github.mcengine.api.currency.ledger;
+
+/**
+ * The outcome of writing a batch of ledger entries, telling a failure worth retrying apart from entries the
+ * database will never accept.
+ */
+public enum MCEngineCurrencyApiInsertResult {
+    /** Every entry was written. */
+    WRITTEN,
+
+    /** Nothing was written because of a condition that may pass, such as a lost connection or a lock timeout. */
+    FAILED,
+
+    /**
+     * Nothing was written because at least one entry violates a constraint or does not fit its column, so
+     * the same batch fails again however often it is retried.
+     */
+    REJECTED
+}
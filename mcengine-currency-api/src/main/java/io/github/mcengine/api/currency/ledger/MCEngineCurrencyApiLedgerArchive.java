@@ -0,0 +1,141 @@
+package io.github.mcengine.api.currency.ledger;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A gzip-compressed CSV file receiving the ledger entries of one expired month before they are dropped
+ * from the database. Rows are appended in chunks, so the engine never holds a connection for the whole
+ * month, and written to a temporary file that only replaces the archive once {@link #commit()} has
+ * flushed it to disk. Closing an archive that was not committed deletes the temporary file.
+ *
+ * <p>Columns: transaction_id, timestamp (ISO-8601 UTC), sender, receiver, currency_type, transaction_type,
+ * amount (minor units), notes.</p>
+ */
+public final class MCEngineCurrencyApiLedgerArchive implements Closeable {
+    private static final String HEADER = "transaction_id,timestamp,sender,receiver,currency_type,transaction_type,amount,notes\n";
+
+    private final File target;
+    private final File temporary;
+    private final FileOutputStream file;
+    private final GZIPOutputStream gzip;
+    private final Writer writer;
+    private long rows;
+    private long lastTransactionId = -1L;
+    private boolean committed;
+
+    /**
+     * Opens the temporary file next to the archive and writes the header.
+     *
+     * @param target The archive file.
+     * @throws IOException If the file cannot be created.
+     */
+    MCEngineCurrencyApiLedgerArchive(File target) throws IOException {
+        this.target = target;
+        this.temporary = new File(target.getParentFile(), target.getName() + ".tmp");
+        this.file = new FileOutputStream(temporary);
+        this.gzip = new GZIPOutputStream(file, 65536);
+        this.writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), 65536);
+        writer.write(HEADER);
+    }
+
+    /**
+     * Appends every row of a result set whose columns are, in order: transaction id, Unix seconds, sender,
+     * receiver, currency, transaction type, amount and notes.
+     *
+     * @param rs The result set, positioned before the first row.
+     * @return The number of rows appended.
+     * @throws SQLException If a row cannot be read.
+     * @throws IOException  If the file cannot be written.
+     */
+    public int append(ResultSet rs) throws SQLException, IOException {
+        int appended = 0;
+        while (rs.next()) {
+            lastTransactionId = rs.getLong(1);
+            writer.write(Long.toString(lastTransactionId));
+            writer.write(',');
+            writer.write(Instant.ofEpochSecond(rs.getLong(2)).toString());
+            for (int column = 3; column <= 6; column++) {
+                writer.write(',');
+                writer.write(escape(rs.getString(column)));
+            }
+            writer.write(',');
+            writer.write(Long.toString(rs.getLong(7)));
+            writer.write(',');
+            writer.write(escape(rs.getString(8)));
+            writer.write('\n');
+            appended++;
+        }
+        rows += appended;
+        return appended;
+    }
+
+    /**
+     * Quotes a CSV field when it contains a separator, a quote or a line break; {@code null} becomes empty.
+     */
+    private static String escape(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /** @return The id of the last appended entry, or {@code -1} if none was appended yet. */
+    public long getLastTransactionId() {
+        return lastTransactionId;
+    }
+
+    /** @return The number of rows appended so far. */
+    public long getRows() {
+        return rows;
+    }
+
+    /** @return The archive file. */
+    public File getFile() {
+        return target;
+    }
+
+    /**
+     * Finishes the compressed stream, forces it to disk and moves it over the archive file, replacing
+     * the archive of an earlier run that was interrupted before its rows were dropped.
+     *
+     * @throws IOException If the file cannot be written or moved.
+     */
+    public void commit() throws IOException {
+        writer.flush();
+        gzip.finish();
+        file.getFD().sync();
+        writer.close();
+        Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+    }
+
+    /**
+     * Closes the file; an archive that was not committed is deleted.
+     */
+    @Override
+    public void close() {
+        if (committed) return;
+        try {
+            writer.close();
+        } catch (IOException ignored) {
+            // The temporary file is deleted below either way
+        }
+        if (temporary.exists() && !temporary.delete()) {
+            temporary.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package io.github.mcengine.api.currency.ledger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.registry.MCEngineCurrencyApiCurrencyRegistry;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Rebuilds balances from the ledger, configured under {@code ledger.replay.*} and {@code ledger.checkpoint.*}.
+ *
+ * <p>Every balance change is recorded in the ledger, so the balances at any point are those of the newest
+ * {@link MCEngineCurrencyApiCheckpoint} before it plus the entries written since. A new checkpoint is taken every
+ * {@code ledger.checkpoint.interval} seconds from the previous one and the entries after it, which keeps the part
+ * of the ledger a replay reads to roughly one interval however long the ledger grows. That part is split into
+ * ranges of {@code ledger.replay.chunk-size} transaction ids, summed in parallel on
+ * {@code ledger.replay.threads} threads and merged.</p>
+ *
+ * <p>A checkpoint stops {@value #CHECKPOINT_LAG_SECONDS} seconds before the time it is taken, so ledger entries
+ * still waiting in the ledger writer's queue are not skipped. Checkpoints older than
+ * {@code ledger.checkpoint.keep-days} days are deleted, except the newest, which bounds how far back
+ * {@link #balanceAt(String, long)} can answer.</p>
+ */
+public class MCEngineCurrencyApiLedgerReplay {
+    /** How far behind the current time a checkpoint stops, in seconds. */
+    public static final long CHECKPOINT_LAG_SECONDS = 60L;
+
+    private final Plugin plugin;
+    private final MCEngineCurrencyApiCurrencyRegistry currencies;
+    private final MCEngineCurrencyApiDBInterface db;
+    private final ExecutorService pool;
+    private final long chunkSize;
+    private final long checkpointIntervalSeconds;
+    private final long keepSeconds;
+
+    /**
+     * Creates the replay engine using the {@code ledger.replay.*} and {@code ledger.checkpoint.*} configuration.
+     *
+     * @param plugin     The plugin instance, used for configuration and logging.
+     * @param currencies The configured currencies.
+     * @param db         The database the ledger and the checkpoints are read from.
+     */
+    public MCEngineCurrencyApiLedgerReplay(Plugin plugin, MCEngineCurrencyApiCurrencyRegistry currencies, MCEngineCurrencyApiDBInterface db) {
+        this.plugin = plugin;
+        this.currencies = currencies;
+        this.db = db;
+        this.chunkSize = Math.max(1L, plugin.getConfig().getLong("ledger.replay.chunk-size", 50000L));
+        this.checkpointIntervalSeconds = Math.max(1L, plugin.getConfig().getLong("ledger.checkpoint.interval", 86400L));
+        this.keepSeconds = TimeUnit.DAYS.toSeconds(Math.max(1L, plugin.getConfig().getLong("ledger.checkpoint.keep-days", 30L)));
+        int threads = Math.max(1, plugin.getConfig().getInt("ledger.replay.threads", 4));
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "MCEngineCurrency-Replay-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Rebuilds the balances of every player at the last entry of the ledger and compares them with the stored
+     * balances. The caller makes sure every balance change and ledger entry made so far has reached the database;
+     * changes made while the replay runs can show up as drift, so drift is only a list of players to check with
+     * {@link #restore(String)}, never applied as it is.
+     *
+     * @return The report, or {@code null} if the engine keeps no checkpoints or a read failed.
+     */
+    public MCEngineCurrencyApiReplayReport replay() {
+        long started = System.nanoTime();
+        MCEngineCurrencyApiCheckpoint checkpoint = db.getCheckpoint(Long.MAX_VALUE);
+        if (checkpoint == null) return null;
+        MCEngineCurrencyApiCheckpoint head = db.getLedgerHead(Long.MAX_VALUE);
+        long lastId = head != null ? Math.max(head.transactionId(), checkpoint.transactionId()) : checkpoint.transactionId();
+        Map<String, long[]> balances = replay(checkpoint, lastId);
+        if (balances == null) return null;
+        Map<String, long[]> stored = db.getBalances(new ArrayList<>(balances.keySet()));
+
+        Map<UUID, long[]> drift = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : balances.entrySet()) {
+            long[] delta = difference(entry.getValue(), stored.get(entry.getKey()));
+            if (delta != null) drift.put(UUID.fromString(entry.getKey()), delta);
+        }
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        plugin.getLogger().info("Replayed the ledger up to entry " + lastId + " for " + balances.size()
+            + " players in " + millis + " ms: " + drift.size() + " differ.");
+        return new MCEngineCurrencyApiReplayReport(lastId, balances.size(), Map.copyOf(drift), false, millis);
+    }
+
+    /**
+     * Brings one player's stored balances in line with the ledger, re-reading both: the player's entries up to
+     * the current end of the ledger and the stored balances, including the cache's pending changes. The caller
+     * holds the player's account lock and has written the queued ledger entries, so neither can change meanwhile.
+     *
+     * @param playerUuid The UUID of the player.
+     * @return The delta added to the stored balances, indexed by currency id and all zero if they already matched,
+     *         or {@code null} if a read or the write failed.
+     */
+    public long[] restore(String playerUuid) {
+        long[] rebuilt = balanceAt(playerUuid, Long.MAX_VALUE);
+        if (rebuilt == null) return null;
+        long[] delta = difference(rebuilt, db.getBalances(playerUuid));
+        if (delta == null) return new long[currencies.size()];
+        if (!db.updateCurrencyValues(Map.of(playerUuid, delta))) {
+            plugin.getLogger().severe("Failed to restore the balances of player uuid " + playerUuid + " from the ledger.");
+            return null;
+        }
+        return delta;
+    }
+
+    /**
+     * @return The rebuilt minus the stored balances, or {@code null} if they match. A missing record counts as zero.
+     */
+    private long[] difference(long[] rebuilt, long[] stored) {
+        long[] delta = new long[currencies.size()];
+        boolean differs = false;
+        for (int currencyId = 0; currencyId < delta.length; currencyId++) {
+            delta[currencyId] = rebuilt[currencyId] - (stored != null ? stored[currencyId] : 0L);
+            differs |= delta[currencyId] != 0;
+        }
+        return differs ? delta : null;
+    }
+
+    /**
+     * Computes a player's balances at a time from the newest checkpoint before it and the player's ledger entries
+     * after the checkpoint, reading only the player's index ranges.
+     *
+     * @param playerUuid   The UUID of the player.
+     * @param epochSeconds The time in Unix seconds.
+     * @return The balances indexed by currency id, or {@code null} if no checkpoint is old enough or a read failed.
+     */
+    public long[] balanceAt(String playerUuid, long epochSeconds) {
+        MCEngineCurrencyApiCheckpoint checkpoint = db.getCheckpoint(epochSeconds);
+        if (checkpoint == null) return null;
+        long[] balances = db.getCheckpointBalances(checkpoint.checkpointId(), playerUuid);
+        long[] sums = db.sumLedger(playerUuid, checkpoint, epochSeconds);
+        if (balances == null || sums == null) return null;
+        for (int currencyId = 0; currencyId < balances.length; currencyId++) {
+            balances[currencyId] += sums[currencyId];
+        }
+        return balances;
+    }
+
+    /**
+     * Takes a new checkpoint once the newest one is {@code ledger.checkpoint.interval} seconds old, by replaying
+     * the entries after it, and deletes the checkpoints past {@code ledger.checkpoint.keep-days}.
+     *
+     * @return The new checkpoint, or {@code null} if none was due or taking it failed.
+     */
+    public MCEngineCurrencyApiCheckpoint checkpoint() {
+        long now = Instant.now().getEpochSecond();
+        MCEngineCurrencyApiCheckpoint previous = db.getCheckpoint(Long.MAX_VALUE);
+        if (previous == null || now - previous.epochSeconds() < checkpointIntervalSeconds) return null;
+        long cutoff = now - CHECKPOINT_LAG_SECONDS;
+        if (cutoff <= previous.epochSeconds()) return null;
+
+        // A quiet ledger still gets a newer checkpoint, so retention can drop the months before it
+        MCEngineCurrencyApiCheckpoint head = db.getLedgerHead(cutoff);
+        long lastId = head != null ? Math.max(head.transactionId(), previous.transactionId()) : previous.transactionId();
+        Map<String, long[]> balances = replay(previous, lastId);
+        if (balances == null) return null;
+        MCEngineCurrencyApiCheckpoint saved = db.saveCheckpoint(new MCEngineCurrencyApiCheckpoint(0L, lastId, cutoff), balances);
+        if (saved == null) return null;
+        db.deleteCheckpoints(now - keepSeconds, saved.checkpointId());
+        plugin.getLogger().info("Took ledger checkpoint " + saved.checkpointId() + " at entry " + lastId
+            + " (" + (lastId - previous.transactionId()) + " ids after the previous one).");
+        return saved;
+    }
+
+    /**
+     * Adds the entries in {@code (checkpoint, lastId]} to the balances of a checkpoint, summing each range of
+     * {@code ledger.replay.chunk-size} ids on its own thread.
+     *
+     * @return The balances keyed by player UUID, or {@code null} if a read failed.
+     */
+    private Map<String, long[]> replay(MCEngineCurrencyApiCheckpoint checkpoint, long lastId) {
+        Map<String, long[]> balances = db.getCheckpointBalances(checkpoint.checkpointId());
+        if (balances == null) return null;
+
+        List<Future<Map<String, long[]>>> chunks = new ArrayList<>();
+        for (long after = checkpoint.transactionId(); after < lastId; after += chunkSize) {
+            long from = after;
+            long to = Math.min(lastId, after + chunkSize);
+            chunks.add(pool.submit(() -> db.sumLedger(from, to)));
+        }
+        try {
+            for (Future<Map<String, long[]>> chunk : chunks) {
+                Map<String, long[]> sums = chunk.get();
+                if (sums == null) return null;
+                for (Map.Entry<String, long[]> entry : sums.entrySet()) {
+                    long[] total = balances.computeIfAbsent(entry.getKey(), uuid -> new long[currencies.size()]);
+                    for (int currencyId = 0; currencyId < total.length; currencyId++) {
+                        total[currencyId] += entry.getValue()[currencyId];
+                    }
+                }
+            }
+            return balances;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            plugin.getLogger().severe("Error replaying the ledger: " + e.getCause());
+            return null;
+        } finally {
+            for (Future<Map<String, long[]>> chunk : chunks) {
+                chunk.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Stops the replay threads, abandoning any replay in progress.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,144 @@
+package io.github.mcengine.api.currency.ledger;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * How the storage engines partition, roll up and expire the ledger, read from the {@code ledger.*} configuration.
+ *
+ * <p>The ledger is split by UTC month, named by a {@code yyyyMM} suffix: native partitions on MySQL and one
+ * table per past month on SQLite. Once a month falls outside {@code ledger.retention.months} it is written to
+ * a {@link MCEngineCurrencyApiLedgerArchive} in {@code ledger.retention.archive-directory} and dropped, which
+ * never touches the rows of any other month. Daily per-player totals are rolled up before a month can expire,
+ * so statistics outlive the raw entries, and a month only expires once a {@link MCEngineCurrencyApiCheckpoint}
+ * lies after its end, so the ledger replay never needs its entries.</p>
+ */
+public final class MCEngineCurrencyApiLedgerRetention {
+    /** Number of days rolled up per transaction, so catching up on a long history never holds one lock for long. */
+    public static final int ROLLUP_DAYS_PER_STEP = 7;
+
+    /** Number of entries moved or archived per transaction. */
+    public static final int CHUNK_SIZE = 10000;
+
+    /** Rollups stop this long before now, so entries committed just after midnight still count for their day. */
+    private static final long ROLLUP_GRACE_SECONDS = 3600L;
+
+    private static final long SECONDS_PER_DAY = 86400L;
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final boolean partitioned;
+    private final int months;
+    private final File directory;
+
+    /**
+     * Reads the {@code ledger.partitioning} and {@code ledger.retention.*} settings.
+     *
+     * @param plugin The plugin instance, used for configuration and the data folder.
+     */
+    public MCEngineCurrencyApiLedgerRetention(Plugin plugin) {
+        this.partitioned = plugin.getConfig().getBoolean("ledger.partitioning", true);
+        this.months = Math.max(0, plugin.getConfig().getInt("ledger.retention.months", 0));
+        this.directory = new File(plugin.getDataFolder(), plugin.getConfig().getString("ledger.retention.archive-directory", "ledger-archive"));
+    }
+
+    /** @return {@code true} if the ledger is split by month. */
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    /**
+     * Checks whether a month has left the retention window: more than {@code ledger.retention.months}
+     * complete months lie between it and the current month. Nothing expires while the setting is 0.
+     *
+     * @param month The month.
+     * @return {@code true} if the month should be archived and dropped.
+     */
+    public boolean isExpired(YearMonth month) {
+        return months > 0 && month.isBefore(currentMonth().minusMonths(months));
+    }
+
+    /**
+     * Opens the archive of a month, creating the archive directory if needed.
+     *
+     * @param month The month being archived.
+     * @return The open archive; the caller commits or closes it.
+     * @throws IOException If the directory or file cannot be created.
+     */
+    public MCEngineCurrencyApiLedgerArchive openArchive(YearMonth month) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        return new MCEngineCurrencyApiLedgerArchive(new File(directory, "currency_transaction-" + month + ".csv.gz"));
+    }
+
+    /** @return The current UTC month. */
+    public static YearMonth currentMonth() {
+        return YearMonth.now(ZoneOffset.UTC);
+    }
+
+    /**
+     * @param month The month.
+     * @return The start of the month in Unix seconds.
+     */
+    public static long startOf(YearMonth month) {
+        return month.atDay(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * @param epochSeconds A time in Unix seconds.
+     * @return The UTC month containing it.
+     */
+    public static YearMonth monthOf(long epochSeconds) {
+        return YearMonth.from(Instant.ofEpochSecond(epochSeconds).atOffset(ZoneOffset.UTC));
+    }
+
+    /**
+     * @param month The month.
+     * @return The {@code yyyyMM} suffix naming its partition or table.
+     */
+    public static String suffix(YearMonth month) {
+        return month.format(SUFFIX);
+    }
+
+    /**
+     * @param name A partition or table name ending in a {@code yyyyMM} suffix.
+     * @return The month, or {@code null} if the name does not end in one.
+     */
+    public static YearMonth parseSuffix(String name) {
+        if (name.length() < 6) return null;
+        try {
+            return YearMonth.parse(name.substring(name.length() - 6), SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param epochSeconds A time in Unix seconds.
+     * @return The UTC day containing it, in days since the epoch.
+     */
+    public static long dayOf(long epochSeconds) {
+        return Math.floorDiv(epochSeconds, SECONDS_PER_DAY);
+    }
+
+    /**
+     * @param day A UTC day in days since the epoch.
+     * @return The start of the day in Unix seconds.
+     */
+    public static long startOfDay(long day) {
+        return day * SECONDS_PER_DAY;
+    }
+
+    /**
+     * @return The first UTC day that must not be rolled up yet: today, or yesterday during the first hour of the day.
+     */
+    public static long rollupEnd() {
+        return dayOf(Instant.now().getEpochSecond() - ROLLUP_GRACE_SECONDS);
+    }
+}
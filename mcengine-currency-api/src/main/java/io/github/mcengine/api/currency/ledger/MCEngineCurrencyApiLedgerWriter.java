@@ -0,0 +1,525 @@
+package io.github.mcengine.api.currency.ledger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Appends ledger entries through a bounded in-memory queue drained by a background thread,
+ * which writes them with one batched insert per {@code ledger.batch-size} entries or every
+ * {@code ledger.flush-interval} milliseconds, whichever comes first.
+ *
+ * <p>When the queue is full, {@link #append(MCEngineCurrencyApiTransaction)} blocks the caller for up to
+ * {@code ledger.offer-timeout} milliseconds and then writes the entry itself. Both situations are counted
+ * and exposed through the getters of this class.</p>
+ *
+ * <p>Entries are never dropped. A batch that fails for a reason that may pass, such as a lost connection, is
+ * retried with a backoff doubling from {@value #RETRY_BACKOFF_MILLIS} ms up to {@value #MAX_RETRY_BACKOFF_MILLIS} ms
+ * for as long as the writer runs, holding up the queue behind it. Entries that still cannot be written, because
+ * a direct write fails or the writer shuts down while the database is unavailable, are appended to a spill file
+ * in {@code ledger.spill-directory} and inserted once the database accepts writes again, at the latest on the
+ * next start. Every entry carries the time it was made, which is stored however late it is inserted.</p>
+ *
+ * <p>A batch the database rejects, because an entry violates a constraint or does not fit its column, would
+ * fail the same way on every retry. It is split in halves until the rejected entries are isolated; the others
+ * are written and each rejected entry is appended to {@value #QUARANTINE_FILE} in the spill directory, which is
+ * never read back automatically, so one bad entry cannot hold up the ledger.</p>
+ */
+public class MCEngineCurrencyApiLedgerWriter {
+    private final Plugin plugin;
+    private final MCEngineCurrencyApiDBInterface db;
+    private final BlockingQueue<MCEngineCurrencyApiTransaction> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final File spillDirectory;
+    private final Object spillLock = new Object();
+    private final Thread thread;
+    private volatile boolean running = true;
+    /** Whether the spill directory may hold entries that are not in the database yet. */
+    private volatile boolean spillPending;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong settled = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong blockedAppends = new AtomicLong();
+    private final AtomicLong directWrites = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong quarantined = new AtomicLong();
+    private final AtomicLong highWaterMark = new AtomicLong();
+
+    /** Delay before the first retry of a failed batch, in milliseconds. */
+    private static final long RETRY_BACKOFF_MILLIS = 500L;
+
+    /** Longest delay between retries of a failed batch, in milliseconds. */
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 30000L;
+
+    /** Number of attempts made to write a batch during shutdown before it is spilled. */
+    private static final int SHUTDOWN_ATTEMPTS = 3;
+
+    /** How often {@link #flush(long)} checks whether the queue has caught up. */
+    private static final long FLUSH_POLL_MILLIS = 10L;
+
+    /** The spill file entries are appended to; claimed files are renamed before they are read back. */
+    private static final String SPILL_FILE = "current.spill";
+
+    /** The file rejected entries are appended to for an operator to inspect; it is never read back. */
+    private static final String QUARANTINE_FILE = "rejected.quarantine";
+
+    /** File name suffix of spill files. */
+    private static final String SPILL_SUFFIX = ".spill";
+
+    /** Starts a spill record that carries the entry's time; string lengths are never below {@code -1}. */
+    private static final int TIMED_RECORD = -2;
+
+    /**
+     * Creates the ledger writer using the {@code ledger.*} configuration and starts its thread, which first
+     * inserts any entries spilled by an earlier run.
+     *
+     * @param plugin The plugin instance, used for configuration and logging.
+     * @param db     The database ledger entries are written to.
+     */
+    public MCEngineCurrencyApiLedgerWriter(Plugin plugin, MCEngineCurrencyApiDBInterface db) {
+        this.plugin = plugin;
+        this.db = db;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, plugin.getConfig().getInt("ledger.queue-capacity", 10000)));
+        this.batchSize = Math.max(1, plugin.getConfig().getInt("ledger.batch-size", 500));
+        this.flushIntervalMillis = Math.max(1L, plugin.getConfig().getLong("ledger.flush-interval", 250L));
+        this.offerTimeoutMillis = Math.max(0L, plugin.getConfig().getLong("ledger.offer-timeout", 1000L));
+        this.spillDirectory = new File(plugin.getDataFolder(), plugin.getConfig().getString("ledger.spill-directory", "ledger-spill"));
+        this.spillPending = spillFiles(true).length > 0;
+        this.thread = new Thread(this::drainLoop, "MCEngineCurrency-Ledger");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a ledger entry for the next batch.
+     *
+     * @param transaction The entry to append.
+     */
+    public void append(MCEngineCurrencyApiTransaction transaction) {
+        if (!running) {
+            writeDirect(transaction);
+            return;
+        }
+        if (!queue.offer(transaction)) {
+            blockedAppends.incrementAndGet();
+            boolean queued = false;
+            try {
+                queued = queue.offer(transaction, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!queued) {
+                writeDirect(transaction);
+                return;
+            }
+        }
+        enqueued.incrementAndGet();
+        highWaterMark.accumulateAndGet(queue.size(), Math::max);
+    }
+
+    /**
+     * Stops the background thread and writes every entry that is still queued, spilling what the
+     * database does not accept within a few attempts.
+     */
+    public void shutdown() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<MCEngineCurrencyApiTransaction> remaining = new ArrayList<>();
+        while (queue.drainTo(remaining, batchSize) > 0) {
+            writeOrSpill(remaining, SHUTDOWN_ATTEMPTS);
+            settled.addAndGet(remaining.size());
+            remaining.clear();
+        }
+    }
+
+    /**
+     * Waits until every entry queued before the call has been written to the database, without stopping the
+     * writer. Used before reading the ledger back, e.g. to replay it.
+     *
+     * @param timeoutMillis How long to wait at most.
+     * @return {@code true} if the queue caught up in time and no spilled entries are waiting to be inserted.
+     */
+    public boolean flush(long timeoutMillis) {
+        long target = enqueued.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (settled.get() < target || spillPending) {
+            if (System.nanoTime() >= deadline) return false;
+            try {
+                Thread.sleep(FLUSH_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Background loop: inserts spilled entries, then waits for the first entry, collects more until the batch
+     * is full or the flush interval has passed, and writes them as one batch, retrying until it is written or
+     * its rejected entries are quarantined.
+     */
+    private void drainLoop() {
+        recover();
+        List<MCEngineCurrencyApiTransaction> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                MCEngineCurrencyApiTransaction first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (spillPending) recover();
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) break;
+                    MCEngineCurrencyApiTransaction next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested; write what has been collected and let shutdown() drain the rest
+            }
+            if (!batch.isEmpty()) {
+                writeOrSpill(batch, 0);
+                settled.addAndGet(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes a batch, retrying with a growing backoff while it fails and quarantining the entries the database
+     * rejects. Whatever is still not written when the attempts are used up is spilled.
+     *
+     * @param maxAttempts The number of attempts per batch, or 0 to retry until the writer shuts down.
+     */
+    private void writeOrSpill(List<MCEngineCurrencyApiTransaction> batch, int maxAttempts) {
+        MCEngineCurrencyApiInsertResult result = write(batch, maxAttempts);
+        if (result == MCEngineCurrencyApiInsertResult.REJECTED) {
+            isolate(batch, maxAttempts);
+        } else if (result == MCEngineCurrencyApiInsertResult.FAILED) {
+            spill(batch);
+        }
+    }
+
+    /**
+     * Handles a batch the database rejected: quarantines it if it is a single entry, otherwise writes each
+     * half separately, so the good entries of a large batch end up in a few inserts around each bad one.
+     */
+    private void isolate(List<MCEngineCurrencyApiTransaction> batch, int maxAttempts) {
+        if (batch.size() == 1) {
+            quarantine(batch.get(0));
+            return;
+        }
+        int middle = batch.size() / 2;
+        writeOrSpill(batch.subList(0, middle), maxAttempts);
+        writeOrSpill(batch.subList(middle, batch.size()), maxAttempts);
+    }
+
+    /**
+     * Writes a batch, retrying with a growing backoff while it fails until it is written, the database rejects
+     * it or the attempts are used up.
+     *
+     * @param maxAttempts The number of attempts, or 0 to retry until the writer shuts down.
+     * @return The result of the last attempt.
+     */
+    private MCEngineCurrencyApiInsertResult write(List<MCEngineCurrencyApiTransaction> batch, int maxAttempts) {
+        long backoff = RETRY_BACKOFF_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            MCEngineCurrencyApiInsertResult result = db.insertTransactions(batch);
+            if (result == MCEngineCurrencyApiInsertResult.WRITTEN) {
+                batches.incrementAndGet();
+                written.addAndGet(batch.size());
+                return result;
+            }
+            failedBatches.incrementAndGet();
+            if (result == MCEngineCurrencyApiInsertResult.REJECTED) return result;
+            if (maxAttempts > 0 ? attempt >= maxAttempts : !running) return result;
+            plugin.getLogger().warning("Failed to write " + batch.size() + " ledger entries, retrying in " + backoff + " ms.");
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return result;
+            }
+            backoff = Math.min(backoff * 2, MAX_RETRY_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * Writes a single entry on the caller's thread when the queue cannot take it, spilling it if the
+     * database does not accept it.
+     */
+    private void writeDirect(MCEngineCurrencyApiTransaction transaction) {
+        directWrites.incrementAndGet();
+        writeOrSpill(List.of(transaction), 1);
+    }
+
+    /**
+     * Appends an entry the database rejects to the quarantine file and logs it, so an operator can correct
+     * and insert it by hand. Only logged if the quarantine file cannot be written.
+     */
+    private void quarantine(MCEngineCurrencyApiTransaction transaction) {
+        quarantined.incrementAndGet();
+        plugin.getLogger().severe("Ledger entry rejected by the database, quarantined in " + QUARANTINE_FILE + ": " + transaction);
+        synchronized (spillLock) {
+            try {
+                if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+                    throw new IOException("Cannot create " + spillDirectory);
+                }
+                try (FileOutputStream file = new FileOutputStream(new File(spillDirectory, QUARANTINE_FILE), true)) {
+                    file.write(encode(List.of(transaction)));
+                    file.getFD().sync();
+                }
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to quarantine ledger entry - " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Appends entries to the spill file and forces it to disk. Entries are only logged if even the spill
+     * file cannot be written.
+     */
+    private void spill(List<MCEngineCurrencyApiTransaction> transactions) {
+        synchronized (spillLock) {
+            try {
+                if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+                    throw new IOException("Cannot create " + spillDirectory);
+                }
+                try (FileOutputStream file = new FileOutputStream(new File(spillDirectory, SPILL_FILE), true)) {
+                    file.write(encode(transactions));
+                    file.getFD().sync();
+                }
+                spillPending = true;
+                spilled.addAndGet(transactions.size());
+                plugin.getLogger().warning("Spilled " + transactions.size() + " ledger entries to " + spillDirectory
+                    + "; they are inserted once the database accepts writes again.");
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to spill ledger entries - " + e.getMessage());
+                for (MCEngineCurrencyApiTransaction lost : transactions) {
+                    plugin.getLogger().severe("Failed to record transaction: " + lost);
+                }
+            }
+        }
+    }
+
+    /**
+     * Claims the spill file by renaming it, then inserts every claimed spill file as one batch each, oldest
+     * first, deleting a file once its entries are written. Entries the database rejects are quarantined and
+     * the rest of the file written around them. Stops at the first file that fails for another reason; the
+     * rest are tried again later.
+     */
+    private void recover() {
+        synchronized (spillLock) {
+            File current = new File(spillDirectory, SPILL_FILE);
+            if (current.exists()) {
+                File claimed = new File(spillDirectory, System.currentTimeMillis() + SPILL_SUFFIX);
+                if (!current.renameTo(claimed)) {
+                    plugin.getLogger().severe("Failed to claim spilled ledger entries in " + current);
+                    return;
+                }
+            }
+        }
+        for (File file : spillFiles(false)) {
+            List<MCEngineCurrencyApiTransaction> entries;
+            try {
+                entries = read(file);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to read spilled ledger entries from " + file + " - " + e.getMessage());
+                return;
+            }
+            MCEngineCurrencyApiInsertResult result = entries.isEmpty() ? MCEngineCurrencyApiInsertResult.WRITTEN : db.insertTransactions(entries);
+            if (result == MCEngineCurrencyApiInsertResult.FAILED) return;
+            if (result == MCEngineCurrencyApiInsertResult.REJECTED) {
+                // Entries that then fail go back to the current spill file, so this one can be deleted
+                isolate(entries, 1);
+            }
+            if (!file.delete()) {
+                plugin.getLogger().severe("Failed to delete " + file + "; its ledger entries would be inserted twice.");
+                return;
+            }
+            if (result == MCEngineCurrencyApiInsertResult.WRITTEN) written.addAndGet(entries.size());
+            plugin.getLogger().info("Recovered " + entries.size() + " spilled ledger entries from " + file.getName() + ".");
+        }
+        synchronized (spillLock) {
+            spillPending = spillFiles(true).length > 0;
+        }
+    }
+
+    /**
+     * Lists the spill files, oldest first.
+     *
+     * @param includeCurrent {@code true} to include the file still being appended to.
+     */
+    private File[] spillFiles(boolean includeCurrent) {
+        File[] files = spillDirectory.listFiles((dir, name) -> name.endsWith(SPILL_SUFFIX) && (includeCurrent || !name.equals(SPILL_FILE)));
+        if (files == null) return new File[0];
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Encodes entries as the spill file records: the {@value #TIMED_RECORD} marker, the time the entry was made,
+     * four strings, the amount and the notes.
+     */
+    private static byte[] encode(List<MCEngineCurrencyApiTransaction> transactions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(transactions.size() * 128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (MCEngineCurrencyApiTransaction transaction : transactions) {
+            out.writeInt(TIMED_RECORD);
+            out.writeLong(transaction.timestamp());
+            writeString(out, transaction.playerUuidSender());
+            writeString(out, transaction.playerUuidReceiver());
+            writeString(out, transaction.currencyType());
+            writeString(out, transaction.transactionType());
+            out.writeLong(transaction.amount());
+            writeString(out, transaction.notes());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the records of a spill file. A record cut off by a crash while it was spilled is skipped. Records
+     * spilled before entries carried their time start with the sender's length instead of the marker; they are
+     * given the time they are read.
+     */
+    private static List<MCEngineCurrencyApiTransaction> read(File file) throws IOException {
+        List<MCEngineCurrencyApiTransaction> transactions = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int header;
+                try {
+                    header = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    long timestamp = header == TIMED_RECORD ? in.readLong() : System.currentTimeMillis();
+                    String sender = readString(in, header == TIMED_RECORD ? in.readInt() : header);
+                    transactions.add(new MCEngineCurrencyApiTransaction(sender, readString(in), readString(in), readString(in), in.readLong(),
+                        readString(in), timestamp));
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        }
+        return transactions;
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string; {@code null} is written as length {@code -1}.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        return readString(in, in.readInt());
+    }
+
+    /**
+     * Reads the bytes of a string whose length has already been read.
+     */
+    private static String readString(DataInputStream in, int length) throws IOException {
+        if (length < 0) return null;
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) throw new EOFException();
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** @return The number of entries currently waiting in the queue. */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /** @return The capacity of the queue. */
+    public int getQueueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    /** @return The deepest the queue has been since startup. */
+    public long getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    /** @return The number of entries accepted into the queue. */
+    public long getEnqueued() {
+        return enqueued.get();
+    }
+
+    /** @return The number of entries written to the database. */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /** @return The number of batches written to the database. */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /** @return The number of batch write attempts that failed. */
+    public long getFailedBatches() {
+        return failedBatches.get();
+    }
+
+    /** @return The number of appends that found the queue full and had to wait. */
+    public long getBlockedAppends() {
+        return blockedAppends.get();
+    }
+
+    /** @return The number of entries written on the caller's thread because the queue stayed full. */
+    public long getDirectWrites() {
+        return directWrites.get();
+    }
+
+    /** @return The number of entries spilled to disk because the database did not accept them. */
+    public long getSpilled() {
+        return spilled.get();
+    }
+
+    /** @return The number of entries quarantined because the database rejected them. */
+    public long getQuarantined() {
+        return quarantined.get();
+    }
+}
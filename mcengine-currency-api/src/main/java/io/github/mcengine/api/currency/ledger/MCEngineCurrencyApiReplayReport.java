@@ -0,0 +1,25 @@
+package io.github.mcengine.api.currency.ledger;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The outcome of replaying the ledger: how the balances rebuilt from the newest checkpoint and the entries after
+ * it compare with the stored balances.
+ *
+ * @param transactionId The id of the last ledger entry replayed.
+ * @param players       The number of players whose balances were rebuilt.
+ * @param drift         The rebuilt minus the stored balances of every player where they differ, in minor units
+ *                      indexed by currency id; empty when the stored balances match the ledger. After a restore,
+ *                      what was added to each player, re-read under the player's lock.
+ * @param restored      {@code true} if every differing player was restored, so the stored balances now match the
+ *                      ledger.
+ * @param millis        How long the replay took, in milliseconds.
+ */
+public record MCEngineCurrencyApiReplayReport(
+    long transactionId,
+    int players,
+    Map<UUID, long[]> drift,
+    boolean restored,
+    long millis
+) {}
@@ -0,0 +1,25 @@
+package io.github.mcengine.api.currency.ledger;
+
+import java.time.LocalDate;
+
+/**
+ * A player's ledger totals in one currency for one UTC day, kept in {@code currency_rollup_daily} so statistics
+ * read one row per day instead of scanning the raw history. Days are added once they are over, so the current
+ * day has no rollup yet. A pay or purchase whose sender is also its receiver counts on both sides, while a
+ * single-account credit such as an add only counts as received and a debit such as a cash withdrawal only as sent.
+ *
+ * @param day            The UTC day.
+ * @param currencyType   The name of the currency.
+ * @param sentCount      The number of entries the player sent.
+ * @param sentAmount     The total amount the player sent, in minor units.
+ * @param receivedCount  The number of entries the player received.
+ * @param receivedAmount The total amount the player received, in minor units.
+ */
+public record MCEngineCurrencyApiRollup(
+    LocalDate day,
+    String currencyType,
+    long sentCount,
+    long sentAmount,
+    long receivedCount,
+    long receivedAmount
+) {}
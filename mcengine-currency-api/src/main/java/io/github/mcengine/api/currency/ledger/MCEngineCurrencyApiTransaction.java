@@ -0,0 +1,38 @@
+package io.github.mcengine.api.currency.ledger;
+
+/**
+ * A single entry of the currency transaction ledger.
+ *
+ * @param playerUuidSender   The UUID of the sender.
+ * @param playerUuidReceiver The UUID of the receiver.
+ * @param currencyType       The name of the configured currency involved, e.g. coin.
+ * @param transactionType    The type of transaction (pay, purchase).
+ * @param amount             The amount of currency involved, in minor units.
+ * @param notes              Optional notes about the transaction.
+ * @param timestamp          When the transaction was made, in milliseconds since the epoch; stored as the
+ *                           entry's time however late it is written.
+ */
+public record MCEngineCurrencyApiTransaction(
+    String playerUuidSender,
+    String playerUuidReceiver,
+    String currencyType,
+    String transactionType,
+    long amount,
+    String notes,
+    long timestamp
+) {
+    /**
+     * Creates an entry for a transaction made now.
+     *
+     * @param playerUuidSender   The UUID of the sender.
+     * @param playerUuidReceiver The UUID of the receiver.
+     * @param currencyType       The name of the configured currency involved, e.g. coin.
+     * @param transactionType    The type of transaction (pay, purchase).
+     * @param amount             The amount of currency involved, in minor units.
+     * @param notes              Optional notes about the transaction.
+     */
+    public MCEngineCurrencyApiTransaction(String playerUuidSender, String playerUuidReceiver, String currencyType,
+                                          String transactionType, long amount, String notes) {
+        this(playerUuidSender, playerUuidReceiver, currencyType, transactionType, amount, notes, System.currentTimeMillis());
+    }
+}
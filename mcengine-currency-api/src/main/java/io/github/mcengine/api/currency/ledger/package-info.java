@@ -0,0 +1,7 @@
+/**
+ * This package contains the transaction ledger record types, its background batch writer, the
+ * entries, cursors and pages returned when reading a player's history back, the monthly
+ * partitioning, retention, archival and daily rollups of the stored ledger, and the checkpointed
+ * replay that rebuilds balances from it.
+ */
+package io.github.mcengine.api.currency.ledger;
@@ -0,0 +1,154 @@
+package io.github.mcengine.api.currency.lock;
+
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Striped locks keyed by player UUID.
+ *
+ * <p>Each account maps to one of a fixed number of locks, so operations on the same account run one at a
+ * time and in a single order, while operations on different accounts almost always take different locks
+ * and proceed in parallel. The memory cost is fixed by the stripe count, not by the number of players.</p>
+ *
+ * <p>Operations that touch two accounts take both stripes in index order, so two opposite transfers
+ * between the same players cannot deadlock. The locks are reentrant.</p>
+ */
+public class MCEngineCurrencyApiAccountLocks {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * Creates the locks using {@code database.locks.stripes}, rounded up to a power of two.
+     *
+     * @param plugin The plugin instance, used for configuration.
+     */
+    public MCEngineCurrencyApiAccountLocks(Plugin plugin) {
+        this(plugin.getConfig().getInt("database.locks.stripes", 256));
+    }
+
+    /**
+     * Creates the locks with a given number of stripes, rounded up to a power of two.
+     *
+     * @param stripeCount The requested number of stripes.
+     */
+    public MCEngineCurrencyApiAccountLocks(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, Math.min(stripeCount, 1 << 16)) * 2 - 1);
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Runs an action while holding the lock of one account.
+     *
+     * @param uuid   The account to lock.
+     * @param action The action to run.
+     * @param <T>    The result type.
+     * @return The result of the action.
+     */
+    public <T> T withLock(UUID uuid, Supplier<T> action) {
+        ReentrantLock lock = stripes[index(uuid)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs an action while holding the lock of one account.
+     *
+     * @param uuid   The account to lock.
+     * @param action The action to run.
+     */
+    public void withLock(UUID uuid, Runnable action) {
+        withLock(uuid, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs an action while holding the locks of two accounts, acquired in stripe order.
+     *
+     * @param first  The first account to lock.
+     * @param second The second account to lock.
+     * @param action The action to run.
+     * @param <T>    The result type.
+     * @return The result of the action.
+     */
+    public <T> T withLocks(UUID first, UUID second, Supplier<T> action) {
+        int a = index(first);
+        int b = index(second);
+        if (a == b) {
+            return withLock(first, action);
+        }
+        ReentrantLock low = stripes[Math.min(a, b)];
+        ReentrantLock high = stripes[Math.max(a, b)];
+        low.lock();
+        try {
+            high.lock();
+            try {
+                return action.get();
+            } finally {
+                high.unlock();
+            }
+        } finally {
+            low.unlock();
+        }
+    }
+
+    /**
+     * Runs an action while holding one stripe, and with it the lock of every account {@link #stripeOf(UUID)}
+     * maps to it. Lets work on many accounts, such as writing cached balance changes, lock them a stripe at a time.
+     *
+     * @param stripe The stripe index.
+     * @param action The action to run.
+     */
+    public void withStripe(int stripe, Runnable action) {
+        ReentrantLock lock = stripes[stripe];
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the stripe of an account.
+     *
+     * @param uuid The account.
+     * @return The stripe index, for {@link #withStripe(int, Runnable)}.
+     */
+    public int stripeOf(UUID uuid) {
+        return index(uuid);
+    }
+
+    /**
+     * Returns the number of stripes.
+     *
+     * @return The stripe count, a power of two.
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Maps an account to its stripe. Random (version 4) UUIDs are already uniform, but offline-mode
+     * UUIDs are name hashes with fixed version bits, so both halves are mixed before masking.
+     *
+     * @param uuid The account.
+     * @return The stripe index.
+     */
+    private int index(UUID uuid) {
+        long h = uuid.getMostSignificantBits() ^ Long.rotateLeft(uuid.getLeastSignificantBits(), 32);
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 40) & mask;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * This package contains the striped per-account locks that serialize balance changes to one player.
+ */
+package io.github.mcengine.api.currency.lock;
@@ -0,0 +1,157 @@
+package io.github.mcengine.api.currency.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram.
+ *
+ * <p>Values below 64 get one bucket each; above that every power of two is split into 32 equal buckets, so
+ * any recorded value is reported within about 3% of its true value across the whole {@code long} range.
+ * Recording is one array increment and never allocates; the fixed 15 KB of buckets makes it cheap enough to
+ * keep one histogram per operation.</p>
+ */
+public class MCEngineCurrencyApiHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT + SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one value. Negative values are recorded as zero.
+     *
+     * @param value The value, typically a duration in nanoseconds.
+     */
+    public void record(long value) {
+        long v = Math.max(0L, value);
+        counts.incrementAndGet(index(v));
+        count.increment();
+        sum.add(v);
+        long current;
+        while (v > (current = max.get()) && !max.compareAndSet(current, v)) {
+            // retry until the maximum is at least v
+        }
+    }
+
+    /**
+     * Clears every recorded value. Values recorded concurrently may be kept or dropped.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0L);
+    }
+
+    /**
+     * Takes a consistent-enough copy of the histogram for reporting.
+     *
+     * @return A snapshot whose percentiles are computed from the copied buckets.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    /**
+     * Maps a non-negative value to its bucket.
+     *
+     * @param value The value.
+     * @return The bucket index.
+     */
+    private static int index(long value) {
+        if (value < 2 * SUB_COUNT) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the largest value that maps to a bucket.
+     *
+     * @param index The bucket index.
+     * @return The bucket's upper bound, inclusive.
+     */
+    private static long upperBound(int index) {
+        if (index < 2 * SUB_COUNT) return index;
+        int shift = index / SUB_COUNT - 1;
+        long mantissa = index - (long) shift * SUB_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Point-in-time copy of a histogram.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return The number of recorded values.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return The sum of recorded values.
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * @return The largest recorded value, or {@code 0} if nothing was recorded.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return The mean of recorded values, or {@code 0} if nothing was recorded.
+         */
+        public double getMean() {
+            return count == 0L ? 0.0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the value below which the given fraction of recorded values fall.
+         *
+         * @param quantile The quantile between {@code 0} and {@code 1}, e.g. {@code 0.99}.
+         * @return The quantile value (the upper bound of its bucket, capped at the maximum),
+         *         or {@code 0} if nothing was recorded.
+         */
+        public long getValueAt(double quantile) {
+            long total = 0L;
+            for (long c : counts) total += c;
+            if (total == 0L) return 0L;
+            long rank = Math.max(1L, (long) Math.ceil(Math.min(1.0, Math.max(0.0, quantile)) * total));
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+    }
+}
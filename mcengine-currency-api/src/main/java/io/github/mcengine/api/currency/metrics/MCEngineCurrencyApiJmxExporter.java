@@ -0,0 +1,144 @@
+package io.github.mcengine.api.currency.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Serves the metrics live as a JMX MBean named {@code io.github.mcengine.currency:type=Metrics,name=<plugin>},
+ * readable with JConsole, VisualVM or a JMX scraper.
+ *
+ * <p>Every attribute is read from the registry when requested, so {@link #export} does nothing.
+ * Timers expose {@code <name>.count}, {@code .meanMillis}, {@code .p50Millis}, {@code .p99Millis},
+ * {@code .p999Millis} and {@code .maxMillis}; counters and gauges are exposed under their own names.</p>
+ */
+public class MCEngineCurrencyApiJmxExporter implements MCEngineCurrencyApiMetricsExporter, DynamicMBean {
+    private final Plugin plugin;
+    private final MCEngineCurrencyApiMetrics metrics;
+    private ObjectName name;
+
+    /**
+     * Creates the exporter and registers its MBean with the platform MBean server.
+     *
+     * @param plugin  The plugin instance, used for naming and logging.
+     * @param metrics The registry to serve.
+     */
+    public MCEngineCurrencyApiJmxExporter(Plugin plugin, MCEngineCurrencyApiMetrics metrics) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+        try {
+            ObjectName objectName = new ObjectName("io.github.mcengine.currency:type=Metrics,name=" + ObjectName.quote(plugin.getName()));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+            this.name = objectName;
+        } catch (JMException e) {
+            plugin.getLogger().severe("Failed to register the metrics MBean: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void export(MCEngineCurrencyApiMetrics metrics) {
+    }
+
+    @Override
+    public void close() {
+        if (name == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            plugin.getLogger().severe("Failed to unregister the metrics MBean: " + e.getMessage());
+        }
+        name = null;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Object value = values().get(attribute);
+        if (value == null) throw new AttributeNotFoundException(attribute);
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Object> values = values();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Object value = values.get(attribute);
+            if (value != null) list.add(new Attribute(attribute, value));
+        }
+        return list;
+    }
+
+    /**
+     * The metrics are read-only.
+     */
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    /**
+     * The metrics are read-only.
+     */
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    /**
+     * No operations are exposed.
+     */
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws MBeanException {
+        throw new MBeanException(new UnsupportedOperationException(actionName));
+    }
+
+    /**
+     * Describes the attributes present right now; timers appear once their operation has run.
+     */
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : values().entrySet()) {
+            attributes.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(), entry.getKey(), true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "MCEngine currency metrics",
+            attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    /**
+     * Reads every attribute value from the registry.
+     *
+     * @return The attribute values by name.
+     */
+    private Map<String, Object> values() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        metrics.getTimers().forEach((timer, snapshot) -> {
+            values.put(timer + ".count", snapshot.getCount());
+            values.put(timer + ".meanMillis", snapshot.getMean() / 1_000_000.0);
+            values.put(timer + ".p50Millis", snapshot.getValueAt(0.5) / 1_000_000.0);
+            values.put(timer + ".p99Millis", snapshot.getValueAt(0.99) / 1_000_000.0);
+            values.put(timer + ".p999Millis", snapshot.getValueAt(0.999) / 1_000_000.0);
+            values.put(timer + ".maxMillis", snapshot.getMax() / 1_000_000.0);
+        });
+        values.putAll(metrics.getCounters());
+        values.putAll(metrics.getGauges());
+        return values;
+    }
+}
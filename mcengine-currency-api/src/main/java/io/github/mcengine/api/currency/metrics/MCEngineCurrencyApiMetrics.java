@@ -0,0 +1,177 @@
+package io.github.mcengine.api.currency.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the currency plugin's operation metrics.
+ *
+ * <p>Names are dotted, with the component first: {@code db.getCoin}, {@code command.pay},
+ * {@code cache.hits}. Timers record latencies in nanoseconds into a {@link MCEngineCurrencyApiHistogram};
+ * counters only ever grow; gauges are read on demand from the component that owns the value.
+ * Everything here is safe to use from any thread.</p>
+ */
+public class MCEngineCurrencyApiMetrics {
+    private final boolean enabled;
+    private final Map<String, MCEngineCurrencyApiHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> adders = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a registry.
+     *
+     * @param enabled {@code false} to skip timing and counting; registered gauges still report.
+     */
+    public MCEngineCurrencyApiMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return {@code true} if timers and counters are recorded.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the timer with the given name, creating it on first use.
+     *
+     * @param name The timer name.
+     * @return The timer's histogram.
+     */
+    public MCEngineCurrencyApiHistogram timer(String name) {
+        return timers.computeIfAbsent(name, key -> new MCEngineCurrencyApiHistogram());
+    }
+
+    /**
+     * Runs an action and records how long it took.
+     *
+     * @param name   The timer name.
+     * @param action The action to time.
+     * @param <T>    The result type.
+     * @return The result of the action.
+     */
+    public <T> T time(String name, Supplier<T> action) {
+        if (!enabled) return action.get();
+        MCEngineCurrencyApiHistogram timer = timer(name);
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            timer.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs an action and records how long it took.
+     *
+     * @param name   The timer name.
+     * @param action The action to time.
+     */
+    public void time(String name, Runnable action) {
+        time(name, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Records a duration measured by the caller.
+     *
+     * @param name  The timer name.
+     * @param nanos The duration in nanoseconds.
+     */
+    public void record(String name, long nanos) {
+        if (enabled) timer(name).record(nanos);
+    }
+
+    /**
+     * Returns the counter with the given name, creating it on first use.
+     *
+     * @param name The counter name.
+     * @return The counter.
+     */
+    public LongAdder counter(String name) {
+        return adders.computeIfAbsent(name, key -> {
+            LongAdder adder = new LongAdder();
+            counters.put(key, adder::sum);
+            return adder;
+        });
+    }
+
+    /**
+     * Adds one to a counter.
+     *
+     * @param name The counter name.
+     */
+    public void increment(String name) {
+        if (enabled) counter(name).increment();
+    }
+
+    /**
+     * Registers a counter whose value is kept by another component, such as the ledger writer's totals.
+     *
+     * @param name  The counter name.
+     * @param value Reads the current total.
+     */
+    public void counter(String name, LongSupplier value) {
+        counters.put(name, value);
+    }
+
+    /**
+     * Registers a gauge, a value that can go up and down such as a queue depth.
+     *
+     * @param name  The gauge name.
+     * @param value Reads the current value.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * @return A snapshot of every timer, sorted by name.
+     */
+    public Map<String, MCEngineCurrencyApiHistogram.Snapshot> getTimers() {
+        Map<String, MCEngineCurrencyApiHistogram.Snapshot> snapshot = new TreeMap<>();
+        timers.forEach((name, timer) -> snapshot.put(name, timer.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * @return The current value of every counter, sorted by name.
+     */
+    public Map<String, Long> getCounters() {
+        return read(counters);
+    }
+
+    /**
+     * @return The current value of every gauge, sorted by name.
+     */
+    public Map<String, Long> getGauges() {
+        return read(gauges);
+    }
+
+    /**
+     * Clears every timer so percentiles start over. Counters and gauges are left alone.
+     */
+    public void resetTimers() {
+        timers.values().forEach(MCEngineCurrencyApiHistogram::reset);
+    }
+
+    /**
+     * Reads a set of suppliers into a sorted map.
+     *
+     * @param suppliers The registered suppliers.
+     * @return The current values by name.
+     */
+    private static Map<String, Long> read(Map<String, LongSupplier> suppliers) {
+        Map<String, Long> values = new TreeMap<>();
+        suppliers.forEach((name, supplier) -> values.put(name, supplier.getAsLong()));
+        return values;
+    }
+}
@@ -0,0 +1,201 @@
+package io.github.mcengine.api.currency.metrics;
+
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiDBInterface;
+import io.github.mcengine.api.currency.database.MCEngineCurrencyApiVersionedBalances;
+import io.github.mcengine.api.currency.leaderboard.MCEngineCurrencyApiTopEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiCheckpoint;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryCursor;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiHistoryEntry;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiInsertResult;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiRollup;
+import io.github.mcengine.api.currency.ledger.MCEngineCurrencyApiTransaction;
+
+/**
+ * Storage engine wrapper that times every call into the {@code db.<method>} timers.
+ *
+ * <p>It sits directly on the storage engine, below the balance cache, so the timers show the latency of
+ * real database work rather than of cache hits.</p>
+ */
+public class MCEngineCurrencyApiMetricsDatabase implements MCEngineCurrencyApiDBInterface {
+    private final MCEngineCurrencyApiDBInterface db;
+    private final MCEngineCurrencyApiMetrics metrics;
+
+    /**
+     * Wraps a storage engine.
+     *
+     * @param db      The storage engine to time.
+     * @param metrics The registry receiving the timings.
+     */
+    public MCEngineCurrencyApiMetricsDatabase(MCEngineCurrencyApiDBInterface db, MCEngineCurrencyApiMetrics metrics) {
+        this.db = db;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void connect() {
+        metrics.time("db.connect", db::connect);
+    }
+
+    @Override
+    public void createTable() {
+        metrics.time("db.createTable", db::createTable);
+    }
+
+    @Override
+    public void disConnection() {
+        metrics.time("db.disConnection", db::disConnection);
+    }
+
+    @Override
+    public long getCoin(String playerUuid, int currencyId) {
+        return metrics.time("db.getCoin", () -> db.getCoin(playerUuid, currencyId));
+    }
+
+    @Override
+    public long[] getBalances(String playerUuid) {
+        return metrics.time("db.getBalances", () -> db.getBalances(playerUuid));
+    }
+
+    @Override
+    public Map<String, long[]> getBalances(Collection<String> playerUuids) {
+        return metrics.time("db.getBalancesBulk", () -> db.getBalances(playerUuids));
+    }
+
+    @Override
+    public List<MCEngineCurrencyApiTopEntry> getTop(int currencyId, int offset, int limit) {
+        return metrics.time("db.getTop", () -> db.getTop(currencyId, offset, limit));
+    }
+
+    /**
+     * Not timed: the caller uses the connection after this returns.
+     */
+    @Override
+    public Connection getConnection() {
+        return db.getConnection();
+    }
+
+    @Override
+    public void insertCurrency(String playerUuid, long[] balances) {
+        metrics.time("db.insertCurrency", () -> db.insertCurrency(playerUuid, balances));
+    }
+
+    @Override
+    public long[] loadOrCreateBalances(String playerUuid) {
+        return metrics.time("db.loadOrCreateBalances", () -> db.loadOrCreateBalances(playerUuid));
+    }
+
+    @Override
+    public void insertTransaction(String playerUuidSender, String playerUuidReceiver, String currencyType, String transactionType, long amount, String notes) {
+        metrics.time("db.insertTransaction", () -> db.insertTransaction(playerUuidSender, playerUuidReceiver, currencyType, transactionType, amount, notes));
+    }
+
+    @Override
+    public List<MCEngineCurrencyApiHistoryEntry> getTransactions(String playerUuid, MCEngineCurrencyApiHistoryCursor before, int limit) {
+        return metrics.time("db.getTransactions", () -> db.getTransactions(playerUuid, before, limit));
+    }
+
+    @Override
+    public List<MCEngineCurrencyApiRollup> getRollups(String playerUuid, long fromDay, long toDay) {
+        return metrics.time("db.getRollups", () -> db.getRollups(playerUuid, fromDay, toDay));
+    }
+
+    @Override
+    public void maintainLedger() {
+        metrics.time("db.maintainLedger", db::maintainLedger);
+    }
+
+    @Override
+    public MCEngineCurrencyApiCheckpoint getCheckpoint(long epochSeconds) {
+        return metrics.time("db.getCheckpoint", () -> db.getCheckpoint(epochSeconds));
+    }
+
+    @Override
+    public Map<String, long[]> getCheckpointBalances(long checkpointId) {
+        return metrics.time("db.getCheckpointBalances", () -> db.getCheckpointBalances(checkpointId));
+    }
+
+    @Override
+    public long[] getCheckpointBalances(long checkpointId, String playerUuid) {
+        return metrics.time("db.getCheckpointBalances", () -> db.getCheckpointBalances(checkpointId, playerUuid));
+    }
+
+    @Override
+    public MCEngineCurrencyApiCheckpoint getLedgerHead(long epochSeconds) {
+        return metrics.time("db.getLedgerHead", () -> db.getLedgerHead(epochSeconds));
+    }
+
+    @Override
+    public Map<String, long[]> sumLedger(long afterId, long lastId) {
+        return metrics.time("db.sumLedger", () -> db.sumLedger(afterId, lastId));
+    }
+
+    @Override
+    public long[] sumLedger(String playerUuid, MCEngineCurrencyApiCheckpoint after, long toEpochSeconds) {
+        return metrics.time("db.sumLedger", () -> db.sumLedger(playerUuid, after, toEpochSeconds));
+    }
+
+    @Override
+    public MCEngineCurrencyApiCheckpoint saveCheckpoint(MCEngineCurrencyApiCheckpoint position, Map<String, long[]> balances) {
+        return metrics.time("db.saveCheckpoint", () -> db.saveCheckpoint(position, balances));
+    }
+
+    @Override
+    public void deleteCheckpoints(long beforeEpochSeconds, long keepId) {
+        metrics.time("db.deleteCheckpoints", () -> db.deleteCheckpoints(beforeEpochSeconds, keepId));
+    }
+
+    @Override
+    public MCEngineCurrencyApiInsertResult insertTransactions(List<MCEngineCurrencyApiTransaction> transactions) {
+        return metrics.time("db.insertTransactions", () -> db.insertTransactions(transactions));
+    }
+
+    @Override
+    public boolean transfer(String playerUuidSender, String playerUuidReceiver, int currencyId, long amount, String notes) {
+        return metrics.time("db.transfer", () -> db.transfer(playerUuidSender, playerUuidReceiver, currencyId, amount, notes));
+    }
+
+    @Override
+    public boolean playerExists(String uuid) {
+        return metrics.time("db.playerExists", () -> db.playerExists(uuid));
+    }
+
+    @Override
+    public void updateCurrencyValue(String playerUuid, String operator, int currencyId, long amt) {
+        metrics.time("db.updateCurrencyValue", () -> db.updateCurrencyValue(playerUuid, operator, currencyId, amt));
+    }
+
+    @Override
+    public boolean updateCurrencyValues(Map<String, long[]> deltas) {
+        return metrics.time("db.updateCurrencyValues", () -> db.updateCurrencyValues(deltas));
+    }
+
+    @Override
+    public MCEngineCurrencyApiVersionedBalances getVersionedBalances(String playerUuid) {
+        return metrics.time("db.getVersionedBalances", () -> db.getVersionedBalances(playerUuid));
+    }
+
+    @Override
+    public boolean compareAndSetBalances(String playerUuid, long expectedVersion, long[] balances) {
+        boolean written = metrics.time("db.compareAndSetBalances", () -> db.compareAndSetBalances(playerUuid, expectedVersion, balances));
+        if (!written) metrics.increment("db.compareAndSetBalances.rejected");
+        return written;
+    }
+
+    /**
+     * Timed as a whole, including every retry.
+     */
+    @Override
+    public boolean updateBalances(String playerUuid, UnaryOperator<long[]> change, int maxAttempts) {
+        return metrics.time("db.updateBalances", () -> db.updateBalances(playerUuid, change, maxAttempts));
+    }
+
+    @Override
+    public void registerMetrics(MCEngineCurrencyApiMetrics metrics) {
+        db.registerMetrics(metrics);
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.mcengine.api.currency.metrics;
+
+/**
+ * Publishes the currency metrics to a monitoring system.
+ *
+ * <p>{@link #export} is called periodically off the server main thread, every
+ * {@code metrics.export-interval} ticks. Exporters that serve values live, such as JMX, may ignore it.</p>
+ */
+public interface MCEngineCurrencyApiMetricsExporter {
+
+    /**
+     * Publishes the current values.
+     *
+     * @param metrics The registry to read.
+     */
+    void export(MCEngineCurrencyApiMetrics metrics);
+
+    /**
+     * Releases anything the exporter registered or opened.
+     */
+    default void close() {
+    }
+}
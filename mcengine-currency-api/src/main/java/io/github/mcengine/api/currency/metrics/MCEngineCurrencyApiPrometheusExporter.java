@@ -0,0 +1,127 @@
+package io.github.mcengine.api.currency.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Writes the metrics in the Prometheus text exposition format to a file, for the node_exporter
+ * textfile collector or any scraper that reads files.
+ *
+ * <p>Timers become summaries with the 0.5, 0.9, 0.99 and 0.999 quantiles in seconds, labelled by
+ * operation: {@code db.getCoin} is exported as {@code mcengine_currency_db_seconds{op="getCoin",...}}.
+ * The file is written to a temporary file and moved into place, so a scrape never sees half a file.</p>
+ */
+public class MCEngineCurrencyApiPrometheusExporter implements MCEngineCurrencyApiMetricsExporter {
+    private static final String PREFIX = "mcengine_currency_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Plugin plugin;
+    private final Path path;
+
+    /**
+     * Creates the exporter writing to {@code metrics.prometheus.path} inside the plugin folder.
+     *
+     * @param plugin The plugin instance, used for configuration and logging.
+     */
+    public MCEngineCurrencyApiPrometheusExporter(Plugin plugin) {
+        this.plugin = plugin;
+        this.path = new File(plugin.getDataFolder(), plugin.getConfig().getString("metrics.prometheus.path", "metrics.prom")).toPath();
+    }
+
+    @Override
+    public void export(MCEngineCurrencyApiMetrics metrics) {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Files.writeString(temp, format(metrics), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to write Prometheus metrics to " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Formats every metric in the Prometheus text exposition format.
+     *
+     * @param metrics The registry to read.
+     * @return The exposition text.
+     */
+    public static String format(MCEngineCurrencyApiMetrics metrics) {
+        StringBuilder out = new StringBuilder();
+        String family = null;
+        for (Map.Entry<String, MCEngineCurrencyApiHistogram.Snapshot> entry : metrics.getTimers().entrySet()) {
+            String name = entry.getKey();
+            int dot = name.indexOf('.');
+            String metric = PREFIX + sanitize(dot < 0 ? name : name.substring(0, dot)) + "_seconds";
+            String op = dot < 0 ? null : name.substring(dot + 1);
+            if (!metric.equals(family)) {
+                out.append("# TYPE ").append(metric).append(" summary\n");
+                family = metric;
+            }
+            MCEngineCurrencyApiHistogram.Snapshot snapshot = entry.getValue();
+            for (double quantile : QUANTILES) {
+                out.append(metric).append(labels(op, "quantile=\"" + quantile + "\"")).append(' ')
+                    .append(seconds(snapshot.getValueAt(quantile))).append('\n');
+            }
+            out.append(metric).append("_sum").append(labels(op, null)).append(' ').append(seconds(snapshot.getSum())).append('\n');
+            out.append(metric).append("_count").append(labels(op, null)).append(' ').append(snapshot.getCount()).append('\n');
+        }
+        for (Map.Entry<String, Long> entry : metrics.getCounters().entrySet()) {
+            String metric = PREFIX + sanitize(entry.getKey()) + "_total";
+            out.append("# TYPE ").append(metric).append(" counter\n");
+            out.append(metric).append(' ').append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<String, Long> entry : metrics.getGauges().entrySet()) {
+            String metric = PREFIX + sanitize(entry.getKey());
+            out.append("# TYPE ").append(metric).append(" gauge\n");
+            out.append(metric).append(' ').append(entry.getValue()).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Builds the label set of a sample.
+     *
+     * @param op    The operation label value, or {@code null}.
+     * @param extra An extra, already formatted label, or {@code null}.
+     * @return The label set including braces, or an empty string.
+     */
+    private static String labels(String op, String extra) {
+        if (op == null && extra == null) return "";
+        StringBuilder labels = new StringBuilder("{");
+        if (op != null) labels.append("op=\"").append(op.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        if (extra != null) labels.append(op != null ? "," : "").append(extra);
+        return labels.append('}').toString();
+    }
+
+    /**
+     * Turns a dotted, camel-case metric name into a Prometheus name: {@code cache.hits} becomes
+     * {@code cache_hits} and {@code db.compareAndSetBalances} becomes {@code db_compare_and_set_balances}.
+     *
+     * @param name The registry name.
+     * @return The sanitized name.
+     */
+    private static String sanitize(String name) {
+        return name.replaceAll("([a-z0-9])([A-Z])", "$1_$2").replaceAll("[^A-Za-z0-9_]", "_").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param nanos A duration in nanoseconds.
+     * @return The duration in seconds.
+     */
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1_000_000_000.0);
+    }
+}
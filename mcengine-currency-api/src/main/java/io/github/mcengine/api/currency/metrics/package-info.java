@@ -0,0 +1,4 @@
+/**
+ * This package contains the operation metrics (latency histograms, counters and gauges) and their exporters.
+ */
+package io.github.mcengine.api.currency.metrics;
@@ -0,0 +1,112 @@
+package io.github.mcengine.api.currency.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.regex.Pattern;
+
+/**
+ * An exact amount of currency, stored as a whole number of minor units (hundredths).
+ *
+ * <p>Inside the API, the database interface, the cache and the ledger, amounts are plain {@code long}
+ * minor units so arithmetic never allocates or rounds. This type only appears where amounts enter or
+ * leave the API: parsing player input, formatting messages and the public {@code MCEngineCurrencyApi} methods.</p>
+ *
+ * @param minor The amount in minor units; {@code 1234} is {@code 12.34}.
+ */
+public record MCEngineCurrencyApiMoney(long minor) implements Comparable<MCEngineCurrencyApiMoney> {
+    /** Number of decimal places of an amount. */
+    public static final int SCALE = 2;
+
+    /** Number of minor units in one whole unit. */
+    public static final long MINOR_PER_UNIT = 100L;
+
+    /** A zero amount. */
+    public static final MCEngineCurrencyApiMoney ZERO = new MCEngineCurrencyApiMoney(0L);
+
+    /**
+     * Plain decimal notation with at most 17 digits on either side of the point, which covers every
+     * {@code long} of minor units. Checked before parsing, so player input such as {@code 1e999999999}
+     * never reaches {@link BigDecimal}, which would expand it to a billion digits.
+     */
+    private static final Pattern DECIMAL = Pattern.compile("[+-]?(\\d{1,17}(\\.\\d{0,17})?|\\.\\d{1,17})");
+
+    /**
+     * @param minor The amount in minor units.
+     * @return The amount.
+     */
+    public static MCEngineCurrencyApiMoney ofMinor(long minor) {
+        return minor == 0L ? ZERO : new MCEngineCurrencyApiMoney(minor);
+    }
+
+    /**
+     * Parses a decimal amount such as {@code "12.5"} exactly.
+     *
+     * @param text The amount in whole units with at most two decimal places.
+     * @return The amount.
+     * @throws NumberFormatException If the text is not a plain decimal number, has more than two decimal places
+     *                               or does not fit in a {@code long} of minor units.
+     */
+    public static MCEngineCurrencyApiMoney parse(String text) {
+        String trimmed = text.trim();
+        if (!DECIMAL.matcher(trimmed).matches()) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        try {
+            return ofMinor(new BigDecimal(trimmed).setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+    }
+
+    /**
+     * Converts a legacy floating-point amount, rounding to the nearest minor unit.
+     * Only meant for reading values written before amounts were stored exactly.
+     *
+     * @param amount The amount in whole units.
+     * @return The nearest amount.
+     */
+    public static MCEngineCurrencyApiMoney ofLegacyDouble(double amount) {
+        return ofMinor(BigDecimal.valueOf(amount).setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    /**
+     * @param other The amount to add.
+     * @return The sum.
+     * @throws ArithmeticException If the result overflows.
+     */
+    public MCEngineCurrencyApiMoney plus(MCEngineCurrencyApiMoney other) {
+        return ofMinor(Math.addExact(minor, other.minor));
+    }
+
+    /**
+     * @param other The amount to subtract.
+     * @return The difference.
+     * @throws ArithmeticException If the result overflows.
+     */
+    public MCEngineCurrencyApiMoney minus(MCEngineCurrencyApiMoney other) {
+        return ofMinor(Math.subtractExact(minor, other.minor));
+    }
+
+    /** @return {@code true} if the amount is greater than zero. */
+    public boolean isPositive() {
+        return minor > 0L;
+    }
+
+    /** @return The amount as a decimal in whole units. */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    @Override
+    public int compareTo(MCEngineCurrencyApiMoney other) {
+        return Long.compare(minor, other.minor);
+    }
+
+    /**
+     * @return The amount in whole units with two decimal places, e.g. {@code "12.50"}.
+     */
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
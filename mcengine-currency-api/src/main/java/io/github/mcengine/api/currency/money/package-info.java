@@ -0,0 +1,4 @@
+/**
+ * This package contains the immutable money value type used at the edges of the currency API.
+ */
+package io.github.mcengine.api.currency.money;
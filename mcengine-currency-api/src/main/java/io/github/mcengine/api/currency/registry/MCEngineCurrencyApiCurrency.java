@@ -0,0 +1,10 @@
+package io.github.mcengine.api.currency.registry;
+
+/**
+ * One currency of the {@link MCEngineCurrencyApiCurrencyRegistry}.
+ *
+ * @param id      The permanent storage key; balances arrays are indexed by it and storage engines persist it.
+ * @param name    The lower-case name used in commands, the API and ledger entries.
+ * @param texture The HeadDB id of the head shown for the currency, or an empty string for none.
+ */
+public record MCEngineCurrencyApiCurrency(int id, String name, String texture) {}
@@ -0,0 +1,184 @@
+package io.github.mcengine.api.currency.registry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import io.github.mcengine.api.currency.enums.MCEngineCurrencyApiType;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * The currencies players can hold, loaded once from the {@code currencies} section of the configuration.
+ *
+ * <p>Every currency has a permanent numeric id. Balance arrays throughout the API are indexed by that id
+ * and storage engines persist it instead of a column per currency, so adding a currency is a configuration
+ * change. Names are validated once when the registry is loaded; afterwards resolving a name is a single
+ * hash lookup at the API edge, and everything below it only bounds-checks the id.</p>
+ *
+ * <p>Without a {@code currencies} section the registry holds coin, copper, silver and gold with the ids
+ * they always had, so existing data keeps its meaning.</p>
+ */
+public final class MCEngineCurrencyApiCurrencyRegistry {
+    /** The highest id a currency may have, which bounds the size of every balance array. */
+    public static final int MAX_ID = 255;
+
+    /** Names are used in commands, SQL values and file names, so they are kept to a safe alphabet. */
+    private static final Pattern NAME = Pattern.compile("[a-z0-9_]{1,32}");
+
+    /** HeadDB ids of the built-in currencies, in id order, used when no texture is configured. */
+    private static final String[] DEFAULT_TEXTURES = {"63066", "40534", "51708", "56431"};
+
+    private final Map<String, MCEngineCurrencyApiCurrency> byName = new HashMap<>();
+    private final MCEngineCurrencyApiCurrency[] byId;
+    private final List<MCEngineCurrencyApiCurrency> currencies;
+    private final List<String> names;
+
+    /**
+     * Creates a registry from already validated currencies.
+     *
+     * @param currencies The currencies; ids and names must be unique and ids within {@code 0..MAX_ID}.
+     * @throws IllegalArgumentException If an id is out of range or an id or name is used twice.
+     */
+    public MCEngineCurrencyApiCurrencyRegistry(Collection<MCEngineCurrencyApiCurrency> currencies) {
+        List<MCEngineCurrencyApiCurrency> sorted = new ArrayList<>(currencies);
+        sorted.sort(Comparator.comparingInt(MCEngineCurrencyApiCurrency::id));
+        int size = sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1).id() + 1;
+        this.byId = new MCEngineCurrencyApiCurrency[size];
+        List<String> sortedNames = new ArrayList<>(sorted.size());
+        for (MCEngineCurrencyApiCurrency currency : sorted) {
+            if (currency.id() < 0 || currency.id() > MAX_ID) {
+                throw new IllegalArgumentException("Currency id out of range: " + currency.id());
+            }
+            if (byId[currency.id()] != null) {
+                throw new IllegalArgumentException("Duplicate currency id: " + currency.id());
+            }
+            if (byName.putIfAbsent(currency.name(), currency) != null) {
+                throw new IllegalArgumentException("Duplicate currency name: " + currency.name());
+            }
+            byId[currency.id()] = currency;
+            sortedNames.add(currency.name());
+        }
+        this.currencies = List.copyOf(sorted);
+        this.names = List.copyOf(sortedNames);
+    }
+
+    /**
+     * Loads the registry from the {@code currencies} section. Entries with an invalid name, a missing or
+     * out-of-range id, or an id or name that is already taken are logged and skipped.
+     *
+     * @param plugin The plugin instance, used for configuration and logging.
+     * @return The registry; the built-in currencies if the section is missing or holds no valid entry.
+     */
+    public static MCEngineCurrencyApiCurrencyRegistry load(Plugin plugin) {
+        ConfigurationSection section = plugin.getConfig().getConfigurationSection("currencies");
+        if (section == null) return defaults(plugin);
+
+        Map<String, MCEngineCurrencyApiCurrency> loaded = new HashMap<>();
+        boolean[] taken = new boolean[MAX_ID + 1];
+        for (String key : section.getKeys(false)) {
+            String name = key.toLowerCase(Locale.ROOT);
+            int id = section.getInt(key + ".id", -1);
+            if (!NAME.matcher(name).matches()) {
+                plugin.getLogger().severe("Ignoring currency '" + key + "': names may only use a-z, 0-9 and _ (at most 32 characters).");
+            } else if (id < 0 || id > MAX_ID) {
+                plugin.getLogger().severe("Ignoring currency '" + key + "': id must be between 0 and " + MAX_ID + ".");
+            } else if (taken[id] || loaded.containsKey(name)) {
+                plugin.getLogger().severe("Ignoring currency '" + key + "': its id or name is already used by another currency.");
+            } else {
+                taken[id] = true;
+                String texture = section.getString(key + ".texture", plugin.getConfig().getString("texture." + name, ""));
+                loaded.put(name, new MCEngineCurrencyApiCurrency(id, name, texture));
+            }
+        }
+        if (loaded.isEmpty()) {
+            plugin.getLogger().severe("No valid currency in 'currencies'; using coin, copper, silver and gold.");
+            return defaults(plugin);
+        }
+        return new MCEngineCurrencyApiCurrencyRegistry(loaded.values());
+    }
+
+    /**
+     * Creates the registry of the built-in currencies, with textures from the legacy {@code texture} section
+     * or the textures they always had.
+     *
+     * @param plugin The plugin instance, used for configuration.
+     * @return Coin, copper, silver and gold with ids 0 to 3.
+     */
+    public static MCEngineCurrencyApiCurrencyRegistry defaults(Plugin plugin) {
+        List<MCEngineCurrencyApiCurrency> builtIn = new ArrayList<>();
+        for (MCEngineCurrencyApiType type : MCEngineCurrencyApiType.values()) {
+            String name = type.name().toLowerCase(Locale.ROOT);
+            builtIn.add(new MCEngineCurrencyApiCurrency(type.ordinal(), name, plugin.getConfig().getString("texture." + name, DEFAULT_TEXTURES[type.ordinal()])));
+        }
+        return new MCEngineCurrencyApiCurrencyRegistry(builtIn);
+    }
+
+    /**
+     * Resolves a currency name to its id.
+     *
+     * @param name The currency name, e.g. "coin".
+     * @return The id, or {@code -1} if no currency has that name.
+     */
+    public int indexOf(String name) {
+        MCEngineCurrencyApiCurrency currency = name != null ? byName.get(name) : null;
+        return currency != null ? currency.id() : -1;
+    }
+
+    /**
+     * @param name The currency name.
+     * @return The currency, or {@code null} if no currency has that name.
+     */
+    public MCEngineCurrencyApiCurrency get(String name) {
+        return name != null ? byName.get(name) : null;
+    }
+
+    /**
+     * @param id The currency id.
+     * @return The currency, or {@code null} if no currency has that id.
+     */
+    public MCEngineCurrencyApiCurrency get(int id) {
+        return isValid(id) ? byId[id] : null;
+    }
+
+    /**
+     * Checks an id without any lookup beyond an array bounds check.
+     *
+     * @param id The currency id.
+     * @return {@code true} if a currency has that id.
+     */
+    public boolean isValid(int id) {
+        return id >= 0 && id < byId.length && byId[id] != null;
+    }
+
+    /**
+     * @param id The currency id.
+     * @return The currency name, or {@code null} if no currency has that id.
+     */
+    public String nameOf(int id) {
+        return isValid(id) ? byId[id].name() : null;
+    }
+
+    /**
+     * Returns the length of balance arrays: the highest id plus one. Ids without a currency stay zero.
+     *
+     * @return The balance array length.
+     */
+    public int size() {
+        return byId.length;
+    }
+
+    /** @return Every currency, in id order. */
+    public List<MCEngineCurrencyApiCurrency> getCurrencies() {
+        return currencies;
+    }
+
+    /** @return Every currency name, in id order. */
+    public List<String> getNames() {
+        return names;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * This package contains the registry of currencies configured under {@code currencies}.
+ */
+package io.github.mcengine.api.currency.registry;
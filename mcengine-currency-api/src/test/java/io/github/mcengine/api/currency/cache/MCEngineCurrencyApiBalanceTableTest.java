@@ -0,0 +1,332 @@
+package io.github.mcengine.api.currency.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link MCEngineCurrencyApiBalanceTable}: probing through collisions, backward-shift deletion,
+ * resizing and the pending delta bookkeeping the write-behind cache relies on.
+ */
+class MCEngineCurrencyApiBalanceTableTest {
+    private static final int TYPES = 2;
+
+    /** Buckets per segment of a table created for a single account. */
+    private static final int SMALL_BUCKETS = 8;
+
+    /**
+     * Finds keys whose home is the same bucket of the same segment in a table of {@link #SMALL_BUCKETS}
+     * buckets per segment.
+     */
+    private static List<long[]> keysIn(int segment, int bucket, int count) {
+        List<long[]> keys = new ArrayList<>();
+        for (long msb = 1; keys.size() < count; msb++) {
+            long lsb = 0x9E3779B97F4A7C15L;
+            int hash = MCEngineCurrencyApiBalanceTable.hash(msb, lsb);
+            if (((hash >>> 28) & (MCEngineCurrencyApiBalanceTable.SEGMENTS - 1)) == segment && (hash & (SMALL_BUCKETS - 1)) == bucket) {
+                keys.add(new long[] {msb, lsb});
+            }
+        }
+        return keys;
+    }
+
+    private static void put(MCEngineCurrencyApiBalanceTable table, long[] key, long first, long second) {
+        assertTrue(table.putIfAbsent(key[0], key[1], new long[] {first, second}));
+    }
+
+    private static void assertBalances(MCEngineCurrencyApiBalanceTable table, long[] key, long first, long second) {
+        long[] out = new long[TYPES];
+        assertTrue(table.getBalances(key[0], key[1], out), "account should be cached");
+        assertArrayEquals(new long[] {first, second}, out);
+    }
+
+    @Test
+    void putGetAndAbsent() {
+        MCEngineCurrencyApiBalanceTable table = new MCEngineCurrencyApiBalanceTable(16, TYPES);
+        put(table, new long[] {1L, 2L}, 100L, 200L);
+
+        assertEquals(100L, table.getCoin(1L, 2L, 0));
+        assertEquals(200L, table.getCoin(1L, 2L, 1));
+        assertEquals(MCEngineCurrencyApiBalanceTable.ABSENT, table.getCoin(2L, 1L, 0));
+        assertFalse(table.putIfAbsent(1L, 2L, new long[] {5L, 5L}), "an existing account is not replaced");
+        assertEquals(100L, table.getCoin(1L, 2L, 0));
+        assertFalse(table.putIfAbsent(0L, 0L, new long[TYPES]), "the all-zero UUID marks empty buckets");
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void collidingKeysAreAllFound() {
+        MCEngineCurrencyApiBalanceTable table = new MCEngineCurrencyApiBalanceTable(1, TYPES);
+        List<long[]> keys = keysIn(3, 5, 6);
+        for (int i = 0; i < keys.size(); i++) {
+            put(table, keys.get(i), i, -i);
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            assertBalances(table, keys.get(i), i, -i);
+        }
+        assertEquals(keys.size(), table.size());
+    }
+
+    @Test
+    void removingFromTheMiddleOfAProbeChainKeepsLaterKeysReachable() {
+        MCEngineCurrencyApiBalanceTable table = new MCEngineCurrencyApiBalanceTable(1, TYPES);
+        List<long[]> keys = keysIn(7, 2, 5);
+        for (int i = 0; i < keys.size(); i++) {
+            put(table, keys.get(i), i, i);
+        }
+
+        assertNull(table.remove(keys.get(1)[0], keys.get(1)[1]), "nothing was pending");
+        assertFalse(table.contains(keys.get(1)[0], keys.get(1)[1]));
+        for (int i : new int[] {0, 2, 3, 4}) {
+            assertBalances(table, keys.get(i), i, i);
+        }
+
+        table.remove(keys.get(0)[0], keys.get(0)[1]);
+        table.remove(keys.get(3)[0], keys.get(3)[1]);
+        assertBalances(table, keys.get(2), 2, 2);
+        assertBalances(table, keys.get(4), 4, 4);
+        assertEquals(2, table.size());
+
+        // A freed bucket is reused and the chain still resolves
+        put(table, keys.get(1), 11, 11);
+        assertBalances(table, keys.get(1), 11, 11);
+        assertBalances(table, keys.get(4), 4, 4);
+    }
+
+    @Test
+    void removalShiftsEntriesThatWrappedAroundTheEnd() {
+        MCEngineCurrencyApiBalanceTable table = new MCEngineCurrencyApiBalanceTable(1, TYPES);
+        List<long[]> last = keysIn(0, SMALL_BUCKETS - 1, 3);
+        List<long[]> first = keysIn(0, 0, 2);
+        // The chain of the last bucket wraps into buckets 0 and 1, ahead of the keys whose home is bucket 0
+        for (long[] key : last) put(table, key, 7, 7);
+        for (long[] key : first) put(table, key, 0, 0);
+
+        table.remove(last.get(0)[0], last.get(0)[1]);
+        assertBalances(table, last.get(1), 7, 7);
+        assertBalances(table, last.get(2), 7, 7);
+        for (long[] key : first) assertBalances(table, key, 0, 0);
+
+        table.remove(first.get(0)[0], first.get(0)[1]);
+        assertBalances(table, last.get(2), 7, 7);
+        assertBalances(table, first.get(1), 0, 0);
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    void resizeKeepsEveryAccountAndPendingDelta() {
+        MCEngineCurrencyApiBalanceTable table = new MCEngineCurrencyApiBalanceTable(1, TYPES);
+        Random random = new Random(42L);
+        Map<UUID, long[]> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            long balance = random.nextInt(1000);
+            if (expected.putIfAbsent(uuid, new long[] {balance, balance + 1}) == null) {
+                put(table, new long[] {uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()}, balance, balance + 1);
+                assertTrue(table.add(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), 1, 5L));
+                expected.get(uuid)[1] += 5L;
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        for (Map.Entry<UUID, long[]> entry : expected.entrySet()) {
+            UUID uuid = entry.getKey();
+            long[] key = {uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()};
+            assertBalances(table, key, entry.getValue()[0], entry.getValue()[1]);
+            assertArrayEquals(new long[] {0L, 5L}, table.drain(key[0], key[1]));
+        }
+    }
+
+    @Test
+    void matchesAMapUnderRandomOperations() {
+        MCEngineCurrencyApiBalanceTable table = new MCEngineCurrencyApiBalanceTable(1, TYPES);
+        Map<UUID, long[]> model = new HashMap<>();
+        Random random = new Random(7L);
+        // A small key space makes inserts, removals and collisions frequent
+        UUID[] universe = new UUID[512];
+        for (int i = 0; i < universe.length; i++) {
+            universe[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+
+        for (int step = 0; step < 200000; step++) {
+            UUID uuid = universe[random.nextInt(universe.length)];
+            long msb = uuid.getMostSignificantBits();
+            long lsb = uuid.getLeastSignificantBits();
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    long value = random.nextInt(100);
+                    boolean added = table.putIfAbsent(msb, lsb, new long[] {value, value});
+                    assertEquals(!model.containsKey(uuid), added);
+                    model.putIfAbsent(uuid, new long[] {value, value});
+                }
+                case 1 -> {
+                    table.remove(msb, lsb);
+                    model.remove(uuid);
+                }
+                default -> {
+                    boolean cached = table.add(msb, lsb, 0, 3L);
+                    assertEquals(model.containsKey(uuid), cached);
+                    if (cached) model.get(uuid)[0] += 3L;
+                }
+            }
+        }
+
+        assertEquals(model.size(), table.size());
+        for (UUID uuid : universe) {
+            long[] out = new long[TYPES];
+            boolean cached = table.getBalances(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), out);
+            assertEquals(model.containsKey(uuid), cached);
+            if (cached) assertArrayEquals(model.get(uuid), out);
+        }
+    }
+
+    @Test
+    void concurrentInsertsAcrossResizesAreNotLost() throws Exception {
+        MCEngineCurrencyApiBalanceTable table = new MCEngineCurrencyApiBalanceTable(1, TYPES);
+        int threads = 8;
+        int perThread = 5000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long thread = t + 1L;
+                futures.add(pool.submit(() -> {
+                    for (long i = 1; i <= perThread; i++) {
+                        assertTrue(table.putIfAbsent(thread, i, new long[] {i, 0L}));
+                        assertTrue(table.add(thread, i, 1, thread));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(threads * perThread, table.size());
+        for (long thread = 1; thread <= threads; thread++) {
+            for (long i = 1; i <= perThread; i++) {
+                assertBalances(table, new long[] {thread, i}, i, thread);
+            }
+        }
+    }
+
+    @Test
+    void pendingDeltasAreDrainedOnce() {
+        MCEngineCurrencyApiBalanceTable table = new MCEngineCurrencyApiBalanceTable(16, TYPES);
+        put(table, new long[] {1L, 1L}, 100L, 0L);
+
+        assertNull(table.drain(1L, 1L), "a fresh account has nothing pending");
+        table.add(1L, 1L, 0, 25L);
+        table.addAll(1L, 1L, new long[] {-5L, 7L});
+        assertBalances(table, new long[] {1L, 1L}, 120L, 7L);
+
+        assertArrayEquals(new long[] {20L, 7L}, table.drain(1L, 1L));
+        assertNull(table.drain(1L, 1L));
+        assertBalances(table, new long[] {1L, 1L}, 120L, 7L);
+        assertNull(table.drain(9L, 9L), "an absent account has nothing pending");
+    }
+
+    @Test
+    void requeueRestoresPendingWithoutChangingBalances() {
+        MCEngineCurrencyApiBalanceTable table = new MCEngineCurrencyApiBalanceTable(16, TYPES);
+        put(table, new long[] {1L, 1L}, 100L, 0L);
+        table.add(1L, 1L, 0, 10L);
+        long[] failed = table.drain(1L, 1L);
+
+        // A change made after the drain is merged with the deltas put back
+        table.add(1L, 1L, 0, 1L);
+        assertTrue(table.requeue(1L, 1L, failed));
+        assertBalances(table, new long[] {1L, 1L}, 111L, 0L);
+        assertArrayEquals(new long[] {11L, 0L}, table.drain(1L, 1L));
+
+        assertNull(table.remove(1L, 1L));
+        assertFalse(table.requeue(1L, 1L, failed), "an evicted account cannot take deltas back");
+    }
+
+    @Test
+    void reloadKeepsPendingDeltasOnTopOfStoredBalances() {
+        MCEngineCurrencyApiBalanceTable table = new MCEngineCurrencyApiBalanceTable(16, TYPES);
+        put(table, new long[] {1L, 1L}, 100L, 50L);
+        table.add(1L, 1L, 1, -20L);
+        // Another server changed the stored balances; this server's delta has not been flushed yet
+        assertTrue(table.reload(1L, 1L, new long[] {300L, 50L}));
+        assertBalances(table, new long[] {1L, 1L}, 300L, 30L);
+
+        // Changes made elsewhere are not pending here
+        assertTrue(table.adjustAll(1L, 1L, new long[] {1L, 1L}));
+        assertArrayEquals(new long[] {0L, -20L}, table.drain(1L, 1L));
+        assertFalse(table.reload(2L, 2L, new long[TYPES]));
+    }
+
+    @Test
+    void removeAndDrainAllReturnPendingDeltas() {
+        MCEngineCurrencyApiBalanceTable table = new MCEngineCurrencyApiBalanceTable(16, TYPES);
+        UUID changed = new UUID(1L, 2L);
+        UUID idle = new UUID(3L, 4L);
+        UUID removed = new UUID(5L, 6L);
+        for (UUID uuid : new UUID[] {changed, idle, removed}) {
+            put(table, new long[] {uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()}, 0L, 0L);
+        }
+        table.add(changed.getMostSignificantBits(), changed.getLeastSignificantBits(), 0, 4L);
+        table.add(removed.getMostSignificantBits(), removed.getLeastSignificantBits(), 1, 9L);
+
+        assertArrayEquals(new long[] {0L, 9L}, table.remove(removed.getMostSignificantBits(), removed.getLeastSignificantBits()));
+        Map<String, long[]> batch = new HashMap<>();
+        table.drainAll(batch);
+        assertEquals(1, batch.size(), "only accounts with pending deltas are drained");
+        assertArrayEquals(new long[] {4L, 0L}, batch.get(changed.toString()));
+
+        batch.clear();
+        table.drainAll(batch);
+        assertTrue(batch.isEmpty());
+    }
+
+    @Test
+    void pendingAccountsListsChangedAccountsWithoutDrainingThem() {
+        MCEngineCurrencyApiBalanceTable table = new MCEngineCurrencyApiBalanceTable(16, TYPES);
+        UUID changed = new UUID(1L, 2L);
+        UUID idle = new UUID(3L, 4L);
+        for (UUID uuid : new UUID[] {changed, idle}) {
+            put(table, new long[] {uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()}, 0L, 0L);
+        }
+        table.add(changed.getMostSignificantBits(), changed.getLeastSignificantBits(), 1, -3L);
+
+        List<UUID> accounts = new ArrayList<>();
+        table.pendingAccounts(accounts);
+        assertEquals(List.of(changed), accounts);
+        assertArrayEquals(new long[] {0L, -3L}, table.drain(changed.getMostSignificantBits(), changed.getLeastSignificantBits()));
+
+        accounts.clear();
+        table.pendingAccounts(accounts);
+        assertTrue(accounts.isEmpty());
+    }
+
+    @Test
+    void canonicalUuidStringsParseLikeUuid() {
+        UUID uuid = UUID.fromString("0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1f0");
+        String text = uuid.toString();
+        assertTrue(MCEngineCurrencyApiBalanceTable.isCanonical(text));
+        assertEquals(uuid.getMostSignificantBits(), MCEngineCurrencyApiBalanceTable.mostBits(text));
+        assertEquals(uuid.getLeastSignificantBits(), MCEngineCurrencyApiBalanceTable.leastBits(text));
+
+        assertFalse(MCEngineCurrencyApiBalanceTable.isCanonical(null));
+        assertFalse(MCEngineCurrencyApiBalanceTable.isCanonical("0f1e2d3c4b5a69788796a5b4c3d2e1f0"));
+        assertFalse(MCEngineCurrencyApiBalanceTable.isCanonical("0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1fz"));
+    }
+}
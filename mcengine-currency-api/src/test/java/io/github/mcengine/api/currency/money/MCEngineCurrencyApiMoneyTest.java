@@ -0,0 +1,57 @@
+package io.github.mcengine.api.currency.money;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link MCEngineCurrencyApiMoney#parse(String)}: the plain decimal forms players type are accepted
+ * and anything that is not an exact amount of minor units is rejected before it reaches {@code BigDecimal}.
+ */
+class MCEngineCurrencyApiMoneyTest {
+
+    @Test
+    void parsesPlainDecimals() {
+        assertEquals(1250L, MCEngineCurrencyApiMoney.parse("12.5").minor());
+        assertEquals(1234L, MCEngineCurrencyApiMoney.parse(" 12.34 ").minor());
+        assertEquals(-100L, MCEngineCurrencyApiMoney.parse("-1").minor());
+        assertEquals(100L, MCEngineCurrencyApiMoney.parse("+1").minor());
+    }
+
+    @Test
+    void parsesAmountsWithoutIntegerOrFractionDigits() {
+        assertEquals(50L, MCEngineCurrencyApiMoney.parse(".5").minor());
+        assertEquals(1200L, MCEngineCurrencyApiMoney.parse("12.").minor());
+    }
+
+    @Test
+    void rejectsExponents() {
+        assertThrows(NumberFormatException.class, () -> MCEngineCurrencyApiMoney.parse("1e9"));
+        assertThrows(NumberFormatException.class, () -> MCEngineCurrencyApiMoney.parse("1E9"));
+        assertThrows(NumberFormatException.class, () -> MCEngineCurrencyApiMoney.parse("1e999999999"));
+    }
+
+    @Test
+    void rejectsMoreThanSeventeenIntegerDigits() {
+        assertEquals(1000000000000000000L, MCEngineCurrencyApiMoney.parse("10000000000000000").minor());
+        assertThrows(NumberFormatException.class, () -> MCEngineCurrencyApiMoney.parse("100000000000000000"));
+        assertThrows(NumberFormatException.class, () -> MCEngineCurrencyApiMoney.parse("1234567890123456789012"));
+    }
+
+    @Test
+    void rejectsThreeDecimalPlaces() {
+        assertThrows(NumberFormatException.class, () -> MCEngineCurrencyApiMoney.parse("1.234"));
+        assertThrows(NumberFormatException.class, () -> MCEngineCurrencyApiMoney.parse(".001"));
+        assertEquals(123L, MCEngineCurrencyApiMoney.parse("1.230").minor());
+    }
+
+    @Test
+    void rejectsNonNumbers() {
+        assertThrows(NumberFormatException.class, () -> MCEngineCurrencyApiMoney.parse(""));
+        assertThrows(NumberFormatException.class, () -> MCEngineCurrencyApiMoney.parse("."));
+        assertThrows(NumberFormatException.class, () -> MCEngineCurrencyApiMoney.parse("abc"));
+        assertThrows(NumberFormatException.class, () -> MCEngineCurrencyApiMoney.parse("NaN"));
+        assertThrows(NumberFormatException.class, () -> MCEngineCurrencyApiMoney.parse("1,5"));
+    }
+}
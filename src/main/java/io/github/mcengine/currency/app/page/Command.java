@@ -20,12 +20,20 @@ commands:
     cash <coinType> <amount>
     check <coinType>
     pay <player> <amount> <coinType> <note>
+    top <coinType> [page]
+    history [player] [page]
+    stats [filter|reset]
+    replay [restore]
             </pre>
             <ul style='text-align: left; max-width: 700px; margin: 20px auto;'>
                 <li><strong>/currency add &lt;player&gt; &lt;coinType&gt; &lt;amount&gt;</strong> - Add currency to a player (Admin only)</li>
                 <li><strong>/currency cash &lt;coinType&gt; &lt;amount&gt;</strong> - Convert currency into a HeadDB item</li>
                 <li><strong>/currency check &lt;coinType&gt;</strong> - Check your own currency balance</li>
                 <li><strong>/currency pay &lt;player&gt; &lt;amount&gt; &lt;currencyType&gt; &lt;note&gt;</strong> - Pay currency to another player with a note</li>
+                <li><strong>/currency top &lt;coinType&gt; [page]</strong> - List the players with the highest balance, ten per page</li>
+                <li><strong>/currency history [player] [page]</strong> - List the transactions a player sent or received, newest first, ten per page; other players (by name or UUID) require <code>mcengine.currency.history.others</code></li>
+                <li><strong>/currency stats [filter|reset]</strong> - Show latency percentiles, cache hit ratio, queue depths and pool usage, optionally filtered by a name prefix such as <code>db</code>; <code>reset</code> clears the latency timers (Admin only)</li>
+                <li><strong>/currency replay [restore]</strong> - Rebuild every balance from the ledger and list the players whose stored balance differs; <code>restore</code> corrects them one player at a time and requires <code>mcengine.currency.replay.restore</code> (Admin only)</li>
             </ul>
         """;
     }